@@ -0,0 +1,67 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Pairwise alignment of the reference fixture of each size against a near-identical and a divergent target.
+ * Throughput plus sampled latency percentiles; run with -prof gc for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlignmentBenchmark {
+
+    // bounded alignments use the same threshold as suggest-variant
+    private static final int MAX_PENALTY = 5;
+
+    @Param({ "short-near", "short-divergent", "median-near", "median-divergent", "long-near", "long-divergent" })
+    public String target;
+
+    private final AlignmentService alignmentService = new AlignmentService();
+
+    private String refSequence;
+    private String targetSequence;
+
+    @Setup
+    public void setUp() {
+        refSequence = ProteinFixtures.get(target.substring(0, target.indexOf('-')) + "-ref");
+        targetSequence = ProteinFixtures.get(target);
+    }
+
+    @Benchmark
+    public AlignmentResult calcOptimalAlignment() {
+        return alignmentService.calcOptimalAlignment(refSequence, targetSequence, false);
+    }
+
+    @Benchmark
+    public Optional<AlignmentResult> calcBoundedAlignment() {
+        return alignmentService.calcBoundedAlignment(refSequence, targetSequence, MAX_PENALTY);
+    }
+
+    @Benchmark
+    public int score() {
+        return alignmentService.score(refSequence, targetSequence);
+    }
+
+    @Benchmark
+    public OptionalInt boundedScore() {
+        return alignmentService.score(refSequence, targetSequence, MAX_PENALTY);
+    }
+}
@@ -0,0 +1,25 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+
+/**
+ * A protein sequence store that never stores anything, so the sequences always come from Ensembl.
+ */
+class FixtureProteinSequenceService extends ProteinSequenceService {
+
+    FixtureProteinSequenceService() {
+        super(null);
+    }
+
+    @Override
+    public Map<String, String> findSequences(ReferenceGenome referenceGenome, Collection<String> ensemblProteinIds) {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void saveSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {}
+}
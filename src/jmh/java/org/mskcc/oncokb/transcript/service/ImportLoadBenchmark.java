@@ -0,0 +1,224 @@
+package org.mskcc.oncokb.transcript.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.HttpClientConfiguration;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.stub.StubServer;
+import org.mskcc.oncokb.transcript.stub.StubSettings;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript;
+import org.oncokb.client.Gene;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+/**
+ * Load test of the calls to Ensembl, Genome Nexus and OncoKB, against the {@link StubServer} instead of the public
+ * services. The services are built the same way as in the application: the pooled HTTP client, the Ensembl rate limit
+ * and retries, the circuit breakers and hedged requests, and the sequence batching.
+ * <p>
+ * importTranscripts makes the remote calls of MainService.createTranscript for every OncoKB gene and both reference
+ * genomes, i.e. the import without the database. The OncoKB genes are fetched once, in the setup. The others measure
+ * one endpoint each, with enough ids for several chunks. resolveCanonicalGenes looks up the canonical genes of both
+ * reference genomes at the same time, fetchCanonicalGenes one reference genome with the sequential chunks. The stub
+ * counts of rate limited and failed requests are printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImportLoadBenchmark {
+
+    // number of ids of the bulk benchmarks, the fixture ids are repeated
+    private static final int BULK_SIZE = 300;
+
+    @Param({ "0", "50" })
+    public long latencyMillis;
+
+    @Param({ "0", "0.05" })
+    public double errorRate;
+
+    // per stubbed service, 0 for no limit. Ensembl allows about 15
+    @Param({ "0" })
+    public int maxRequestsPerSecond;
+
+    private StubServer stubServer;
+    private CloseableHttpClient httpClient;
+    private UpstreamCallService upstreamCallService;
+    private EnsemblService ensemblService;
+    private EnsemblSequenceLoader ensemblSequenceLoader;
+    private GenomeNexusService genomeNexusService;
+    private CanonicalEnsemblGeneService canonicalEnsemblGeneService;
+    private List<Gene> genes;
+    private List<String> transcriptIds;
+    private List<String> proteinIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        // errors and rate limit are turned on once the ids are fetched
+        StubSettings stubSettings = new StubSettings().latency(latencyMillis, latencyMillis / 5);
+        stubServer = StubServer.start(stubSettings);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        stubServer.configure(applicationProperties);
+        // only the limit of the stub is measured, the client one would hide it
+        applicationProperties.getEnsembl().setMaxRequestsPerSecond(10000);
+
+        HttpClientConfiguration httpClientConfiguration = new HttpClientConfiguration(applicationProperties);
+        httpClient = httpClientConfiguration.httpClient(new SimpleMeterRegistry());
+        upstreamCallService = new UpstreamCallService(applicationProperties, new SimpleMeterRegistry());
+        ensemblService =
+            new EnsemblService(
+                httpClientConfiguration.ensemblRestTemplate(new RestTemplateBuilder(), httpClient),
+                applicationProperties,
+                upstreamCallService
+            );
+        ensemblSequenceLoader = new EnsemblSequenceLoader(ensemblService, new FixtureProteinSequenceService());
+        genomeNexusService = new GenomeNexusService(applicationProperties, upstreamCallService);
+        // without Redis, as in the tests, so every call reaches the stub
+        canonicalEnsemblGeneService =
+            new CanonicalEnsemblGeneService(
+                genomeNexusService,
+                applicationProperties,
+                new CacheNameResolver(applicationProperties),
+                Optional.empty(),
+                new SimpleMeterRegistry()
+            );
+
+        List<String> fixtureTranscriptIds = new ArrayList<>();
+        List<String> fixtureProteinIds = new ArrayList<>();
+        try {
+            genes = new OncoKbUrlService(applicationProperties, upstreamCallService).getGenes();
+            for (Gene gene : genes) {
+                fixtureTranscriptIds.add(gene.getGrch38Isoform());
+                fixtureProteinIds.add(
+                    genomeNexusService
+                        .getEnsemblControllerApi(ReferenceGenome.GRCh38)
+                        .fetchEnsemblTranscriptByTranscriptIdGET(gene.getGrch38Isoform())
+                        .getProteinId()
+                );
+            }
+        } catch (org.oncokb.ApiException | org.genome_nexus.ApiException e) {
+            throw new IOException("The stub did not return the fixtures", e);
+        }
+        transcriptIds = repeat(fixtureTranscriptIds);
+        proteinIds = repeat(fixtureProteinIds);
+        stubSettings.errorRate(errorRate).maxRequestsPerSecond(maxRequestsPerSecond);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.printf(
+            "%nstub: %d requests, %d rate limited, %d failed%n",
+            stubServer.getRequestCount(),
+            stubServer.getRejectedCount(),
+            stubServer.getFailedCount()
+        );
+        canonicalEnsemblGeneService.destroy();
+        ensemblSequenceLoader.destroy();
+        ensemblService.destroy();
+        upstreamCallService.destroy();
+        httpClient.close();
+        stubServer.close();
+    }
+
+    @Benchmark
+    public int importTranscripts() {
+        int sequenceCount = 0;
+        for (Gene gene : genes) {
+            sequenceCount += importTranscript(ReferenceGenome.GRCh37, gene.getGrch37Isoform(), gene.getEntrezGeneId());
+            sequenceCount += importTranscript(ReferenceGenome.GRCh38, gene.getGrch38Isoform(), gene.getEntrezGeneId());
+        }
+        return sequenceCount;
+    }
+
+    @Benchmark
+    public List<EnsemblTranscript> lookUpTranscripts() {
+        return ensemblService.getIdsAsync(ReferenceGenome.GRCh38, transcriptIds, true, true).join();
+    }
+
+    @Benchmark
+    public List<Optional<EnsemblSequence>> loadProteinSequences() {
+        List<CompletableFuture<Optional<EnsemblSequence>>> sequences = proteinIds
+            .stream()
+            .map(proteinId -> ensemblSequenceLoader.load(ReferenceGenome.GRCh38, proteinId))
+            .collect(Collectors.toList());
+        return sequences.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public int fetchCanonicalGenes() {
+        List<Integer> entrezGeneIds = genes.stream().map(Gene::getEntrezGeneId).collect(Collectors.toList());
+        try {
+            return genomeNexusService.findCanonicalEnsemblGeneTranscript(ReferenceGenome.GRCh38, entrezGeneIds).size();
+        } catch (org.genome_nexus.ApiException e) {
+            // failed by the error injection, Genome Nexus calls are not retried
+            return 0;
+        }
+    }
+
+    @Benchmark
+    public int resolveCanonicalGenes() {
+        List<Integer> entrezGeneIds = genes.stream().map(Gene::getEntrezGeneId).collect(Collectors.toList());
+        try {
+            return canonicalEnsemblGeneService
+                .findCanonicalEnsemblGeneIds(Arrays.asList(ReferenceGenome.values()), entrezGeneIds)
+                .values()
+                .stream()
+                .mapToInt(Map::size)
+                .sum();
+        } catch (org.genome_nexus.ApiException e) {
+            return 0;
+        }
+    }
+
+    // Same calls as MainService.createTranscript and createCanonicalEnsemblGene, a failed call skips the gene
+    private int importTranscript(ReferenceGenome referenceGenome, String ensemblTranscriptId, Integer entrezGeneId) {
+        try {
+            canonicalEnsemblGeneService.findCanonicalEnsemblGeneId(referenceGenome, entrezGeneId);
+            Optional<EnsemblTranscript> ensemblTranscript = ensemblService.getTranscript(referenceGenome, ensemblTranscriptId);
+            if (ensemblTranscript.isEmpty()) {
+                return 0;
+            }
+            ensemblService.getId(referenceGenome, ensemblTranscript.get().getParent(), true, true);
+            org.genome_nexus.client.EnsemblTranscript gnEnsemblTranscript = genomeNexusService
+                .getEnsemblControllerApi(referenceGenome)
+                .fetchEnsemblTranscriptByTranscriptIdGET(ensemblTranscriptId);
+            return ensemblSequenceLoader.getProteinSequence(referenceGenome, gnEnsemblTranscript.getProteinId()).isPresent() ? 1 : 0;
+        } catch (org.genome_nexus.ApiException | org.springframework.web.client.RestClientException e) {
+            return 0;
+        }
+    }
+
+    private static List<String> repeat(List<String> ids) {
+        List<String> repeated = new ArrayList<>();
+        while (repeated.size() < BULK_SIZE) {
+            repeated.addAll(ids);
+        }
+        return repeated.subList(0, BULK_SIZE);
+    }
+}
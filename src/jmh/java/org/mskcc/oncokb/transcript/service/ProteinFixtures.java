@@ -0,0 +1,65 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Loads the checked-in FASTA fixtures, so the benchmarks do not depend on Ensembl being reachable.
+ */
+final class ProteinFixtures {
+
+    private static final String FIXTURES = "/fixtures/proteins.fasta";
+
+    private static final Map<String, String> SEQUENCES = load();
+
+    private ProteinFixtures() {}
+
+    static String get(String name) {
+        String sequence = SEQUENCES.get(name);
+        if (sequence == null) {
+            throw new IllegalArgumentException("No fixture named " + name + " in " + FIXTURES);
+        }
+        return sequence;
+    }
+
+    static Map<String, String> all() {
+        return SEQUENCES;
+    }
+
+    //The first word of the header is the name, ';' lines are comments
+    private static Map<String, String> load() {
+        Map<String, String> sequences = new LinkedHashMap<>();
+        try (
+            InputStream inputStream = ProteinFixtures.class.getResourceAsStream(FIXTURES);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))
+        ) {
+            String name = null;
+            StringBuilder sequence = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(">")) {
+                    if (name != null) {
+                        sequences.put(name, sequence.toString());
+                    }
+                    name = line.substring(1).split("\\s+", 2)[0];
+                    sequence.setLength(0);
+                } else if (!line.startsWith(";")) {
+                    sequence.append(line.trim());
+                }
+            }
+            if (name != null) {
+                sequences.put(name, sequence.toString());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return Collections.unmodifiableMap(sequences);
+    }
+}
@@ -0,0 +1,194 @@
+package org.mskcc.oncokb.transcript.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.HttpClientConfiguration;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.stub.StubServer;
+import org.mskcc.oncokb.transcript.stub.StubSettings;
+import org.mskcc.oncokb.transcript.vm.TranscriptComparisonVM;
+import org.mskcc.oncokb.transcript.vm.TranscriptPairVM;
+import org.mskcc.oncokb.transcript.web.rest.TranscriptController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.NestedServletException;
+
+/**
+ * Throughput of the compare-transcript and suggest-variant endpoints, called through MockMvc on the TranscriptController
+ * with its services wired to the {@link StubServer}, the same way as in {@link ImportLoadBenchmark}. Redis is left out,
+ * so the transcript lists are only cached for the request and every request reaches the stub, while the alignments
+ * are cached in memory as in the application.
+ * <p>
+ * The requests are sent from several threads, so that the sequences of concurrent requests share the Ensembl batches.
+ * compareTranscript aligns the EGFR isoforms of both reference genomes. suggestVariant checks the curated residue
+ * against the EGFR transcripts of both reference genomes. Both return the HTTP status, a failed call being answered
+ * with 500 the way the application would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(8)
+@Fork(1)
+public class TranscriptEndpointBenchmark {
+
+    private static final String HUGO_SYMBOL = "EGFR";
+    private static final String TRANSCRIPT_ID = "ENST00000275493";
+    private static final String PROTEIN_ID = "ENSP00000275493";
+    private static final int PROTEIN_POSITION = 858;
+
+    @Param({ "0", "50" })
+    public long latencyMillis;
+
+    @Param({ "0", "0.05" })
+    public double errorRate;
+
+    private StubServer stubServer;
+    private CloseableHttpClient httpClient;
+    private UpstreamCallService upstreamCallService;
+    private EnsemblService ensemblService;
+    private EnsemblSequenceLoader ensemblSequenceLoader;
+    private MockMvc mockMvc;
+    private String comparisonBody;
+    private String curatedResidue;
+
+    @Setup
+    public void setUp() throws IOException {
+        // errors are turned on once the curated residue is fetched
+        StubSettings stubSettings = new StubSettings().latency(latencyMillis, latencyMillis / 5);
+        stubServer = StubServer.start(stubSettings);
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        stubServer.configure(applicationProperties);
+        applicationProperties.getEnsembl().setMaxRequestsPerSecond(10000);
+
+        HttpClientConfiguration httpClientConfiguration = new HttpClientConfiguration(applicationProperties);
+        httpClient = httpClientConfiguration.httpClient(new SimpleMeterRegistry());
+        upstreamCallService = new UpstreamCallService(applicationProperties, new SimpleMeterRegistry());
+        ensemblService =
+            new EnsemblService(
+                httpClientConfiguration.ensemblRestTemplate(new RestTemplateBuilder(), httpClient),
+                applicationProperties,
+                upstreamCallService
+            );
+        ensemblSequenceLoader = new EnsemblSequenceLoader(ensemblService, new FixtureProteinSequenceService());
+        GenomeNexusService genomeNexusService = new GenomeNexusService(applicationProperties, upstreamCallService);
+        CacheNameResolver cacheNameResolver = new CacheNameResolver(applicationProperties);
+        CachedAlignmentService cachedAlignmentService = new CachedAlignmentService(
+            new AlignmentService(),
+            applicationProperties,
+            cacheNameResolver,
+            Optional.empty(),
+            new SimpleMeterRegistry()
+        );
+        TranscriptService transcriptService = new TranscriptService(
+            genomeNexusService,
+            ensemblService,
+            ensemblSequenceLoader,
+            cachedAlignmentService,
+            new CachedTranscriptListService(genomeNexusService, cacheNameResolver, Optional.empty(), new SimpleMeterRegistry()),
+            null,
+            null,
+            null,
+            null,
+            null,
+            cacheNameResolver,
+            Optional.empty()
+        );
+        // only compare-transcript and suggest-variant are called, add-transcript would need the MainService
+        mockMvc =
+            MockMvcBuilders
+                .standaloneSetup(new TranscriptController(cachedAlignmentService, transcriptService, null, ensemblSequenceLoader))
+                .build();
+
+        TranscriptComparisonVM transcriptComparisonVM = new TranscriptComparisonVM();
+        transcriptComparisonVM.setAlign(true);
+        transcriptComparisonVM.setTranscriptA(transcriptPair(ReferenceGenome.GRCh37));
+        transcriptComparisonVM.setTranscriptB(transcriptPair(ReferenceGenome.GRCh38));
+        comparisonBody = new ObjectMapper().writeValueAsString(transcriptComparisonVM);
+        curatedResidue =
+            ensemblSequenceLoader
+                .getProteinSequence(ReferenceGenome.GRCh38, PROTEIN_ID)
+                .orElseThrow(() -> new IOException("The stub did not return the fixtures"))
+                .getSeq()
+                .substring(PROTEIN_POSITION - 1, PROTEIN_POSITION);
+        stubSettings.errorRate(errorRate);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.printf(
+            "%nstub: %d requests, %d rate limited, %d failed%n",
+            stubServer.getRequestCount(),
+            stubServer.getRejectedCount(),
+            stubServer.getFailedCount()
+        );
+        ensemblSequenceLoader.destroy();
+        ensemblService.destroy();
+        upstreamCallService.destroy();
+        httpClient.close();
+        stubServer.close();
+    }
+
+    @Benchmark
+    public int compareTranscript() throws Exception {
+        return perform(
+            MockMvcRequestBuilders
+                .post("/api/compare-transcript/{hugoSymbol}", HUGO_SYMBOL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(comparisonBody)
+        );
+    }
+
+    @Benchmark
+    public int suggestVariant() throws Exception {
+        return perform(
+            MockMvcRequestBuilders
+                .get("/api/suggest-variant/{hugoSymbol}", HUGO_SYMBOL)
+                .param("proteinPosition", String.valueOf(PROTEIN_POSITION))
+                .param("curatedResidue", curatedResidue)
+                .param("grch37Transcript", TRANSCRIPT_ID)
+                .param("grch38Transcript", TRANSCRIPT_ID)
+        );
+    }
+
+    private int perform(RequestBuilder request) throws Exception {
+        try {
+            return mockMvc.perform(request).andReturn().getResponse().getStatus();
+        } catch (NestedServletException e) {
+            // not handled by the controller, e.g. a sequence missing because of the error injection
+            return 500;
+        }
+    }
+
+    private static TranscriptPairVM transcriptPair(ReferenceGenome referenceGenome) {
+        TranscriptPairVM transcriptPairVM = new TranscriptPairVM();
+        transcriptPairVM.setReferenceGenome(referenceGenome);
+        transcriptPairVM.setTranscript(TRANSCRIPT_ID);
+        return transcriptPairVM;
+    }
+}
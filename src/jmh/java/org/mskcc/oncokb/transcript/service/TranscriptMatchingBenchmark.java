@@ -0,0 +1,124 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.genome_nexus.client.EnsemblTranscript;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.vm.MissMatchPairVM;
+import org.mskcc.oncokb.transcript.vm.TranscriptMatchResultVM;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Picking the matching transcript among the isoforms of a gene. Ensembl is replaced by the FASTA fixtures,
+ * so only the matching itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranscriptMatchingBenchmark {
+
+    private TranscriptService transcriptService;
+    private List<EnsemblTranscript> sameLengthTranscripts;
+    private List<EnsemblTranscript> longerTranscripts;
+    private EnsemblSequence sequence;
+    private String isoformSequence;
+
+    @Setup
+    public void setUp() {
+        EnsemblService ensemblService = new FixtureEnsemblService();
+        transcriptService =
+            new TranscriptService(
+                null,
+                ensemblService,
+                new EnsemblSequenceLoader(ensemblService, new FixtureProteinSequenceService()),
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                Optional.empty()
+            );
+        sequence = new EnsemblSequence();
+        sequence.setId("median-ref");
+        sequence.setSeq(ProteinFixtures.get("median-ref"));
+        isoformSequence = ProteinFixtures.get("median-isoform-8");
+        sameLengthTranscripts = getTranscripts("median-isoform-");
+        longerTranscripts = getTranscripts("median-longer-");
+    }
+
+    @Benchmark
+    public List<MissMatchPairVM> getNumOfMismatchSameLengthSequences() {
+        return transcriptService.getNumOfMismatchSameLengthSequences(sequence.getSeq(), isoformSequence);
+    }
+
+    @Benchmark
+    public TranscriptMatchResultVM pickSameLengthTranscript() {
+        return transcriptService.pickEnsemblTranscript(
+            new TranscriptMatchResultVM(),
+            ReferenceGenome.GRCh38,
+            sameLengthTranscripts,
+            sequence
+        );
+    }
+
+    @Benchmark
+    public TranscriptMatchResultVM pickLongerTranscript() {
+        return transcriptService.pickEnsemblTranscript(new TranscriptMatchResultVM(), ReferenceGenome.GRCh38, longerTranscripts, sequence);
+    }
+
+    private static List<EnsemblTranscript> getTranscripts(String namePrefix) {
+        List<EnsemblTranscript> transcripts = new ArrayList<>();
+        for (Map.Entry<String, String> fixture : ProteinFixtures.all().entrySet()) {
+            if (fixture.getKey().startsWith(namePrefix)) {
+                EnsemblTranscript transcript = new EnsemblTranscript();
+                transcript.setTranscriptId(fixture.getKey());
+                transcript.setProteinId(fixture.getKey());
+                transcript.setProteinLength(fixture.getValue().length());
+                transcripts.add(transcript);
+            }
+        }
+        return transcripts;
+    }
+
+    private static class FixtureEnsemblService extends EnsemblService {
+
+        FixtureEnsemblService() {
+            super(new RestTemplate(), new ApplicationProperties(), null);
+        }
+
+        @Override
+        public List<EnsemblSequence> getProteinSequences(ReferenceGenome referenceGenome, List<String> transcripts) {
+            return transcripts
+                .stream()
+                .map(id -> {
+                    EnsemblSequence ensemblSequence = new EnsemblSequence();
+                    ensemblSequence.setId(id);
+                    ensemblSequence.setSeq(ProteinFixtures.get(id));
+                    return ensemblSequence;
+                })
+                .collect(Collectors.toList());
+        }
+    }
+}
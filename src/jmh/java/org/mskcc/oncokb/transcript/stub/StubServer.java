@@ -0,0 +1,317 @@
+package org.mskcc.oncokb.transcript.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.model.OncoKbConfig;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+
+/**
+ * Local stand-in for Ensembl, Genome Nexus and OncoKB, so the import and the endpoints can be load tested offline and
+ * reproducibly.
+ * <p>
+ * Each service is served under its own path, e.g. /ensembl/GRCh38, from the JSON fixtures in /fixtures/stub. The
+ * fixtures hold the responses by id, and the bulk endpoints answer with the fixtures of the requested ids, the same
+ * way the real services do. The latency, the errors and the rate limit come from the {@link StubSettings}.
+ * <p>
+ * Stubbed endpoints:
+ * <ul>
+ *     <li>Ensembl: POST /lookup/id, GET /sequence/id/{id} and POST /sequence/id</li>
+ *     <li>Genome Nexus: GET and POST /ensembl/canonical-gene/entrez, GET /ensembl/transcript/{id},
+ *     GET /ensembl/transcript?hugoSymbol= and GET /ensembl/canonical-transcript/hgnc/{hugoSymbol}</li>
+ *     <li>OncoKB: GET /genes</li>
+ * </ul>
+ */
+public final class StubServer implements AutoCloseable {
+
+    private static final String FIXTURES = "/fixtures/stub/";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StubSettings settings;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private StubServer(StubSettings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor =
+            Executors.newFixedThreadPool(
+                32,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stub-server-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+        server.setExecutor(executor);
+        for (ReferenceGenome referenceGenome : ReferenceGenome.values()) {
+            JsonNode ensembl = loadFixture("ensembl-" + referenceGenome.name() + ".json");
+            server.createContext(
+                getEnsemblPath(referenceGenome),
+                new StubHandler((method, path, query, body) -> ensembl(ensembl, method, path, body))
+            );
+            JsonNode genomeNexus = loadFixture("genome-nexus-" + referenceGenome.name() + ".json");
+            server.createContext(
+                getGenomeNexusPath(referenceGenome),
+                new StubHandler((method, path, query, body) -> genomeNexus(genomeNexus, method, path, query, body))
+            );
+        }
+        JsonNode oncokb = loadFixture("oncokb.json");
+        server.createContext("/oncokb", new StubHandler((method, path, query, body) -> oncoKb(oncokb, method, path)));
+    }
+
+    public static StubServer start(StubSettings settings) throws IOException {
+        StubServer stubServer = new StubServer(settings);
+        stubServer.server.start();
+        return stubServer;
+    }
+
+    /**
+     * Point the services at the stub.
+     */
+    public void configure(ApplicationProperties applicationProperties) {
+        applicationProperties.getEnsembl().setGrch37Url(getUrl(getEnsemblPath(ReferenceGenome.GRCh37)));
+        applicationProperties.getEnsembl().setGrch38Url(getUrl(getEnsemblPath(ReferenceGenome.GRCh38)));
+        applicationProperties.getGenomeNexus().setGrch37Url(getUrl(getGenomeNexusPath(ReferenceGenome.GRCh37)));
+        applicationProperties.getGenomeNexus().setGrch38Url(getUrl(getGenomeNexusPath(ReferenceGenome.GRCh38)));
+        OncoKbConfig oncoKbConfig = new OncoKbConfig();
+        oncoKbConfig.setUrl(getUrl("/oncokb"));
+        oncoKbConfig.setApiKey("stub");
+        applicationProperties.setOncokb(oncoKbConfig);
+    }
+
+    public String getUrl(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Number of requests answered with a 429 because of the rate limit.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Number of requests answered with a 503 by the error injection.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static String getEnsemblPath(ReferenceGenome referenceGenome) {
+        return "/ensembl/" + referenceGenome.name();
+    }
+
+    private static String getGenomeNexusPath(ReferenceGenome referenceGenome) {
+        return "/genome-nexus/" + referenceGenome.name();
+    }
+
+    private static JsonNode ensembl(JsonNode fixture, String method, String path, JsonNode body) {
+        if ("POST".equals(method) && "/lookup/id".equals(path)) {
+            // every requested id is in the response, null when it is not found
+            ObjectNode response = OBJECT_MAPPER.createObjectNode();
+            body
+                .path("ids")
+                .forEach(id -> {
+                    JsonNode lookup = fixture.path("lookup").get(id.asText());
+                    response.set(id.asText(), lookup == null ? NullNode.getInstance() : lookup);
+                });
+            return response;
+        }
+        if ("POST".equals(method) && "/sequence/id".equals(path)) {
+            ArrayNode response = OBJECT_MAPPER.createArrayNode();
+            body.path("ids").forEach(id -> addIfPresent(response, fixture.path("sequence").get(id.asText())));
+            return response;
+        }
+        if ("GET".equals(method) && path.startsWith("/sequence/id/")) {
+            return fixture.path("sequence").get(path.substring("/sequence/id/".length()));
+        }
+        return null;
+    }
+
+    private static JsonNode genomeNexus(JsonNode fixture, String method, String path, Map<String, String> query, JsonNode body) {
+        String canonicalGenePath = "/ensembl/canonical-gene/entrez";
+        if ("POST".equals(method) && canonicalGenePath.equals(path)) {
+            ArrayNode response = OBJECT_MAPPER.createArrayNode();
+            body.forEach(id -> addIfPresent(response, fixture.path("canonicalGenes").get(id.asText())));
+            return response;
+        }
+        if ("GET".equals(method) && path.startsWith(canonicalGenePath + "/")) {
+            return fixture.path("canonicalGenes").get(path.substring(canonicalGenePath.length() + 1));
+        }
+        if ("GET".equals(method) && "/ensembl/transcript".equals(path)) {
+            ArrayNode response = OBJECT_MAPPER.createArrayNode();
+            String hugoSymbol = query.get("hugoSymbol");
+            fixture
+                .path("transcripts")
+                .forEach(transcript -> {
+                    if (hugoSymbol == null || transcript.path("hugoSymbols").toString().contains("\"" + hugoSymbol + "\"")) {
+                        response.add(transcript);
+                    }
+                });
+            return response;
+        }
+        if ("GET".equals(method) && path.startsWith("/ensembl/transcript/")) {
+            return fixture.path("transcripts").get(path.substring("/ensembl/transcript/".length()));
+        }
+        if ("GET".equals(method) && path.startsWith("/ensembl/canonical-transcript/hgnc/")) {
+            return fixture.path("canonicalTranscripts").get(path.substring("/ensembl/canonical-transcript/hgnc/".length()));
+        }
+        return null;
+    }
+
+    private static JsonNode oncoKb(JsonNode fixture, String method, String path) {
+        return "GET".equals(method) && "/genes".equals(path) ? fixture.path("genes") : null;
+    }
+
+    private static void addIfPresent(ArrayNode response, JsonNode node) {
+        if (node != null) {
+            response.add(node);
+        }
+    }
+
+    private static JsonNode loadFixture(String name) {
+        try (InputStream inputStream = StubServer.class.getResourceAsStream(FIXTURES + name)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("No stub fixture " + FIXTURES + name);
+            }
+            return OBJECT_MAPPER.readTree(inputStream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                String[] keyValue = parameter.split("=", 2);
+                query.put(
+                    URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8),
+                    keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : ""
+                );
+            }
+        }
+        return query;
+    }
+
+    @FunctionalInterface
+    private interface Responder {
+        /**
+         * @return the response body, null for a 404
+         */
+        JsonNode respond(String method, String path, Map<String, String> query, JsonNode body);
+    }
+
+    private class StubHandler implements HttpHandler {
+
+        private static final long WINDOW_NANOS = 1_000_000_000L;
+
+        private final Responder responder;
+        private long windowStart = System.nanoTime() - WINDOW_NANOS;
+        private int windowCount;
+
+        StubHandler(Responder responder) {
+            this.responder = responder;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                requestCount.incrementAndGet();
+                settings.delay();
+                // fixed windows of one second, the remaining budget is announced like Ensembl does
+                int remaining = acquire();
+                if (settings.getMaxRequestsPerSecond() > 0) {
+                    exchange.getResponseHeaders().set("X-RateLimit-Limit", Integer.toString(settings.getMaxRequestsPerSecond()));
+                    exchange.getResponseHeaders().set("X-RateLimit-Remaining", Integer.toString(Math.max(0, remaining)));
+                    exchange.getResponseHeaders().set("X-RateLimit-Reset", "1");
+                }
+                if (remaining < 0) {
+                    rejectedCount.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    send(exchange, 429, null);
+                    return;
+                }
+                if (settings.shouldFail()) {
+                    failedCount.incrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "0");
+                    send(exchange, 503, null);
+                    return;
+                }
+
+                String method = exchange.getRequestMethod();
+                String path = exchange.getRequestURI().getPath().substring(exchange.getHttpContext().getPath().length());
+                JsonNode body = "POST".equals(method) ? OBJECT_MAPPER.readTree(exchange.getRequestBody()) : null;
+                JsonNode response = responder.respond(method, path, parseQuery(exchange.getRequestURI().getRawQuery()), body);
+                send(exchange, response == null ? 404 : 200, response);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(exchange, 503, null);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        // the requests left in the current window, negative when the limit is exceeded
+        private synchronized int acquire() {
+            if (settings.getMaxRequestsPerSecond() <= 0) {
+                return Integer.MAX_VALUE;
+            }
+            long now = System.nanoTime();
+            if (now - windowStart >= WINDOW_NANOS) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            windowCount++;
+            return settings.getMaxRequestsPerSecond() - windowCount;
+        }
+
+        private void send(HttpExchange exchange, int status, JsonNode response) throws IOException {
+            if (response == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(response);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(bytes);
+            }
+        }
+    }
+}
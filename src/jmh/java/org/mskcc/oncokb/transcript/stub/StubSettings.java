@@ -0,0 +1,59 @@
+package org.mskcc.oncokb.transcript.stub;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How the {@link StubServer} behaves: the latency of every response, the share of failed responses and the rate limit.
+ * The default answers right away, never fails and is not limited. The settings can be changed while the server runs.
+ */
+public class StubSettings {
+
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile double errorRate;
+    private volatile int maxRequestsPerSecond;
+
+    /**
+     * Every response waits this long, plus a random jitter up to latencyJitterMillis.
+     */
+    public StubSettings latency(long latencyMillis, long latencyJitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        return this;
+    }
+
+    /**
+     * Share of the requests answered with a 503 and Retry-After: 0, between 0 and 1.
+     */
+    public StubSettings errorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("The error rate needs to be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Requests per second accepted by each stubbed service, the others are answered with a 429. 0 for no limit.
+     */
+    public StubSettings maxRequestsPerSecond(int maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        return this;
+    }
+
+    public int getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    void delay() throws InterruptedException {
+        long delayMillis = latencyMillis + (latencyJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMillis + 1) : 0);
+        if (delayMillis > 0) {
+            TimeUnit.MILLISECONDS.sleep(delayMillis);
+        }
+    }
+
+    boolean shouldFail() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+}
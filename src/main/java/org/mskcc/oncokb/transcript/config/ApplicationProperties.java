@@ -1,6 +1,12 @@
 package org.mskcc.oncokb.transcript.config;
 
+import org.mskcc.oncokb.transcript.config.model.AlignmentConfig;
+import org.mskcc.oncokb.transcript.config.model.EnsemblConfig;
+import org.mskcc.oncokb.transcript.config.model.GenomeNexusConfig;
+import org.mskcc.oncokb.transcript.config.model.HttpClientConfig;
+import org.mskcc.oncokb.transcript.config.model.ImportPipelineConfig;
 import org.mskcc.oncokb.transcript.config.model.OncoKbConfig;
+import org.mskcc.oncokb.transcript.config.model.ResilienceConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -14,6 +20,18 @@ public class ApplicationProperties extends org.mskcc.oncokb.meta.model.applicati
 
     private OncoKbConfig oncokb;
 
+    private AlignmentConfig alignment = new AlignmentConfig();
+
+    private HttpClientConfig httpClient = new HttpClientConfig();
+
+    private EnsemblConfig ensembl = new EnsemblConfig();
+
+    private GenomeNexusConfig genomeNexus = new GenomeNexusConfig();
+
+    private ResilienceConfig resilience = new ResilienceConfig();
+
+    private ImportPipelineConfig importPipeline = new ImportPipelineConfig();
+
     public OncoKbConfig getOncokb() {
         return oncokb;
     }
@@ -21,4 +39,52 @@ public class ApplicationProperties extends org.mskcc.oncokb.meta.model.applicati
     public void setOncokb(OncoKbConfig oncokb) {
         this.oncokb = oncokb;
     }
+
+    public AlignmentConfig getAlignment() {
+        return alignment;
+    }
+
+    public void setAlignment(AlignmentConfig alignment) {
+        this.alignment = alignment;
+    }
+
+    public HttpClientConfig getHttpClient() {
+        return httpClient;
+    }
+
+    public void setHttpClient(HttpClientConfig httpClient) {
+        this.httpClient = httpClient;
+    }
+
+    public EnsemblConfig getEnsembl() {
+        return ensembl;
+    }
+
+    public void setEnsembl(EnsemblConfig ensembl) {
+        this.ensembl = ensembl;
+    }
+
+    public GenomeNexusConfig getGenomeNexus() {
+        return genomeNexus;
+    }
+
+    public void setGenomeNexus(GenomeNexusConfig genomeNexus) {
+        this.genomeNexus = genomeNexus;
+    }
+
+    public ResilienceConfig getResilience() {
+        return resilience;
+    }
+
+    public void setResilience(ResilienceConfig resilience) {
+        this.resilience = resilience;
+    }
+
+    public ImportPipelineConfig getImportPipeline() {
+        return importPipeline;
+    }
+
+    public void setImportPipeline(ImportPipelineConfig importPipeline) {
+        this.importPipeline = importPipeline;
+    }
 }
@@ -89,6 +89,16 @@ public class CacheConfiguration extends CachingConfigurerSupport {
         return RedissonConfiguration.fromInstance(redissonClient, jcacheConfig);
     }
 
+    private javax.cache.configuration.Configuration<Object, Object> getJcacheConfiguration(
+        RedissonClient redissonClient,
+        long expirationSeconds
+    ) {
+        MutableConfiguration<Object, Object> jcacheConfig = new MutableConfiguration<>();
+        jcacheConfig.setStatisticsEnabled(true);
+        jcacheConfig.setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(new Duration(TimeUnit.SECONDS, expirationSeconds)));
+        return RedissonConfiguration.fromInstance(redissonClient, jcacheConfig);
+    }
+
     private void createCache(
         javax.cache.CacheManager cm,
         CacheCategory cacheCategory,
@@ -105,12 +115,41 @@ public class CacheConfiguration extends CachingConfigurerSupport {
     @Bean
     public JCacheManagerCustomizer cacheManagerCustomizer(
         javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration,
-        CacheNameResolver cacheNameResolver
+        CacheNameResolver cacheNameResolver,
+        ApplicationProperties applicationProperties,
+        RedissonClient redissonClient
     ) {
+        // the Genome Nexus answers only change with its releases, they are kept longer than the other entries
+        javax.cache.configuration.Configuration<Object, Object> canonicalGeneJcacheConfiguration = getJcacheConfiguration(
+            redissonClient,
+            applicationProperties.getGenomeNexus().getCanonicalGeneCacheExpiration()
+        );
+        javax.cache.configuration.Configuration<Object, Object> missingCanonicalGeneJcacheConfiguration = getJcacheConfiguration(
+            redissonClient,
+            applicationProperties.getGenomeNexus().getMissingCanonicalGeneCacheExpiration()
+        );
+        javax.cache.configuration.Configuration<Object, Object> transcriptListJcacheConfiguration = getJcacheConfiguration(
+            redissonClient,
+            applicationProperties.getGenomeNexus().getTranscriptCacheExpiration()
+        );
         return cm -> {
             createCache(cm, CacheCategory.GENE, CacheKeys.GENES_BY_ENTREZ_GENE_ID, jcacheConfiguration, cacheNameResolver);
             createCache(cm, CacheCategory.GENE, CacheKeys.GENES_BY_HUGO_SYMBOL, jcacheConfiguration, cacheNameResolver);
             createCache(cm, CacheCategory.GENE, CacheKeys.GENE_ALIASES_BY_NAME, jcacheConfiguration, cacheNameResolver);
+            createCache(
+                cm,
+                CacheCategory.GENE,
+                CacheKeys.CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID,
+                canonicalGeneJcacheConfiguration,
+                cacheNameResolver
+            );
+            createCache(
+                cm,
+                CacheCategory.GENE,
+                CacheKeys.MISSING_CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID,
+                missingCanonicalGeneJcacheConfiguration,
+                cacheNameResolver
+            );
             createCache(
                 cm,
                 CacheCategory.TRANSCRIPT,
@@ -118,6 +157,14 @@ public class CacheConfiguration extends CachingConfigurerSupport {
                 jcacheConfiguration,
                 cacheNameResolver
             );
+            createCache(cm, CacheCategory.ALIGNMENT, CacheKeys.ALIGNMENTS_BY_SEQUENCE_HASH, jcacheConfiguration, cacheNameResolver);
+            createCache(
+                cm,
+                CacheCategory.GENOME_NEXUS,
+                CacheKeys.ENSEMBL_TRANSCRIPTS_BY_HUGO_SYMBOL,
+                transcriptListJcacheConfiguration,
+                cacheNameResolver
+            );
             // jhipster-needle-redis-add-entry
         };
     }
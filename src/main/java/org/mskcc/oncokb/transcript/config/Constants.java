@@ -7,6 +7,10 @@ public final class Constants {
 
     public static final String SYSTEM = "system";
     public static final Integer ENSEMBL_POST_THRESHOLD = 100;
+    // How long single sequence lookups are gathered before they are sent to Ensembl as one batch
+    public static final long ENSEMBL_SEQUENCE_BATCH_WINDOW_MILLIS = 10;
+    // Number of isoforms ranked by their shared k-mers that are fully aligned
+    public static final int ALIGNMENT_CANDIDATE_LIMIT = 10;
 
     private Constants() {}
 }
@@ -0,0 +1,81 @@
+package org.mskcc.oncokb.transcript.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.mskcc.oncokb.transcript.config.model.EnsemblConfig;
+import org.mskcc.oncokb.transcript.config.model.HttpClientConfig;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblRateLimitInterceptor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Shared client of the outbound HTTP calls.
+ * <p>
+ * The connections are pooled and kept alive, so consecutive calls to the same host skip the TCP and TLS handshakes.
+ * Responses are requested and decompressed with gzip. The RestTemplate is built from Spring Boot's RestTemplateBuilder,
+ * which records every request in the http.client.requests metric tagged by host (clientName), and the pool itself is
+ * exposed as the httpcomponents.httpclient.pool metrics.
+ * <p>
+ * The calls to Ensembl go through its rate limit, see EnsemblRateLimitInterceptor.
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+    private final Logger log = LoggerFactory.getLogger(HttpClientConfiguration.class);
+
+    private final HttpClientConfig httpClientConfig;
+    private final EnsemblConfig ensemblConfig;
+
+    public HttpClientConfiguration(ApplicationProperties applicationProperties) {
+        this.httpClientConfig = applicationProperties.getHttpClient();
+        this.ensemblConfig = applicationProperties.getEnsembl();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(MeterRegistry meterRegistry) {
+        log.debug(
+            "Creating the pooled HTTP client, {} connections, {} per host",
+            httpClientConfig.getMaxConnections(),
+            httpClientConfig.getMaxConnectionsPerRoute()
+        );
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(httpClientConfig.getMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(httpClientConfig.getMaxConnectionsPerRoute());
+        // re-check the connections that were idle for a while, the server may have closed them
+        connectionManager.setValidateAfterInactivity(2000);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "outbound").bindTo(meterRegistry);
+
+        RequestConfig requestConfig = RequestConfig
+            .custom()
+            .setConnectTimeout(httpClientConfig.getConnectTimeout())
+            .setSocketTimeout(httpClientConfig.getReadTimeout())
+            .setConnectionRequestTimeout(httpClientConfig.getConnectionRequestTimeout())
+            .build();
+        // content compression (Accept-Encoding: gzip, deflate) is enabled by default
+        return HttpClients
+            .custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(httpClientConfig.getIdleTimeout(), TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    @Bean
+    public RestTemplate ensemblRestTemplate(RestTemplateBuilder restTemplateBuilder, CloseableHttpClient httpClient) {
+        return restTemplateBuilder
+            .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+            .additionalInterceptors(new EnsemblRateLimitInterceptor(ensemblConfig))
+            .build();
+    }
+}
@@ -3,4 +3,6 @@ package org.mskcc.oncokb.transcript.config.cache;
 public enum CacheCategory {
     GENE,
     TRANSCRIPT,
+    ALIGNMENT,
+    GENOME_NEXUS,
 }
@@ -5,6 +5,12 @@ public final class CacheKeys {
     public static final String GENES_BY_ENTREZ_GENE_ID = "genesByEntrezGeneId";
     public static final String GENES_BY_HUGO_SYMBOL = "genesByHugoSymbol";
     public static final String GENE_ALIASES_BY_NAME = "geneAliasesByName";
+    public static final String CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID = "canonicalEnsemblGeneIdsByEntrezGeneId";
+    public static final String MISSING_CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID = "missingCanonicalEnsemblGeneIdsByEntrezGeneId";
 
     public static final String TRANSCRIPTS_BY_ENSEMBL_TRANSCRIPT_IDS = "findByReferenceGenomeAndEnsemblTranscriptIdIsIn";
+
+    public static final String ENSEMBL_TRANSCRIPTS_BY_HUGO_SYMBOL = "ensemblTranscriptsByHugoSymbol";
+
+    public static final String ALIGNMENTS_BY_SEQUENCE_HASH = "alignmentsBySequenceHash";
 }
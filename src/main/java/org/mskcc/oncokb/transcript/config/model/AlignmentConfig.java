@@ -0,0 +1,15 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+public class AlignmentConfig {
+
+    // Number of alignments kept in memory by CachedAlignmentService, a median protein pair takes ~3KB
+    int cacheMaxEntries = 2000;
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+}
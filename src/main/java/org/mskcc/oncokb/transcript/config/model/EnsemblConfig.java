@@ -0,0 +1,70 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+/**
+ * Settings of the calls to the Ensembl REST API.
+ */
+public class EnsemblConfig {
+
+    // base url of the GRCh37 and GRCh38 REST APIs, the public ones when empty
+    String grch37Url;
+    String grch38Url;
+
+    // number of chunks of a bulk lookup sent at the same time
+    int parallelism = 4;
+    // upper bound of the request rate per Ensembl host, lowered by the X-RateLimit-* headers when needed.
+    // Ensembl allows 55000 requests per hour, about 15 per second
+    double maxRequestsPerSecond = 15;
+    // number of times a request is retried after a 429 or a 503
+    int maxRetries = 3;
+    // folder of the release files, e.g. Homo_sapiens.GRCh38.104.gtf.gz and Homo_sapiens.GRCh38.pep.all.fa.gz,
+    // imported by the Importer without any call to Ensembl
+    String releaseDirectory;
+
+    public String getGrch37Url() {
+        return grch37Url;
+    }
+
+    public void setGrch37Url(String grch37Url) {
+        this.grch37Url = grch37Url;
+    }
+
+    public String getGrch38Url() {
+        return grch38Url;
+    }
+
+    public void setGrch38Url(String grch38Url) {
+        this.grch38Url = grch38Url;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public String getReleaseDirectory() {
+        return releaseDirectory;
+    }
+
+    public void setReleaseDirectory(String releaseDirectory) {
+        this.releaseDirectory = releaseDirectory;
+    }
+}
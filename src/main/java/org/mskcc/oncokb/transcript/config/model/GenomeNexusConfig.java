@@ -0,0 +1,67 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+/**
+ * Settings of the calls to Genome Nexus.
+ */
+public class GenomeNexusConfig {
+
+    // base url of the GRCh37 and GRCh38 instances, the public ones when empty
+    String grch37Url;
+    String grch38Url;
+    // number of chunks of a bulk lookup sent at the same time, per reference genome
+    int parallelism = 4;
+    // seconds the canonical Ensembl gene of an entrez gene is cached, 7 days by default
+    long canonicalGeneCacheExpiration = 604800;
+    // seconds an entrez gene without a canonical Ensembl gene is cached, 1 hour by default
+    long missingCanonicalGeneCacheExpiration = 3600;
+    // seconds the Ensembl transcripts of a gene are cached, 1 day by default
+    long transcriptCacheExpiration = 86400;
+
+    public String getGrch37Url() {
+        return grch37Url;
+    }
+
+    public void setGrch37Url(String grch37Url) {
+        this.grch37Url = grch37Url;
+    }
+
+    public String getGrch38Url() {
+        return grch38Url;
+    }
+
+    public void setGrch38Url(String grch38Url) {
+        this.grch38Url = grch38Url;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public long getCanonicalGeneCacheExpiration() {
+        return canonicalGeneCacheExpiration;
+    }
+
+    public void setCanonicalGeneCacheExpiration(long canonicalGeneCacheExpiration) {
+        this.canonicalGeneCacheExpiration = canonicalGeneCacheExpiration;
+    }
+
+    public long getMissingCanonicalGeneCacheExpiration() {
+        return missingCanonicalGeneCacheExpiration;
+    }
+
+    public void setMissingCanonicalGeneCacheExpiration(long missingCanonicalGeneCacheExpiration) {
+        this.missingCanonicalGeneCacheExpiration = missingCanonicalGeneCacheExpiration;
+    }
+
+    public long getTranscriptCacheExpiration() {
+        return transcriptCacheExpiration;
+    }
+
+    public void setTranscriptCacheExpiration(long transcriptCacheExpiration) {
+        this.transcriptCacheExpiration = transcriptCacheExpiration;
+    }
+}
@@ -0,0 +1,65 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+/**
+ * Settings of the pooled HTTP client used for the outbound calls, e.g. to Ensembl. Durations are in milliseconds.
+ */
+public class HttpClientConfig {
+
+    int connectTimeout = 5000;
+    // a bulk sequence request of 100 proteins can take a while on Ensembl's side
+    int readTimeout = 60000;
+    // how long to wait for a free connection of the pool
+    int connectionRequestTimeout = 10000;
+    int maxConnections = 50;
+    int maxConnectionsPerRoute = 10;
+    // idle connections are closed after this long, Ensembl drops them on its side anyway
+    int idleTimeout = 30000;
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+        this.connectionRequestTimeout = connectionRequestTimeout;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+}
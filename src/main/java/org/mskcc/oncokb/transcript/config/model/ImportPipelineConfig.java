@@ -0,0 +1,67 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+/**
+ * Settings of the staged import of the canonical transcripts: the genes are fetched from Ensembl and Genome Nexus in
+ * batches, transformed, then saved, each stage with its own threads.
+ */
+public class ImportPipelineConfig {
+
+    // number of OncoKB genes per batch, each batch is looked up in bulk and saved in one transaction
+    int batchSize = 100;
+    // threads of each stage
+    int fetchParallelism = 2;
+    int transformParallelism = 1;
+    int persistParallelism = 1;
+    // batches waiting between two stages, a stage waits for the next one when its queue is full
+    int queueCapacity = 2;
+    // milliseconds between two throughput reports in the log
+    long reportInterval = 10000;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getFetchParallelism() {
+        return fetchParallelism;
+    }
+
+    public void setFetchParallelism(int fetchParallelism) {
+        this.fetchParallelism = fetchParallelism;
+    }
+
+    public int getTransformParallelism() {
+        return transformParallelism;
+    }
+
+    public void setTransformParallelism(int transformParallelism) {
+        this.transformParallelism = transformParallelism;
+    }
+
+    public int getPersistParallelism() {
+        return persistParallelism;
+    }
+
+    public void setPersistParallelism(int persistParallelism) {
+        this.persistParallelism = persistParallelism;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getReportInterval() {
+        return reportInterval;
+    }
+
+    public void setReportInterval(long reportInterval) {
+        this.reportInterval = reportInterval;
+    }
+}
@@ -0,0 +1,101 @@
+package org.mskcc.oncokb.transcript.config.model;
+
+/**
+ * Settings of the circuit breakers, hedged requests and deadlines of the calls to Ensembl, Genome Nexus and OncoKB.
+ * Durations are in milliseconds.
+ */
+public class ResilienceConfig {
+
+    // time an HTTP request to this application may spend on upstream calls, 0 for no deadline
+    long requestDeadline = 20000;
+    // upstream calls running at the same time, the others are rejected
+    int maxConcurrentCalls = 64;
+
+    // a breaker opens when this share of the last calls failed
+    double failureRateThreshold = 0.5;
+    // number of last calls the failure rate is computed on
+    int slidingWindowSize = 20;
+    // the breaker stays closed until this many calls were made
+    int minimumNumberOfCalls = 10;
+    // time an open breaker rejects the calls, then one trial call is let through
+    long openDuration = 30000;
+
+    // of the Genome Nexus and OncoKB calls, the Ensembl calls are rate limited and never hedged
+    boolean hedgingEnabled = true;
+    // a second request is sent when the first one is slower than this percentile of the recent latencies
+    double hedgePercentile = 0.95;
+    // lower bound of the hedge delay
+    long minHedgeDelay = 50;
+
+    public long getRequestDeadline() {
+        return requestDeadline;
+    }
+
+    public void setRequestDeadline(long requestDeadline) {
+        this.requestDeadline = requestDeadline;
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public int getSlidingWindowSize() {
+        return slidingWindowSize;
+    }
+
+    public void setSlidingWindowSize(int slidingWindowSize) {
+        this.slidingWindowSize = slidingWindowSize;
+    }
+
+    public int getMinimumNumberOfCalls() {
+        return minimumNumberOfCalls;
+    }
+
+    public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+        this.minimumNumberOfCalls = minimumNumberOfCalls;
+    }
+
+    public long getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(long openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public boolean isHedgingEnabled() {
+        return hedgingEnabled;
+    }
+
+    public void setHedgingEnabled(boolean hedgingEnabled) {
+        this.hedgingEnabled = hedgingEnabled;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public long getMinHedgeDelay() {
+        return minHedgeDelay;
+    }
+
+    public void setMinHedgeDelay(long minHedgeDelay) {
+        this.minHedgeDelay = minHedgeDelay;
+    }
+}
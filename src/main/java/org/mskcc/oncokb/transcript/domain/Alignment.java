@@ -1,9 +1,13 @@
 package org.mskcc.oncokb.transcript.domain;
 
+import java.io.Serializable;
+
 /**
  * Created by Hongxin Zhang on 10/23/20.
  */
-public class Alignment {
+public class Alignment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     String refSeq;
     String targetSeq;
@@ -0,0 +1,293 @@
+package org.mskcc.oncokb.transcript.domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compact, CIGAR-like representation of a global alignment between a reference and a target sequence.
+ * <p>
+ * The alignment is stored as runs of operations, so an alignment of two near-identical proteins only takes a handful
+ * of ints regardless of the protein length. The residue counts before every run are kept as well, which allows to map
+ * positions between the two sequences with a binary search instead of scanning the gapped strings.
+ * <p>
+ * Positions are 1-based protein positions, the same as everywhere else in the API.
+ */
+public final class AlignmentOperations implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final char GAP_CHAR = '_';
+
+    public enum Operation {
+        /**
+         * A reference residue aligned with a target residue, either identical or a substitution
+         */
+        MATCH('M'),
+        /**
+         * A target residue aligned with a gap in the reference
+         */
+        INSERTION('I'),
+        /**
+         * A reference residue aligned with a gap in the target
+         */
+        DELETION('D');
+
+        private final char symbol;
+
+        Operation(char symbol) {
+            this.symbol = symbol;
+        }
+
+        public char getSymbol() {
+            return symbol;
+        }
+
+        boolean consumesRef() {
+            return this != INSERTION;
+        }
+
+        boolean consumesTarget() {
+            return this != DELETION;
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final byte[] operations;
+    private final int[] lengths;
+    // number of ref/target residues before each run
+    private final int[] refStarts;
+    private final int[] targetStarts;
+    private final int refLength;
+    private final int targetLength;
+
+    private AlignmentOperations(byte[] operations, int[] lengths) {
+        this.operations = operations;
+        this.lengths = lengths;
+        this.refStarts = new int[operations.length];
+        this.targetStarts = new int[operations.length];
+        int refPosition = 0;
+        int targetPosition = 0;
+        for (int k = 0; k < operations.length; k++) {
+            refStarts[k] = refPosition;
+            targetStarts[k] = targetPosition;
+            Operation operation = OPERATIONS[operations[k]];
+            if (operation.consumesRef()) {
+                refPosition += lengths[k];
+            }
+            if (operation.consumesTarget()) {
+                targetPosition += lengths[k];
+            }
+        }
+        this.refLength = refPosition;
+        this.targetLength = targetPosition;
+    }
+
+    /**
+     * Derive the operations from a gapped alignment, e.g. one built before this representation existed.
+     */
+    public static AlignmentOperations fromGappedSequences(String refSeq, String targetSeq) {
+        if (refSeq.length() != targetSeq.length()) {
+            throw new IllegalArgumentException("The gapped sequences need to have the same length");
+        }
+        Builder builder = new Builder();
+        for (int k = 0; k < refSeq.length(); k++) {
+            if (refSeq.charAt(k) == GAP_CHAR) {
+                builder.insertion();
+            } else if (targetSeq.charAt(k) == GAP_CHAR) {
+                builder.deletion();
+            } else {
+                builder.match();
+            }
+        }
+        return builder.build();
+    }
+
+    public int getNumberOfRuns() {
+        return operations.length;
+    }
+
+    public Operation getOperation(int run) {
+        return OPERATIONS[operations[run]];
+    }
+
+    public int getLength(int run) {
+        return lengths[run];
+    }
+
+    public int getRefLength() {
+        return refLength;
+    }
+
+    public int getTargetLength() {
+        return targetLength;
+    }
+
+    /**
+     * @param targetPosition a 1-based position of the target sequence
+     * @return the position of the reference residue aligned with the target residue. When the target residue is an
+     * insertion, the position of the closest reference residue before it, or 0 if there is none
+     */
+    public int getRefPosition(int targetPosition) {
+        if (targetPosition < 1 || targetPosition > targetLength) {
+            throw new IndexOutOfBoundsException("Target position " + targetPosition + " is out of 1.." + targetLength);
+        }
+        int run = findRun(targetStarts, targetPosition - 1);
+        if (getOperation(run) == Operation.INSERTION) {
+            return refStarts[run];
+        }
+        return refStarts[run] + targetPosition - targetStarts[run];
+    }
+
+    /**
+     * @param refPosition a 1-based position of the reference sequence
+     * @return the position of the target residue aligned with the reference residue. When the reference residue is a
+     * deletion, the position of the closest target residue before it, or 0 if there is none
+     */
+    public int getTargetPosition(int refPosition) {
+        if (refPosition < 1 || refPosition > refLength) {
+            throw new IndexOutOfBoundsException("Reference position " + refPosition + " is out of 1.." + refLength);
+        }
+        int run = findRun(refStarts, refPosition - 1);
+        if (getOperation(run) == Operation.DELETION) {
+            return targetStarts[run];
+        }
+        return targetStarts[run] + refPosition - refStarts[run];
+    }
+
+    //The last run starting at or before the 0-based index. Runs not consuming the sequence start at the same index
+    //as the run after them, so the last one is always a run containing the index
+    private static int findRun(int[] starts, int index) {
+        int low = 0;
+        int high = starts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (starts[mid] <= index) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Render the gapped reference sequence
+     *
+     * @param refSequence the reference sequence without gaps
+     */
+    public String toGappedRefSeq(CharSequence refSequence) {
+        return toGappedSequence(refSequence, Operation.INSERTION);
+    }
+
+    /**
+     * Render the gapped target sequence
+     *
+     * @param targetSequence the target sequence without gaps
+     */
+    public String toGappedTargetSeq(CharSequence targetSequence) {
+        return toGappedSequence(targetSequence, Operation.DELETION);
+    }
+
+    private String toGappedSequence(CharSequence sequence, Operation gapOperation) {
+        StringBuilder sb = new StringBuilder(refLength + targetLength);
+        int position = 0;
+        for (int k = 0; k < operations.length; k++) {
+            if (getOperation(k) == gapOperation) {
+                for (int l = 0; l < lengths[k]; l++) {
+                    sb.append(GAP_CHAR);
+                }
+            } else {
+                sb.append(sequence, position, position + lengths[k]);
+                position += lengths[k];
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the operations in CIGAR notation, e.g. 12M3D40M
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < operations.length; k++) {
+            sb.append(lengths[k]).append(getOperation(k).getSymbol());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AlignmentOperations)) {
+            return false;
+        }
+        AlignmentOperations that = (AlignmentOperations) o;
+        return Arrays.equals(operations, that.operations) && Arrays.equals(lengths, that.lengths);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(operations) + Arrays.hashCode(lengths);
+    }
+
+    /**
+     * Collects the operations one column at a time, merging consecutive columns of the same operation into one run.
+     * A traceback can add the columns from the end of the alignment and call {@link #reverse()} before building.
+     */
+    public static final class Builder {
+
+        private byte[] operations = new byte[8];
+        private int[] lengths = new int[8];
+        private int size = 0;
+
+        public Builder match() {
+            return add(Operation.MATCH, 1);
+        }
+
+        public Builder insertion() {
+            return add(Operation.INSERTION, 1);
+        }
+
+        public Builder deletion() {
+            return add(Operation.DELETION, 1);
+        }
+
+        public Builder add(Operation operation, int length) {
+            if (length <= 0) {
+                return this;
+            }
+            if (size > 0 && operations[size - 1] == operation.ordinal()) {
+                lengths[size - 1] += length;
+                return this;
+            }
+            if (size == operations.length) {
+                operations = Arrays.copyOf(operations, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            operations[size] = (byte) operation.ordinal();
+            lengths[size] = length;
+            size++;
+            return this;
+        }
+
+        public Builder reverse() {
+            for (int low = 0, high = size - 1; low < high; low++, high--) {
+                byte operation = operations[low];
+                operations[low] = operations[high];
+                operations[high] = operation;
+                int length = lengths[low];
+                lengths[low] = lengths[high];
+                lengths[high] = length;
+            }
+            return this;
+        }
+
+        public AlignmentOperations build() {
+            return new AlignmentOperations(Arrays.copyOf(operations, size), Arrays.copyOf(lengths, size));
+        }
+    }
+}
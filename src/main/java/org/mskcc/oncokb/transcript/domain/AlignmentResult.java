@@ -1,17 +1,45 @@
 package org.mskcc.oncokb.transcript.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Created by Hongxin Zhang on 10/23/20.
+ * <p>
+ * The alignment is kept as the ungapped sequences plus the {@link AlignmentOperations}. The gapped sequences are
+ * only rendered when they are asked for, e.g. to show the alignment in the UI.
  */
 public class AlignmentResult extends Alignment {
 
+    private static final long serialVersionUID = 1L;
+
     int penalty;
+    String refSequence;
+    String targetSequence;
+    AlignmentOperations operations;
 
     public AlignmentResult(Alignment alignment) {
+        if (alignment instanceof AlignmentResult) {
+            AlignmentResult alignmentResult = (AlignmentResult) alignment;
+            this.refSequence = alignmentResult.refSequence;
+            this.targetSequence = alignmentResult.targetSequence;
+            this.operations = alignmentResult.operations;
+            this.penalty = alignmentResult.penalty;
+        } else {
+            this.operations = AlignmentOperations.fromGappedSequences(alignment.refSeq, alignment.targetSeq);
+            this.refSequence = removeGaps(alignment.refSeq);
+            this.targetSequence = removeGaps(alignment.targetSeq);
+        }
         this.refSeq = alignment.refSeq;
         this.targetSeq = alignment.targetSeq;
     }
 
+    public AlignmentResult(String refSequence, String targetSequence, AlignmentOperations operations, int penalty) {
+        this.refSequence = refSequence;
+        this.targetSequence = targetSequence;
+        this.operations = operations;
+        this.penalty = penalty;
+    }
+
     public int getPenalty() {
         return penalty;
     }
@@ -19,4 +47,52 @@ public class AlignmentResult extends Alignment {
     public void setPenalty(int penalty) {
         this.penalty = penalty;
     }
+
+    @Override
+    public String getRefSeq() {
+        if (refSeq == null && operations != null) {
+            refSeq = operations.toGappedRefSeq(refSequence);
+        }
+        return refSeq;
+    }
+
+    @Override
+    public String getTargetSeq() {
+        if (targetSeq == null && operations != null) {
+            targetSeq = operations.toGappedTargetSeq(targetSequence);
+        }
+        return targetSeq;
+    }
+
+    /**
+     * @return the reference sequence without gaps
+     */
+    @JsonIgnore
+    public String getRefSequence() {
+        return refSequence;
+    }
+
+    /**
+     * @return the target sequence without gaps
+     */
+    @JsonIgnore
+    public String getTargetSequence() {
+        return targetSequence;
+    }
+
+    @JsonIgnore
+    public AlignmentOperations getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return the alignment in CIGAR notation, e.g. 12M3D40M
+     */
+    public String getCigar() {
+        return operations == null ? null : operations.toString();
+    }
+
+    private static String removeGaps(String gappedSequence) {
+        return gappedSequence.replace(String.valueOf(AlignmentOperations.GAP_CHAR), "");
+    }
 }
@@ -14,7 +14,7 @@ public class DrugSynonym implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = PooledIdGenerator.NAME)
     @Column(name = "id")
     private Long id;
 
@@ -12,9 +12,6 @@ public class EnrichedAlignmentResult extends AlignmentResult {
 
     public EnrichedAlignmentResult(AlignmentResult alignmentResult) {
         super(alignmentResult);
-        this.refSeq = alignmentResult.refSeq;
-        this.targetSeq = alignmentResult.targetSeq;
-        this.penalty = alignmentResult.penalty;
     }
 
     public EnsemblTranscript getRefEnsemblTranscript() {
@@ -0,0 +1,30 @@
+package org.mskcc.oncokb.transcript.domain;
+
+import java.util.Properties;
+import org.hibernate.MappingException;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+/**
+ * The id generator of the entities inserted in JDBC batches, declared as {@code pooledIdGenerator} in
+ * {@code package-info.java}.
+ * <p>
+ * The ids are taken 50 at a time from the one-row table {@code <entity table>_id_sequence} created by Liquibase,
+ * instead of waiting for the auto increment of each row. The table is used on every database, even the ones with
+ * sequences such as H2, so that the schema is the same as on MySQL.
+ */
+public class PooledIdGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "pooledIdGenerator";
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        params.setProperty(SEQUENCE_PARAM, params.getProperty(PersistentIdentifierGenerator.TABLE) + "_id_sequence");
+        params.setProperty(INCREMENT_PARAM, "50");
+        params.setProperty(OPT_PARAM, "pooled-lo");
+        params.setProperty(FORCE_TBL_PARAM, "true");
+        super.configure(type, params, serviceRegistry);
+    }
+}
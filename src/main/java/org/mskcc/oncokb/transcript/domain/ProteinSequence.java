@@ -0,0 +1,130 @@
+package org.mskcc.oncokb.transcript.domain;
+
+import java.io.Serializable;
+import javax.persistence.*;
+import javax.validation.constraints.*;
+
+/**
+ * A ProteinSequence, the local copy of an Ensembl protein sequence, stored by protein id without the version. The
+ * version is the one the sequence was fetched or imported with, null for the sequences stored before it was kept.
+ */
+@Entity
+@Table(name = "protein_sequence")
+public class ProteinSequence implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = PooledIdGenerator.NAME)
+    @Column(name = "id")
+    private Long id;
+
+    @NotNull
+    @Column(name = "reference_genome", nullable = false)
+    private String referenceGenome;
+
+    @NotNull
+    @Column(name = "ensembl_protein_id", nullable = false)
+    private String ensemblProteinId;
+
+    @Column(name = "version")
+    private Integer version;
+
+    @NotNull
+    @Lob
+    @Column(name = "sequence", nullable = false)
+    private String sequence;
+
+    public Long getId() {
+        return this.id;
+    }
+
+    public ProteinSequence id(Long id) {
+        this.setId(id);
+        return this;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getReferenceGenome() {
+        return this.referenceGenome;
+    }
+
+    public ProteinSequence referenceGenome(String referenceGenome) {
+        this.setReferenceGenome(referenceGenome);
+        return this;
+    }
+
+    public void setReferenceGenome(String referenceGenome) {
+        this.referenceGenome = referenceGenome;
+    }
+
+    public String getEnsemblProteinId() {
+        return this.ensemblProteinId;
+    }
+
+    public ProteinSequence ensemblProteinId(String ensemblProteinId) {
+        this.setEnsemblProteinId(ensemblProteinId);
+        return this;
+    }
+
+    public void setEnsemblProteinId(String ensemblProteinId) {
+        this.ensemblProteinId = ensemblProteinId;
+    }
+
+    public Integer getVersion() {
+        return this.version;
+    }
+
+    public ProteinSequence version(Integer version) {
+        this.setVersion(version);
+        return this;
+    }
+
+    public void setVersion(Integer version) {
+        this.version = version;
+    }
+
+    public String getSequence() {
+        return this.sequence;
+    }
+
+    public ProteinSequence sequence(String sequence) {
+        this.setSequence(sequence);
+        return this;
+    }
+
+    public void setSequence(String sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ProteinSequence)) {
+            return false;
+        }
+        return id != null && id.equals(((ProteinSequence) o).id);
+    }
+
+    @Override
+    public int hashCode() {
+        // see https://vladmihalcea.com/how-to-implement-equals-and-hashcode-using-the-jpa-entity-identifier/
+        return getClass().hashCode();
+    }
+
+    // prettier-ignore
+    @Override
+    public String toString() {
+        return "ProteinSequence{" +
+            "id=" + getId() +
+            ", referenceGenome='" + getReferenceGenome() + "'" +
+            ", ensemblProteinId='" + getEnsemblProteinId() + "'" +
+            ", version=" + getVersion() +
+            "}";
+    }
+}
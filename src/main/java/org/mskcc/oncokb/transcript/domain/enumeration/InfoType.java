@@ -6,4 +6,6 @@ package org.mskcc.oncokb.transcript.domain.enumeration;
 public enum InfoType {
     NCIT_VERSION,
     GENE_LAST_UPDATED,
+    CANONICAL_ENSEMBL_GENES_CHECKPOINT,
+    CANONICAL_ENSEMBL_TRANSCRIPTS_CHECKPOINT,
 }
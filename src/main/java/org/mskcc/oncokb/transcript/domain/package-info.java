@@ -1,4 +1,7 @@
 /**
  * JPA domain objects.
  */
+@GenericGenerator(name = PooledIdGenerator.NAME, strategy = "org.mskcc.oncokb.transcript.domain.PooledIdGenerator")
 package org.mskcc.oncokb.transcript.domain;
+
+import org.hibernate.annotations.GenericGenerator;
@@ -0,0 +1,76 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The checkpoint of an import whose batches finish out of order, e.g. in an {@link ImportPipeline}: the key of the
+ * last item below the position at which every batch is done. A batch is submitted in parts, e.g. one per reference
+ * genome, and is done once all its parts are. A failed batch holds the checkpoint back, so that a resumed job processes
+ * it again.
+ * <p>
+ * The batches are told by the position of their first item in the keys of the run.
+ */
+class CheckpointTracker {
+
+    private final ImportJobContext context;
+    private final List<Integer> keys;
+
+    // the parts left of the batches submitted, by offset
+    private final TreeMap<Integer, Integer> pendingParts = new TreeMap<>();
+    private final TreeSet<Integer> failedOffsets = new TreeSet<>();
+    private int submittedEnd;
+    private int doneEnd;
+
+    /**
+     * @param keys the keys of the items of the run, increasing
+     */
+    CheckpointTracker(ImportJobContext context, List<Integer> keys) {
+        this.context = context;
+        this.keys = keys;
+    }
+
+    /**
+     * Submit the batch of the items from offset to end, before any of its parts is done.
+     */
+    synchronized void submit(int offset, int end, int parts) {
+        pendingParts.put(offset, parts);
+        submittedEnd = Math.max(submittedEnd, end);
+    }
+
+    synchronized void done(int offset, boolean failed) {
+        if (failed) {
+            failedOffsets.add(offset);
+        }
+        Integer partsLeft = pendingParts.get(offset);
+        if (partsLeft == null) {
+            return;
+        }
+        if (partsLeft > 1) {
+            pendingParts.put(offset, partsLeft - 1);
+            return;
+        }
+        pendingParts.remove(offset);
+
+        int newDoneEnd = submittedEnd;
+        if (!pendingParts.isEmpty()) {
+            newDoneEnd = Math.min(newDoneEnd, pendingParts.firstKey());
+        }
+        if (!failedOffsets.isEmpty()) {
+            newDoneEnd = Math.min(newDoneEnd, failedOffsets.first());
+        }
+        if (newDoneEnd > doneEnd) {
+            doneEnd = newDoneEnd;
+            context.setProcessed(newDoneEnd);
+            context.checkpoint(keys.get(newDoneEnd - 1));
+        }
+    }
+
+    /**
+     * @return the number of batches that failed
+     */
+    synchronized int getFailed() {
+        return failedOffsets.size();
+    }
+}
@@ -0,0 +1,88 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import java.util.function.IntConsumer;
+
+/**
+ * What an import is told by the job running it: where to resume from and whether it was cancelled. The import tells it
+ * how far it got, as the key of its last item such that every item up to it is processed.
+ * <p>
+ * The items are processed in the order of their key, e.g. their entrez gene id, and not of their position, so that a
+ * job resumed on items that were added or removed in the meantime neither skips nor redoes any.
+ */
+public class ImportJobContext {
+
+    private final int resumeAfter;
+    private final IntConsumer checkpointWriter;
+
+    private volatile int total;
+    private volatile int processed;
+    private volatile int checkpoint;
+    private volatile boolean cancelled;
+
+    /**
+     * @param resumeAfter      the key of the last item processed, the items with a greater key are processed. 0 unless the
+     *                         job is resumed, the keys being positive.
+     * @param checkpointWriter saves each checkpoint, so that the job can be resumed from it
+     */
+    public ImportJobContext(int resumeAfter, IntConsumer checkpointWriter) {
+        this.resumeAfter = resumeAfter;
+        this.checkpointWriter = checkpointWriter;
+        this.checkpoint = resumeAfter;
+    }
+
+    /**
+     * The context of an import run outside of a job, from the first item and without saving any checkpoint.
+     */
+    public static ImportJobContext fromStart() {
+        return new ImportJobContext(0, checkpoint -> {});
+    }
+
+    public int getResumeAfter() {
+        return resumeAfter;
+    }
+
+    /**
+     * @return the number of items to process in this run
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    /**
+     * @return the number of items processed in this run, below the checkpoint
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public int getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Every item up to the key is processed.
+     */
+    public void checkpoint(int key) {
+        this.checkpoint = key;
+        checkpointWriter.accept(key);
+    }
+
+    /**
+     * Whether the import should stop starting new items.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        this.cancelled = true;
+    }
+}
@@ -0,0 +1,222 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import org.mskcc.oncokb.transcript.domain.Info;
+import org.mskcc.oncokb.transcript.service.GeneService;
+import org.mskcc.oncokb.transcript.service.InfoService;
+import org.mskcc.oncokb.transcript.service.NcitService;
+import org.mskcc.oncokb.transcript.vm.ImportJobVM;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs the imports and updates as jobs on the task executor, at most one per type at a time.
+ * <p>
+ * The checkpoint of a resumable job, the entrez gene id of the last gene imported, is saved as an {@link Info} of the
+ * type's checkpoint InfoType, so that it outlives the application: a job resumed after a cancel, a failure or a restart
+ * starts after its last checkpoint. The state of the runs is only kept in memory.
+ */
+@Service
+public class ImportJobService {
+
+    private final Logger log = LoggerFactory.getLogger(ImportJobService.class);
+
+    private final Importer importer;
+    private final NcitService ncitService;
+    private final GeneService geneService;
+    private final InfoService infoService;
+    private final Executor taskExecutor;
+
+    // the last run of each type
+    private final Map<ImportJobType, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public ImportJobService(
+        Importer importer,
+        NcitService ncitService,
+        GeneService geneService,
+        InfoService infoService,
+        @Qualifier("taskExecutor") Executor taskExecutor
+    ) {
+        this.importer = importer;
+        this.ncitService = ncitService;
+        this.geneService = geneService;
+        this.infoService = infoService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    /**
+     * Start a job.
+     *
+     * @param resume whether to start from the last checkpoint of the job, instead of the first item
+     * @throws IllegalStateException when a job of the type is already running
+     */
+    public ImportJobVM start(ImportJobType type, boolean resume) {
+        int resumeAfter = resume ? getSavedCheckpoint(type) : 0;
+        ImportJob job = new ImportJob(type, new ImportJobContext(resumeAfter, checkpoint -> saveCheckpoint(type, checkpoint)));
+        if (jobs.compute(type, (key, previous) -> previous != null && previous.isRunning() ? previous : job) != job) {
+            throw new IllegalStateException("The " + type + " job is already running");
+        }
+        log.info("Starting the {} job after {}", type, resumeAfter);
+        try {
+            taskExecutor.execute(() -> run(job));
+        } catch (RuntimeException exception) {
+            job.finish(ImportJobState.FAILED, exception);
+            throw exception;
+        }
+        return toVM(job);
+    }
+
+    /**
+     * Cancel a running job. It stops once the items it already started on are processed, and can then be resumed.
+     *
+     * @throws IllegalStateException when no job of the type is running
+     */
+    public ImportJobVM cancel(ImportJobType type) {
+        ImportJob job = jobs.get(type);
+        if (job == null || !job.isRunning()) {
+            throw new IllegalStateException("The " + type + " job is not running");
+        }
+        log.info("Cancelling the {} job", type);
+        job.context.cancel();
+        return toVM(job);
+    }
+
+    public ImportJobVM getJob(ImportJobType type) {
+        ImportJob job = jobs.get(type);
+        if (job != null) {
+            return toVM(job);
+        }
+        ImportJobVM vm = new ImportJobVM();
+        vm.setType(type);
+        vm.setState(ImportJobState.IDLE);
+        vm.setResumable(type.isResumable());
+        vm.setCheckpoint(getSavedCheckpoint(type));
+        return vm;
+    }
+
+    public List<ImportJobVM> getJobs() {
+        return Arrays.stream(ImportJobType.values()).map(this::getJob).collect(Collectors.toList());
+    }
+
+    private void run(ImportJob job) {
+        ImportJobContext context = job.context;
+        try {
+            if (job.type.isResumable() && context.getResumeAfter() == 0) {
+                saveCheckpoint(job.type, 0);
+            }
+            switch (job.type) {
+                case UPDATE_NCIT:
+                    context.setTotal(1);
+                    ncitService.updateNcitDrugs();
+                    context.setProcessed(1);
+                    break;
+                case UPDATE_GENE:
+                    context.setTotal(1);
+                    geneService.updatePortalGenes();
+                    context.setProcessed(1);
+                    break;
+                case IMPORT_CANONICAL_ENSEMBL_GENES:
+                    importer.importCanonicalEnsemblGenes(context);
+                    break;
+                case IMPORT_CANONICAL_ENSEMBL_TRANSCRIPTS:
+                    importer.importCanonicalEnsemblTranscripts(context);
+                    break;
+                case IMPORT_ENSEMBL_RELEASES:
+                    importer.importEnsemblReleases(context);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown job " + job.type);
+            }
+        } catch (Exception exception) {
+            log.error("The {} job failed at {}", job.type, context.getCheckpoint(), exception);
+            job.finish(ImportJobState.FAILED, exception);
+            return;
+        }
+        job.finish(context.isCancelled() ? ImportJobState.CANCELLED : ImportJobState.COMPLETED, null);
+        log.info(
+            "The {} job is {} at {}, {} of {} processed",
+            job.type,
+            job.state,
+            context.getCheckpoint(),
+            context.getProcessed(),
+            context.getTotal()
+        );
+    }
+
+    private int getSavedCheckpoint(ImportJobType type) {
+        if (!type.isResumable()) {
+            return 0;
+        }
+        return infoService
+            .findOneByType(type.getCheckpointInfoType())
+            .map(Info::getValue)
+            .map(value -> {
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException exception) {
+                    log.warn("Ignoring the {} checkpoint {}", type, value);
+                    return 0;
+                }
+            })
+            .orElse(0);
+    }
+
+    private void saveCheckpoint(ImportJobType type, int checkpoint) {
+        if (type.isResumable()) {
+            infoService.updateInfo(type.getCheckpointInfoType(), String.valueOf(checkpoint), Instant.now());
+        }
+    }
+
+    private ImportJobVM toVM(ImportJob job) {
+        ImportJobVM vm = new ImportJobVM();
+        vm.setType(job.type);
+        vm.setResumable(job.type.isResumable());
+        vm.setResumeAfter(job.context.getResumeAfter());
+        vm.setCheckpoint(job.context.getCheckpoint());
+        vm.setProcessed(job.context.getProcessed());
+        vm.setTotal(job.context.getTotal());
+        vm.setStartedAt(job.startedAt);
+        synchronized (job) {
+            vm.setState(job.state == ImportJobState.RUNNING && job.context.isCancelled() ? ImportJobState.CANCELLING : job.state);
+            vm.setFinishedAt(job.finishedAt);
+            vm.setError(job.error);
+        }
+        long elapsedMillis = Duration.between(job.startedAt, vm.getFinishedAt() == null ? Instant.now() : vm.getFinishedAt()).toMillis();
+        vm.setThroughput(job.context.getProcessed() * 1000.0 / Math.max(1, elapsedMillis));
+        return vm;
+    }
+
+    private static class ImportJob {
+
+        private final ImportJobType type;
+        private final ImportJobContext context;
+        private final Instant startedAt = Instant.now();
+        private ImportJobState state = ImportJobState.RUNNING;
+        private Instant finishedAt;
+        private String error;
+
+        ImportJob(ImportJobType type, ImportJobContext context) {
+            this.type = type;
+            this.context = context;
+        }
+
+        synchronized boolean isRunning() {
+            return state == ImportJobState.RUNNING;
+        }
+
+        synchronized void finish(ImportJobState finalState, Exception exception) {
+            this.state = finalState;
+            this.finishedAt = Instant.now();
+            this.error = exception == null ? null : exception.toString();
+        }
+    }
+}
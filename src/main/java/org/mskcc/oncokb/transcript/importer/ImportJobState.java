@@ -0,0 +1,12 @@
+package org.mskcc.oncokb.transcript.importer;
+
+public enum ImportJobState {
+    // not run since the application started
+    IDLE,
+    RUNNING,
+    // cancelled, the batches already started are being finished
+    CANCELLING,
+    COMPLETED,
+    CANCELLED,
+    FAILED,
+}
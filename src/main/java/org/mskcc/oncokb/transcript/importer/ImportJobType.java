@@ -0,0 +1,29 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import org.mskcc.oncokb.transcript.domain.enumeration.InfoType;
+
+/**
+ * The imports and updates run as jobs by {@link ImportJobService}.
+ */
+public enum ImportJobType {
+    UPDATE_NCIT(null),
+    UPDATE_GENE(null),
+    IMPORT_CANONICAL_ENSEMBL_GENES(InfoType.CANONICAL_ENSEMBL_GENES_CHECKPOINT),
+    IMPORT_CANONICAL_ENSEMBL_TRANSCRIPTS(InfoType.CANONICAL_ENSEMBL_TRANSCRIPTS_CHECKPOINT),
+    IMPORT_ENSEMBL_RELEASES(null);
+
+    // where the checkpoint of the job is saved, null when the job always starts over
+    private final InfoType checkpointInfoType;
+
+    ImportJobType(InfoType checkpointInfoType) {
+        this.checkpointInfoType = checkpointInfoType;
+    }
+
+    public InfoType getCheckpointInfoType() {
+        return checkpointInfoType;
+    }
+
+    public boolean isResumable() {
+        return checkpointInfoType != null;
+    }
+}
@@ -0,0 +1,215 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs items through a chain of stages, e.g. fetch, transform and persist, so that the stages work at the same time on
+ * different items.
+ * <p>
+ * Each stage has its own threads and a bounded queue of input items. A stage whose next stage is behind waits for room
+ * in its queue, so only a few items are held in memory however fast the first stage is. The item a stage fails on is
+ * logged and skipped, the others go on.
+ * <p>
+ * The items done, failed and queued of each stage, and the throughput since the last report, are logged every report
+ * interval and once the pipeline is finished.
+ */
+public class ImportPipeline {
+
+    private static final long POLL_MILLIS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(ImportPipeline.class);
+
+    private final String name;
+    private final long reportIntervalMillis;
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+    private ScheduledExecutorService reporter;
+
+    public ImportPipeline(String name, long reportIntervalMillis) {
+        this.name = name;
+        this.reportIntervalMillis = reportIntervalMillis;
+    }
+
+    /**
+     * Add a stage, to be linked to the next one with {@link Stage#to}.
+     *
+     * @param function returns the item handed to the next stage, nothing is handed when null
+     */
+    public <I, O> Stage<I, O> addStage(String stageName, int parallelism, int queueCapacity, Function<I, O> function) {
+        Stage<I, O> stage = new Stage<>(stageName, Math.max(1, parallelism), Math.max(1, queueCapacity), function);
+        stages.add(stage);
+        return stage;
+    }
+
+    public void start() {
+        for (Stage<?, ?> stage : stages) {
+            stage.start();
+        }
+        if (reportIntervalMillis > 0) {
+            reporter =
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, name + "-report");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            reporter.scheduleAtFixedRate(this::report, reportIntervalMillis, reportIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Wait for all the items put so far to go through every stage, in the order the stages were added, then stop the
+     * threads.
+     */
+    public void finish() throws InterruptedException {
+        try {
+            for (Stage<?, ?> stage : stages) {
+                stage.finish();
+            }
+        } finally {
+            for (Stage<?, ?> stage : stages) {
+                stage.stop();
+            }
+            if (reporter != null) {
+                reporter.shutdownNow();
+            }
+        }
+        if (reporter == null || reporter.awaitTermination(reportIntervalMillis, TimeUnit.MILLISECONDS)) {
+            report();
+        }
+    }
+
+    private void report() {
+        for (Stage<?, ?> stage : stages) {
+            long done = stage.done.get();
+            long doneSinceLastReport = done - stage.doneAtLastReport;
+            long nanosSinceLastReport = System.nanoTime() - stage.lastReportNanos;
+            stage.doneAtLastReport = done;
+            stage.lastReportNanos += nanosSinceLastReport;
+            log.info(
+                "{} {}: {} done ({} per second), {} failed, {} queued",
+                name,
+                stage.name,
+                done,
+                String.format("%.2f", doneSinceLastReport * 1e9 / Math.max(1, nanosSinceLastReport)),
+                stage.failed.get(),
+                stage.queue.size()
+            );
+        }
+    }
+
+    public final class Stage<I, O> {
+
+        private final String name;
+        private final int parallelism;
+        private final BlockingQueue<I> queue;
+        private final Function<I, O> function;
+        private final List<Thread> workers = new ArrayList<>();
+        private Stage<O, ?> next;
+        private Consumer<I> failureListener = item -> {};
+        private volatile boolean inputFinished;
+
+        private final AtomicLong done = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        // only read and written by the reporter, or once the workers are done
+        private long doneAtLastReport;
+        private long lastReportNanos = System.nanoTime();
+
+        private Stage(String name, int parallelism, int queueCapacity, Function<I, O> function) {
+            this.name = name;
+            this.parallelism = parallelism;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.function = function;
+        }
+
+        /**
+         * Hand the items of this stage to the next one.
+         */
+        public <N> Stage<O, N> to(Stage<O, N> nextStage) {
+            this.next = nextStage;
+            return nextStage;
+        }
+
+        /**
+         * Called with each item the stage failed on, after it is logged. To be set before the pipeline is started.
+         */
+        public Stage<I, O> onFailure(Consumer<I> listener) {
+            this.failureListener = listener;
+            return this;
+        }
+
+        /**
+         * Add an item, waits while the queue of the stage is full.
+         */
+        public void put(I item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        public long getDone() {
+            return done.get();
+        }
+
+        public long getFailed() {
+            return failed.get();
+        }
+
+        private void start() {
+            for (int i = 0; i < parallelism; i++) {
+                Thread worker = new Thread(this::work, ImportPipeline.this.name + "-" + name + "-" + i);
+                worker.setDaemon(true);
+                workers.add(worker);
+                worker.start();
+            }
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    I item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        // nothing is put once the input is finished, so an empty queue stays empty
+                        if (inputFinished && queue.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    O output;
+                    try {
+                        output = function.apply(item);
+                    } catch (RuntimeException exception) {
+                        failed.incrementAndGet();
+                        log.error("{} {} failed on {}", ImportPipeline.this.name, name, item, exception);
+                        failureListener.accept(item);
+                        continue;
+                    }
+                    done.incrementAndGet();
+                    if (next != null && output != null) {
+                        next.put(output);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void finish() throws InterruptedException {
+            inputFinished = true;
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        private void stop() {
+            workers.forEach(Thread::interrupt);
+        }
+    }
+}
@@ -1,14 +1,45 @@
 package org.mskcc.oncokb.transcript.importer;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.StringUtils;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.model.ImportPipelineConfig;
 import org.mskcc.oncokb.transcript.domain.EnsemblGene;
+import org.mskcc.oncokb.transcript.domain.GeneAlias;
 import org.mskcc.oncokb.transcript.domain.Sequence;
 import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
 import org.mskcc.oncokb.transcript.domain.enumeration.SequenceType;
 import org.mskcc.oncokb.transcript.service.*;
+import org.mskcc.oncokb.transcript.service.dto.FetchedTranscriptDTO;
 import org.mskcc.oncokb.transcript.service.dto.TranscriptDTO;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseGene;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseTranscript;
 import org.mskcc.oncokb.transcript.service.mapper.TranscriptMapper;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
 import org.oncokb.ApiException;
 import org.oncokb.client.Gene;
 import org.slf4j.Logger;
@@ -50,10 +81,22 @@ public class Importer {
     private SequenceService sequenceService;
 
     @Autowired
-    private AlignmentService alignmentService;
+    private CachedAlignmentService cachedAlignmentService;
+
+    @Autowired
+    private EnsemblReleaseService ensemblReleaseService;
+
+    @Autowired
+    private ProteinSequenceService proteinSequenceService;
+
+    @Autowired
+    private ApplicationProperties applicationProperties;
 
     private final Logger log = LoggerFactory.getLogger(Importer.class);
 
+    // peptides stored or read back from the protein sequence store at once
+    private static final int PEPTIDE_BATCH_SIZE = 1000;
+
     public void generalImport() throws ApiException {
         //        try {
         //            geneService.updatePortalGenes();
@@ -61,33 +104,471 @@ public class Importer {
         //            e.printStackTrace();
         //        }
         //        this.importOncoKbSequences();
-        //        importCanonicalEnsemblGenes();
-        //        importCanonicalEnsemblTranscripts();
+        //        importCanonicalEnsemblGenes(ImportJobContext.fromStart());
+        //        importCanonicalEnsemblTranscripts(ImportJobContext.fromStart());
         //                checkOncoKbEnsemblGenes();
         checkOncoKbTranscriptSequenceAcrossRG();
         //        importGeneFragments();
+        //        try {
+        //            importEnsemblReleases(ImportJobContext.fromStart());
+        //        } catch (IOException e) {
+        //            e.printStackTrace();
+        //        }
+    }
+
+    /**
+     * Import the Ensembl genes, transcripts, genome fragments and protein sequences of both reference genomes from
+     * the release files in application.ensembl.release-directory, without any call to Ensembl.
+     * The canonical flags still come from importCanonicalEnsemblGenes and importCanonicalEnsemblTranscripts.
+     * <p>
+     * The items of the context are the reference genomes. The import always starts over, the transcripts already
+     * saved are skipped. Once cancelled, the chromosomes not started yet are skipped.
+     *
+     * @throws IllegalStateException when no release directory is configured, or once done when a chromosome failed
+     */
+    public void importEnsemblReleases(ImportJobContext context) throws IOException {
+        String releaseDirectory = applicationProperties.getEnsembl().getReleaseDirectory();
+        if (StringUtils.isEmpty(releaseDirectory)) {
+            throw new IllegalStateException("No Ensembl release directory configured in application.ensembl.release-directory");
+        }
+        Map<String, org.mskcc.oncokb.transcript.domain.Gene> genes = getGenesBySymbol();
+        ReferenceGenome[] referenceGenomes = ReferenceGenome.values();
+        context.setTotal(referenceGenomes.length);
+        int failedChromosomes = 0;
+        for (int i = 0; i < referenceGenomes.length && !context.isCancelled(); i++) {
+            ReferenceGenome rg = referenceGenomes[i];
+            // e.g. Homo_sapiens.GRCh37.87.gtf.gz, not the .chr.gtf.gz or .abinitio.gtf.gz variants
+            Optional<Path> gtfFile = findReleaseFile(releaseDirectory, "Homo_sapiens\\." + rg.name() + "\\.\\d+\\.gtf\\.gz");
+            Optional<Path> peptideFile = findReleaseFile(
+                releaseDirectory,
+                "Homo_sapiens\\." + rg.name() + "\\.(\\d+\\.)?pep\\.all\\.fa\\.gz"
+            );
+            if (gtfFile.isEmpty() || peptideFile.isEmpty()) {
+                log.warn("No {} GTF or peptide file in {}", rg, releaseDirectory);
+            } else {
+                failedChromosomes += importEnsemblRelease(rg, gtfFile.get(), peptideFile.get(), genes, context);
+            }
+            context.setProcessed(i + 1);
+        }
+        transcriptService.clearTranscriptCaches();
+        if (failedChromosomes > 0) {
+            throw new IllegalStateException("Failed to import " + failedChromosomes + " chromosomes, see the errors logged");
+        }
+    }
+
+    // returns the number of chromosomes that failed
+    private int importEnsemblRelease(
+        ReferenceGenome rg,
+        Path gtfFile,
+        Path peptideFile,
+        Map<String, org.mskcc.oncokb.transcript.domain.Gene> genes,
+        ImportJobContext context
+    ) throws IOException {
+        log.info("Importing {} from {} and {}", rg, gtfFile, peptideFile);
+        int peptideCount = storePeptides(rg, peptideFile);
+        log.info("Stored {} {} peptides", peptideCount, rg);
+
+        // The GTF is read on this thread, and each chromosome is saved by the pool once read. The queue is short so
+        // that only a few chromosomes are held in memory, the reading waits when the pool is behind.
+        int threads = Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger(1);
+        ThreadPoolExecutor importPool = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads),
+            runnable -> new Thread(runnable, "ensembl-release-import-" + threadCount.getAndIncrement()),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        List<String> chromosomes = new ArrayList<>();
+        List<Future<Integer>> transcriptCounts = new ArrayList<>();
+        try (BufferedReader reader = EnsemblReleaseReader.open(gtfFile)) {
+            EnsemblReleaseReader.readGtf(
+                reader,
+                releaseGenes -> {
+                    if (context.isCancelled()) {
+                        return;
+                    }
+                    chromosomes.add(releaseGenes.get(0).getChromosome());
+                    transcriptCounts.add(importPool.submit(() -> importChromosome(rg, releaseGenes, genes)));
+                }
+            );
+        } finally {
+            importPool.shutdown();
+        }
+
+        int transcriptCount = 0;
+        int failedChromosomes = 0;
+        for (int i = 0; i < transcriptCounts.size(); i++) {
+            try {
+                transcriptCount += transcriptCounts.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while importing " + rg, e);
+            } catch (ExecutionException e) {
+                log.error("Failed to import {} chromosome {}", rg, chromosomes.get(i), e.getCause());
+                failedChromosomes++;
+            }
+        }
+        log.info("Imported {} {} transcripts from {} chromosomes", transcriptCount, rg, chromosomes.size());
+        return failedChromosomes;
+    }
+
+    /**
+     * Keep every peptide of the release in the protein sequence store used by the alignments. They are stored in
+     * batches as they are read, so the release is never held in memory, and each chromosome reads the ones of its
+     * transcripts back. The stored peptides whose sequence or version changed since an older release are updated.
+     */
+    private int storePeptides(ReferenceGenome rg, Path peptideFile) throws IOException {
+        Map<String, EnsemblSequence> batch = new HashMap<>();
+        AtomicInteger peptideCount = new AtomicInteger();
+        try (BufferedReader reader = EnsemblReleaseReader.open(peptideFile)) {
+            EnsemblReleaseReader.readPeptides(
+                reader,
+                peptide -> {
+                    batch.put(peptide.getId(), peptide);
+                    peptideCount.incrementAndGet();
+                    if (batch.size() >= PEPTIDE_BATCH_SIZE) {
+                        proteinSequenceService.storeSequences(rg, batch);
+                        batch.clear();
+                    }
+                }
+            );
+        }
+        proteinSequenceService.storeSequences(rg, batch);
+        return peptideCount.get();
+    }
+
+    private int importChromosome(
+        ReferenceGenome rg,
+        List<ReleaseGene> releaseGenes,
+        Map<String, org.mskcc.oncokb.transcript.domain.Gene> genes
+    ) {
+        List<String> proteinIds = releaseGenes
+            .stream()
+            .flatMap(releaseGene -> releaseGene.getTranscripts().stream())
+            .map(ReleaseTranscript::getProteinId)
+            .filter(Objects::nonNull)
+            .distinct()
+            .collect(Collectors.toList());
+        Map<String, String> proteinSequences = new HashMap<>();
+        for (int i = 0; i < proteinIds.size(); i += PEPTIDE_BATCH_SIZE) {
+            proteinSequences.putAll(
+                proteinSequenceService.findStoredSequences(rg, proteinIds.subList(i, Math.min(proteinIds.size(), i + PEPTIDE_BATCH_SIZE)))
+            );
+        }
+        return ensemblReleaseService.saveChromosome(rg, releaseGenes, genes, proteinSequences);
     }
 
-    private void importCanonicalEnsemblGenes() {
+    // The hugo symbols first, the aliases only when they are not a hugo symbol
+    private Map<String, org.mskcc.oncokb.transcript.domain.Gene> getGenesBySymbol() {
         List<org.mskcc.oncokb.transcript.domain.Gene> genes = geneService.findAll();
-        for (ReferenceGenome rg : ReferenceGenome.values()) {
-            for (org.mskcc.oncokb.transcript.domain.Gene gene : genes) {
-                mainService.createCanonicalEnsemblGene(rg, gene.getEntrezGeneId());
+        Map<String, org.mskcc.oncokb.transcript.domain.Gene> genesBySymbol = new HashMap<>();
+        for (org.mskcc.oncokb.transcript.domain.Gene gene : genes) {
+            genesBySymbol.put(gene.getHugoSymbol().toLowerCase(), gene);
+        }
+        for (org.mskcc.oncokb.transcript.domain.Gene gene : genes) {
+            for (GeneAlias geneAlias : gene.getGeneAliases()) {
+                genesBySymbol.putIfAbsent(geneAlias.getName().toLowerCase(), gene);
+            }
+        }
+        return genesBySymbol;
+    }
+
+    private Optional<Path> findReleaseFile(String releaseDirectory, String fileNameRegex) throws IOException {
+        Pattern pattern = Pattern.compile(fileNameRegex);
+        try (Stream<Path> files = Files.list(Paths.get(releaseDirectory))) {
+            return files.filter(file -> pattern.matcher(file.getFileName().toString()).matches()).findFirst();
+        }
+    }
+
+    /**
+     * Import the canonical Ensembl genes of the genes, by entrez gene id after the one the context resumes after. The
+     * checkpoint is the entrez gene id of the last gene whose batch, and every batch before, is saved.
+     * <p>
+     * A batch whose lookup failed holds the checkpoint back, and fails the job once the other batches are done, so that
+     * it is retried when the job is resumed.
+     */
+    public void importCanonicalEnsemblGenes(ImportJobContext context) {
+        List<Integer> entrezGeneIds = geneService
+            .findAll()
+            .stream()
+            .map(org.mskcc.oncokb.transcript.domain.Gene::getEntrezGeneId)
+            .filter(entrezGeneId -> entrezGeneId > context.getResumeAfter())
+            .sorted()
+            .collect(Collectors.toList());
+        context.setTotal(entrezGeneIds.size());
+        CheckpointTracker checkpointTracker = new CheckpointTracker(context, entrezGeneIds);
+        // both reference genomes are looked up together, one transaction per batch
+        int batchSize = 1000;
+        for (int i = 0; i < entrezGeneIds.size() && !context.isCancelled(); i += batchSize) {
+            log.info("Importing canonical ensembl genes, on index {} of {}", i, entrezGeneIds.size());
+            int end = Math.min(entrezGeneIds.size(), i + batchSize);
+            checkpointTracker.submit(i, end, 1);
+            Set<Integer> failedEntrezGeneIds = mainService.createCanonicalEnsemblGenes(
+                Arrays.asList(ReferenceGenome.values()),
+                entrezGeneIds.subList(i, end)
+            );
+            checkpointTracker.done(i, !failedEntrezGeneIds.isEmpty());
+        }
+        if (checkpointTracker.getFailed() > 0) {
+            throw new IllegalStateException(
+                checkpointTracker.getFailed() + " batches of canonical ensembl genes failed, after entrez gene " + context.getCheckpoint()
+            );
+        }
+    }
+
+    /**
+     * Import the canonical transcripts of the OncoKB genes in both reference genomes, as a pipeline of three stages:
+     * the batches of genes are looked up in bulk from Ensembl and Genome Nexus, turned into transcripts, then saved
+     * one transaction per batch. See application.import-pipeline.
+     * <p>
+     * The genes are taken by entrez gene id after the one the context resumes after. The checkpoint is the entrez gene
+     * id of the last gene whose batch, and every batch before, is saved in both reference genomes. A batch that failed,
+     * e.g. because Genome Nexus was unavailable, holds the checkpoint back and fails the job once the other batches are
+     * done, so that it is retried when the job is resumed.
+     */
+    public void importCanonicalEnsemblTranscripts(ImportJobContext context) throws ApiException {
+        List<Gene> genes = oncoKbUrlService
+            .getGenes()
+            .stream()
+            .filter(gene -> gene.getEntrezGeneId() > context.getResumeAfter())
+            .sorted(Comparator.comparing(Gene::getEntrezGeneId))
+            .collect(Collectors.toList());
+        context.setTotal(genes.size());
+        CheckpointTracker checkpointTracker = new CheckpointTracker(
+            context,
+            genes.stream().map(Gene::getEntrezGeneId).collect(Collectors.toList())
+        );
+        ImportPipelineConfig pipelineConfig = applicationProperties.getImportPipeline();
+        ImportPipeline pipeline = new ImportPipeline("canonical-transcripts", pipelineConfig.getReportInterval());
+        ImportPipeline.Stage<GeneBatch, FetchedBatch> fetchStage = pipeline.addStage(
+            "fetch",
+            pipelineConfig.getFetchParallelism(),
+            pipelineConfig.getQueueCapacity(),
+            this::fetchCanonicalTranscripts
+        );
+        ImportPipeline.Stage<FetchedBatch, TranscriptBatch> transformStage = pipeline.addStage(
+            "transform",
+            pipelineConfig.getTransformParallelism(),
+            pipelineConfig.getQueueCapacity(),
+            this::toFetchedTranscripts
+        );
+        ImportPipeline.Stage<TranscriptBatch, Integer> persistStage = pipeline.addStage(
+            "persist",
+            pipelineConfig.getPersistParallelism(),
+            pipelineConfig.getQueueCapacity(),
+            transcriptBatch -> {
+                int saved = mainService.createTranscripts(transcriptBatch.transcripts);
+                checkpointTracker.done(transcriptBatch.geneBatch.offset, false);
+                return saved;
+            }
+        );
+        fetchStage.onFailure(geneBatch -> checkpointTracker.done(geneBatch.offset, true));
+        transformStage.onFailure(fetchedBatch -> checkpointTracker.done(fetchedBatch.geneBatch.offset, true));
+        persistStage.onFailure(transcriptBatch -> checkpointTracker.done(transcriptBatch.geneBatch.offset, true));
+        fetchStage.to(transformStage).to(persistStage);
+
+        pipeline.start();
+        try {
+            int batchSize = Math.max(1, pipelineConfig.getBatchSize());
+            for (int i = 0; i < genes.size() && !context.isCancelled(); i += batchSize) {
+                int end = Math.min(genes.size(), i + batchSize);
+                List<Gene> batch = genes.subList(i, end);
+                checkpointTracker.submit(i, end, ReferenceGenome.values().length);
+                for (ReferenceGenome rg : ReferenceGenome.values()) {
+                    fetchStage.put(new GeneBatch(rg, i, batch));
+                }
             }
+            pipeline.finish();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing the canonical transcripts", e);
+        }
+        transcriptService.clearTranscriptCaches();
+        log.info(
+            "Imported the canonical transcripts up to entrez gene {}, {} of {} genes, {} of {} batches failed",
+            context.getCheckpoint(),
+            context.getProcessed(),
+            genes.size(),
+            fetchStage.getFailed() + transformStage.getFailed() + persistStage.getFailed(),
+            fetchStage.getDone() + fetchStage.getFailed()
+        );
+        if (checkpointTracker.getFailed() > 0) {
+            throw new IllegalStateException(
+                checkpointTracker.getFailed() + " batches of canonical transcripts failed, after entrez gene " + context.getCheckpoint()
+            );
         }
     }
 
-    private void importCanonicalEnsemblTranscripts() throws ApiException {
-        List<Gene> genes = oncoKbUrlService.getGenes();
-        for (int i = 0; i < genes.size(); i++) {
-            Gene gene = genes.get(i);
-            if (i % 100 == 0) {
-                log.info("Processing index {}", i);
+    private FetchedBatch fetchCanonicalTranscripts(GeneBatch geneBatch) {
+        ReferenceGenome rg = geneBatch.referenceGenome;
+        List<String> transcriptIds = geneBatch.genes
+            .stream()
+            .map(gene -> getIsoform(gene, rg))
+            .filter(StringUtils::isNotEmpty)
+            .distinct()
+            .collect(Collectors.toList());
+        FetchedBatch fetchedBatch = new FetchedBatch(geneBatch);
+        if (transcriptIds.isEmpty()) {
+            return fetchedBatch;
+        }
+
+        // the transcripts are put in the batch as they are read, the responses with exons and UTRs can be many MB
+        transcriptService.getEnsemblTranscriptIds(
+            rg,
+            transcriptIds,
+            true,
+            true,
+            transcript -> fetchedBatch.ensemblTranscripts.put(transcript.getId(), transcript)
+        );
+        List<String> ensemblGeneIds = fetchedBatch.ensemblTranscripts
+            .values()
+            .stream()
+            .map(org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript::getParent)
+            .filter(StringUtils::isNotEmpty)
+            .distinct()
+            .collect(Collectors.toList());
+        if (!ensemblGeneIds.isEmpty()) {
+            transcriptService.getEnsemblTranscriptIds(
+                rg,
+                ensemblGeneIds,
+                false,
+                false,
+                ensemblGene -> fetchedBatch.ensemblGenes.put(ensemblGene.getId(), ensemblGene)
+            );
+        }
+
+        // Genome Nexus is only asked for the transcripts not saved yet, and their sequences are fetched in bulk
+        Set<String> savedTranscriptIds = transcriptService
+            .findByReferenceGenomeAndEnsemblTranscriptIdIsIn(rg, transcriptIds)
+            .stream()
+            .map(TranscriptDTO::getEnsemblTranscriptId)
+            .collect(Collectors.toSet());
+        for (String transcriptId : transcriptIds) {
+            if (savedTranscriptIds.contains(transcriptId) || !fetchedBatch.ensemblTranscripts.containsKey(transcriptId)) {
+                continue;
+            }
+            org.genome_nexus.client.EnsemblTranscript gnTranscript = fetchGenomeNexusTranscript(rg, transcriptId);
+            if (gnTranscript != null) {
+                fetchedBatch.gnTranscripts.put(transcriptId, gnTranscript);
+            }
+        }
+        // a transcript whose sequence failed to load is saved without one
+        List<String> proteinIds = fetchedBatch.gnTranscripts
+            .values()
+            .stream()
+            .map(org.genome_nexus.client.EnsemblTranscript::getProteinId)
+            .collect(Collectors.toList());
+        fetchedBatch.proteinSequences.putAll(transcriptService.getProteinSequences(rg, proteinIds));
+        return fetchedBatch;
+    }
+
+    /**
+     * @return the Genome Nexus transcript, null when Genome Nexus does not have it
+     * @throws IllegalStateException when Genome Nexus fails or is unavailable, so that the batch fails and holds the
+     *                               checkpoint back
+     */
+    private org.genome_nexus.client.EnsemblTranscript fetchGenomeNexusTranscript(ReferenceGenome rg, String transcriptId) {
+        try {
+            return genomeNexusService.getEnsemblControllerApi(rg).fetchEnsemblTranscriptByTranscriptIdGET(transcriptId);
+        } catch (org.genome_nexus.ApiException e) {
+            if (e.getCode() == 404) {
+                return null;
+            }
+            throw new IllegalStateException("Failed to fetch the " + rg + " transcript " + transcriptId + " from Genome Nexus", e);
+        }
+    }
+
+    private TranscriptBatch toFetchedTranscripts(FetchedBatch fetchedBatch) {
+        ReferenceGenome rg = fetchedBatch.geneBatch.referenceGenome;
+        List<FetchedTranscriptDTO> fetchedTranscripts = new ArrayList<>();
+        for (Gene gene : fetchedBatch.geneBatch.genes) {
+            String transcriptId = getIsoform(gene, rg);
+            if (StringUtils.isEmpty(transcriptId)) {
+                continue;
+            }
+            org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript ensemblTranscript = fetchedBatch.ensemblTranscripts.get(
+                transcriptId
+            );
+            if (ensemblTranscript == null || fetchedBatch.ensemblGenes.get(ensemblTranscript.getParent()) == null) {
+                log.warn("No Ensembl {} transcript or gene {} for {}", rg, transcriptId, gene.getHugoSymbol());
+                continue;
+            }
+            FetchedTranscriptDTO fetchedTranscript = new FetchedTranscriptDTO();
+            fetchedTranscript.setReferenceGenome(rg);
+            fetchedTranscript.setEntrezGeneId(gene.getEntrezGeneId());
+            fetchedTranscript.setEnsemblTranscriptId(transcriptId);
+            fetchedTranscript.setEnsemblGene(fetchedBatch.ensemblGenes.get(ensemblTranscript.getParent()));
+            fetchedTranscript.setCanonical(true);
+            org.genome_nexus.client.EnsemblTranscript gnTranscript = fetchedBatch.gnTranscripts.get(transcriptId);
+            if (gnTranscript != null) {
+                fetchedTranscript.setTranscript(MainService.toTranscriptDTO(ensemblTranscript, gnTranscript, true));
+                fetchedTranscript.setProteinSequence(fetchedBatch.proteinSequences.get(gnTranscript.getProteinId()));
             }
-            // import canonical GRCh37 transcript
-            mainService.createTranscript(ReferenceGenome.GRCh37, gene.getGrch37Isoform(), gene.getEntrezGeneId(), true);
-            // import canonical GRCh38 transcript
-            mainService.createTranscript(ReferenceGenome.GRCh38, gene.getGrch38Isoform(), gene.getEntrezGeneId(), true);
+            fetchedTranscripts.add(fetchedTranscript);
+        }
+        return new TranscriptBatch(fetchedBatch.geneBatch, fetchedTranscripts);
+    }
+
+    private static String getIsoform(Gene gene, ReferenceGenome rg) {
+        return rg == ReferenceGenome.GRCh37 ? gene.getGrch37Isoform() : gene.getGrch38Isoform();
+    }
+
+    private static class GeneBatch {
+
+        private final ReferenceGenome referenceGenome;
+        // the position of the first gene of the batch in the genes of the run
+        private final int offset;
+        private final List<Gene> genes;
+
+        GeneBatch(ReferenceGenome referenceGenome, int offset, List<Gene> genes) {
+            this.referenceGenome = referenceGenome;
+            this.offset = offset;
+            this.genes = genes;
+        }
+
+        @Override
+        public String toString() {
+            return referenceGenome + " batch of " + genes.size() + " genes from " + genes.get(0).getHugoSymbol();
+        }
+    }
+
+    // the lookups of a batch, by Ensembl id
+    private static class FetchedBatch {
+
+        private final GeneBatch geneBatch;
+        // filled by the Ensembl lookup threads
+        private final Map<String, org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblTranscripts = new ConcurrentHashMap<>();
+        private final Map<String, org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblGenes = new ConcurrentHashMap<>();
+        private final Map<String, org.genome_nexus.client.EnsemblTranscript> gnTranscripts = new HashMap<>();
+        // by Ensembl protein id
+        private final Map<String, String> proteinSequences = new HashMap<>();
+
+        FetchedBatch(GeneBatch geneBatch) {
+            this.geneBatch = geneBatch;
+        }
+
+        @Override
+        public String toString() {
+            return geneBatch.toString();
+        }
+    }
+
+    private static class TranscriptBatch {
+
+        private final GeneBatch geneBatch;
+        private final List<FetchedTranscriptDTO> transcripts;
+
+        TranscriptBatch(GeneBatch geneBatch, List<FetchedTranscriptDTO> transcripts) {
+            this.geneBatch = geneBatch;
+            this.transcripts = transcripts;
+        }
+
+        @Override
+        public String toString() {
+            return geneBatch.toString();
         }
     }
 
@@ -190,13 +671,10 @@ public class Importer {
                         log.warn("\t\t Sequences do not match");
                         log.info(
                             "\t\t\t Alignment penalty {}",
-                            alignmentService
-                                .calcOptimalAlignment(
-                                    sequenceGrch37Optional.get().getSequence(),
-                                    sequenceGrch38Optional.get().getSequence(),
-                                    false
-                                )
-                                .getPenalty()
+                            cachedAlignmentService.score(
+                                sequenceGrch37Optional.get().getSequence(),
+                                sequenceGrch38Optional.get().getSequence()
+                            )
                         );
                     }
                 }
@@ -1,5 +1,6 @@
 package org.mskcc.oncokb.transcript.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.mskcc.oncokb.transcript.domain.Drug;
@@ -20,4 +21,15 @@ public interface DrugRepository extends JpaRepository<Drug, Long> {
         "select distinct d from Drug d join d.synonyms ds where lower(d.name) like lower(concat('%', ?1,'%')) or lower(d.code) like lower(concat('%', ?1,'%')) or lower(ds.name) like lower(concat('%', ?1,'%'))"
     )
     List<Drug> searchDrug(String query);
+
+    /**
+     * The id, code, name and semantic type of every drug, with one of its synonyms' name per row, so that the NCIt
+     * thesaurus import can index the drugs without loading them.
+     */
+    @Query("select d.id, d.code, d.name, d.semanticType, ds.name from Drug d left join d.synonyms ds")
+    List<Object[]> findAllCodesAndSynonymNames();
+
+    @Modifying
+    @Query("update Drug d set d.semanticType = ?1 where d.id in ?2")
+    int updateSemanticTypeByIdIn(String semanticType, Collection<Long> ids);
 }
@@ -1,5 +1,6 @@
 package org.mskcc.oncokb.transcript.repository;
 
+import java.util.Collection;
 import java.util.List;
 import org.mskcc.oncokb.transcript.domain.GenomeFragment;
 import org.springframework.data.jpa.repository.*;
@@ -13,4 +14,8 @@ import org.springframework.stereotype.Repository;
 public interface GenomeFragmentRepository extends JpaRepository<GenomeFragment, Long> {
     @Query("select genomeFragment from GenomeFragment genomeFragment where genomeFragment.transcript.id = ?1")
     List<GenomeFragment> findAllByTranscriptId(Long id);
+
+    @Modifying
+    @Query("delete from GenomeFragment genomeFragment where genomeFragment.transcript.id in ?1")
+    void deleteAllByTranscriptIdIn(Collection<Long> transcriptIds);
 }
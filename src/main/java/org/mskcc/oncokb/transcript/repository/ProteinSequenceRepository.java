@@ -0,0 +1,22 @@
+package org.mskcc.oncokb.transcript.repository;
+
+import java.util.Collection;
+import java.util.List;
+import org.mskcc.oncokb.transcript.domain.ProteinSequence;
+import org.springframework.data.jpa.repository.*;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Spring Data SQL repository for the ProteinSequence entity.
+ */
+@SuppressWarnings("unused")
+@Repository
+public interface ProteinSequenceRepository extends JpaRepository<ProteinSequence, Long> {
+    List<ProteinSequence> findAllByReferenceGenomeAndEnsemblProteinIdIn(String referenceGenome, Collection<String> ensemblProteinIds);
+
+    @Modifying
+    @Transactional
+    @Query("update ProteinSequence p set p.version = ?2, p.sequence = ?3 where p.id = ?1")
+    int updateSequence(Long id, Integer version, String sequence);
+}
@@ -1,5 +1,7 @@
 package org.mskcc.oncokb.transcript.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.mskcc.oncokb.transcript.domain.Sequence;
 import org.mskcc.oncokb.transcript.domain.Transcript;
@@ -14,4 +16,6 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface SequenceRepository extends JpaRepository<Sequence, Long> {
     Optional<Sequence> findOneByTranscriptAndSequenceType(Transcript transcript, SequenceType sequenceType);
+
+    List<Sequence> findAllByTranscriptInAndSequenceType(Collection<Transcript> transcripts, SequenceType sequenceType);
 }
@@ -1,5 +1,6 @@
 package org.mskcc.oncokb.transcript.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import liquibase.pro.packaged.T;
@@ -24,6 +25,8 @@ public interface TranscriptRepository extends JpaRepository<Transcript, Long> {
 
     List<Transcript> findByEnsemblGene(EnsemblGene ensemblGene);
 
+    List<Transcript> findAllByEnsemblGeneIn(Collection<EnsemblGene> ensemblGenes);
+
     @Query("select t from Transcript t join t.ensemblGene eg where eg.referenceGenome= ?1 and t.ensemblTranscriptId in ?2")
     List<Transcript> findByEnsemblGeneId(Integer entrezGeneId);
 
@@ -1,10 +1,15 @@
 package org.mskcc.oncokb.transcript.service;
 
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-import org.mskcc.oncokb.transcript.domain.Alignment;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.mskcc.oncokb.transcript.domain.AlignmentOperations;
+import org.mskcc.oncokb.transcript.domain.AlignmentOperations.Operation;
 import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.mskcc.oncokb.transcript.service.alignment.AffineGapAligner;
+import org.mskcc.oncokb.transcript.service.alignment.AlignmentScratch;
+import org.mskcc.oncokb.transcript.service.alignment.ScoreOnlyAligner;
+import org.mskcc.oncokb.transcript.service.alignment.ScoringScheme;
+import org.mskcc.oncokb.transcript.service.alignment.SubstitutionMatrix;
 import org.springframework.stereotype.Service;
 
 /**
@@ -14,26 +19,30 @@ import org.springframework.stereotype.Service;
 @Service
 public class AlignmentService {
 
-    static final String GAP_CHAR = "_"; //Only For printing the final alignment
+    static final String GAP_CHAR = String.valueOf(AlignmentOperations.GAP_CHAR); //Only For printing the final alignment
 
-    private static final Set<Character> vowels = new HashSet<>(Arrays.asList(new Character[] { 'a', 'e', 'i', 'o', 'u' }));
-    private static final Set<Character> consonants = new HashSet<>(
-        Arrays.asList(
-            new Character[] { 'b', 'c', 'd', 'f', 'g', 'h', 'j', 'k', 'l', 'm', 'n', 'p', 'q', 'r', 's', 't', 'v', 'w', 'x', 'y', 'z' }
-        )
-    );
-    private static final Set<Character> numbers = new HashSet<>(
-        Arrays.asList(new Character[] { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' })
-    );
+    // Above this many DP cells the quadratic memo table gets too expensive (a 3,000 x 3,000 protein pair is already 9M cells),
+    // so we switch to the divide-and-conquer alignment which only keeps two rows in memory
+    static final long LINEAR_SPACE_CELL_THRESHOLD = 1_000_000L;
 
-    private int[][] memoTable;
-    private int[][][] predecessorIndexes; //stores the index where the value at memoTable[i][j] came from (diagonal, above or left)
+    // Penalty of the cells outside of the band in the bounded alignment, small enough to not overflow when a penalty is added
+    private static final int OUT_OF_BAND = Integer.MAX_VALUE / 2;
 
-    private int gapPenalty;
-    private int vowelVowelMismatchPenalty;
-    private int consonantConsonantMismatchPenalty;
-    private int vowelConsonantMismatchPenalty;
-    private int numberNumberMismatchPenalty;
+    // The scoring parameters are fixed at construction and every alignment works on its own per-thread scratch buffers,
+    // so a single instance can be shared by concurrent requests
+    private final ScoringScheme scoringScheme;
+    private final SubstitutionMatrix substitutionMatrix;
+    private final int gapPenalty; //Penalty of every gapped residue when the gap penalty is linear
+    private final AffineGapAligner affineGapAligner;
+    private final ScoreOnlyAligner scoreOnlyAligner;
+
+    public AlignmentService(ScoringScheme scoringScheme) {
+        this.scoringScheme = scoringScheme;
+        this.substitutionMatrix = scoringScheme.getSubstitutionMatrix();
+        this.gapPenalty = scoringScheme.getGapExtensionPenalty();
+        this.affineGapAligner = new AffineGapAligner(scoringScheme);
+        this.scoreOnlyAligner = new ScoreOnlyAligner(scoringScheme);
+    }
 
     public AlignmentService(
         int gapPenalty,
@@ -42,15 +51,33 @@ public class AlignmentService {
         int vowelConsonantMismatchPenalty,
         int numberNumberMismatchPenalty
     ) {
-        this.gapPenalty = gapPenalty;
-        this.vowelVowelMismatchPenalty = vowelVowelMismatchPenalty;
-        this.consonantConsonantMismatchPenalty = consonantConsonantMismatchPenalty;
-        this.vowelConsonantMismatchPenalty = vowelConsonantMismatchPenalty;
-        this.numberNumberMismatchPenalty = numberNumberMismatchPenalty;
+        this(
+            new ScoringScheme(
+                SubstitutionMatrix.legacy(
+                    vowelVowelMismatchPenalty,
+                    consonantConsonantMismatchPenalty,
+                    vowelConsonantMismatchPenalty,
+                    numberNumberMismatchPenalty
+                ),
+                0,
+                gapPenalty
+            )
+        );
     }
 
     public AlignmentService() {
-        this(2, 1, 1, 3, 1);
+        this(ScoringScheme.LEGACY);
+    }
+
+    public ScoringScheme getScoringScheme() {
+        return scoringScheme;
+    }
+
+    /**
+     * @return an alignment service using a different scoring scheme, e.g. {@link ScoringScheme#BLOSUM62}
+     */
+    public AlignmentService withScoringScheme(ScoringScheme scoringScheme) {
+        return this.scoringScheme.equals(scoringScheme) ? this : new AlignmentService(scoringScheme);
     }
 
     public void calculateAndPrintOptimalAlignment(String seq1, String seq2) {
@@ -61,149 +88,386 @@ public class AlignmentService {
         String seq1 = sanitizeSequence(sequence1Original);
         String seq2 = sanitizeSequence(sequence2Original);
 
-        //Initialize 2D arrays for memoization
-        memoTable = new int[seq1.length()][seq2.length()];
-        predecessorIndexes = new int[seq1.length()][seq2.length()][2];
+        if (scoringScheme.isAffine()) {
+            AlignmentResult alignmentResult = (long) seq1.length() * seq2.length() > LINEAR_SPACE_CELL_THRESHOLD
+                ? affineGapAligner.calcLinearSpaceAlignment(seq1, seq2)
+                : affineGapAligner.calcAlignment(seq1, seq2);
+            if (printResults) {
+                printAlignment(seq1, seq2, alignmentResult);
+            }
+            return alignmentResult;
+        }
+        AlignmentResult alignmentResult = (long) seq1.length() * seq2.length() > LINEAR_SPACE_CELL_THRESHOLD
+            ? calcLinearSpaceAlignment(seq1, seq2)
+            : calcQuadraticAlignment(seq1, seq2);
+        if (printResults) {
+            printAlignment(seq1, seq2, alignmentResult);
+        }
+        return alignmentResult;
+    }
+
+    //Aligns the sanitized sequences with the memo table
+    AlignmentResult calcQuadraticAlignment(String seq1, String seq2) {
+        //The memo table is flattened row by row, cell (i, j) lives at i * width + j
+        int width = seq2.length();
+        int[] memoTable = AlignmentScratch.current().memoTable(seq1.length() * width);
 
         //Array bounds are < seq1.length() (not <= ) since both sequences have a blank space @ the start
-        //Fill 0th column
-        for (int i = 0; i < seq1.length(); i++) { // base case: j = 0
-            memoTable[i][0] = i * this.gapPenalty;
-            predecessorIndexes[i][0][0] = i - 1;
-            predecessorIndexes[i][0][1] = 0;
-        }
         //Fill 0th row
-        for (int j = 0; j < seq2.length(); j++) { // base case: i = 0
-            memoTable[0][j] = j * this.gapPenalty;
-            predecessorIndexes[0][j][0] = 0;
-            predecessorIndexes[0][j][1] = j - 1;
+        for (int j = 0; j < width; j++) { // base case: i = 0
+            memoTable[j] = j * this.gapPenalty;
         }
-        //Set upper left with negative predecessor since it has no predecessor
-        predecessorIndexes[0][0][0] = -1;
-        predecessorIndexes[0][0][1] = -1;
 
         //Fill rest of memo table
-        for (int j = 1; j < seq2.length(); j++) {
-            for (int i = 1; i < seq1.length(); i++) {
-                int alignedCharWithCharPenalty = mismatchPenalty(seq1.charAt(i), seq2.charAt(j)) + memoTable[i - 1][j - 1]; //case1: seq1[i] & seq2[j] aligned with each other
-                int seq1CharWithGap = this.gapPenalty + memoTable[i - 1][j]; //case2: seq1 with gap
-                int seq2CharWithGap = this.gapPenalty + memoTable[i][j - 1]; //case3: seq2 with gap
-                //Calculate the min of 3 values & store predecessors
-                if (alignedCharWithCharPenalty <= seq1CharWithGap && alignedCharWithCharPenalty <= seq2CharWithGap) { //case1 is the min
-                    memoTable[i][j] = alignedCharWithCharPenalty;
-                    predecessorIndexes[i][j][0] = i - 1;
-                    predecessorIndexes[i][j][1] = j - 1;
-                } else if (seq1CharWithGap <= alignedCharWithCharPenalty && seq1CharWithGap <= seq2CharWithGap) { //case2 is the min
-                    memoTable[i][j] = seq1CharWithGap;
-                    predecessorIndexes[i][j][0] = i - 1;
-                    predecessorIndexes[i][j][1] = j;
-                } else { //case3 is the min
-                    memoTable[i][j] = seq2CharWithGap;
-                    predecessorIndexes[i][j][0] = i;
-                    predecessorIndexes[i][j][1] = j - 1;
+        for (int i = 1; i < seq1.length(); i++) {
+            int row = i * width;
+            memoTable[row] = i * this.gapPenalty; // base case: j = 0
+            byte[] penalties = substitutionMatrix.penaltiesOf(seq1.charAt(i));
+            for (int j = 1; j < width; j++) {
+                int alignedCharWithCharPenalty = penalties[seq2.charAt(j)] + memoTable[row - width + j - 1]; //case1: seq1[i] & seq2[j] aligned with each other
+                int seq1CharWithGap = this.gapPenalty + memoTable[row - width + j]; //case2: seq1 with gap
+                int seq2CharWithGap = this.gapPenalty + memoTable[row + j - 1]; //case3: seq2 with gap
+                memoTable[row + j] = Math.min(alignedCharWithCharPenalty, Math.min(seq1CharWithGap, seq2CharWithGap));
+            }
+        }
+
+        int minimumPenalty = memoTable[seq1.length() * width - 1];
+
+        return new AlignmentResult(seq1.substring(1), seq2.substring(1), findAlignment(seq1, seq2, memoTable, width), minimumPenalty);
+    }
+
+    /**
+     * The penalty of the optimal alignment, without the alignment itself. It takes linear memory and is cheaper than
+     * {@link #calcOptimalAlignment(String, String, boolean)}, so rank or filter with it and only align the winners.
+     */
+    public int score(String sequence1Original, String sequence2Original) {
+        return scoreOnlyAligner.calcPenalty(sanitizeSequence(sequence1Original), sanitizeSequence(sequence2Original), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #score(String, String)}, but stops as soon as the penalty is known to be greater than maxPenalty.
+     *
+     * @return the penalty of the optimal alignment, or empty if it is greater than maxPenalty
+     */
+    public OptionalInt score(String sequence1Original, String sequence2Original, int maxPenalty) {
+        if (maxPenalty < 0) {
+            return OptionalInt.empty();
+        }
+        String seq1 = sanitizeSequence(sequence1Original);
+        String seq2 = sanitizeSequence(sequence2Original);
+        if (scoringScheme.gapPenalty(Math.abs(seq1.length() - seq2.length())) > maxPenalty) { //The length difference alone needs too many gaps
+            return OptionalInt.empty();
+        }
+        int penalty = scoreOnlyAligner.calcPenalty(seq1, seq2, maxPenalty);
+        return penalty <= maxPenalty ? OptionalInt.of(penalty) : OptionalInt.empty();
+    }
+
+    /**
+     * Align two sequences, but only care about the alignment when its penalty is within the given bound.
+     * <p>
+     * An alignment with penalty p can stray at most p / gapPenalty cells away from the main diagonal, so only that
+     * band of the memo table is computed, and the computation stops as soon as a whole row of the band is over the bound.
+     * For near-identical or unrelated sequences this is O(n * k) instead of O(n * m).
+     *
+     * @param sequence1Original the reference sequence
+     * @param sequence2Original the target sequence
+     * @param maxPenalty        the maximum penalty we are interested in
+     * @return the optimal alignment, or empty if the minimum penalty is greater than maxPenalty
+     */
+    public Optional<AlignmentResult> calcBoundedAlignment(String sequence1Original, String sequence2Original, int maxPenalty) {
+        if (maxPenalty < 0) {
+            return Optional.empty();
+        }
+        String seq1 = sanitizeSequence(sequence1Original);
+        String seq2 = sanitizeSequence(sequence2Original);
+        int length1 = seq1.length() - 1;
+        int length2 = seq2.length() - 1;
+        if (scoringScheme.gapPenalty(Math.abs(length1 - length2)) > maxPenalty) { //The length difference alone needs too many gaps
+            return Optional.empty();
+        }
+        int bandRadius = this.gapPenalty > 0 ? maxPenalty / this.gapPenalty : Integer.MAX_VALUE;
+        if (scoringScheme.isAffine() || bandRadius >= length2 || seq1.length() * (2L * bandRadius + 1) > LINEAR_SPACE_CELL_THRESHOLD) {
+            //The band is not narrower than the whole table, or the band does not support affine gaps yet. Align in full instead,
+            //but only once the score shows the alignment is within the bound
+            if (scoreOnlyAligner.calcPenalty(seq1, seq2, maxPenalty) > maxPenalty) {
+                return Optional.empty();
+            }
+            return Optional.of(calcOptimalAlignment(sequence1Original, sequence2Original, false));
+        }
+
+        //Row i of the band table holds cells (i, i - bandRadius) .. (i, i + bandRadius)
+        int bandWidth = 2 * bandRadius + 1;
+        int[] bandTable = AlignmentScratch.current().memoTable(seq1.length() * bandWidth);
+
+        for (int d = 0; d < bandWidth; d++) { // base case: i = 0
+            int j = d - bandRadius;
+            bandTable[d] = j < 0 || j > length2 ? OUT_OF_BAND : j * this.gapPenalty;
+        }
+        for (int i = 1; i <= length1; i++) {
+            int row = i * bandWidth;
+            int previousRow = row - bandWidth;
+            int rowMinimum = OUT_OF_BAND;
+            byte[] penalties = substitutionMatrix.penaltiesOf(seq1.charAt(i));
+            for (int d = 0; d < bandWidth; d++) {
+                int j = i + d - bandRadius;
+                int penalty;
+                if (j < 0 || j > length2) {
+                    penalty = OUT_OF_BAND;
+                } else if (j == 0) { // base case: j = 0
+                    penalty = i * this.gapPenalty;
+                } else {
+                    penalty = penalties[seq2.charAt(j)] + bandTable[previousRow + d]; //case1: seq1[i] & seq2[j] aligned with each other
+                    if (d + 1 < bandWidth) {
+                        penalty = Math.min(penalty, this.gapPenalty + bandTable[previousRow + d + 1]); //case2: seq1 with gap
+                    }
+                    if (d > 0) {
+                        penalty = Math.min(penalty, this.gapPenalty + bandTable[row + d - 1]); //case3: seq2 with gap
+                    }
                 }
+                bandTable[row + d] = Math.min(penalty, OUT_OF_BAND);
+                rowMinimum = Math.min(rowMinimum, bandTable[row + d]);
+            }
+            if (rowMinimum > maxPenalty) { //Every path to the end goes through this row, and penalties never decrease
+                return Optional.empty();
             }
         }
 
-        int minimumPenalty = memoTable[sequence1Original.length()][sequence2Original.length()];
+        int minimumPenalty = bandTable[length1 * bandWidth + length2 - length1 + bandRadius];
+        if (minimumPenalty > maxPenalty) {
+            return Optional.empty();
+        }
 
-        if (printResults) {
-            //            System.out.println("Aligning \"" + sequence1Original + "\" with \"" + sequence2Original + "\"");
-            //            System.out.println("Memoization table");
-            //            printTable(memoTable);
-            //            System.out.println("\nPredecessor table (where the values came from)");
-            //            printTable3D(predecessorIndexes);
-
-            System.out.println(
-                "\n" +
-                minimumPenalty +
-                "\t is the Minimum penalty for aligning \"" +
-                sequence1Original +
-                "\" with \"" +
-                sequence2Original +
-                "\""
-            );
-        }
-        Alignment alignment = findAlignment(seq1, seq2, memoTable, printResults);
-
-        AlignmentResult alignmentResult = new AlignmentResult(alignment);
-        alignmentResult.setPenalty(minimumPenalty);
-        return alignmentResult;
+        return Optional.of(
+            new AlignmentResult(seq1.substring(1), seq2.substring(1), findBandedAlignment(seq1, seq2, bandTable, bandRadius), minimumPenalty)
+        );
+    }
+
+    //Retrace the band table, same as findAlignment but with the band coordinates
+    private AlignmentOperations findBandedAlignment(String seq1, String seq2, int[] bandTable, int bandRadius) {
+        int bandWidth = 2 * bandRadius + 1;
+        AlignmentOperations.Builder operations = new AlignmentOperations.Builder();
+
+        int i = seq1.length() - 1;
+        int j = seq2.length() - 1;
+        while (i > 0 && j > 0) {
+            int d = j - i + bandRadius;
+            int cell = i * bandWidth + d;
+            if (bandTable[cell] - mismatchPenalty(seq1.charAt(i), seq2.charAt(j)) == bandTable[cell - bandWidth]) { //case1: both aligned
+                operations.match();
+                i--;
+                j--;
+            } else if (d + 1 < bandWidth && bandTable[cell] - this.gapPenalty == bandTable[cell - bandWidth + 1]) { //case2: seq1 with gap
+                operations.deletion();
+                i--;
+            } else { //case3: seq2 with gap
+                operations.insertion();
+                j--;
+            }
+        }
+        return operations.add(Operation.DELETION, i).add(Operation.INSERTION, j).reverse().build();
+    }
+
+    /**
+     * Hirschberg's divide-and-conquer alignment. It returns the same alignment as the memo table approach
+     * but only keeps two rows of the target length in memory, at the cost of roughly doubling the number of cell computations.
+     * <p>
+     * Among the optimal alignments, the memo table approach returns the one of its traceback, which prefers aligning both
+     * chars, then a gap in seq2, then a gap in seq1. So instead of meeting a forward and a reverse pass in the middle row,
+     * each split follows that traceback: a forward pass over the whole sub-problem tracks, for every cell, the column where
+     * the traceback from that cell leaves the middle row.
+     *
+     * @param seq1 the sanitized reference sequence, with the leading space
+     * @param seq2 the sanitized target sequence, with the leading space
+     * @return the alignment result
+     */
+    private AlignmentResult calcLinearSpaceAlignment(String seq1, String seq2) {
+        AlignmentScratch scratch = AlignmentScratch.current();
+        int[] row = scratch.forwardRow(seq2.length());
+        int[] crossings = scratch.reverseRow(seq2.length());
+        AlignmentOperations.Builder operations = new AlignmentOperations.Builder();
+
+        int minimumPenalty = hirschberg(seq1, 1, seq1.length(), seq2, 1, seq2.length(), row, crossings, operations);
+
+        return new AlignmentResult(seq1.substring(1), seq2.substring(1), operations.build(), minimumPenalty);
+    }
+
+    private void printAlignment(String seq1, String seq2, AlignmentResult alignmentResult) {
+        System.out.println(
+            "\n" +
+            alignmentResult.getPenalty() +
+            "\t is the Minimum penalty for aligning \"" +
+            seq1.trim() +
+            "\" with \"" +
+            seq2.trim() +
+            "\""
+        );
+        System.out.println("\nOptimal Alignment:\n" + alignmentResult.getRefSeq() + "\n" + alignmentResult.getTargetSeq() + "\n\n");
+    }
+
+    //Aligns seq1[from1, to1) with seq2[from2, to2), appends the alignment to the builders and returns its penalty
+    private int hirschberg(
+        String seq1,
+        int from1,
+        int to1,
+        String seq2,
+        int from2,
+        int to2,
+        int[] row,
+        int[] crossings,
+        AlignmentOperations.Builder operations
+    ) {
+        int length1 = to1 - from1;
+        int length2 = to2 - from2;
+
+        if (length1 == 0 || length2 == 0) { //Only gaps left
+            operations.add(Operation.DELETION, length1).add(Operation.INSERTION, length2);
+            return (length1 + length2) * this.gapPenalty;
+        }
+        if (length1 == 1) {
+            return alignSingleRefChar(seq1.charAt(from1), seq2, from2, to2, operations);
+        }
+        if (length2 == 1) {
+            return alignSingleTargetChar(seq1, from1, to1, seq2.charAt(from2), operations);
+        }
+
+        int mid1 = (from1 + to1) / 2;
+        int split = calcMiddleRowCrossing(seq1, from1, to1, mid1, seq2, from2, to2, row, crossings);
+        int minimumPenalty = row[length2];
+
+        //The traceback of each half is the part of the traceback of the whole on that side of the split
+        hirschberg(seq1, from1, mid1, seq2, from2, from2 + split, row, crossings, operations);
+        hirschberg(seq1, mid1, to1, seq2, from2 + split, to2, row, crossings, operations);
+        return minimumPenalty;
+    }
+
+    //Computes the penalties of aligning seq1[from1, to1) with every prefix of seq2[from2, to2) into row, and returns the column
+    //where the traceback leaves the row of mid1 for the row above. For the rows from mid1, crossings[j] is that column for the
+    //traceback starting at cell j of the row
+    private int calcMiddleRowCrossing(
+        String seq1,
+        int from1,
+        int to1,
+        int mid1,
+        String seq2,
+        int from2,
+        int to2,
+        int[] row,
+        int[] crossings
+    ) {
+        int length1 = to1 - from1;
+        int length2 = to2 - from2;
+        int middle = mid1 - from1;
+        for (int j = 0; j <= length2; j++) {
+            row[j] = j * this.gapPenalty;
+        }
+        for (int i = 1; i <= length1; i++) {
+            byte[] penalties = substitutionMatrix.penaltiesOf(seq1.charAt(from1 + i - 1));
+            int diagonal = row[0];
+            int diagonalCrossing = crossings[0];
+            row[0] = i * this.gapPenalty;
+            if (i == middle) { // base case: j = 0 goes up
+                crossings[0] = 0;
+            }
+            for (int j = 1; j <= length2; j++) {
+                int above = row[j];
+                int aboveCrossing = crossings[j];
+                int alignedCharWithCharPenalty = diagonal + penalties[seq2.charAt(from2 + j - 1)];
+                int penalty = Math.min(alignedCharWithCharPenalty, Math.min(above, row[j - 1]) + this.gapPenalty);
+                row[j] = penalty;
+                //Same order as findAlignment: both aligned, then seq1 with gap, then seq2 with gap
+                if (i == middle) {
+                    crossings[j] = alignedCharWithCharPenalty == penalty || above + this.gapPenalty == penalty ? j : crossings[j - 1];
+                } else if (i > middle) {
+                    crossings[j] =
+                        alignedCharWithCharPenalty == penalty
+                            ? diagonalCrossing
+                            : above + this.gapPenalty == penalty ? aboveCrossing : crossings[j - 1];
+                }
+                diagonal = above;
+                diagonalCrossing = aboveCrossing;
+            }
+        }
+        return crossings[length2];
     }
 
-    private void printTable(int[][] table) {
-        for (int[] row : table) {
-            for (int value : row) {
-                System.out.print(value + "\t");
+    //Aligns a single char of seq1 against seq2[from2, to2). The traceback moves left until the char is aligned or gapped
+    private int alignSingleRefChar(char char1, String seq2, int from2, int to2, AlignmentOperations.Builder operations) {
+        int length2 = to2 - from2;
+        byte[] penalties = substitutionMatrix.penaltiesOf(char1);
+        int penalty = this.gapPenalty; // base case: j = 0
+        int crossing = 0;
+        boolean aligned = false;
+        for (int j = 1; j <= length2; j++) {
+            int alignedCharWithCharPenalty = (j - 1) * this.gapPenalty + penalties[seq2.charAt(from2 + j - 1)];
+            int seq1CharWithGap = (j + 1) * this.gapPenalty;
+            penalty = Math.min(alignedCharWithCharPenalty, Math.min(seq1CharWithGap, penalty + this.gapPenalty));
+            if (alignedCharWithCharPenalty == penalty || seq1CharWithGap == penalty) {
+                crossing = j;
+                aligned = alignedCharWithCharPenalty == penalty;
             }
-            System.out.println();
         }
+        if (aligned) {
+            operations.add(Operation.INSERTION, crossing - 1).match();
+        } else {
+            operations.add(Operation.INSERTION, crossing).deletion();
+        }
+        operations.add(Operation.INSERTION, length2 - crossing);
+        return penalty;
     }
 
-    private void printTable3D(int[][][] table3D) {
-        for (int[][] row : table3D) {
-            for (int[] xyPair : row) {
-                System.out.print(Arrays.toString(xyPair) + "\t");
+    //Aligns seq1[from1, to1) against a single char of seq2. The traceback moves up until the char is aligned or gapped
+    private int alignSingleTargetChar(String seq1, int from1, int to1, char char2, AlignmentOperations.Builder operations) {
+        int length1 = to1 - from1;
+        int penalty = this.gapPenalty; // base case: i = 0
+        int crossing = 0;
+        boolean aligned = false;
+        for (int i = 1; i <= length1; i++) {
+            int alignedCharWithCharPenalty = (i - 1) * this.gapPenalty + mismatchPenalty(seq1.charAt(from1 + i - 1), char2);
+            int seq1CharWithGap = penalty + this.gapPenalty;
+            penalty = Math.min(alignedCharWithCharPenalty, Math.min(seq1CharWithGap, (i + 1) * this.gapPenalty));
+            if (alignedCharWithCharPenalty == penalty || seq1CharWithGap != penalty) {
+                crossing = i;
+                aligned = alignedCharWithCharPenalty == penalty;
             }
-            System.out.println();
         }
+        if (aligned) {
+            operations.add(Operation.DELETION, crossing - 1).match();
+        } else {
+            operations.add(Operation.DELETION, crossing).insertion();
+        }
+        operations.add(Operation.DELETION, length1 - crossing);
+        return penalty;
     }
 
     //Retrace the memoTable to find the actual alignment, not just the minimum cost
-    private Alignment findAlignment(String seq1, String seq2, int[][] memoTable, boolean printResults) {
-        String seq1Aligned = ""; //Holds the actual sequence with gaps added
-        String seq2Aligned = "";
+    private AlignmentOperations findAlignment(String seq1, String seq2, int[] memoTable, int width) {
+        AlignmentOperations.Builder operations = new AlignmentOperations.Builder(); //Collected from the end of the alignment
 
         int i = seq1.length() - 1; //-1 since seq1 & seq2 have leading space
         int j = seq2.length() - 1;
 
         //Retrace the memoTable calculations. Stops when reaches the start of 1 sequence (so additional gaps may still need to be added to the other)
         while (i > 0 && j > 0) {
-            if (memoTable[i][j] - mismatchPenalty(seq1.charAt(i), seq2.charAt(j)) == memoTable[i - 1][j - 1]) { //case1: both aligned
-                seq1Aligned = seq1.charAt(i) + seq1Aligned;
-                seq2Aligned = seq2.charAt(j) + seq2Aligned;
+            int cell = i * width + j;
+            if (memoTable[cell] - mismatchPenalty(seq1.charAt(i), seq2.charAt(j)) == memoTable[cell - width - 1]) { //case1: both aligned
+                operations.match();
                 i--;
                 j--;
-            } else if (memoTable[i][j] - this.gapPenalty == memoTable[i - 1][j]) { //case2: seq1 with gap
-                seq1Aligned = seq1.charAt(i) + seq1Aligned;
-                seq2Aligned = GAP_CHAR + seq2Aligned;
+            } else if (memoTable[cell] - this.gapPenalty == memoTable[cell - width]) { //case2: seq1 with gap
+                operations.deletion();
                 i--;
-            } else if (memoTable[i][j] - this.gapPenalty == memoTable[i][j - 1]) { //case3: seq2 with gap
-                seq2Aligned = seq2.charAt(j) + seq2Aligned;
-                seq1Aligned = GAP_CHAR + seq1Aligned;
+            } else if (memoTable[cell] - this.gapPenalty == memoTable[cell - 1]) { //case3: seq2 with gap
+                operations.insertion();
                 j--;
             }
         }
         //Now i==0 or j==0 or both. Finish by adding any additional leading gaps to the start of the sequence whose pointer ISN'T == 0
-        while (i > 0) { //Seq1 reached the beginning, print rest of seq2 & add gaps to seq2
-            seq1Aligned = seq1.charAt(i) + seq1Aligned;
-            seq2Aligned = GAP_CHAR + seq2Aligned;
-            i--;
-        }
-        while (j > 0) { //Seq2 reached the beginning, print rest of seq1 & add gaps to seq2
-            seq2Aligned = seq2.charAt(j) + seq2Aligned;
-            seq1Aligned = GAP_CHAR + seq1Aligned;
-            j--;
-        }
-
-        if (printResults) System.out.println("\nOptimal Alignment:\n" + seq1Aligned + "\n" + seq2Aligned + "\n\n");
-        Alignment alignment = new Alignment();
-        alignment.setRefSeq(seq1Aligned);
-        alignment.setTargetSeq(seq2Aligned);
-        return alignment;
+        operations.add(Operation.DELETION, i).add(Operation.INSERTION, j);
+        return operations.reverse().build();
     }
 
     private int mismatchPenalty(char char1, char char2) {
-        if (char1 == char2) {
-            return 0;
-        } else if (consonants.contains(char1) && consonants.contains(char2)) {
-            return this.consonantConsonantMismatchPenalty;
-        } else if (vowels.contains(char1) && vowels.contains(char2)) {
-            return this.vowelVowelMismatchPenalty;
-        } else if (numbers.contains(char1) && numbers.contains(char2)) {
-            return this.numberNumberMismatchPenalty;
-        }
-        return this.vowelConsonantMismatchPenalty;
+        return substitutionMatrix.penalty(char1, char2);
     }
 
     private String sanitizeSequence(String sequence) {
@@ -0,0 +1,93 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * Aligns one reference sequence against many target sequences in parallel.
+ * <p>
+ * The alignments run on a dedicated pool bounded by the number of processors, so a gene with many isoforms
+ * does not tie up the request threads or the common ForkJoin pool, and concurrent requests share the same CPU budget.
+ * Every worker thread keeps its own alignment scratch buffers, see AlignmentScratch.
+ */
+@Service
+public class BatchAlignmentService implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(BatchAlignmentService.class);
+
+    private final ForkJoinPool alignmentPool;
+
+    public BatchAlignmentService() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    BatchAlignmentService(int parallelism) {
+        this.alignmentPool =
+            new ForkJoinPool(
+                parallelism,
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("alignment-" + thread.getPoolIndex());
+                    return thread;
+                },
+                null,
+                false
+            );
+    }
+
+    /**
+     * Align the reference sequence against each of the target sequences.
+     *
+     * @param refSequence     the reference sequence
+     * @param targetSequences the target sequences
+     * @param aligner         the alignment to run for every (reference, target) pair, empty when the pair should be skipped
+     * @return the alignment results in the order of the target sequences
+     */
+    public List<Optional<AlignmentResult>> alignAll(
+        String refSequence,
+        List<String> targetSequences,
+        BiFunction<String, String, Optional<AlignmentResult>> aligner
+    ) {
+        List<Optional<AlignmentResult>> results = new ArrayList<>();
+        if (targetSequences.size() < 2) {
+            //Not worth handing off to the pool
+            targetSequences.forEach(targetSequence -> results.add(aligner.apply(refSequence, targetSequence)));
+            return results;
+        }
+
+        List<Callable<Optional<AlignmentResult>>> tasks = new ArrayList<>();
+        targetSequences.forEach(targetSequence -> tasks.add(() -> aligner.apply(refSequence, targetSequence)));
+        try {
+            for (Future<Optional<AlignmentResult>> future : alignmentPool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while aligning sequences", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to align sequences", e.getCause());
+        }
+        return results;
+    }
+
+    @Override
+    public void destroy() {
+        log.debug("Shutting down the alignment pool");
+        alignmentPool.shutdownNow();
+    }
+}
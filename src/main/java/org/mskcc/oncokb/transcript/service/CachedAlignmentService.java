@@ -0,0 +1,246 @@
+package org.mskcc.oncokb.transcript.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.cache.CacheCategory;
+import org.mskcc.oncokb.transcript.config.cache.CacheKeys;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.config.cache.LoggingCacheErrorHandler;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Caches the alignments of AlignmentService, since the same protein pairs are aligned over and over by the transcript
+ * comparison, suggest-variant and the importer audit.
+ * <p>
+ * An alignment only depends on the two sequences and the scoring scheme, so the cache key is the SHA-256 hash of those.
+ * The entries live in a bounded, least recently used local tier and, when Redis is enabled, in the shared Redis cache.
+ * Scores and bounded alignments that were abandoned are cached as well, as the exact penalty or a lower bound of it.
+ * <p>
+ * The cached results are shared between callers and must not be modified.
+ */
+@Service
+public class CachedAlignmentService {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final AlignmentService alignmentService;
+    private final Map<String, CachedAlignment> localCache;
+    private final Optional<Cache> remoteCache;
+    private final LoggingCacheErrorHandler cacheErrorHandler = new LoggingCacheErrorHandler();
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter evictions;
+
+    public CachedAlignmentService(
+        AlignmentService alignmentService,
+        ApplicationProperties applicationProperties,
+        CacheNameResolver cacheNameResolver,
+        Optional<CacheManager> optionalCacheManager,
+        MeterRegistry meterRegistry
+    ) {
+        this.alignmentService = alignmentService;
+        this.remoteCache =
+            optionalCacheManager.map(cacheManager ->
+                cacheManager.getCache(cacheNameResolver.getCacheName(CacheCategory.ALIGNMENT, CacheKeys.ALIGNMENTS_BY_SEQUENCE_HASH))
+            );
+
+        int maxEntries = applicationProperties.getAlignment().getCacheMaxEntries();
+        this.evictions = meterRegistry.counter("alignment.cache.evictions");
+        this.localCache =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedAlignment> eldest) {
+                    if (size() > maxEntries) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+        this.localHits = meterRegistry.counter("alignment.cache.gets", "tier", "local", "result", "hit");
+        this.localMisses = meterRegistry.counter("alignment.cache.gets", "tier", "local", "result", "miss");
+        this.remoteHits = meterRegistry.counter("alignment.cache.gets", "tier", "remote", "result", "hit");
+        this.remoteMisses = meterRegistry.counter("alignment.cache.gets", "tier", "remote", "result", "miss");
+        meterRegistry.gauge("alignment.cache.size", localCache, this::getLocalCacheSize);
+    }
+
+    /**
+     * Same as {@link AlignmentService#calcOptimalAlignment(String, String, boolean)}, without printing
+     */
+    public AlignmentResult calcOptimalAlignment(String refSequence, String targetSequence) {
+        String key = getKey(refSequence, targetSequence);
+        Optional<CachedAlignment> cachedAlignment = get(key);
+        if (cachedAlignment.isPresent() && cachedAlignment.get().alignmentResult != null) {
+            return cachedAlignment.get().alignmentResult;
+        }
+        AlignmentResult alignmentResult = alignmentService.calcOptimalAlignment(refSequence, targetSequence, false);
+        put(key, CachedAlignment.of(alignmentResult));
+        return alignmentResult;
+    }
+
+    /**
+     * Same as {@link AlignmentService#score(String, String, int)}
+     */
+    public OptionalInt score(String refSequence, String targetSequence, int maxPenalty) {
+        String key = getKey(refSequence, targetSequence);
+        Optional<CachedAlignment> cachedAlignment = get(key);
+        if (cachedAlignment.isPresent()) {
+            if (cachedAlignment.get().exact) {
+                int penalty = cachedAlignment.get().minPenalty;
+                return penalty <= maxPenalty ? OptionalInt.of(penalty) : OptionalInt.empty();
+            }
+            if (cachedAlignment.get().minPenalty > maxPenalty) {
+                return OptionalInt.empty();
+            }
+        }
+        OptionalInt penalty = alignmentService.score(refSequence, targetSequence, maxPenalty);
+        if (penalty.isPresent()) {
+            put(key, CachedAlignment.ofPenalty(penalty.getAsInt()));
+        } else if (maxPenalty >= 0) {
+            put(key, CachedAlignment.ofMinPenalty(maxPenalty + 1));
+        }
+        return penalty;
+    }
+
+    /**
+     * Same as {@link AlignmentService#score(String, String)}
+     */
+    public int score(String refSequence, String targetSequence) {
+        return score(refSequence, targetSequence, Integer.MAX_VALUE).getAsInt();
+    }
+
+    /**
+     * Same as {@link AlignmentService#calcBoundedAlignment(String, String, int)}
+     */
+    public Optional<AlignmentResult> calcBoundedAlignment(String refSequence, String targetSequence, int maxPenalty) {
+        String key = getKey(refSequence, targetSequence);
+        Optional<CachedAlignment> cachedAlignment = get(key);
+        if (cachedAlignment.isPresent()) {
+            if (cachedAlignment.get().alignmentResult != null) {
+                return Optional.of(cachedAlignment.get().alignmentResult).filter(result -> result.getPenalty() <= maxPenalty);
+            }
+            if (cachedAlignment.get().minPenalty > maxPenalty) {
+                return Optional.empty();
+            }
+        }
+        Optional<AlignmentResult> alignmentResult = alignmentService.calcBoundedAlignment(refSequence, targetSequence, maxPenalty);
+        if (alignmentResult.isPresent()) {
+            put(key, CachedAlignment.of(alignmentResult.get()));
+        } else if (maxPenalty >= 0 && !cachedAlignment.map(alignment -> alignment.exact).orElse(false)) {
+            put(key, CachedAlignment.ofMinPenalty(maxPenalty + 1));
+        }
+        return alignmentResult;
+    }
+
+    private Optional<CachedAlignment> get(String key) {
+        CachedAlignment cachedAlignment;
+        synchronized (localCache) {
+            cachedAlignment = localCache.get(key);
+        }
+        if (cachedAlignment != null) {
+            localHits.increment();
+            return Optional.of(cachedAlignment);
+        }
+        localMisses.increment();
+
+        if (remoteCache.isPresent()) {
+            try {
+                Cache.ValueWrapper valueWrapper = remoteCache.get().get(key);
+                if (valueWrapper != null && valueWrapper.get() instanceof CachedAlignment) {
+                    remoteHits.increment();
+                    cachedAlignment = (CachedAlignment) valueWrapper.get();
+                    synchronized (localCache) {
+                        localCache.put(key, cachedAlignment);
+                    }
+                    return Optional.of(cachedAlignment);
+                }
+                remoteMisses.increment();
+            } catch (RuntimeException exception) {
+                cacheErrorHandler.handleCacheGetError(exception, remoteCache.get(), key);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void put(String key, CachedAlignment cachedAlignment) {
+        synchronized (localCache) {
+            localCache.put(key, cachedAlignment);
+        }
+        if (remoteCache.isPresent()) {
+            try {
+                remoteCache.get().put(key, cachedAlignment);
+            } catch (RuntimeException exception) {
+                cacheErrorHandler.handleCachePutError(exception, remoteCache.get(), key, cachedAlignment);
+            }
+        }
+    }
+
+    private double getLocalCacheSize(Map<String, CachedAlignment> cache) {
+        synchronized (localCache) {
+            return cache.size();
+        }
+    }
+
+    private String getKey(String refSequence, String targetSequence) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // the lengths keep the boundary between the two sequences unambiguous
+        messageDigest.update((refSequence.length() + ":" + targetSequence.length() + ":").getBytes(StandardCharsets.UTF_8));
+        messageDigest.update(refSequence.getBytes(StandardCharsets.UTF_8));
+        messageDigest.update(targetSequence.getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder key = new StringBuilder(alignmentService.getScoringScheme().toString()).append(':');
+        for (byte b : messageDigest.digest()) {
+            key.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+        }
+        return key.toString();
+    }
+
+    //The optimal alignment, just its penalty, or just a lower bound of its penalty when a bounded alignment was abandoned
+    private static final class CachedAlignment implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final AlignmentResult alignmentResult;
+        private final int minPenalty;
+        private final boolean exact;
+
+        private CachedAlignment(AlignmentResult alignmentResult, int minPenalty, boolean exact) {
+            this.alignmentResult = alignmentResult;
+            this.minPenalty = minPenalty;
+            this.exact = exact;
+        }
+
+        private static CachedAlignment of(AlignmentResult alignmentResult) {
+            return new CachedAlignment(alignmentResult, alignmentResult.getPenalty(), true);
+        }
+
+        private static CachedAlignment ofPenalty(int penalty) {
+            return new CachedAlignment(null, penalty, true);
+        }
+
+        private static CachedAlignment ofMinPenalty(int minPenalty) {
+            return new CachedAlignment(null, minPenalty, false);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.mskcc.oncokb.transcript.service;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.EnsemblControllerApi;
+import org.genome_nexus.client.EnsemblTranscript;
+import org.mskcc.oncokb.transcript.config.cache.CacheCategory;
+import org.mskcc.oncokb.transcript.config.cache.CacheKeys;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.config.cache.LoggingCacheErrorHandler;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Caches the Genome Nexus transcripts of a gene, the canonical one first, since compare-transcript, match-transcript
+ * and suggest-variant ask for the same genes over and over.
+ * <p>
+ * The lists are kept for the rest of the HTTP request, then in the shared Redis cache when Redis is enabled, for
+ * application.genome-nexus.transcript-cache-expiration seconds. They are stored there as JSON, the Genome Nexus models
+ * are not serializable. A list is only shared when both Genome Nexus calls succeeded.
+ * <p>
+ * The cached lists are shared between callers and must not be modified.
+ */
+@Service
+public class CachedTranscriptListService {
+
+    private static final String REQUEST_ATTRIBUTE = CachedTranscriptListService.class.getName() + ".transcripts";
+    private static final Type TRANSCRIPT_LIST_TYPE = new TypeToken<List<EnsemblTranscript>>() {}.getType();
+
+    private final Logger log = LoggerFactory.getLogger(CachedTranscriptListService.class);
+
+    private final GenomeNexusService genomeNexusService;
+    private final Optional<Cache> sharedCache;
+    private final LoggingCacheErrorHandler cacheErrorHandler = new LoggingCacheErrorHandler();
+    private final Gson gson = new Gson();
+
+    private final Counter requestHits;
+    private final Counter requestMisses;
+    private final Counter sharedHits;
+    private final Counter sharedMisses;
+
+    public CachedTranscriptListService(
+        GenomeNexusService genomeNexusService,
+        CacheNameResolver cacheNameResolver,
+        Optional<CacheManager> optionalCacheManager,
+        MeterRegistry meterRegistry
+    ) {
+        this.genomeNexusService = genomeNexusService;
+        String cacheName = cacheNameResolver.getCacheName(CacheCategory.GENOME_NEXUS, CacheKeys.ENSEMBL_TRANSCRIPTS_BY_HUGO_SYMBOL);
+        this.sharedCache = optionalCacheManager.map(cacheManager -> cacheManager.getCache(cacheName));
+
+        this.requestHits = meterRegistry.counter("genome-nexus.transcripts.cache.gets", "tier", "request", "result", "hit");
+        this.requestMisses = meterRegistry.counter("genome-nexus.transcripts.cache.gets", "tier", "request", "result", "miss");
+        this.sharedHits = meterRegistry.counter("genome-nexus.transcripts.cache.gets", "tier", "shared", "result", "hit");
+        this.sharedMisses = meterRegistry.counter("genome-nexus.transcripts.cache.gets", "tier", "shared", "result", "miss");
+    }
+
+    /**
+     * The canonical transcript of the gene followed by the others, from Genome Nexus. A failed call leaves its
+     * transcripts out.
+     */
+    public List<EnsemblTranscript> getEnsemblTranscriptList(String hugoSymbol, ReferenceGenome referenceGenome) {
+        String key = getKey(hugoSymbol, referenceGenome);
+        Map<String, List<EnsemblTranscript>> requestCache = getRequestCache();
+        if (requestCache != null) {
+            List<EnsemblTranscript> transcripts = requestCache.get(key);
+            if (transcripts != null) {
+                requestHits.increment();
+                return transcripts;
+            }
+            requestMisses.increment();
+        }
+
+        Optional<List<EnsemblTranscript>> sharedTranscripts = getShared(key);
+        List<EnsemblTranscript> transcripts;
+        if (sharedTranscripts.isPresent()) {
+            transcripts = sharedTranscripts.get();
+        } else {
+            transcripts = fetchEnsemblTranscriptList(hugoSymbol, referenceGenome, key);
+        }
+        if (requestCache != null) {
+            requestCache.put(key, transcripts);
+        }
+        return transcripts;
+    }
+
+    private List<EnsemblTranscript> fetchEnsemblTranscriptList(String hugoSymbol, ReferenceGenome referenceGenome, String key) {
+        EnsemblControllerApi controllerApi = genomeNexusService.getEnsemblControllerApi(referenceGenome);
+        Set<EnsemblTranscript> transcripts = new LinkedHashSet<>();
+        boolean complete = true;
+        try {
+            transcripts.add(controllerApi.fetchCanonicalEnsemblTranscriptByHugoSymbolGET(hugoSymbol, "msk"));
+        } catch (ApiException e) {
+            complete = false;
+            log.warn("Failed to fetch the {} canonical transcript of {} from Genome Nexus", referenceGenome, hugoSymbol, e);
+        }
+        try {
+            transcripts.addAll(controllerApi.fetchEnsemblTranscriptsGET(null, null, hugoSymbol));
+        } catch (ApiException e) {
+            complete = false;
+            log.warn("Failed to fetch the {} transcripts of {} from Genome Nexus", referenceGenome, hugoSymbol, e);
+        }
+        transcripts.remove(null);
+        List<EnsemblTranscript> transcriptList = new ArrayList<>(transcripts);
+        if (complete) {
+            putShared(key, transcriptList);
+        }
+        return transcriptList;
+    }
+
+    // null outside of an HTTP request, e.g. in the importer
+    @SuppressWarnings("unchecked")
+    private Map<String, List<EnsemblTranscript>> getRequestCache() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null) {
+            return null;
+        }
+        Object requestCache = requestAttributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (requestCache == null) {
+            requestCache = new ConcurrentHashMap<String, List<EnsemblTranscript>>();
+            requestAttributes.setAttribute(REQUEST_ATTRIBUTE, requestCache, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<String, List<EnsemblTranscript>>) requestCache;
+    }
+
+    private Optional<List<EnsemblTranscript>> getShared(String key) {
+        if (sharedCache.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            Cache.ValueWrapper valueWrapper = sharedCache.get().get(key);
+            if (valueWrapper != null && valueWrapper.get() instanceof String) {
+                sharedHits.increment();
+                return Optional.of(gson.fromJson((String) valueWrapper.get(), TRANSCRIPT_LIST_TYPE));
+            }
+            sharedMisses.increment();
+        } catch (RuntimeException exception) {
+            cacheErrorHandler.handleCacheGetError(exception, sharedCache.get(), key);
+        }
+        return Optional.empty();
+    }
+
+    private void putShared(String key, List<EnsemblTranscript> transcripts) {
+        if (sharedCache.isEmpty()) {
+            return;
+        }
+        String json = gson.toJson(transcripts, TRANSCRIPT_LIST_TYPE);
+        try {
+            sharedCache.get().put(key, json);
+        } catch (RuntimeException exception) {
+            cacheErrorHandler.handleCachePutError(exception, sharedCache.get(), key, json);
+        }
+    }
+
+    private static String getKey(String hugoSymbol, ReferenceGenome referenceGenome) {
+        return referenceGenome.name() + ":" + hugoSymbol;
+    }
+}
@@ -0,0 +1,309 @@
+package org.mskcc.oncokb.transcript.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.EnsemblGene;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.cache.CacheCategory;
+import org.mskcc.oncokb.transcript.config.cache.CacheKeys;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.config.cache.LoggingCacheErrorHandler;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Resolves the canonical Ensembl gene of entrez genes with Genome Nexus, in bulk.
+ * <p>
+ * The answers are cached by reference genome and entrez gene id, when Redis is enabled, for
+ * application.genome-nexus.canonical-gene-cache-expiration seconds. Genes without a canonical Ensembl gene are cached in
+ * a cache of their own, for application.genome-nexus.missing-canonical-gene-cache-expiration seconds only, so the import
+ * does not ask for them again but a gene Genome Nexus adds later is found soon. The ids missing from the caches are
+ * posted in chunks of {@link #CHUNK_SIZE}, sent at the same time for all the reference genomes.
+ */
+@Service
+public class CanonicalEnsemblGeneService implements DisposableBean {
+
+    static final int CHUNK_SIZE = 1000;
+
+    // cached for the genes Genome Nexus has no canonical Ensembl gene for
+    private static final String NO_ENSEMBL_GENE = "";
+
+    private final Logger log = LoggerFactory.getLogger(CanonicalEnsemblGeneService.class);
+
+    private final GenomeNexusService genomeNexusService;
+    private final Optional<Cache> cache;
+    private final Optional<Cache> missingCache;
+    private final LoggingCacheErrorHandler cacheErrorHandler = new LoggingCacheErrorHandler();
+    private final ExecutorService lookupPool;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter requests;
+
+    public CanonicalEnsemblGeneService(
+        GenomeNexusService genomeNexusService,
+        ApplicationProperties applicationProperties,
+        CacheNameResolver cacheNameResolver,
+        Optional<CacheManager> optionalCacheManager,
+        MeterRegistry meterRegistry
+    ) {
+        this.genomeNexusService = genomeNexusService;
+        String cacheName = cacheNameResolver.getCacheName(CacheCategory.GENE, CacheKeys.CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID);
+        this.cache = optionalCacheManager.map(cacheManager -> cacheManager.getCache(cacheName));
+        String missingCacheName = cacheNameResolver.getCacheName(
+            CacheCategory.GENE,
+            CacheKeys.MISSING_CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID
+        );
+        this.missingCache = optionalCacheManager.map(cacheManager -> cacheManager.getCache(missingCacheName));
+        AtomicInteger threadCount = new AtomicInteger();
+        this.lookupPool =
+            Executors.newFixedThreadPool(
+                applicationProperties.getGenomeNexus().getParallelism() * ReferenceGenome.values().length,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "genome-nexus-lookup-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+
+        this.hits = meterRegistry.counter("genome-nexus.canonical-gene.cache.gets", "result", "hit");
+        this.misses = meterRegistry.counter("genome-nexus.canonical-gene.cache.gets", "result", "miss");
+        this.requests = meterRegistry.counter("genome-nexus.canonical-gene.requests");
+    }
+
+    /**
+     * The canonical Ensembl gene id of an entrez gene, empty when Genome Nexus has none.
+     */
+    public Optional<String> findCanonicalEnsemblGeneId(ReferenceGenome referenceGenome, Integer entrezGeneId) throws ApiException {
+        return Optional.ofNullable(
+            findCanonicalEnsemblGeneIds(Collections.singletonList(referenceGenome), Collections.singletonList(entrezGeneId))
+                .get(referenceGenome)
+                .get(entrezGeneId)
+        );
+    }
+
+    public Map<Integer, String> findCanonicalEnsemblGeneIds(ReferenceGenome referenceGenome, Collection<Integer> entrezGeneIds)
+        throws ApiException {
+        return findCanonicalEnsemblGeneIds(Collections.singletonList(referenceGenome), entrezGeneIds).get(referenceGenome);
+    }
+
+    /**
+     * The canonical Ensembl gene ids by entrez gene id, for each reference genome. The genes without a canonical Ensembl
+     * gene are left out.
+     * <p>
+     * When a chunk fails, the answers of the others are still cached before the exception is thrown, so a retry only
+     * asks for the failed ones. See {@link #lookupCanonicalEnsemblGeneIds} to keep the answers of the other chunks.
+     */
+    public Map<ReferenceGenome, Map<Integer, String>> findCanonicalEnsemblGeneIds(
+        Collection<ReferenceGenome> referenceGenomes,
+        Collection<Integer> entrezGeneIds
+    ) throws ApiException {
+        CanonicalEnsemblGeneLookup lookup = lookupCanonicalEnsemblGeneIds(referenceGenomes, entrezGeneIds);
+        if (lookup.getFailure() != null) {
+            throw lookup.getFailure();
+        }
+        return lookup.getCanonicalGeneIds();
+    }
+
+    /**
+     * Same as {@link #findCanonicalEnsemblGeneIds(Collection, Collection)}, but a failed chunk does not fail the
+     * lookup: the answers of the other chunks are returned along with the entrez gene ids of the failed ones.
+     */
+    public CanonicalEnsemblGeneLookup lookupCanonicalEnsemblGeneIds(
+        Collection<ReferenceGenome> referenceGenomes,
+        Collection<Integer> entrezGeneIds
+    ) {
+        Set<Integer> uniqueEntrezGeneIds = new LinkedHashSet<>(entrezGeneIds);
+        Map<ReferenceGenome, Map<Integer, String>> canonicalGeneIds = new EnumMap<>(ReferenceGenome.class);
+        Map<ReferenceGenome, Set<Integer>> failedEntrezGeneIds = new EnumMap<>(ReferenceGenome.class);
+        List<CompletableFuture<ApiException>> lookups = new ArrayList<>();
+        for (ReferenceGenome referenceGenome : referenceGenomes) {
+            Map<Integer, String> geneIds = new HashMap<>();
+            List<Integer> missingEntrezGeneIds = new ArrayList<>();
+            for (Integer entrezGeneId : uniqueEntrezGeneIds) {
+                Optional<String> cachedGeneId = get(referenceGenome, entrezGeneId);
+                if (cachedGeneId.isPresent()) {
+                    geneIds.put(entrezGeneId, cachedGeneId.get());
+                } else {
+                    missingEntrezGeneIds.add(entrezGeneId);
+                }
+            }
+            canonicalGeneIds.put(referenceGenome, geneIds);
+            if (!missingEntrezGeneIds.isEmpty()) {
+                log.info(
+                    "Fetching canonical ensembl genes from GN {}, {} of {} not cached",
+                    referenceGenome,
+                    missingEntrezGeneIds.size(),
+                    uniqueEntrezGeneIds.size()
+                );
+            }
+            for (int i = 0; i < missingEntrezGeneIds.size(); i += CHUNK_SIZE) {
+                List<Integer> chunk = missingEntrezGeneIds.subList(i, Math.min(missingEntrezGeneIds.size(), i + CHUNK_SIZE));
+                lookups.add(
+                    CompletableFuture
+                        .supplyAsync(() -> fetchChunk(referenceGenome, chunk), lookupPool)
+                        .handle((chunkGeneIds, exception) -> {
+                            if (exception == null) {
+                                synchronized (geneIds) {
+                                    geneIds.putAll(chunkGeneIds);
+                                }
+                                return null;
+                            }
+                            Throwable cause = exception instanceof CompletionException ? exception.getCause() : exception;
+                            if (!(cause instanceof ApiException)) {
+                                throw new CompletionException(cause);
+                            }
+                            synchronized (failedEntrezGeneIds) {
+                                failedEntrezGeneIds.computeIfAbsent(referenceGenome, key -> new LinkedHashSet<>()).addAll(chunk);
+                            }
+                            return (ApiException) cause;
+                        })
+                );
+            }
+        }
+
+        ApiException failure = null;
+        for (CompletableFuture<ApiException> lookup : lookups) {
+            ApiException chunkFailure = lookup.join();
+            if (failure == null) {
+                failure = chunkFailure;
+            }
+        }
+
+        canonicalGeneIds.values().forEach(geneIds -> geneIds.values().removeIf(NO_ENSEMBL_GENE::equals));
+        return new CanonicalEnsemblGeneLookup(canonicalGeneIds, failedEntrezGeneIds, failure);
+    }
+
+    private Map<Integer, String> fetchChunk(ReferenceGenome referenceGenome, List<Integer> entrezGeneIds) {
+        List<EnsemblGene> ensemblGenes;
+        try {
+            requests.increment();
+            List<String> ids = entrezGeneIds.stream().map(Object::toString).collect(Collectors.toList());
+            ensemblGenes = genomeNexusService.getEnsemblControllerApi(referenceGenome).fetchCanonicalEnsemblGeneIdByEntrezGeneIdsPOST(ids);
+        } catch (ApiException e) {
+            throw new CompletionException(e);
+        }
+
+        Map<Integer, String> geneIds = new HashMap<>();
+        for (EnsemblGene ensemblGene : ensemblGenes) {
+            if (StringUtils.isNumeric(ensemblGene.getEntrezGeneId()) && StringUtils.isNotEmpty(ensemblGene.getGeneId())) {
+                geneIds.putIfAbsent(Integer.parseInt(ensemblGene.getEntrezGeneId()), ensemblGene.getGeneId());
+            }
+        }
+        for (Integer entrezGeneId : entrezGeneIds) {
+            String geneId = geneIds.getOrDefault(entrezGeneId, NO_ENSEMBL_GENE);
+            if (NO_ENSEMBL_GENE.equals(geneId)) {
+                log.warn("No ensembl gene id available {} {}", referenceGenome, entrezGeneId);
+            }
+            put(NO_ENSEMBL_GENE.equals(geneId) ? missingCache : cache, referenceGenome, entrezGeneId, geneId);
+            geneIds.put(entrezGeneId, geneId);
+        }
+        return geneIds;
+    }
+
+    private Optional<String> get(ReferenceGenome referenceGenome, Integer entrezGeneId) {
+        Optional<String> geneId = get(cache, referenceGenome, entrezGeneId).or(() -> get(missingCache, referenceGenome, entrezGeneId));
+        if (geneId.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return geneId;
+    }
+
+    private Optional<String> get(Optional<Cache> cache, ReferenceGenome referenceGenome, Integer entrezGeneId) {
+        if (cache.isPresent()) {
+            String key = getKey(referenceGenome, entrezGeneId);
+            try {
+                Cache.ValueWrapper valueWrapper = cache.get().get(key);
+                if (valueWrapper != null && valueWrapper.get() instanceof String) {
+                    return Optional.of((String) valueWrapper.get());
+                }
+            } catch (RuntimeException exception) {
+                cacheErrorHandler.handleCacheGetError(exception, cache.get(), key);
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void put(Optional<Cache> cache, ReferenceGenome referenceGenome, Integer entrezGeneId, String ensemblGeneId) {
+        if (cache.isPresent()) {
+            String key = getKey(referenceGenome, entrezGeneId);
+            try {
+                cache.get().put(key, ensemblGeneId);
+            } catch (RuntimeException exception) {
+                cacheErrorHandler.handleCachePutError(exception, cache.get(), key, ensemblGeneId);
+            }
+        }
+    }
+
+    private static String getKey(ReferenceGenome referenceGenome, Integer entrezGeneId) {
+        return referenceGenome.name() + ":" + entrezGeneId;
+    }
+
+    @Override
+    public void destroy() {
+        lookupPool.shutdownNow();
+    }
+
+    /**
+     * The answers of a bulk lookup, and the entrez gene ids of the chunks that failed.
+     */
+    public static class CanonicalEnsemblGeneLookup {
+
+        private final Map<ReferenceGenome, Map<Integer, String>> canonicalGeneIds;
+        private final Map<ReferenceGenome, Set<Integer>> failedEntrezGeneIds;
+        private final ApiException failure;
+
+        CanonicalEnsemblGeneLookup(
+            Map<ReferenceGenome, Map<Integer, String>> canonicalGeneIds,
+            Map<ReferenceGenome, Set<Integer>> failedEntrezGeneIds,
+            ApiException failure
+        ) {
+            this.canonicalGeneIds = canonicalGeneIds;
+            this.failedEntrezGeneIds = failedEntrezGeneIds;
+            this.failure = failure;
+        }
+
+        /**
+         * The canonical Ensembl gene ids by entrez gene id, for each reference genome, of the chunks that succeeded.
+         */
+        public Map<ReferenceGenome, Map<Integer, String>> getCanonicalGeneIds() {
+            return canonicalGeneIds;
+        }
+
+        public Set<Integer> getFailedEntrezGeneIds(ReferenceGenome referenceGenome) {
+            return failedEntrezGeneIds.getOrDefault(referenceGenome, Collections.emptySet());
+        }
+
+        /**
+         * @return the failure of the first chunk that failed, null when all of them succeeded
+         */
+        public ApiException getFailure() {
+            return failure;
+        }
+    }
+}
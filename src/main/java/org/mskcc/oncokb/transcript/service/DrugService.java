@@ -1,10 +1,14 @@
 package org.mskcc.oncokb.transcript.service;
 
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.mskcc.oncokb.transcript.domain.Drug;
+import org.mskcc.oncokb.transcript.domain.DrugSynonym;
 import org.mskcc.oncokb.transcript.repository.DrugRepository;
+import org.mskcc.oncokb.transcript.repository.DrugSynonymRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -21,8 +25,11 @@ public class DrugService {
 
     private final DrugRepository drugRepository;
 
-    public DrugService(DrugRepository drugRepository) {
+    private final DrugSynonymRepository drugSynonymRepository;
+
+    public DrugService(DrugRepository drugRepository, DrugSynonymRepository drugSynonymRepository) {
         this.drugRepository = drugRepository;
+        this.drugSynonymRepository = drugSynonymRepository;
     }
 
     /**
@@ -36,6 +43,21 @@ public class DrugService {
         return drugRepository.save(drug);
     }
 
+    /**
+     * Save new drugs and synonyms, and update the semantic type of drugs, in one transaction. The drugs and synonyms
+     * are inserted in JDBC batches, and the drugs sharing a new semantic type are updated with one statement.
+     *
+     * @param drugs                 the drugs to insert, before their synonyms.
+     * @param drugSynonyms          the synonyms to insert, of the drugs inserted or of drugs already saved.
+     * @param drugIdsBySemanticType the ids of the drugs to update, by their new semantic type.
+     */
+    public void saveAll(List<Drug> drugs, List<DrugSynonym> drugSynonyms, Map<String, ? extends Collection<Long>> drugIdsBySemanticType) {
+        log.debug("Request to save {} Drugs and {} DrugSynonyms", drugs.size(), drugSynonyms.size());
+        drugRepository.saveAll(drugs);
+        drugSynonymRepository.saveAll(drugSynonyms);
+        drugIdsBySemanticType.forEach(drugRepository::updateSemanticTypeByIdIn);
+    }
+
     /**
      * Partially update a drug.
      *
@@ -1,10 +1,11 @@
 package org.mskcc.oncokb.transcript.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
 import org.genome_nexus.ApiException;
 import org.mskcc.oncokb.transcript.domain.EnsemblGene;
 import org.mskcc.oncokb.transcript.domain.Gene;
@@ -26,18 +27,18 @@ public class EnsemblGeneService {
     private final Logger log = LoggerFactory.getLogger(EnsemblGeneService.class);
 
     private final EnsemblGeneRepository ensemblGeneRepository;
-    private final GenomeNexusService genomeNexusService;
+    private final CanonicalEnsemblGeneService canonicalEnsemblGeneService;
     private final TranscriptService transcriptService;
     private final GeneService geneService;
 
     public EnsemblGeneService(
         EnsemblGeneRepository ensemblGeneRepository,
-        GenomeNexusService genomeNexusService,
+        CanonicalEnsemblGeneService canonicalEnsemblGeneService,
         TranscriptService transcriptService,
         GeneService geneService
     ) {
         this.ensemblGeneRepository = ensemblGeneRepository;
-        this.genomeNexusService = genomeNexusService;
+        this.canonicalEnsemblGeneService = canonicalEnsemblGeneService;
         this.transcriptService = transcriptService;
         this.geneService = geneService;
     }
@@ -139,15 +140,11 @@ public class EnsemblGeneService {
     }
 
     public List<EnsemblGene> saveByReferenceGenomeAndEntrezGeneIds(ReferenceGenome rg, List<Integer> entrezGeneIds) throws ApiException {
-        List<org.genome_nexus.client.EnsemblGene> ensemblGeneFromGN = genomeNexusService.findCanonicalEnsemblGeneTranscript(
-            rg,
-            entrezGeneIds
-        );
-        List<String> ensemblGeneIds = ensemblGeneFromGN
-            .stream()
-            .filter(ensemblGene -> StringUtils.isNotEmpty(ensemblGene.getGeneId()))
-            .map(org.genome_nexus.client.EnsemblGene::getGeneId)
-            .collect(Collectors.toList());
+        Map<String, Integer> entrezGeneIdsByEnsemblGeneId = new HashMap<>();
+        canonicalEnsemblGeneService
+            .findCanonicalEnsemblGeneIds(rg, entrezGeneIds)
+            .forEach((entrezGeneId, ensemblGeneId) -> entrezGeneIdsByEnsemblGeneId.putIfAbsent(ensemblGeneId, entrezGeneId));
+        List<String> ensemblGeneIds = new ArrayList<>(entrezGeneIdsByEnsemblGeneId.keySet());
         List<String> existEnsemblGenes = findAllByReferenceGenomeAndEnsemblGeneIdIn(rg, ensemblGeneIds)
             .stream()
             .map(EnsemblGene::getEnsemblGeneId)
@@ -160,41 +157,32 @@ public class EnsemblGeneService {
                 log.info("Processing {} of ensembl genes.", i);
             }
             EnsemblTranscript et = ensemblTranscriptList.get(i);
-            Optional<org.genome_nexus.client.EnsemblGene> ensemblGeneGNOptional = ensemblGeneFromGN
-                .stream()
-                .filter(ensemblGene -> ensemblGene.getGeneId().equals(et.getId()))
-                .findFirst();
-            if (ensemblGeneGNOptional.isPresent()) {
-                String entrezGeneStr = ensemblGeneGNOptional.get().getEntrezGeneId();
-                if (StringUtils.isNumeric(entrezGeneStr)) {
-                    int entrezGeneId = Integer.parseInt(entrezGeneStr);
-                    if (entrezGeneId > 0) {
-                        Optional<Gene> savedGeneOptional = geneService.findGeneByEntrezGeneId(entrezGeneId);
-                        if (savedGeneOptional.isPresent()) {
-                            Optional<EnsemblGene> ensemblGeneOptional = findByEnsemblGeneIdAndReferenceGenome(et.getId(), rg);
-                            if (ensemblGeneOptional.isEmpty()) {
-                                EnsemblGene ensemblGene = new EnsemblGene();
-                                ensemblGene.setCanonical(true);
-                                ensemblGene.setReferenceGenome(rg.name());
-                                ensemblGene.setEnsemblGeneId(et.getId());
-                                ensemblGene.setStrand(et.getStrand());
-                                ensemblGene.setStart(et.getStart());
-                                ensemblGene.setEnd(et.getEnd());
-                                ensemblGene.setChromosome(et.getSeqRegionName());
-                                ensemblGene.setGene(savedGeneOptional.get());
-                                EnsemblGene savedEnsemblGene = save(ensemblGene);
-                                savedEnsemblGenes.add(savedEnsemblGene);
-                            } else {
-                                savedEnsemblGenes.add(ensemblGeneOptional.get());
-                            }
+            Integer entrezGeneId = entrezGeneIdsByEnsemblGeneId.get(et.getId());
+            if (entrezGeneId != null) {
+                if (entrezGeneId > 0) {
+                    Optional<Gene> savedGeneOptional = geneService.findGeneByEntrezGeneId(entrezGeneId);
+                    if (savedGeneOptional.isPresent()) {
+                        Optional<EnsemblGene> ensemblGeneOptional = findByEnsemblGeneIdAndReferenceGenome(et.getId(), rg);
+                        if (ensemblGeneOptional.isEmpty()) {
+                            EnsemblGene ensemblGene = new EnsemblGene();
+                            ensemblGene.setCanonical(true);
+                            ensemblGene.setReferenceGenome(rg.name());
+                            ensemblGene.setEnsemblGeneId(et.getId());
+                            ensemblGene.setStrand(et.getStrand());
+                            ensemblGene.setStart(et.getStart());
+                            ensemblGene.setEnd(et.getEnd());
+                            ensemblGene.setChromosome(et.getSeqRegionName());
+                            ensemblGene.setGene(savedGeneOptional.get());
+                            EnsemblGene savedEnsemblGene = save(ensemblGene);
+                            savedEnsemblGenes.add(savedEnsemblGene);
                         } else {
-                            log.error("The entrez gene is not available in DB {}", entrezGeneId);
+                            savedEnsemblGenes.add(ensemblGeneOptional.get());
                         }
                     } else {
-                        log.error("The entrez gene is not positive integer {}", entrezGeneId);
+                        log.error("The entrez gene is not available in DB {}", entrezGeneId);
                     }
                 } else {
-                    log.error("The entrez gene is not integer {}", entrezGeneStr);
+                    log.error("The entrez gene is not positive integer {}", entrezGeneId);
                 }
             }
         }
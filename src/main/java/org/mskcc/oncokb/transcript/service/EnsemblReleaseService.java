@@ -0,0 +1,184 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.mskcc.oncokb.transcript.domain.EnsemblGene;
+import org.mskcc.oncokb.transcript.domain.Gene;
+import org.mskcc.oncokb.transcript.domain.GenomeFragment;
+import org.mskcc.oncokb.transcript.domain.Sequence;
+import org.mskcc.oncokb.transcript.domain.Transcript;
+import org.mskcc.oncokb.transcript.domain.enumeration.GenomeFragmentType;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.domain.enumeration.SequenceType;
+import org.mskcc.oncokb.transcript.repository.EnsemblGeneRepository;
+import org.mskcc.oncokb.transcript.repository.GenomeFragmentRepository;
+import org.mskcc.oncokb.transcript.repository.SequenceRepository;
+import org.mskcc.oncokb.transcript.repository.TranscriptRepository;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseFeature;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseGene;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseTranscript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Saves the genes read from the Ensembl release files, see {@link EnsemblReleaseReader}.
+ * <p>
+ * The rows are written the same way as {@link MainService#createTranscript}, but a whole chromosome at a time and
+ * without any call to Ensembl or Genome Nexus. The Ensembl genes and transcripts already stored are kept as they are,
+ * so their canonical flags are not lost.
+ */
+@Service
+@Transactional
+public class EnsemblReleaseService {
+
+    private final Logger log = LoggerFactory.getLogger(EnsemblReleaseService.class);
+
+    private final EnsemblGeneRepository ensemblGeneRepository;
+    private final TranscriptRepository transcriptRepository;
+    private final GenomeFragmentRepository genomeFragmentRepository;
+    private final SequenceRepository sequenceRepository;
+
+    public EnsemblReleaseService(
+        EnsemblGeneRepository ensemblGeneRepository,
+        TranscriptRepository transcriptRepository,
+        GenomeFragmentRepository genomeFragmentRepository,
+        SequenceRepository sequenceRepository
+    ) {
+        this.ensemblGeneRepository = ensemblGeneRepository;
+        this.transcriptRepository = transcriptRepository;
+        this.genomeFragmentRepository = genomeFragmentRepository;
+        this.sequenceRepository = sequenceRepository;
+    }
+
+    /**
+     * Save the genes of one chromosome.
+     *
+     * @param referenceGenome  the reference genome of the release
+     * @param releaseGenes     the genes of the chromosome
+     * @param genes            the genes by lower case hugo symbol or alias, the Ensembl genes of other genes are skipped
+     * @param proteinSequences the protein sequences by protein id
+     * @return the number of transcripts saved
+     */
+    public int saveChromosome(
+        ReferenceGenome referenceGenome,
+        List<ReleaseGene> releaseGenes,
+        Map<String, Gene> genes,
+        Map<String, String> proteinSequences
+    ) {
+        List<ReleaseGene> knownReleaseGenes = releaseGenes
+            .stream()
+            .filter(releaseGene -> releaseGene.getName() != null && genes.containsKey(releaseGene.getName().toLowerCase()))
+            .collect(Collectors.toList());
+        if (knownReleaseGenes.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, EnsemblGene> ensemblGenes = ensemblGeneRepository
+            .findAllByReferenceGenomeAndEnsemblGeneIdIn(
+                referenceGenome.name(),
+                knownReleaseGenes.stream().map(ReleaseGene::getId).collect(Collectors.toList())
+            )
+            .stream()
+            .collect(Collectors.toMap(EnsemblGene::getEnsemblGeneId, Function.identity()));
+        Set<String> savedTranscriptIds = ensemblGenes.isEmpty()
+            ? Set.of()
+            : transcriptRepository
+                .findAllByEnsemblGeneIn(ensemblGenes.values())
+                .stream()
+                .map(Transcript::getEnsemblTranscriptId)
+                .collect(Collectors.toSet());
+
+        List<EnsemblGene> newEnsemblGenes = new ArrayList<>();
+        List<Transcript> transcripts = new ArrayList<>();
+        List<GenomeFragment> genomeFragments = new ArrayList<>();
+        List<Sequence> sequences = new ArrayList<>();
+        for (ReleaseGene releaseGene : knownReleaseGenes) {
+            EnsemblGene ensemblGene = ensemblGenes.get(releaseGene.getId());
+            if (ensemblGene == null) {
+                ensemblGene =
+                    new EnsemblGene()
+                        .referenceGenome(referenceGenome.name())
+                        .ensemblGeneId(releaseGene.getId())
+                        .canonical(false)
+                        .chromosome(releaseGene.getChromosome())
+                        .start(releaseGene.getStart())
+                        .end(releaseGene.getEnd())
+                        .strand(releaseGene.getStrand())
+                        .gene(genes.get(releaseGene.getName().toLowerCase()));
+                newEnsemblGenes.add(ensemblGene);
+            }
+            for (ReleaseTranscript releaseTranscript : releaseGene.getTranscripts()) {
+                if (savedTranscriptIds.contains(releaseTranscript.getId())) {
+                    continue;
+                }
+                Transcript transcript = new Transcript()
+                    .ensemblTranscriptId(releaseTranscript.getId())
+                    .ensemblProteinId(releaseTranscript.getProteinId())
+                    .canonical(false)
+                    .ensemblGene(ensemblGene);
+                transcripts.add(transcript);
+
+                genomeFragments.add(
+                    toGenomeFragment(
+                        transcript,
+                        releaseTranscript,
+                        GenomeFragmentType.GENE,
+                        releaseTranscript.getStart(),
+                        releaseTranscript.getEnd()
+                    )
+                );
+                for (ReleaseFeature exon : releaseTranscript.getExons()) {
+                    genomeFragments.add(
+                        toGenomeFragment(transcript, releaseTranscript, GenomeFragmentType.EXON, exon.getStart(), exon.getEnd())
+                    );
+                }
+                for (ReleaseFeature utr : releaseTranscript.getUtrs()) {
+                    genomeFragments.add(toGenomeFragment(transcript, releaseTranscript, utr.getType(), utr.getStart(), utr.getEnd()));
+                }
+
+                String proteinSequence = releaseTranscript.getProteinId() == null
+                    ? null
+                    : proteinSequences.get(releaseTranscript.getProteinId());
+                if (proteinSequence != null) {
+                    sequences.add(new Sequence().sequenceType(SequenceType.PROTEIN).sequence(proteinSequence).transcript(transcript));
+                }
+            }
+        }
+
+        ensemblGeneRepository.saveAll(newEnsemblGenes);
+        transcriptRepository.saveAll(transcripts);
+        genomeFragmentRepository.saveAll(genomeFragments);
+        sequenceRepository.saveAll(sequences);
+        log.debug(
+            "Saved {} Ensembl genes and {} transcripts of {} chromosome {}",
+            newEnsemblGenes.size(),
+            transcripts.size(),
+            referenceGenome,
+            knownReleaseGenes.get(0).getChromosome()
+        );
+        return transcripts.size();
+    }
+
+    private static GenomeFragment toGenomeFragment(
+        Transcript transcript,
+        ReleaseTranscript releaseTranscript,
+        GenomeFragmentType type,
+        int start,
+        int end
+    ) {
+        return new GenomeFragment()
+            .transcript(transcript)
+            .type(type)
+            .chromosome(releaseTranscript.getChromosome())
+            .start(start)
+            .end(end)
+            .strand(releaseTranscript.getStrand());
+    }
+}
@@ -0,0 +1,276 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.mskcc.oncokb.transcript.config.Constants.ENSEMBL_POST_THRESHOLD;
+import static org.mskcc.oncokb.transcript.config.Constants.ENSEMBL_SEQUENCE_BATCH_WINDOW_MILLIS;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.Deadline;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads Ensembl protein sequences one id at a time, but fetches them in batches.
+ * <p>
+ * The ids requested within a short window, from the same or from concurrent requests, are gathered per reference genome
+ * and sent as one POST to the sequence endpoint. A batch is sent as soon as it reaches ENSEMBL_POST_THRESHOLD ids,
+ * without waiting for the end of the window. An id requested again while it is pending shares the same future.
+ * If a batch fails, its ids are fetched one by one, so a single invalid id does not fail the others.
+ * <p>
+ * The sequences are read through the local store of ProteinSequenceService, only the ones never fetched before are
+ * requested from Ensembl. A batch is fetched with the latest request deadline of its loads, and the callers wait at most
+ * until their own.
+ */
+@Service
+public class EnsemblSequenceLoader implements DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(EnsemblSequenceLoader.class);
+
+    private static final int FETCH_THREADS = 4;
+
+    private final EnsemblService ensemblService;
+    private final ProteinSequenceService proteinSequenceService;
+    private final ExecutorService fetchPool;
+    private final Executor delayedFetchExecutor;
+    private final Map<ReferenceGenome, PendingBatch> pendingBatches = new EnumMap<>(ReferenceGenome.class);
+
+    public EnsemblSequenceLoader(EnsemblService ensemblService, ProteinSequenceService proteinSequenceService) {
+        this(ensemblService, proteinSequenceService, ENSEMBL_SEQUENCE_BATCH_WINDOW_MILLIS);
+    }
+
+    EnsemblSequenceLoader(EnsemblService ensemblService, ProteinSequenceService proteinSequenceService, long batchWindowMillis) {
+        this.ensemblService = ensemblService;
+        this.proteinSequenceService = proteinSequenceService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchPool =
+            Executors.newFixedThreadPool(
+                FETCH_THREADS,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ensembl-sequence-loader-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+        this.delayedFetchExecutor = CompletableFuture.delayedExecutor(batchWindowMillis, TimeUnit.MILLISECONDS, fetchPool);
+    }
+
+    /**
+     * Load the protein sequence.
+     *
+     * @param referenceGenome the reference genome
+     * @param proteinId       the Ensembl protein id
+     * @return the future sequence, empty when Ensembl does not have it
+     */
+    public CompletableFuture<Optional<EnsemblSequence>> load(ReferenceGenome referenceGenome, String proteinId) {
+        if (StringUtils.isEmpty(proteinId)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        Optional<String> recentSequence = proteinSequenceService.findRecentSequence(referenceGenome, proteinId);
+        if (recentSequence.isPresent()) {
+            return CompletableFuture.completedFuture(Optional.of(toEnsemblSequence(proteinId, recentSequence.get())));
+        }
+        CompletableFuture<Optional<EnsemblSequence>> future;
+        PendingBatch fullBatch = null;
+        PendingBatch newBatch = null;
+        synchronized (pendingBatches) {
+            PendingBatch batch = pendingBatches.get(referenceGenome);
+            if (batch == null) {
+                batch = newBatch = new PendingBatch(referenceGenome);
+                pendingBatches.put(referenceGenome, batch);
+            }
+            future = batch.loads.get(proteinId);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            batch.loads.put(proteinId, future);
+            batch.extendDeadline(Deadline.current());
+            if (batch.loads.size() >= ENSEMBL_POST_THRESHOLD) {
+                pendingBatches.remove(referenceGenome);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            PendingBatch batch = fullBatch;
+            fetchPool.execute(() -> fetch(batch));
+        } else if (newBatch != null) {
+            PendingBatch batch = newBatch;
+            delayedFetchExecutor.execute(() -> dispatch(batch));
+        }
+        return future;
+    }
+
+    /**
+     * Same as {@link #load}, but waits for the sequence, see {@link #await}.
+     */
+    public Optional<EnsemblSequence> getProteinSequence(ReferenceGenome referenceGenome, String proteinId) {
+        return await(referenceGenome, proteinId, load(referenceGenome, proteinId));
+    }
+
+    /**
+     * Wait for a sequence requested with {@link #load}, at most until the deadline of the current request.
+     *
+     * @return the sequence, empty when Ensembl does not have it, failed or did not answer before the deadline
+     */
+    public Optional<EnsemblSequence> await(
+        ReferenceGenome referenceGenome,
+        String proteinId,
+        CompletableFuture<Optional<EnsemblSequence>> load
+    ) {
+        Optional<Deadline> deadline = Deadline.current();
+        try {
+            if (deadline.isEmpty()) {
+                return load.get();
+            }
+            return load.get(Math.max(0, deadline.get().remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException | CancellationException exception) {
+            log.warn("Failed to load the {} protein sequence {}", referenceGenome, proteinId, exception.getCause());
+            return Optional.empty();
+        } catch (TimeoutException exception) {
+            log.warn("Stopped waiting for the {} protein sequence {}, the request deadline has passed", referenceGenome, proteinId);
+            return Optional.empty();
+        }
+    }
+
+    private void dispatch(PendingBatch batch) {
+        synchronized (pendingBatches) {
+            //The batch was already sent if it filled up before the end of the window
+            if (!pendingBatches.remove(batch.referenceGenome, batch)) {
+                return;
+            }
+        }
+        fetch(batch);
+    }
+
+    private void fetch(PendingBatch batch) {
+        try (Deadline.Scope ignored = batch.deadline == null ? null : batch.deadline.attach()) {
+            fetchSequences(batch);
+        }
+    }
+
+    private void fetchSequences(PendingBatch batch) {
+        Map<String, CompletableFuture<Optional<EnsemblSequence>>> loads = new LinkedHashMap<>(batch.loads);
+        findStoredSequences(batch.referenceGenome, loads.keySet())
+            .forEach((proteinId, sequence) -> loads.remove(proteinId).complete(Optional.of(toEnsemblSequence(proteinId, sequence))));
+        if (loads.isEmpty()) {
+            return;
+        }
+
+        List<String> proteinIds = new ArrayList<>(loads.keySet());
+        Map<String, EnsemblSequence> sequences = new HashMap<>();
+        try {
+            for (EnsemblSequence ensemblSequence : ensemblService.getProteinSequences(batch.referenceGenome, proteinIds)) {
+                sequences.put(ensemblSequence.getId(), ensemblSequence);
+                if (ensemblSequence.getQuery() != null) {
+                    sequences.put(ensemblSequence.getQuery(), ensemblSequence);
+                }
+            }
+        } catch (RuntimeException exception) {
+            log.warn("Failed to fetch {} protein sequences from Ensembl in one batch, fetching them one by one", proteinIds.size(), exception);
+            for (String proteinId : proteinIds) {
+                try {
+                    ensemblService.getProteinSequence(batch.referenceGenome, proteinId).ifPresent(sequence -> sequences.put(proteinId, sequence));
+                } catch (RuntimeException singleException) {
+                    loads.remove(proteinId).completeExceptionally(singleException);
+                }
+            }
+        }
+
+        Map<String, EnsemblSequence> fetchedSequences = new HashMap<>();
+        loads.forEach((proteinId, future) -> {
+            EnsemblSequence ensemblSequence = sequences.get(proteinId);
+            if (ensemblSequence != null && ensemblSequence.getSeq() != null) {
+                fetchedSequences.put(proteinId, ensemblSequence);
+            }
+            future.complete(Optional.ofNullable(ensemblSequence));
+        });
+        saveSequences(batch.referenceGenome, fetchedSequences);
+    }
+
+    //The store only saves round trips to Ensembl, so the sequences are still loaded when it is unavailable
+    private Map<String, String> findStoredSequences(ReferenceGenome referenceGenome, Collection<String> proteinIds) {
+        try {
+            return proteinSequenceService.findSequences(referenceGenome, proteinIds);
+        } catch (RuntimeException exception) {
+            log.warn("Failed to read {} protein sequences from the local store", proteinIds.size(), exception);
+            return new HashMap<>();
+        }
+    }
+
+    private void saveSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        try {
+            proteinSequenceService.saveSequences(referenceGenome, sequences);
+        } catch (RuntimeException exception) {
+            log.warn("Failed to save {} protein sequences to the local store", sequences.size(), exception);
+        }
+    }
+
+    private static EnsemblSequence toEnsemblSequence(String proteinId, String sequence) {
+        EnsemblSequence ensemblSequence = new EnsemblSequence();
+        ensemblSequence.setId(proteinId);
+        ensemblSequence.setQuery(proteinId);
+        ensemblSequence.setMolecule("protein");
+        ensemblSequence.setSeq(sequence);
+        return ensemblSequence;
+    }
+
+    @Override
+    public void destroy() {
+        fetchPool.shutdownNow();
+        synchronized (pendingBatches) {
+            pendingBatches
+                .values()
+                .forEach(batch -> batch.loads.values().forEach(future -> future.cancel(false)));
+            pendingBatches.clear();
+        }
+    }
+
+    private static class PendingBatch {
+
+        private final ReferenceGenome referenceGenome;
+        private final Map<String, CompletableFuture<Optional<EnsemblSequence>>> loads = new LinkedHashMap<>();
+        // the latest deadline of the loads, none when one of them has none, e.g. a load of an import
+        private Deadline deadline;
+        private boolean unbounded;
+
+        private PendingBatch(ReferenceGenome referenceGenome) {
+            this.referenceGenome = referenceGenome;
+        }
+
+        //The batch is fetched as long as one of its loads is waited for
+        private void extendDeadline(Optional<Deadline> loadDeadline) {
+            if (unbounded) {
+                return;
+            }
+            if (loadDeadline.isEmpty()) {
+                unbounded = true;
+                deadline = null;
+            } else if (deadline == null || loadDeadline.get().remainingNanos() > deadline.remainingNanos()) {
+                deadline = loadDeadline.get();
+            }
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package org.mskcc.oncokb.transcript.service;
 
+import static org.mskcc.oncokb.transcript.config.Constants.ENSEMBL_POST_THRESHOLD;
+
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.genome_nexus.ApiClient;
@@ -11,24 +23,67 @@ import org.genome_nexus.client.EnsemblControllerApi;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.model.EnsemblConfig;
 import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.ClientErrors;
+import org.mskcc.oncokb.transcript.service.upstream.Deadline;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamUnavailableException;
 import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
 import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 /**
  * Created by Hongxin Zhang on 7/15/20.
  */
 @Service
-public class EnsemblService {
+public class EnsemblService implements DisposableBean {
 
     public final String ENSEMBL_37_API_URL = "https://grch37.rest.ensembl.org";
     public final String ENSEMBL_38_API_URL = "https://rest.ensembl.org";
 
+    private static final Predicate<Exception> IS_CLIENT_ERROR = ClientErrors.byStatusCode(
+        RestClientResponseException.class,
+        RestClientResponseException::getRawStatusCode
+    );
+
+    private final Logger log = LoggerFactory.getLogger(EnsemblService.class);
+
+    private final String ensembl37ApiUrl;
+    private final String ensembl38ApiUrl;
+    private final RestTemplate restTemplate;
+    // sends the chunks of the bulk lookups, the rate limit itself is enforced by the RestTemplate
+    private final ExecutorService lookupPool;
+    private final UpstreamCallService upstreamCallService;
+
+    public EnsemblService(RestTemplate restTemplate, ApplicationProperties applicationProperties, UpstreamCallService upstreamCallService) {
+        this.restTemplate = restTemplate;
+        this.upstreamCallService = upstreamCallService;
+        EnsemblConfig ensemblConfig = applicationProperties.getEnsembl();
+        this.ensembl37ApiUrl = StringUtils.isEmpty(ensemblConfig.getGrch37Url()) ? ENSEMBL_37_API_URL : ensemblConfig.getGrch37Url();
+        this.ensembl38ApiUrl = StringUtils.isEmpty(ensemblConfig.getGrch38Url()) ? ENSEMBL_38_API_URL : ensemblConfig.getGrch38Url();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.lookupPool =
+            Executors.newFixedThreadPool(
+                ensemblConfig.getParallelism(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ensembl-lookup-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+    }
+
     private String getSequenceGETUrl(ReferenceGenome referenceGenome, String transcript) {
         return getEnsemblAPIUrl(referenceGenome) + "/sequence/id/" + transcript;
     }
@@ -37,22 +92,27 @@ public class EnsemblService {
         return getEnsemblAPIUrl(referenceGenome) + "/sequence/id";
     }
 
+    /**
+     * @return the sequence, empty when Ensembl does not know the id
+     * @throws RestClientException when Ensembl fails or is unavailable
+     */
     public Optional<EnsemblSequence> getProteinSequence(ReferenceGenome referenceGenome, String transcript) {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<String> entity = new HttpEntity<>(httpHeaders);
 
-        RestTemplate restTemplate = new RestTemplate();
         try {
-            ResponseEntity<EnsemblSequence> response = restTemplate.exchange(
-                getSequenceGETUrl(referenceGenome, transcript),
-                HttpMethod.GET,
-                entity,
-                EnsemblSequence.class
+            ResponseEntity<EnsemblSequence> response = callEnsembl(
+                referenceGenome,
+                "sequence",
+                () -> restTemplate.exchange(getSequenceGETUrl(referenceGenome, transcript), HttpMethod.GET, entity, EnsemblSequence.class)
             );
             return Optional.of(response.getBody());
-        } catch (RestClientException exception) {
-            exception.printStackTrace();
+        } catch (RestClientResponseException exception) {
+            if (!ClientErrors.isClientError(exception.getRawStatusCode())) {
+                throw exception;
+            }
+            log.warn("Ensembl {} has no sequence {}: {}", referenceGenome, transcript, exception.getMessage());
             return Optional.empty();
         }
     }
@@ -73,11 +133,10 @@ public class EnsemblService {
         }
         HttpEntity<String> entity = new HttpEntity<>(jsonObject.toString(), httpHeaders);
 
-        RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<EnsemblSequence[]> response = restTemplate.postForEntity(
-            getSequencePOSTUrl(referenceGenome),
-            entity,
-            EnsemblSequence[].class
+        ResponseEntity<EnsemblSequence[]> response = callEnsembl(
+            referenceGenome,
+            "sequences",
+            () -> restTemplate.postForEntity(getSequencePOSTUrl(referenceGenome), entity, EnsemblSequence[].class)
         );
         return Arrays.asList(response.getBody());
     }
@@ -115,10 +174,43 @@ public class EnsemblService {
         List<String> ids,
         boolean includeUtr,
         boolean expand
+    ) {
+        List<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblTranscripts = new ArrayList<>();
+        getIds(referenceGenome, ids, includeUtr, expand, ensemblTranscripts::add);
+        return ensemblTranscripts;
+    }
+
+    /**
+     * Look up the ids, and hand each transcript or gene to the consumer as soon as it is decoded.
+     * <p>
+     * The response is decoded straight from the response stream, one entry at a time, so neither the whole response
+     * nor all the transcripts of a chunk are held in memory. With expand=1 and utr=1, a response can be many MB.
+     *
+     * @param consumer called with every transcript or gene found, in the order of the response. The ids not found are
+     *                 skipped.
+     */
+    public void getIds(
+        ReferenceGenome referenceGenome,
+        List<String> ids,
+        boolean includeUtr,
+        boolean expand,
+        Consumer<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> consumer
     ) {
         if (ids.size() == 0) {
-            return new ArrayList<>();
+            return;
         }
+        HttpEntity<String> entity = getLookupEntity(ids);
+        callEnsembl(
+            referenceGenome,
+            "lookup",
+            () -> {
+                lookUp(referenceGenome, entity, includeUtr, expand, consumer);
+                return null;
+            }
+        );
+    }
+
+    private HttpEntity<String> getLookupEntity(List<String> ids) {
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setContentType(MediaType.APPLICATION_JSON);
         JSONObject jsonObject = new JSONObject();
@@ -129,14 +221,99 @@ public class EnsemblService {
         } catch (JSONException e) {
             e.printStackTrace();
         }
-        HttpEntity<String> entity = new HttpEntity<>(jsonObject.toString(), httpHeaders);
+        return new HttpEntity<>(jsonObject.toString(), httpHeaders);
+    }
 
-        RestTemplate restTemplate = new RestTemplate();
-        String response = restTemplate.postForObject(getLookupPOSTUrl(referenceGenome, includeUtr, expand), entity, String.class);
+    private void lookUp(
+        ReferenceGenome referenceGenome,
+        HttpEntity<String> entity,
+        boolean includeUtr,
+        boolean expand,
+        Consumer<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> consumer
+    ) {
+        restTemplate.execute(
+            getLookupPOSTUrl(referenceGenome, includeUtr, expand),
+            HttpMethod.POST,
+            restTemplate.httpEntityCallback(entity),
+            response -> {
+                readTranscripts(response.getBody(), consumer);
+                return null;
+            }
+        );
+    }
+
+    // The response is an object of {id: transcript or gene}, the id maps to null when it is not found
+    private void readTranscripts(InputStream inputStream, Consumer<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> consumer)
+        throws IOException {
         Gson gson = new Gson();
-        Type type = new TypeToken<Map<String, EnsemblTranscript>>() {}.getType();
-        Map<String, org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> transcriptMap = gson.fromJson(response, type);
-        return transcriptMap.values().stream().filter(val -> val != null).collect(Collectors.toList());
+        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                } else {
+                    consumer.accept(gson.fromJson(reader, EnsemblTranscript.class));
+                }
+            }
+            reader.endObject();
+        }
+    }
+
+    /**
+     * Same as {@link #getIds}, for any number of ids. The ids are sent in chunks of ENSEMBL_POST_THRESHOLD, up to
+     * application.ensembl.parallelism chunks at the same time.
+     *
+     * @return the transcripts of all chunks, in the order of the chunks. It fails if any chunk fails.
+     */
+    public CompletableFuture<List<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript>> getIdsAsync(
+        ReferenceGenome referenceGenome,
+        List<String> ids,
+        boolean includeUtr,
+        boolean expand
+    ) {
+        List<CompletableFuture<List<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript>>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += ENSEMBL_POST_THRESHOLD) {
+            List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + ENSEMBL_POST_THRESHOLD)));
+            chunks.add(
+                CompletableFuture.supplyAsync(Deadline.propagate(() -> getIds(referenceGenome, chunk, includeUtr, expand)), lookupPool)
+            );
+        }
+        return CompletableFuture
+            .allOf(chunks.toArray(new CompletableFuture[0]))
+            .thenApply(ignored -> chunks.stream().flatMap(chunk -> chunk.join().stream()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Same as {@link #getIdsAsync(ReferenceGenome, List, boolean, boolean)}, but each transcript or gene is handed to the
+     * consumer as soon as it is decoded, see {@link #getIds(ReferenceGenome, List, boolean, boolean, Consumer)}.
+     *
+     * @param consumer called from the lookup threads, by several chunks at the same time
+     * @return completes once all chunks are done. It fails if any chunk fails.
+     */
+    public CompletableFuture<Void> getIdsAsync(
+        ReferenceGenome referenceGenome,
+        List<String> ids,
+        boolean includeUtr,
+        boolean expand,
+        Consumer<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> consumer
+    ) {
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += ENSEMBL_POST_THRESHOLD) {
+            List<String> chunk = new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + ENSEMBL_POST_THRESHOLD)));
+            chunks.add(
+                CompletableFuture.supplyAsync(
+                    Deadline.propagate(
+                        () -> {
+                            getIds(referenceGenome, chunk, includeUtr, expand, consumer);
+                            return null;
+                        }
+                    ),
+                    lookupPool
+                )
+            );
+        }
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]));
     }
 
     private String getLookupPOSTUrl(ReferenceGenome referenceGenome, boolean includeUtr, boolean expand) {
@@ -156,14 +333,38 @@ public class EnsemblService {
         return getEnsemblAPIUrl(referenceGenome) + sb;
     }
 
+    /**
+     * Make the call through the {@link UpstreamCallService}. An unavailable Ensembl fails the call with a
+     * ResourceAccessException, as a connection error would.
+     * <p>
+     * The calls are not hedged. Their time includes the waits of the RestTemplate for the rate limit and after a 429,
+     * which a second request would only make longer, and it would spend the rate limit twice.
+     */
+    private <T> T callEnsembl(
+        ReferenceGenome referenceGenome,
+        String operation,
+        UpstreamCallService.UpstreamCall<T, RestClientException> call
+    ) {
+        try {
+            return upstreamCallService.call("ensembl-" + referenceGenome + "-" + operation, false, IS_CLIENT_ERROR, call);
+        } catch (UpstreamUnavailableException exception) {
+            throw new ResourceAccessException(exception.getMessage());
+        }
+    }
+
     private String getEnsemblAPIUrl(ReferenceGenome referenceGenome) {
         switch (referenceGenome) {
             case GRCh37:
-                return ENSEMBL_37_API_URL;
+                return ensembl37ApiUrl;
             case GRCh38:
-                return ENSEMBL_38_API_URL;
+                return ensembl38ApiUrl;
             default:
                 return "";
         }
     }
+
+    @Override
+    public void destroy() {
+        lookupPool.shutdownNow();
+    }
 }
@@ -7,14 +7,19 @@ import java.io.InputStream;
 import java.net.URL;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.mskcc.oncokb.transcript.config.cache.CacheCategory;
 import org.mskcc.oncokb.transcript.config.cache.CacheKeys;
 import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.config.cache.LoggingCacheErrorHandler;
 import org.mskcc.oncokb.transcript.domain.Gene;
 import org.mskcc.oncokb.transcript.domain.GeneAlias;
 import org.mskcc.oncokb.transcript.domain.enumeration.InfoType;
@@ -22,6 +27,7 @@ import org.mskcc.oncokb.transcript.repository.GeneAliasRepository;
 import org.mskcc.oncokb.transcript.repository.GeneRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -44,6 +50,7 @@ public class GeneService {
     private final InfoService infoService;
     private final CacheNameResolver cacheNameResolver;
     private final Optional<CacheManager> optionalCacheManager;
+    private final LoggingCacheErrorHandler cacheErrorHandler = new LoggingCacheErrorHandler();
 
     public GeneService(
         GeneRepository geneRepository,
@@ -146,43 +153,47 @@ public class GeneService {
         }
     }
 
+    /**
+     * Bring the genes and their aliases in line with the cBioPortal gene file, in one transaction. The genes saved are
+     * read in one query and compared to the file, only the differences are written, and only the cache entries of the
+     * genes that changed are evicted. See {@link PortalGeneDiff}.
+     */
     public void updatePortalGenes() throws IOException {
-        List<String[]> portalGenes = getPortalGenes()
-            .stream()
-            .filter(gene -> gene[1].equalsIgnoreCase("BRAF"))
-            .collect(Collectors.toList());
-        for (var i = 0; i < portalGenes.size(); i++) {
-            String[] line = portalGenes.get(i);
-            Integer entrezGeneId = Integer.parseInt(line[0]);
-
-            Gene gene = new Gene();
-            gene.setEntrezGeneId(entrezGeneId);
-            gene.setHugoSymbol(line[1]);
+        Map<Integer, PortalGeneDiff.PortalGene> portalGenes = new LinkedHashMap<>();
+        for (String[] line : getPortalGenes()) {
+            Set<String> aliasNames = new HashSet<>();
             if (line.length > 5) {
-                gene.setGeneAliases(
-                    Arrays
-                        .stream(line[5].split(SYNONYM_SEPARATOR))
-                        .filter(synonym -> StringUtils.isNotEmpty(synonym.trim()))
-                        .map(synonym -> {
-                            GeneAlias geneAlias = new GeneAlias();
-                            geneAlias.setName(synonym.trim());
-                            return geneAlias;
-                        })
-                        .collect(Collectors.toSet())
-                );
-            }
-
-            Optional<Gene> geneOptional = this.findGeneByEntrezGeneId(entrezGeneId);
-            if (geneOptional.isPresent()) {
-                geneRepository.delete(geneOptional.get());
-            }
-            this.geneRepository.save(gene);
-            this.clearGeneCaches();
-            if (i % 1000 == 0) {
-                System.out.println(i);
+                Arrays
+                    .stream(line[5].split(SYNONYM_SEPARATOR))
+                    .map(String::trim)
+                    .filter(StringUtils::isNotEmpty)
+                    .forEach(aliasNames::add);
             }
+            // the last row of an entrez gene id wins
+            PortalGeneDiff.PortalGene portalGene = new PortalGeneDiff.PortalGene(Integer.parseInt(line[0]), line[1], aliasNames);
+            portalGenes.put(portalGene.getEntrezGeneId(), portalGene);
+        }
+        if (portalGenes.isEmpty()) {
+            // an empty file would delete all the genes
+            log.warn("No gene in the cBioPortal gene file, the genes are not updated");
+            return;
         }
 
+        PortalGeneDiff diff = PortalGeneDiff.compute(geneRepository.findAllWithGeneAliasAndEnsemblGenes(), portalGenes);
+        geneAliasRepository.deleteAll(diff.getDeletedGeneAliases());
+        geneRepository.deleteAll(diff.getDeletedGenes());
+        geneRepository.saveAll(diff.getNewGenes());
+        geneAliasRepository.saveAll(diff.getNewGeneAliases());
+        log.info(
+            "Updated the genes from the cBioPortal gene file: {} added, {} updated, {} deleted, {} aliases added, {} aliases deleted",
+            diff.getNewGenes().size(),
+            diff.getUpdatedGeneCount(),
+            diff.getDeletedGenes().size(),
+            diff.getNewGeneAliases().size(),
+            diff.getDeletedGeneAliases().size()
+        );
+        evictGeneCaches(diff);
+
         this.infoService.updateInfo(InfoType.GENE_LAST_UPDATED, null, Instant.now());
     }
 
@@ -205,14 +216,33 @@ public class GeneService {
             .collect(Collectors.toList());
     }
 
-    private void clearGeneCaches() {
-        if (this.optionalCacheManager.isPresent()) {
-            for (String cacheKey : this.optionalCacheManager.get().getCacheNames()) {
-                String cacheKeyPrefix = this.cacheNameResolver.getCacheName(CacheCategory.GENE, "");
-                if (cacheKey.startsWith(cacheKeyPrefix)) {
-                    Objects.requireNonNull(this.optionalCacheManager.get().getCache(cacheKey)).clear();
-                }
+    // the keys are the arguments of the cached GeneRepository and GeneAliasRepository methods, lower cased by this service
+    private void evictGeneCaches(PortalGeneDiff diff) {
+        if (diff.isEmpty() || this.optionalCacheManager.isEmpty()) {
+            return;
+        }
+        evict(CacheKeys.GENES_BY_ENTREZ_GENE_ID, diff.getChangedEntrezGeneIds());
+        evict(CacheKeys.GENES_BY_HUGO_SYMBOL, withLowerCase(diff.getChangedHugoSymbols()));
+        evict(CacheKeys.GENE_ALIASES_BY_NAME, withLowerCase(diff.getChangedAliasNames()));
+    }
+
+    private void evict(String cacheKey, Collection<?> keys) {
+        Cache cache = this.optionalCacheManager.get().getCache(this.cacheNameResolver.getCacheName(CacheCategory.GENE, cacheKey));
+        if (cache == null) {
+            return;
+        }
+        for (Object key : keys) {
+            try {
+                cache.evict(key);
+            } catch (RuntimeException exception) {
+                cacheErrorHandler.handleCacheEvictError(exception, cache, key);
             }
         }
     }
+
+    private static Set<String> withLowerCase(Set<String> values) {
+        Set<String> keys = new HashSet<>(values);
+        values.forEach(value -> keys.add(value.toLowerCase()));
+        return keys;
+    }
 }
@@ -124,4 +124,15 @@ public class GenomeFragmentService {
     public List<GenomeFragment> findAllByTranscriptId(Long transcriptId) {
         return genomeFragmentRepository.findAllByTranscriptId(transcriptId);
     }
+
+    /**
+     * Delete the genomeFragments of the transcripts in one statement, without loading them.
+     * @param transcriptIds Transcript IDs
+     */
+    public void deleteAllByTranscriptIds(Collection<Long> transcriptIds) {
+        log.debug("Request to delete the GenomeFragments of Transcripts : {}", transcriptIds);
+        if (!transcriptIds.isEmpty()) {
+            genomeFragmentRepository.deleteAllByTranscriptIdIn(transcriptIds);
+        }
+    }
 }
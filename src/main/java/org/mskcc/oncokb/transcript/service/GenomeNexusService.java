@@ -4,13 +4,21 @@ import static org.mskcc.oncokb.transcript.config.Constants.ENSEMBL_POST_THRESHOL
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
 import org.genome_nexus.ApiClient;
 import org.genome_nexus.ApiException;
 import org.genome_nexus.client.EnsemblControllerApi;
 import org.genome_nexus.client.EnsemblGene;
+import org.genome_nexus.client.EnsemblTranscript;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.model.GenomeNexusConfig;
 import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
 import org.mskcc.oncokb.transcript.importer.Importer;
+import org.mskcc.oncokb.transcript.service.upstream.ClientErrors;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamUnavailableException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -25,21 +33,34 @@ public class GenomeNexusService {
     public final String GN_38_URL = "https://grch38.genomenexus.org";
     private final int GN_READ_TIMEOUT_OVERRIDE = 30000;
 
+    private static final Predicate<Exception> IS_CLIENT_ERROR = ClientErrors.byStatusCode(ApiException.class, ApiException::getCode);
+
     private final EnsemblControllerApi ensemblControllerApi38;
     private final EnsemblControllerApi ensemblControllerApi37;
 
     private final Logger log = LoggerFactory.getLogger(GenomeNexusService.class);
 
-    public GenomeNexusService() {
-        this.ensemblControllerApi37 = getGNEnsemblControllerApi(GN_37_URL);
-        this.ensemblControllerApi38 = getGNEnsemblControllerApi(GN_38_URL);
+    public GenomeNexusService(ApplicationProperties applicationProperties, UpstreamCallService upstreamCallService) {
+        GenomeNexusConfig genomeNexusConfig = applicationProperties.getGenomeNexus();
+        this.ensemblControllerApi37 =
+            getGNEnsemblControllerApi(
+                StringUtils.isEmpty(genomeNexusConfig.getGrch37Url()) ? GN_37_URL : genomeNexusConfig.getGrch37Url(),
+                "genome-nexus-" + ReferenceGenome.GRCh37,
+                upstreamCallService
+            );
+        this.ensemblControllerApi38 =
+            getGNEnsemblControllerApi(
+                StringUtils.isEmpty(genomeNexusConfig.getGrch38Url()) ? GN_38_URL : genomeNexusConfig.getGrch38Url(),
+                "genome-nexus-" + ReferenceGenome.GRCh38,
+                upstreamCallService
+            );
     }
 
-    private EnsemblControllerApi getGNEnsemblControllerApi(String url) {
+    private EnsemblControllerApi getGNEnsemblControllerApi(String url, String endpoint, UpstreamCallService upstreamCallService) {
         ApiClient client = new ApiClient();
         client.setReadTimeout(GN_READ_TIMEOUT_OVERRIDE);
         client.setBasePath(url);
-        return new EnsemblControllerApi(client);
+        return new ResilientEnsemblControllerApi(client, endpoint, upstreamCallService);
     }
 
     public EnsemblControllerApi getEnsemblControllerApi(ReferenceGenome referenceGenome) {
@@ -72,4 +93,57 @@ public class GenomeNexusService {
         }
         return ensemblGenesList;
     }
+
+    /**
+     * Makes the calls used by this application through the {@link UpstreamCallService}, every lookup may be hedged.
+     * An unavailable Genome Nexus fails the call with an ApiException, as a failed call would.
+     */
+    private static class ResilientEnsemblControllerApi extends EnsemblControllerApi {
+
+        private final String endpoint;
+        private final UpstreamCallService upstreamCallService;
+
+        ResilientEnsemblControllerApi(ApiClient apiClient, String endpoint, UpstreamCallService upstreamCallService) {
+            super(apiClient);
+            this.endpoint = endpoint;
+            this.upstreamCallService = upstreamCallService;
+        }
+
+        @Override
+        public EnsemblGene fetchCanonicalEnsemblGeneIdByEntrezGeneIdGET(String entrezGeneId) throws ApiException {
+            return call("canonical-gene", () -> super.fetchCanonicalEnsemblGeneIdByEntrezGeneIdGET(entrezGeneId));
+        }
+
+        @Override
+        public List<EnsemblGene> fetchCanonicalEnsemblGeneIdByEntrezGeneIdsPOST(List<String> entrezGeneIds) throws ApiException {
+            return call("canonical-gene", () -> super.fetchCanonicalEnsemblGeneIdByEntrezGeneIdsPOST(entrezGeneIds));
+        }
+
+        @Override
+        public EnsemblTranscript fetchEnsemblTranscriptByTranscriptIdGET(String transcriptId) throws ApiException {
+            return call("transcript", () -> super.fetchEnsemblTranscriptByTranscriptIdGET(transcriptId));
+        }
+
+        @Override
+        public List<EnsemblTranscript> fetchEnsemblTranscriptsGET(String geneId, String proteinId, String hugoSymbol) throws ApiException {
+            return call("transcripts", () -> super.fetchEnsemblTranscriptsGET(geneId, proteinId, hugoSymbol));
+        }
+
+        @Override
+        public EnsemblTranscript fetchCanonicalEnsemblTranscriptByHugoSymbolGET(String hugoSymbol, String isoformOverrideSource)
+            throws ApiException {
+            return call(
+                "canonical-transcript",
+                () -> super.fetchCanonicalEnsemblTranscriptByHugoSymbolGET(hugoSymbol, isoformOverrideSource)
+            );
+        }
+
+        private <T> T call(String operation, UpstreamCallService.UpstreamCall<T, ApiException> call) throws ApiException {
+            try {
+                return upstreamCallService.call(endpoint + "-" + operation, true, IS_CLIENT_ERROR, call);
+            } catch (UpstreamUnavailableException exception) {
+                throw new ApiException(exception.getMessage());
+            }
+        }
+    }
 }
@@ -87,6 +87,18 @@ public class InfoService {
         return infoRepository.findById(id);
     }
 
+    /**
+     * Get the info of a type.
+     *
+     * @param infoType the type of the entity.
+     * @return the entity.
+     */
+    @Transactional(readOnly = true)
+    public Optional<Info> findOneByType(InfoType infoType) {
+        log.debug("Request to get Info of type : {}", infoType);
+        return infoRepository.findOneByType(infoType);
+    }
+
     /**
      * Delete the info by id.
      *
@@ -2,17 +2,24 @@ package org.mskcc.oncokb.transcript.service;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.validation.constraints.NotNull;
-import org.apache.commons.lang3.StringUtils;
-import org.genome_nexus.ApiException;
 import org.mskcc.oncokb.transcript.domain.EnsemblGene;
 import org.mskcc.oncokb.transcript.domain.Gene;
 import org.mskcc.oncokb.transcript.domain.GenomeFragment;
 import org.mskcc.oncokb.transcript.domain.enumeration.GenomeFragmentType;
 import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.CanonicalEnsemblGeneService.CanonicalEnsemblGeneLookup;
+import org.mskcc.oncokb.transcript.service.dto.FetchedTranscriptDTO;
 import org.mskcc.oncokb.transcript.service.dto.TranscriptDTO;
 import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript;
 import org.slf4j.Logger;
@@ -30,52 +37,78 @@ public class MainService {
     private final EnsemblService ensemblService;
     private final EnsemblGeneService ensemblGeneService;
     private final GeneService geneService;
-    private final GenomeNexusService genomeNexusService;
+    private final CanonicalEnsemblGeneService canonicalEnsemblGeneService;
 
     public MainService(
         TranscriptService transcriptService,
         EnsemblService ensemblService,
         GeneService geneService,
         EnsemblGeneService ensemblGeneService,
-        GenomeNexusService genomeNexusService
+        CanonicalEnsemblGeneService canonicalEnsemblGeneService
     ) {
         this.transcriptService = transcriptService;
         this.geneService = geneService;
         this.ensemblService = ensemblService;
         this.ensemblGeneService = ensemblGeneService;
-        this.genomeNexusService = genomeNexusService;
+        this.canonicalEnsemblGeneService = canonicalEnsemblGeneService;
     }
 
     public void createCanonicalEnsemblGene(@NotNull ReferenceGenome referenceGenome, @NotNull Integer entrezGeneId) {
-        Optional<EnsemblGene> savedCanonicalEnsemblGeneOptional = ensemblGeneService.findCanonicalEnsemblGene(
-            entrezGeneId,
-            referenceGenome
+        createCanonicalEnsemblGenes(Collections.singletonList(referenceGenome), Collections.singletonList(entrezGeneId));
+    }
+
+    /**
+     * Save the canonical Ensembl gene of the entrez genes that do not have one yet, in all the reference genomes.
+     * The canonical genes are looked up in bulk, and are not asked to Genome Nexus again once cached.
+     * <p>
+     * When a chunk of the lookup fails, the genes of the other chunks are still saved.
+     *
+     * @return the entrez gene ids whose lookup failed, in any of the reference genomes
+     */
+    public Set<Integer> createCanonicalEnsemblGenes(@NotNull List<ReferenceGenome> referenceGenomes, @NotNull List<Integer> entrezGeneIds) {
+        Map<ReferenceGenome, List<Integer>> missingEntrezGeneIdsByRG = new EnumMap<>(ReferenceGenome.class);
+        Set<Integer> missingEntrezGeneIds = new LinkedHashSet<>();
+        for (ReferenceGenome referenceGenome : referenceGenomes) {
+            List<Integer> missing = entrezGeneIds
+                .stream()
+                .filter(entrezGeneId -> ensemblGeneService.findCanonicalEnsemblGene(entrezGeneId, referenceGenome).isEmpty())
+                .collect(Collectors.toList());
+            missingEntrezGeneIdsByRG.put(referenceGenome, missing);
+            missingEntrezGeneIds.addAll(missing);
+        }
+        if (missingEntrezGeneIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        CanonicalEnsemblGeneLookup lookup = canonicalEnsemblGeneService.lookupCanonicalEnsemblGeneIds(
+            referenceGenomes,
+            missingEntrezGeneIds
         );
-        if (savedCanonicalEnsemblGeneOptional.isEmpty()) {
-            List<org.genome_nexus.client.EnsemblGene> ensemblGeneFromGN = new ArrayList<>();
-            try {
-                ensemblGeneFromGN =
-                    genomeNexusService.findCanonicalEnsemblGeneTranscript(referenceGenome, Collections.singletonList(entrezGeneId));
-                if (ensemblGeneFromGN.size() > 0) {
-                    org.genome_nexus.client.EnsemblGene ensemblGene = ensemblGeneFromGN.get(0);
-                    if (StringUtils.isNotEmpty(ensemblGene.getGeneId())) {
-                        Optional<EnsemblGene> ensemblGeneOptional = createEnsemblGene(
-                            referenceGenome,
-                            ensemblGene.getGeneId(),
-                            entrezGeneId,
-                            true
-                        );
-                        if (ensemblGeneOptional.isEmpty()) {
-                            log.error("Failed to save the ensembl {} {} {}", referenceGenome, ensemblGene.getGeneId(), entrezGeneId);
-                        }
-                    } else {
-                        log.warn("No ensembl gene id available {} {} {}", referenceGenome, entrezGeneId, ensemblGene);
-                    }
+        Set<Integer> failedEntrezGeneIds = new LinkedHashSet<>();
+        for (ReferenceGenome referenceGenome : referenceGenomes) {
+            Set<Integer> failed = lookup.getFailedEntrezGeneIds(referenceGenome);
+            if (!failed.isEmpty()) {
+                log.error(
+                    "Failed to look up the canonical ensembl genes of {} entrez genes in {}: {}",
+                    failed.size(),
+                    referenceGenome,
+                    failed,
+                    lookup.getFailure()
+                );
+                failedEntrezGeneIds.addAll(failed);
+            }
+            for (Integer entrezGeneId : missingEntrezGeneIdsByRG.get(referenceGenome)) {
+                String ensemblGeneId = lookup.getCanonicalGeneIds().get(referenceGenome).get(entrezGeneId);
+                if (ensemblGeneId == null) {
+                    continue;
+                }
+                Optional<EnsemblGene> ensemblGeneOptional = createEnsemblGene(referenceGenome, ensemblGeneId, entrezGeneId, true);
+                if (ensemblGeneOptional.isEmpty()) {
+                    log.error("Failed to save the ensembl {} {} {}", referenceGenome, ensemblGeneId, entrezGeneId);
                 }
-            } catch (ApiException e) {
-                e.printStackTrace();
             }
         }
+        return failedEntrezGeneIds;
     }
 
     public Optional<EnsemblGene> createEnsemblGene(
@@ -83,6 +116,23 @@ public class MainService {
         @NotNull String ensemblGeneId,
         @NotNull Integer entrezGeneId,
         @NotNull Boolean isCanonical
+    ) {
+        return createEnsemblGene(
+            referenceGenome,
+            ensemblGeneId,
+            entrezGeneId,
+            isCanonical,
+            () -> ensemblService.getId(referenceGenome, ensemblGeneId, true, true)
+        );
+    }
+
+    // the remote gene is only looked up when the gene is not saved yet
+    private Optional<EnsemblGene> createEnsemblGene(
+        ReferenceGenome referenceGenome,
+        String ensemblGeneId,
+        Integer entrezGeneId,
+        Boolean isCanonical,
+        Supplier<Optional<EnsemblTranscript>> remoteEnsemblGeneSupplier
     ) {
         Optional<EnsemblGene> previousSavedCanonicalEnsemblGeneOptional = ensemblGeneService.findCanonicalEnsemblGene(
             entrezGeneId,
@@ -94,12 +144,7 @@ public class MainService {
             referenceGenome
         );
         if (savedEnsemblGeneOptional.isEmpty()) {
-            Optional<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblGeneOptional = ensemblService.getId(
-                referenceGenome,
-                ensemblGeneId,
-                true,
-                true
-            );
+            Optional<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblGeneOptional = remoteEnsemblGeneSupplier.get();
             Optional<Gene> geneOptional = geneService.findGeneByEntrezGeneId(entrezGeneId);
             if (ensemblGeneOptional.isPresent() && geneOptional.isPresent()) {
                 org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript remoteEnsemblGene = ensemblGeneOptional.get();
@@ -152,20 +197,86 @@ public class MainService {
                 isCanonical
             );
             if (savedEnsemblGeneOptional.isPresent()) {
-                return createTranscript(savedEnsemblGeneOptional.get(), ensemblTranscriptOptional.get(), isCanonical);
+                EnsemblTranscript ensemblTranscript = ensemblTranscriptOptional.get();
+                return createTranscript(
+                    savedEnsemblGeneOptional.get(),
+                    ensemblTranscript.getId(),
+                    isCanonical,
+                    () ->
+                        transcriptService
+                            .getEnsemblTranscript(ensemblTranscript.getId(), referenceGenome)
+                            .map(gnEnsemblTranscript -> toTranscriptDTO(ensemblTranscript, gnEnsemblTranscript, isCanonical))
+                );
             }
         }
         return Optional.empty();
     }
 
+    /**
+     * Save the transcripts fetched ahead, along with their Ensembl genes, the same way as
+     * {@link #createTranscript(ReferenceGenome, String, Integer, Boolean)} but without any remote call and in one
+     * transaction. The new transcripts are saved together, see {@link TranscriptService#saveAll}.
+     *
+     * @return the number of transcripts saved or updated
+     */
+    public int createTranscripts(@NotNull List<FetchedTranscriptDTO> fetchedTranscripts) {
+        int savedCount = 0;
+        Map<ReferenceGenome, Map<String, TranscriptDTO>> newTranscripts = new EnumMap<>(ReferenceGenome.class);
+        Map<ReferenceGenome, Map<String, String>> proteinSequences = new EnumMap<>(ReferenceGenome.class);
+        for (FetchedTranscriptDTO fetchedTranscript : fetchedTranscripts) {
+            Optional<EnsemblGene> savedEnsemblGeneOptional = createEnsemblGene(
+                fetchedTranscript.getReferenceGenome(),
+                fetchedTranscript.getEnsemblGene().getId(),
+                fetchedTranscript.getEntrezGeneId(),
+                fetchedTranscript.getCanonical(),
+                () -> Optional.of(fetchedTranscript.getEnsemblGene())
+            );
+            if (savedEnsemblGeneOptional.isEmpty()) {
+                log.error("Failed to save the ensembl gene of {}", fetchedTranscript);
+                continue;
+            }
+            // a new transcript is gathered, to be saved with the others of its reference genome below
+            Optional<TranscriptDTO> savedTranscriptOptional = createTranscript(
+                savedEnsemblGeneOptional.get(),
+                fetchedTranscript.getEnsemblTranscriptId(),
+                fetchedTranscript.getCanonical(),
+                Optional::empty
+            );
+            if (savedTranscriptOptional.isPresent()) {
+                savedCount++;
+            } else if (fetchedTranscript.getTranscript() != null) {
+                ReferenceGenome rg = fetchedTranscript.getReferenceGenome();
+                TranscriptDTO transcriptDTO = fetchedTranscript.getTranscript();
+                transcriptDTO.setEnsemblGene(savedEnsemblGeneOptional.get());
+                newTranscripts
+                    .computeIfAbsent(rg, key -> new LinkedHashMap<>())
+                    .putIfAbsent(fetchedTranscript.getEnsemblTranscriptId(), transcriptDTO);
+                if (fetchedTranscript.getProteinSequence() != null) {
+                    proteinSequences
+                        .computeIfAbsent(rg, key -> new HashMap<>())
+                        .put(transcriptDTO.getEnsemblProteinId(), fetchedTranscript.getProteinSequence());
+                }
+            } else {
+                log.error("Failed to save {}, it is not in Genome Nexus", fetchedTranscript);
+            }
+        }
+        for (Map.Entry<ReferenceGenome, Map<String, TranscriptDTO>> entry : newTranscripts.entrySet()) {
+            List<TranscriptDTO> transcriptDTOs = new ArrayList<>(entry.getValue().values());
+            savedCount += transcriptService.saveAll(transcriptDTOs, proteinSequences.getOrDefault(entry.getKey(), new HashMap<>())).size();
+        }
+        return savedCount;
+    }
+
+    // the new transcript is only built when the transcript is not saved yet
     private Optional<TranscriptDTO> createTranscript(
-        @NotNull EnsemblGene ensemblGene,
-        @NotNull EnsemblTranscript ensemblTranscript,
-        @NotNull Boolean isCanonical
+        EnsemblGene ensemblGene,
+        String ensemblTranscriptId,
+        Boolean isCanonical,
+        Supplier<Optional<TranscriptDTO>> newTranscriptSupplier
     ) {
         if (isCanonical) {
             Optional<TranscriptDTO> canonicalTranscript = transcriptService.findByEnsemblGeneAndCanonicalIsTrue(ensemblGene);
-            if (canonicalTranscript.isPresent() && !canonicalTranscript.get().getEnsemblTranscriptId().equals(ensemblTranscript.getId())) {
+            if (canonicalTranscript.isPresent() && !canonicalTranscript.get().getEnsemblTranscriptId().equals(ensemblTranscriptId)) {
                 canonicalTranscript.get().setCanonical(false);
                 transcriptService.partialUpdate(canonicalTranscript.get());
             }
@@ -173,7 +284,7 @@ public class MainService {
 
         Optional<TranscriptDTO> transcriptDTOOptional = transcriptService.findByEnsemblGeneAndEnsemblTranscriptId(
             ensemblGene,
-            ensemblTranscript.getId()
+            ensemblTranscriptId
         );
         if (transcriptDTOOptional.isPresent()) {
             if (transcriptDTOOptional.get().getCanonical() != isCanonical) {
@@ -183,20 +294,10 @@ public class MainService {
             return transcriptDTOOptional;
         }
 
-        Optional<org.genome_nexus.client.EnsemblTranscript> gnEnsemblTranscriptOptional = transcriptService.getEnsemblTranscript(
-            ensemblTranscript.getId(),
-            ReferenceGenome.valueOf(ensemblGene.getReferenceGenome())
-        );
-        if (gnEnsemblTranscriptOptional.isPresent()) {
-            org.genome_nexus.client.EnsemblTranscript gnEnsemblTranscript = gnEnsemblTranscriptOptional.get();
-
-            TranscriptDTO transcriptDTO = new TranscriptDTO();
+        Optional<TranscriptDTO> newTranscriptOptional = newTranscriptSupplier.get();
+        if (newTranscriptOptional.isPresent()) {
+            TranscriptDTO transcriptDTO = newTranscriptOptional.get();
             transcriptDTO.setEnsemblGene(ensemblGene);
-            transcriptDTO.setEnsemblTranscriptId(gnEnsemblTranscript.getTranscriptId());
-            transcriptDTO.setEnsemblProteinId(gnEnsemblTranscript.getProteinId());
-            transcriptDTO.setReferenceSequenceId(gnEnsemblTranscript.getRefseqMrnaId());
-            transcriptDTO.setCanonical(isCanonical);
-            updateGenomeFragments(transcriptDTO, ensemblTranscript);
 
             Optional<TranscriptDTO> savedTranscriptDTO = Optional.of(transcriptService.save(transcriptDTO));
             return savedTranscriptDTO;
@@ -205,7 +306,25 @@ public class MainService {
         }
     }
 
-    private void updateGenomeFragments(
+    /**
+     * Build a transcript to save, without its Ensembl gene, from the Ensembl lookup with expand=1 and utr=1 and the
+     * Genome Nexus transcript.
+     */
+    public static TranscriptDTO toTranscriptDTO(
+        @NotNull EnsemblTranscript ensemblTranscript,
+        @NotNull org.genome_nexus.client.EnsemblTranscript gnEnsemblTranscript,
+        @NotNull Boolean isCanonical
+    ) {
+        TranscriptDTO transcriptDTO = new TranscriptDTO();
+        transcriptDTO.setEnsemblTranscriptId(gnEnsemblTranscript.getTranscriptId());
+        transcriptDTO.setEnsemblProteinId(gnEnsemblTranscript.getProteinId());
+        transcriptDTO.setReferenceSequenceId(gnEnsemblTranscript.getRefseqMrnaId());
+        transcriptDTO.setCanonical(isCanonical);
+        updateGenomeFragments(transcriptDTO, ensemblTranscript);
+        return transcriptDTO;
+    }
+
+    private static void updateGenomeFragments(
         TranscriptDTO transcriptDTO,
         org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript ensemblTranscript
     ) {
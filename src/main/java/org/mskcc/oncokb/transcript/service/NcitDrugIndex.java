@@ -0,0 +1,199 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.StringUtils;
+import org.mskcc.oncokb.transcript.domain.Drug;
+import org.mskcc.oncokb.transcript.domain.DrugSynonym;
+
+/**
+ * The drugs saved, by NCIt code, and the changes the lines of the NCIt thesaurus read so far make to them, see
+ * {@link NcitService#saveNcitDataToDB}.
+ * <p>
+ * A drug not saved yet is added with its synonyms. A drug saved gets the synonyms it does not have, by name or
+ * synonym, and its semantic type is updated when it changed. The changes are pending until {@link #saved()}.
+ */
+class NcitDrugIndex {
+
+    private static final String SYNONYMS_SEPARATOR_REGEX = "\\|";
+
+    private final Map<String, IndexedDrug> drugsByCode = new HashMap<>();
+
+    private final List<IndexedDrug> newIndexedDrugs = new ArrayList<>();
+    private final List<Drug> newDrugs = new ArrayList<>();
+    private final List<DrugSynonym> newDrugSynonyms = new ArrayList<>();
+    // the ids of the drugs saved whose semantic type changed, by their new semantic type
+    private final Map<String, Set<Long>> drugIdsBySemanticType = new HashMap<>();
+    private int pendingCount;
+
+    private int newDrugCount;
+    private int newDrugSynonymCount;
+    private int updatedDrugCount;
+
+    /**
+     * @param rows the id, code, name, semantic type and the name of one synonym of the drugs saved, see
+     *             {@link org.mskcc.oncokb.transcript.repository.DrugRepository#findAllCodesAndSynonymNames()}
+     */
+    NcitDrugIndex(List<Object[]> rows) {
+        for (Object[] row : rows) {
+            IndexedDrug drug = drugsByCode.computeIfAbsent(
+                (String) row[1],
+                code -> {
+                    IndexedDrug indexedDrug = new IndexedDrug();
+                    indexedDrug.id = (Long) row[0];
+                    indexedDrug.semanticType = (String) row[3];
+                    indexedDrug.names.add((String) row[2]);
+                    return indexedDrug;
+                }
+            );
+            if (row[4] != null) {
+                drug.names.add((String) row[4]);
+            }
+        }
+    }
+
+    void addLine(String line) {
+        if (line.startsWith("#")) return;
+
+        // Skip the title
+        if (line.startsWith("Code")) return;
+
+        String[] parts = line.split("\t");
+        if (parts.length < 6) return;
+
+        String code = parts[0];
+        List<String> synonyms = Arrays
+            .stream((parts[3] == null ? "" : parts[3]).split(SYNONYMS_SEPARATOR_REGEX))
+            .map(String::trim)
+            .distinct()
+            .collect(Collectors.toList());
+        String name = parts[5];
+        if (StringUtils.isEmpty(name) && synonyms.size() > 0) {
+            name = synonyms.get(0);
+        }
+        String semanticType = parts.length >= 8 ? parts[7] : null;
+
+        IndexedDrug indexedDrug = drugsByCode.get(code);
+        if (indexedDrug == null) {
+            addDrug(code, name, semanticType, synonyms);
+        } else {
+            updateDrug(indexedDrug, semanticType, synonyms);
+        }
+    }
+
+    private void addDrug(String code, String name, String semanticType, List<String> synonyms) {
+        Drug drug = new Drug();
+        drug.setCode(code);
+        drug.setName(name);
+        drug.setSemanticType(semanticType);
+        newDrugs.add(drug);
+        pendingCount++;
+        newDrugCount++;
+
+        IndexedDrug indexedDrug = new IndexedDrug();
+        indexedDrug.newDrug = drug;
+        indexedDrug.semanticType = semanticType;
+        indexedDrug.names.add(name);
+        drugsByCode.put(code, indexedDrug);
+        newIndexedDrugs.add(indexedDrug);
+        addSynonyms(indexedDrug, synonyms);
+    }
+
+    private void updateDrug(IndexedDrug indexedDrug, String semanticType, List<String> synonyms) {
+        addSynonyms(indexedDrug, synonyms);
+        if (!Objects.equals(indexedDrug.semanticType, semanticType)) {
+            indexedDrug.semanticType = semanticType;
+            if (indexedDrug.newDrug != null) {
+                indexedDrug.newDrug.setSemanticType(semanticType);
+            } else {
+                drugIdsBySemanticType.values().forEach(ids -> ids.remove(indexedDrug.id));
+                drugIdsBySemanticType.computeIfAbsent(semanticType, key -> new HashSet<>()).add(indexedDrug.id);
+                pendingCount++;
+                updatedDrugCount++;
+            }
+        }
+    }
+
+    private void addSynonyms(IndexedDrug indexedDrug, List<String> synonyms) {
+        for (String synonym : synonyms) {
+            if (indexedDrug.names.add(synonym)) {
+                DrugSynonym drugSynonym = new DrugSynonym();
+                drugSynonym.setName(synonym);
+                if (indexedDrug.newDrug != null) {
+                    drugSynonym.setDrug(indexedDrug.newDrug);
+                    indexedDrug.newDrug.getSynonyms().add(drugSynonym);
+                } else {
+                    // only the id is needed to reference the drug saved
+                    drugSynonym.setDrug(new Drug().id(indexedDrug.id));
+                }
+                newDrugSynonyms.add(drugSynonym);
+                pendingCount++;
+                newDrugSynonymCount++;
+            }
+        }
+    }
+
+    /**
+     * Clears the pending changes once saved. The drugs added have their id by then.
+     */
+    void saved() {
+        for (IndexedDrug indexedDrug : newIndexedDrugs) {
+            indexedDrug.id = indexedDrug.newDrug.getId();
+            indexedDrug.newDrug = null;
+        }
+        newIndexedDrugs.clear();
+        newDrugs.clear();
+        newDrugSynonyms.clear();
+        drugIdsBySemanticType.clear();
+        pendingCount = 0;
+    }
+
+    List<Drug> getNewDrugs() {
+        return newDrugs;
+    }
+
+    List<DrugSynonym> getNewDrugSynonyms() {
+        return newDrugSynonyms;
+    }
+
+    Map<String, Set<Long>> getDrugIdsBySemanticType() {
+        return drugIdsBySemanticType;
+    }
+
+    /**
+     * @return the number of drugs and synonyms to insert and drugs to update
+     */
+    int getPendingCount() {
+        return pendingCount;
+    }
+
+    int getNewDrugCount() {
+        return newDrugCount;
+    }
+
+    int getNewDrugSynonymCount() {
+        return newDrugSynonymCount;
+    }
+
+    int getUpdatedDrugCount() {
+        return updatedDrugCount;
+    }
+
+    private static class IndexedDrug {
+
+        // null until the drug added is saved
+        private Long id;
+        // the drug added, until it is saved
+        private Drug newDrug;
+        private String semanticType;
+        // the name and synonyms
+        private final Set<String> names = new HashSet<>();
+    }
+}
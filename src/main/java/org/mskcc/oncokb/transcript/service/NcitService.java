@@ -1,24 +1,22 @@
 package org.mskcc.oncokb.transcript.service;
 
 import static org.mskcc.oncokb.transcript.util.FileUtils.readTrimmedLinesStream;
-import static org.mskcc.oncokb.transcript.util.GzipUtils.deCompress;
+import static org.mskcc.oncokb.transcript.util.GzipUtils.openZipContent;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
-import org.mskcc.oncokb.transcript.domain.Drug;
-import org.mskcc.oncokb.transcript.domain.DrugSynonym;
+import java.util.stream.Stream;
 import org.mskcc.oncokb.transcript.domain.enumeration.InfoType;
 import org.mskcc.oncokb.transcript.repository.DrugRepository;
-import org.mskcc.oncokb.transcript.repository.DrugSynonymRepository;
-import org.mskcc.oncokb.transcript.util.COMPRESSED_FILE_FORMAT;
 import org.oncokb.ApiException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -28,17 +26,20 @@ import org.springframework.stereotype.Service;
 @Service
 public class NcitService {
 
+    private final Logger log = LoggerFactory.getLogger(NcitService.class);
+
     private final String NCIT_DOWNLOAD_URL = "https://evs.nci.nih.gov/ftp1/NCI_Thesaurus/";
     private final String NCIT_README = NCIT_DOWNLOAD_URL + "ReadMe.txt";
     private final String NCIT_DATA_FILE = NCIT_DOWNLOAD_URL + "Thesaurus.FLAT.zip";
 
-    private final String SYNONYMS_SEPARATOR_REGEX = "\\|";
+    // the drugs and synonyms to insert and drugs to update saved at once
+    private static final int BATCH_SIZE = 1000;
 
     @Autowired
     private DrugRepository drugRepository;
 
     @Autowired
-    private DrugSynonymRepository drugSynonymRepository;
+    private DrugService drugService;
 
     @Autowired
     private InfoService infoService;
@@ -67,79 +68,38 @@ public class NcitService {
 
     private void saveNcitData() throws IOException {
         URL url = new URL(NCIT_DATA_FILE);
-        InputStream is = url.openStream();
-        ByteArrayOutputStream os = new ByteArrayOutputStream();
-        deCompress(is, os, COMPRESSED_FILE_FORMAT.ZIP);
-        saveNcitDataToDB(Arrays.asList(os.toString(Charset.forName("UTF-8")).split("\n")));
+        try (
+            BufferedReader reader = new BufferedReader(new InputStreamReader(openZipContent(url.openStream()), StandardCharsets.UTF_8))
+        ) {
+            saveNcitDataToDB(reader.lines());
+        }
     }
 
-    public void saveNcitDataToDB(List<String> lines) {
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-            if (line.startsWith("#")) continue;
-
-            // Skip the title
-            if (line.startsWith("Code")) continue;
-
-            String[] parts = line.split("\t");
-            if (parts.length >= 6) {
-                String code = parts[0];
-                Optional<Drug> matchedDrugOptional = drugRepository.findOneByCode(code);
-
-                List<String> synonyms = Arrays
-                    .asList((parts[3] == null ? "" : parts[3]).split(SYNONYMS_SEPARATOR_REGEX))
-                    .stream()
-                    .map(synonym -> synonym.trim())
-                    .distinct()
-                    .collect(Collectors.toList());
-                String name = parts[5];
-                if (StringUtils.isEmpty(name) && synonyms.size() > 0) {
-                    name = synonyms.get(0);
-                }
-                String semanticType = parts.length >= 8 ? parts[7] : null;
-
-                if (matchedDrugOptional.isPresent()) {
-                    Drug drug = matchedDrugOptional.get();
-
-                    Set<String> existSynonyms = drug.getSynonyms().stream().map(synonym -> synonym.getName()).collect(Collectors.toSet());
-                    existSynonyms.add(drug.getName());
-                    synonyms
-                        .stream()
-                        .forEach(synonym -> {
-                            if (!existSynonyms.contains(synonym)) {
-                                DrugSynonym drugSynonym = new DrugSynonym();
-                                drugSynonym.setDrug(drug);
-                                drugSynonym.setName(synonym);
-                                drugSynonymRepository.save(drugSynonym);
-                            }
-                        });
-
-                    if (!Objects.equals(drug.getSemanticType(), semanticType)) {
-                        drug.setSemanticType(semanticType);
-                        drugRepository.save(drug);
-                    }
-                } else {
-                    Drug drug = new Drug();
-                    drug.setCode(code);
-                    drug.setName(name);
-                    drug.setSemanticType(semanticType);
-                    if (synonyms != null) {
-                        synonyms.remove(name);
-                        Set<DrugSynonym> synonymSet = synonyms
-                            .stream()
-                            .map(synonym -> {
-                                DrugSynonym drugSynonym = new DrugSynonym();
-                                drugSynonym.setName(synonym.trim());
-                                drugSynonym.setDrug(drug);
-                                return drugSynonym;
-                            })
-                            .collect(Collectors.toSet());
-                        drug.setSynonyms(synonymSet);
-                    }
-                    drugRepository.save(drug);
-                    drugSynonymRepository.saveAll(drug.getSynonyms());
-                }
+    /**
+     * Save the drugs of the NCIt thesaurus lines as they are read. The drugs saved are indexed by code with one query,
+     * and the new or changed drugs and synonyms are saved every {@link #BATCH_SIZE} changes, see {@link NcitDrugIndex}.
+     */
+    public void saveNcitDataToDB(Stream<String> lines) {
+        NcitDrugIndex drugIndex = new NcitDrugIndex(drugRepository.findAllCodesAndSynonymNames());
+        lines.forEach(line -> {
+            drugIndex.addLine(line);
+            if (drugIndex.getPendingCount() >= BATCH_SIZE) {
+                saveAll(drugIndex);
             }
+        });
+        saveAll(drugIndex);
+        log.info(
+            "Saved the NCIt thesaurus: {} new drugs, {} new drug synonyms, {} drugs updated",
+            drugIndex.getNewDrugCount(),
+            drugIndex.getNewDrugSynonymCount(),
+            drugIndex.getUpdatedDrugCount()
+        );
+    }
+
+    private void saveAll(NcitDrugIndex drugIndex) {
+        if (drugIndex.getPendingCount() > 0) {
+            drugService.saveAll(drugIndex.getNewDrugs(), drugIndex.getNewDrugSynonyms(), drugIndex.getDrugIdsBySemanticType());
+            drugIndex.saved();
         }
     }
 }
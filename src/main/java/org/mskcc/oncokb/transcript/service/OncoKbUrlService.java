@@ -3,6 +3,9 @@ package org.mskcc.oncokb.transcript.service;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.service.upstream.ClientErrors;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamUnavailableException;
 import org.oncokb.ApiClient;
 import org.oncokb.ApiException;
 import org.oncokb.client.Gene;
@@ -23,8 +26,11 @@ public class OncoKbUrlService {
 
     private ApplicationProperties applicationProperties;
 
-    public OncoKbUrlService(ApplicationProperties applicationProperties) {
+    private final UpstreamCallService upstreamCallService;
+
+    public OncoKbUrlService(ApplicationProperties applicationProperties, UpstreamCallService upstreamCallService) {
         this.applicationProperties = applicationProperties;
+        this.upstreamCallService = upstreamCallService;
 
         ApiClient client = new ApiClient();
         client.setReadTimeout(ONCOKB_READ_TIMEOUT_OVERRIDE);
@@ -43,6 +49,16 @@ public class OncoKbUrlService {
 
     public List<Gene> getGenes() throws ApiException {
         GenesApi genesApi = new GenesApi(this.apiClient);
-        return genesApi.genesGetUsingGET(null);
+        try {
+            // the full gene list is a large download, it is not worth sending twice
+            return upstreamCallService.call(
+                "oncokb-genes",
+                false,
+                ClientErrors.byStatusCode(ApiException.class, ApiException::getCode),
+                () -> genesApi.genesGetUsingGET(null)
+            );
+        } catch (UpstreamUnavailableException exception) {
+            throw new ApiException(exception.getMessage());
+        }
     }
 }
@@ -0,0 +1,156 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.mskcc.oncokb.transcript.domain.Gene;
+import org.mskcc.oncokb.transcript.domain.GeneAlias;
+
+/**
+ * The changes that bring the genes and their aliases in line with the cBioPortal gene file, see
+ * {@link GeneService#updatePortalGenes}.
+ * <p>
+ * The genes already saved are updated in place: their hugo symbol is set and their aliases are added or deleted one by
+ * one, so their ids and Ensembl genes are kept. A gene no longer in the file is deleted, unless it has Ensembl genes.
+ */
+class PortalGeneDiff {
+
+    private final List<Gene> newGenes = new ArrayList<>();
+    private final List<Gene> deletedGenes = new ArrayList<>();
+    private final List<GeneAlias> newGeneAliases = new ArrayList<>();
+    private final List<GeneAlias> deletedGeneAliases = new ArrayList<>();
+    private int updatedGeneCount;
+
+    // the keys of the gene caches to evict
+    private final Set<Integer> changedEntrezGeneIds = new HashSet<>();
+    private final Set<String> changedHugoSymbols = new HashSet<>();
+    private final Set<String> changedAliasNames = new HashSet<>();
+
+    /**
+     * @param currentGenes the genes saved, with their aliases and Ensembl genes. The ones kept are changed in place.
+     * @param portalGenes  the genes of the file, by entrez gene id
+     */
+    static PortalGeneDiff compute(Collection<Gene> currentGenes, Map<Integer, PortalGene> portalGenes) {
+        PortalGeneDiff diff = new PortalGeneDiff();
+        Set<Integer> currentEntrezGeneIds = new HashSet<>();
+        for (Gene gene : currentGenes) {
+            currentEntrezGeneIds.add(gene.getEntrezGeneId());
+            PortalGene portalGene = portalGenes.get(gene.getEntrezGeneId());
+            if (portalGene == null) {
+                if (gene.getEnsemblGenes().isEmpty()) {
+                    diff.deletedGenes.add(gene);
+                    diff.addChangedKeys(gene);
+                }
+            } else {
+                diff.update(gene, portalGene);
+            }
+        }
+        for (PortalGene portalGene : portalGenes.values()) {
+            if (!currentEntrezGeneIds.contains(portalGene.entrezGeneId)) {
+                Gene gene = new Gene();
+                gene.setEntrezGeneId(portalGene.entrezGeneId);
+                gene.setHugoSymbol(portalGene.hugoSymbol);
+                for (String aliasName : portalGene.aliasNames) {
+                    gene.addGeneAlias(new GeneAlias().name(aliasName));
+                }
+                diff.newGenes.add(gene);
+                diff.addChangedKeys(gene);
+            }
+        }
+        return diff;
+    }
+
+    private void update(Gene gene, PortalGene portalGene) {
+        Set<String> currentAliasNames = gene.getGeneAliases().stream().map(GeneAlias::getName).collect(Collectors.toSet());
+        if (Objects.equals(gene.getHugoSymbol(), portalGene.hugoSymbol) && currentAliasNames.equals(portalGene.aliasNames)) {
+            return;
+        }
+        // the aliases cached before the change refer to the gene as it was
+        addChangedKeys(gene);
+        gene.setHugoSymbol(portalGene.hugoSymbol);
+        for (GeneAlias geneAlias : new ArrayList<>(gene.getGeneAliases())) {
+            if (!portalGene.aliasNames.contains(geneAlias.getName())) {
+                gene.removeGeneAlias(geneAlias);
+                deletedGeneAliases.add(geneAlias);
+            }
+        }
+        for (String aliasName : portalGene.aliasNames) {
+            if (!currentAliasNames.contains(aliasName)) {
+                GeneAlias geneAlias = new GeneAlias().name(aliasName);
+                gene.addGeneAlias(geneAlias);
+                newGeneAliases.add(geneAlias);
+            }
+        }
+        addChangedKeys(gene);
+        updatedGeneCount++;
+    }
+
+    private void addChangedKeys(Gene gene) {
+        changedEntrezGeneIds.add(gene.getEntrezGeneId());
+        if (gene.getHugoSymbol() != null) {
+            changedHugoSymbols.add(gene.getHugoSymbol());
+        }
+        gene.getGeneAliases().stream().map(GeneAlias::getName).filter(Objects::nonNull).forEach(changedAliasNames::add);
+    }
+
+    boolean isEmpty() {
+        return changedEntrezGeneIds.isEmpty();
+    }
+
+    List<Gene> getNewGenes() {
+        return newGenes;
+    }
+
+    List<Gene> getDeletedGenes() {
+        return deletedGenes;
+    }
+
+    List<GeneAlias> getNewGeneAliases() {
+        return newGeneAliases;
+    }
+
+    List<GeneAlias> getDeletedGeneAliases() {
+        return deletedGeneAliases;
+    }
+
+    int getUpdatedGeneCount() {
+        return updatedGeneCount;
+    }
+
+    Set<Integer> getChangedEntrezGeneIds() {
+        return changedEntrezGeneIds;
+    }
+
+    Set<String> getChangedHugoSymbols() {
+        return changedHugoSymbols;
+    }
+
+    Set<String> getChangedAliasNames() {
+        return changedAliasNames;
+    }
+
+    /**
+     * A row of the cBioPortal gene file.
+     */
+    static class PortalGene {
+
+        private final Integer entrezGeneId;
+        private final String hugoSymbol;
+        private final Set<String> aliasNames;
+
+        PortalGene(Integer entrezGeneId, String hugoSymbol, Set<String> aliasNames) {
+            this.entrezGeneId = entrezGeneId;
+            this.hugoSymbol = hugoSymbol;
+            this.aliasNames = aliasNames;
+        }
+
+        Integer getEntrezGeneId() {
+            return entrezGeneId;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.mskcc.oncokb.transcript.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import org.mskcc.oncokb.transcript.domain.ProteinSequence;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.repository.ProteinSequenceRepository;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Local store of the Ensembl protein sequences, of every isoform and not only the canonical ones.
+ * <p>
+ * A sequence only changes with the version of its protein id, so once fetched it is kept in the protein_sequence table
+ * with its version, and survives restarts. The sequences are looked up by protein id without the version, and a
+ * sequence stored again with another version, e.g. by the import of a newer release, replaces the stored one. The most
+ * recently used sequences are also kept in memory.
+ */
+@Service
+public class ProteinSequenceService {
+
+    private final Logger log = LoggerFactory.getLogger(ProteinSequenceService.class);
+
+    // Number of sequences kept in memory, about 10MB for an average protein length
+    private static final int PROTEIN_SEQUENCE_CACHE_SIZE = 20000;
+
+    private final ProteinSequenceRepository proteinSequenceRepository;
+
+    private final Map<String, String> recentSequences = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > PROTEIN_SEQUENCE_CACHE_SIZE;
+        }
+    };
+
+    public ProteinSequenceService(ProteinSequenceRepository proteinSequenceRepository) {
+        this.proteinSequenceRepository = proteinSequenceRepository;
+    }
+
+    /**
+     * Find the sequence among the ones kept in memory, without querying the database.
+     */
+    public Optional<String> findRecentSequence(ReferenceGenome referenceGenome, String ensemblProteinId) {
+        synchronized (recentSequences) {
+            return Optional.ofNullable(recentSequences.get(getKey(referenceGenome, ensemblProteinId)));
+        }
+    }
+
+    /**
+     * Find the stored sequences.
+     *
+     * @return the sequences by protein id, the ones never stored are missing
+     */
+    public Map<String, String> findSequences(ReferenceGenome referenceGenome, Collection<String> ensemblProteinIds) {
+        Map<String, String> sequences = new HashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        synchronized (recentSequences) {
+            for (String ensemblProteinId : ensemblProteinIds) {
+                String sequence = recentSequences.get(getKey(referenceGenome, ensemblProteinId));
+                if (sequence == null) {
+                    missingIds.add(ensemblProteinId);
+                } else {
+                    sequences.put(ensemblProteinId, sequence);
+                }
+            }
+        }
+        if (missingIds.isEmpty()) {
+            return sequences;
+        }
+
+        List<ProteinSequence> storedSequences = proteinSequenceRepository.findAllByReferenceGenomeAndEnsemblProteinIdIn(
+            referenceGenome.name(),
+            missingIds
+        );
+        synchronized (recentSequences) {
+            for (ProteinSequence proteinSequence : storedSequences) {
+                sequences.put(proteinSequence.getEnsemblProteinId(), proteinSequence.getSequence());
+                recentSequences.put(getKey(referenceGenome, proteinSequence.getEnsemblProteinId()), proteinSequence.getSequence());
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * Same as {@link #findSequences}, for the bulk imports: the sequences are read from the database only, without
+     * being kept in memory.
+     */
+    public Map<String, String> findStoredSequences(ReferenceGenome referenceGenome, Collection<String> ensemblProteinIds) {
+        Map<String, String> sequences = new HashMap<>();
+        proteinSequenceRepository
+            .findAllByReferenceGenomeAndEnsemblProteinIdIn(referenceGenome.name(), ensemblProteinIds)
+            .forEach(proteinSequence -> sequences.put(proteinSequence.getEnsemblProteinId(), proteinSequence.getSequence()));
+        return sequences;
+    }
+
+    /**
+     * Store the sequences fetched from Ensembl or read from a release. The ones already stored are updated when their
+     * sequence or version differs, unless the stored version is more recent. The sequences kept in memory are the
+     * stored ones, so that they never differ from the database.
+     * <p>
+     * Called outside of a transaction, so that each insert commits on its own. The new sequences are inserted together,
+     * and one by one when another instance stored some of them in the meantime, which rolls back the whole batch.
+     *
+     * @param sequences the sequences by protein id, without the version
+     */
+    public void saveSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        Map<String, String> storedSequences = store(referenceGenome, sequences);
+        synchronized (recentSequences) {
+            for (String ensemblProteinId : sequences.keySet()) {
+                String sequence = storedSequences.get(ensemblProteinId);
+                if (sequence == null) {
+                    recentSequences.remove(getKey(referenceGenome, ensemblProteinId));
+                } else {
+                    recentSequences.put(getKey(referenceGenome, ensemblProteinId), sequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #saveSequences}, for the bulk imports: the sequences are stored without being kept in memory, so
+     * that an import neither evicts the sequences of the requests nor holds its own. The ones kept in memory are
+     * replaced when they changed.
+     */
+    public void storeSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        Map<String, String> storedSequences = store(referenceGenome, sequences);
+        synchronized (recentSequences) {
+            for (String ensemblProteinId : sequences.keySet()) {
+                String sequence = storedSequences.get(ensemblProteinId);
+                if (sequence == null) {
+                    recentSequences.remove(getKey(referenceGenome, ensemblProteinId));
+                } else {
+                    recentSequences.replace(getKey(referenceGenome, ensemblProteinId), sequence);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the sequences stored once done, by protein id. The ones stored concurrently by another instance are missing.
+     */
+    private Map<String, String> store(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        Map<String, String> storedSequences = new HashMap<>();
+        if (sequences.isEmpty()) {
+            return storedSequences;
+        }
+
+        //Checked in the database right before the insert, the sequences kept in memory are not all stored
+        Map<String, EnsemblSequence> newSequences = new LinkedHashMap<>(sequences);
+        List<ProteinSequence> proteinSequences = proteinSequenceRepository.findAllByReferenceGenomeAndEnsemblProteinIdIn(
+            referenceGenome.name(),
+            sequences.keySet()
+        );
+        int updated = 0;
+        for (ProteinSequence proteinSequence : proteinSequences) {
+            EnsemblSequence sequence = newSequences.remove(proteinSequence.getEnsemblProteinId());
+            if (sequence == null) {
+                continue;
+            }
+            if (isOlder(sequence, proteinSequence)) {
+                storedSequences.put(proteinSequence.getEnsemblProteinId(), proteinSequence.getSequence());
+                continue;
+            }
+            Integer version = sequence.getVersion() == null ? proteinSequence.getVersion() : sequence.getVersion();
+            if (!sequence.getSeq().equals(proteinSequence.getSequence()) || !Objects.equals(version, proteinSequence.getVersion())) {
+                proteinSequenceRepository.updateSequence(proteinSequence.getId(), version, sequence.getSeq());
+                updated++;
+            }
+            storedSequences.put(proteinSequence.getEnsemblProteinId(), sequence.getSeq());
+        }
+        if (updated > 0) {
+            log.debug("Updated {} {} protein sequences that changed", updated, referenceGenome);
+        }
+        if (newSequences.isEmpty()) {
+            return storedSequences;
+        }
+        try {
+            proteinSequenceRepository.saveAll(toProteinSequences(referenceGenome, newSequences));
+            newSequences.forEach((ensemblProteinId, sequence) -> storedSequences.put(ensemblProteinId, sequence.getSeq()));
+        } catch (DataIntegrityViolationException exception) {
+            log.debug("Some of the {} protein sequences were stored concurrently, storing them one by one", newSequences.size(), exception);
+            storedSequences.putAll(saveOneByOne(referenceGenome, newSequences));
+        }
+        return storedSequences;
+    }
+
+    private Map<String, String> saveOneByOne(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        Map<String, String> storedSequences = new HashMap<>();
+        for (ProteinSequence proteinSequence : toProteinSequences(referenceGenome, sequences)) {
+            try {
+                proteinSequenceRepository.save(proteinSequence);
+                storedSequences.put(proteinSequence.getEnsemblProteinId(), proteinSequence.getSequence());
+            } catch (DataIntegrityViolationException exception) {
+                //Stored concurrently by another instance, maybe with another version, so it is not kept in memory
+            }
+        }
+        log.debug("{} of the {} protein sequences were already stored", sequences.size() - storedSequences.size(), sequences.size());
+        return storedSequences;
+    }
+
+    // a sequence of an older release than the stored one, e.g. an older release imported after a newer one
+    private static boolean isOlder(EnsemblSequence sequence, ProteinSequence proteinSequence) {
+        return (
+            sequence.getVersion() != null && proteinSequence.getVersion() != null && sequence.getVersion() < proteinSequence.getVersion()
+        );
+    }
+
+    // new entities on every attempt, the ones of a rolled back insert may have an id already
+    private static List<ProteinSequence> toProteinSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+        List<ProteinSequence> proteinSequences = new ArrayList<>();
+        sequences.forEach((ensemblProteinId, sequence) ->
+            proteinSequences.add(
+                new ProteinSequence()
+                    .referenceGenome(referenceGenome.name())
+                    .ensemblProteinId(ensemblProteinId)
+                    .version(sequence.getVersion())
+                    .sequence(sequence.getSeq())
+            )
+        );
+        return proteinSequences;
+    }
+
+    private static String getKey(ReferenceGenome referenceGenome, String ensemblProteinId) {
+        return referenceGenome.name() + ":" + ensemblProteinId;
+    }
+}
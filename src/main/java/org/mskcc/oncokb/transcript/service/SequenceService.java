@@ -1,5 +1,6 @@
 package org.mskcc.oncokb.transcript.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.mskcc.oncokb.transcript.domain.Sequence;
@@ -97,4 +98,13 @@ public class SequenceService {
     public Optional<Sequence> findOneByTranscriptAndSequenceType(Transcript transcript, SequenceType sequenceType) {
         return sequenceRepository.findOneByTranscriptAndSequenceType(transcript, sequenceType);
     }
+
+    public List<Sequence> findAllByTranscriptInAndSequenceType(Collection<Transcript> transcripts, SequenceType sequenceType) {
+        return sequenceRepository.findAllByTranscriptInAndSequenceType(transcripts, sequenceType);
+    }
+
+    public List<Sequence> saveAll(Collection<Sequence> sequences) {
+        log.debug("Request to save {} Sequences", sequences.size());
+        return sequenceRepository.saveAll(sequences);
+    }
 }
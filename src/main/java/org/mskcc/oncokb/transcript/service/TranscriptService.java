@@ -1,10 +1,15 @@
 package org.mskcc.oncokb.transcript.service;
 
-import static org.mskcc.oncokb.transcript.config.Constants.ENSEMBL_POST_THRESHOLD;
+import static org.mskcc.oncokb.transcript.config.Constants.ALIGNMENT_CANDIDATE_LIMIT;
 
 import java.util.*;
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.StringUtils;
 import org.genome_nexus.ApiException;
@@ -18,6 +23,7 @@ import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
 import org.mskcc.oncokb.transcript.domain.enumeration.SequenceType;
 import org.mskcc.oncokb.transcript.repository.TranscriptRepository;
 import org.mskcc.oncokb.transcript.service.dto.TranscriptDTO;
+import org.mskcc.oncokb.transcript.service.alignment.KmerIndex;
 import org.mskcc.oncokb.transcript.service.mapper.TranscriptMapper;
 import org.mskcc.oncokb.transcript.vm.MissMatchPairVM;
 import org.mskcc.oncokb.transcript.vm.TranscriptMatchResultVM;
@@ -27,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
@@ -38,7 +45,10 @@ public class TranscriptService {
 
     private final GenomeNexusService genomeNexusService;
     private final EnsemblService ensemblService;
-    private final AlignmentService alignmentService;
+    private final EnsemblSequenceLoader ensemblSequenceLoader;
+    private final CachedAlignmentService cachedAlignmentService;
+    private final CachedTranscriptListService cachedTranscriptListService;
+    private final BatchAlignmentService batchAlignmentService;
     private final SequenceService sequenceService;
     private final TranscriptMapper transcriptMapper;
     private final CacheNameResolver cacheNameResolver;
@@ -46,13 +56,26 @@ public class TranscriptService {
 
     private final Logger log = LoggerFactory.getLogger(TranscriptService.class);
 
+    // Number of genes whose protein sequence index is kept in memory
+    private static final int PROTEIN_SEQUENCE_INDEX_CACHE_SIZE = 100;
+
+    private final Map<String, KmerIndex> proteinSequenceIndices = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, KmerIndex> eldest) {
+            return size() > PROTEIN_SEQUENCE_INDEX_CACHE_SIZE;
+        }
+    };
+
     private final TranscriptRepository transcriptRepository;
     private final GenomeFragmentService genomeFragmentService;
 
     public TranscriptService(
         GenomeNexusService genomeNexusService,
         EnsemblService ensemblService,
-        AlignmentService alignmentService,
+        EnsemblSequenceLoader ensemblSequenceLoader,
+        CachedAlignmentService cachedAlignmentService,
+        CachedTranscriptListService cachedTranscriptListService,
+        BatchAlignmentService batchAlignmentService,
         SequenceService sequenceService,
         TranscriptRepository transcriptRepository,
         TranscriptMapper transcriptMapper,
@@ -62,7 +85,10 @@ public class TranscriptService {
     ) {
         this.genomeNexusService = genomeNexusService;
         this.ensemblService = ensemblService;
-        this.alignmentService = alignmentService;
+        this.ensemblSequenceLoader = ensemblSequenceLoader;
+        this.cachedAlignmentService = cachedAlignmentService;
+        this.cachedTranscriptListService = cachedTranscriptListService;
+        this.batchAlignmentService = batchAlignmentService;
         this.sequenceService = sequenceService;
         this.transcriptRepository = transcriptRepository;
         this.transcriptMapper = transcriptMapper;
@@ -84,25 +110,12 @@ public class TranscriptService {
 
         List<GenomeFragment> transcriptGenomeFragments = genomeFragmentService.findAllByTranscriptId(transcriptDTO.getId());
         genomeFragmentService.deleteAll(transcriptGenomeFragments);
-
-        GenomeFragment genomeFragment = new GenomeFragment();
-        genomeFragment.setTranscript(savedTranscript);
-        genomeFragment.setChromosome(transcriptDTO.getChromosome());
-        genomeFragment.setStart(transcriptDTO.getStart());
-        genomeFragment.setEnd(transcriptDTO.getEnd());
-        genomeFragment.setStrand(transcriptDTO.getStrand());
-        genomeFragment.setType(GenomeFragmentType.GENE);
-        genomeFragmentService.save(genomeFragment);
-
-        transcriptDTO.getExons().stream().forEach(exon -> exon.setTranscript(savedTranscript));
-        genomeFragmentService.saveAll(transcriptDTO.getExons());
-        transcriptDTO.getUtrs().stream().forEach(utr -> utr.setTranscript(savedTranscript));
-        genomeFragmentService.saveAll(transcriptDTO.getUtrs());
+        genomeFragmentService.saveAll(toGenomeFragments(savedTranscript, transcriptDTO));
 
         // save sequence automatically when a new transcript saved
         Optional<Sequence> sequenceOptional = sequenceService.findOneByTranscriptAndSequenceType(savedTranscript, SequenceType.PROTEIN);
         if (sequenceOptional.isEmpty() && StringUtils.isNotEmpty(savedTranscript.getEnsemblProteinId())) {
-            Optional<EnsemblSequence> ensemblSequenceOptional = ensemblService.getProteinSequence(
+            Optional<EnsemblSequence> ensemblSequenceOptional = ensemblSequenceLoader.getProteinSequence(
                 ReferenceGenome.valueOf(savedTranscript.getEnsemblGene().getReferenceGenome()),
                 savedTranscript.getEnsemblProteinId()
             );
@@ -118,6 +131,120 @@ public class TranscriptService {
         return transcriptMapper.toDto(savedTranscript);
     }
 
+    /**
+     * Save transcripts in bulk, in the transaction of the caller. The transcripts, then the genome fragments, then the
+     * protein sequences of all of them are inserted together, so they go in JDBC batches of hibernate.jdbc.batch_size.
+     * The genome fragments of the transcripts already saved are replaced.
+     * <p>
+     * The protein sequences are not fetched here, get them before the transaction with {@link #getProteinSequences}.
+     * The caches are cleared once, at the end.
+     *
+     * @param transcriptDTOs   the entities to save, all of the same reference genome.
+     * @param proteinSequences the protein sequences of the transcripts, by Ensembl protein id. A transcript whose
+     *                         sequence is missing is saved without one.
+     * @return the DTOs, with the ids of the persisted entities.
+     */
+    public List<TranscriptDTO> saveAll(List<TranscriptDTO> transcriptDTOs, Map<String, String> proteinSequences) {
+        log.debug("Request to save {} Transcripts", transcriptDTOs.size());
+        if (transcriptDTOs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        genomeFragmentService.deleteAllByTranscriptIds(
+            transcriptDTOs.stream().map(TranscriptDTO::getId).filter(Objects::nonNull).collect(Collectors.toList())
+        );
+        List<Transcript> savedTranscripts = transcriptRepository.saveAll(
+            transcriptDTOs.stream().map(transcriptMapper::toEntity).collect(Collectors.toList())
+        );
+
+        List<GenomeFragment> genomeFragments = new ArrayList<>();
+        for (int i = 0; i < savedTranscripts.size(); i++) {
+            genomeFragments.addAll(toGenomeFragments(savedTranscripts.get(i), transcriptDTOs.get(i)));
+        }
+        genomeFragmentService.saveAll(genomeFragments);
+
+        Set<Long> transcriptIdsWithSequence = sequenceService
+            .findAllByTranscriptInAndSequenceType(savedTranscripts, SequenceType.PROTEIN)
+            .stream()
+            .map(sequence -> sequence.getTranscript().getId())
+            .collect(Collectors.toSet());
+        List<Sequence> sequences = new ArrayList<>();
+        for (Transcript savedTranscript : savedTranscripts) {
+            String proteinSequence = proteinSequences.get(savedTranscript.getEnsemblProteinId());
+            if (proteinSequence != null && !transcriptIdsWithSequence.contains(savedTranscript.getId())) {
+                Sequence sequence = new Sequence();
+                sequence.setTranscript(savedTranscript);
+                sequence.setSequenceType(SequenceType.PROTEIN);
+                sequence.setSequence(proteinSequence);
+                sequences.add(sequence);
+            }
+        }
+        sequenceService.saveAll(sequences);
+
+        clearTranscriptCaches();
+        // mapping the entities back would read the fragments of each transcript again
+        for (int i = 0; i < savedTranscripts.size(); i++) {
+            transcriptDTOs.get(i).setId(savedTranscripts.get(i).getId());
+        }
+        return transcriptDTOs;
+    }
+
+    /**
+     * Get protein sequences from Ensembl in bulk, to be saved by {@link #saveAll}. It is not part of any transaction,
+     * so no connection is held while Ensembl answers.
+     *
+     * @param referenceGenome the reference genome
+     * @param proteinIds      the Ensembl protein ids
+     * @return the sequences found, by protein id
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Map<String, String> getProteinSequences(ReferenceGenome referenceGenome, Collection<String> proteinIds) {
+        Map<String, CompletableFuture<Optional<EnsemblSequence>>> loads = new HashMap<>();
+        for (String proteinId : proteinIds) {
+            if (StringUtils.isNotEmpty(proteinId)) {
+                loads.computeIfAbsent(proteinId, id -> ensemblSequenceLoader.load(referenceGenome, id));
+            }
+        }
+        Map<String, String> proteinSequences = new HashMap<>();
+        loads.forEach((proteinId, load) ->
+            ensemblSequenceLoader
+                .await(referenceGenome, proteinId, load)
+                .map(EnsemblSequence::getSeq)
+                .ifPresent(sequence -> proteinSequences.put(proteinId, sequence))
+        );
+        return proteinSequences;
+    }
+
+    // the GENE fragment spanning the transcript, then its exons and UTRs, all new as the old ones are deleted
+    private static List<GenomeFragment> toGenomeFragments(Transcript savedTranscript, TranscriptDTO transcriptDTO) {
+        List<GenomeFragment> genomeFragments = new ArrayList<>();
+        GenomeFragment genomeFragment = new GenomeFragment();
+        genomeFragment.setTranscript(savedTranscript);
+        genomeFragment.setChromosome(transcriptDTO.getChromosome());
+        genomeFragment.setStart(transcriptDTO.getStart());
+        genomeFragment.setEnd(transcriptDTO.getEnd());
+        genomeFragment.setStrand(transcriptDTO.getStrand());
+        genomeFragment.setType(GenomeFragmentType.GENE);
+        genomeFragments.add(genomeFragment);
+
+        for (GenomeFragment fragment : transcriptDTO.getExons()) {
+            genomeFragments.add(copyGenomeFragment(fragment, savedTranscript));
+        }
+        for (GenomeFragment fragment : transcriptDTO.getUtrs()) {
+            genomeFragments.add(copyGenomeFragment(fragment, savedTranscript));
+        }
+        return genomeFragments;
+    }
+
+    private static GenomeFragment copyGenomeFragment(GenomeFragment genomeFragment, Transcript transcript) {
+        return new GenomeFragment()
+            .chromosome(genomeFragment.getChromosome())
+            .start(genomeFragment.getStart())
+            .end(genomeFragment.getEnd())
+            .strand(genomeFragment.getStrand())
+            .type(genomeFragment.getType())
+            .transcript(transcript);
+    }
+
     /**
      * Partially update a transcript.
      *
@@ -250,22 +377,32 @@ public class TranscriptService {
         int proteinPosition,
         String expectedAllele
     ) {
-        return transcripts
+        List<EnsemblTranscript> transcriptsWithProtein = transcripts
             .stream()
             .filter(ensemblTranscript -> StringUtils.isNotEmpty(ensemblTranscript.getProteinId()))
-            .filter(ensemblTranscript -> {
-                Optional<EnsemblSequence> sequence = ensemblService.getProteinSequence(referenceGenome, ensemblTranscript.getProteinId());
-                if (sequence.isPresent()) {
-                    if (sequence.get().getSeq().length() >= proteinPosition) {
-                        return sequence.get().getSeq().substring(proteinPosition - 1, proteinPosition).equals(expectedAllele);
-                    } else {
-                        return false;
-                    }
-                } else {
-                    return false;
-                }
-            })
             .collect(Collectors.toList());
+        //Request every sequence first, so they are fetched together
+        List<CompletableFuture<Optional<EnsemblSequence>>> sequences = transcriptsWithProtein
+            .stream()
+            .map(ensemblTranscript -> ensemblSequenceLoader.load(referenceGenome, ensemblTranscript.getProteinId()))
+            .collect(Collectors.toList());
+
+        List<EnsemblTranscript> matchedTranscripts = new ArrayList<>();
+        for (int i = 0; i < transcriptsWithProtein.size(); i++) {
+            Optional<EnsemblSequence> sequence = ensemblSequenceLoader.await(
+                referenceGenome,
+                transcriptsWithProtein.get(i).getProteinId(),
+                sequences.get(i)
+            );
+            if (
+                sequence.isPresent() &&
+                sequence.get().getSeq().length() >= proteinPosition &&
+                sequence.get().getSeq().substring(proteinPosition - 1, proteinPosition).equals(expectedAllele)
+            ) {
+                matchedTranscripts.add(transcriptsWithProtein.get(i));
+            }
+        }
+        return matchedTranscripts;
     }
 
     public TranscriptMatchResultVM matchTranscript(TranscriptPairVM transcript, ReferenceGenome referenceGenome, String hugoSymbol) {
@@ -280,7 +417,7 @@ public class TranscriptService {
 
         if (_ensemblTranscript.isPresent()) {
             transcriptMatchResultVM.setOriginalEnsemblTranscript(_ensemblTranscript.get());
-            Optional<EnsemblSequence> _sequence = ensemblService.getProteinSequence(
+            Optional<EnsemblSequence> _sequence = ensemblSequenceLoader.getProteinSequence(
                 transcript.getReferenceGenome(),
                 _ensemblTranscript.get().getProteinId()
             );
@@ -310,25 +447,13 @@ public class TranscriptService {
             EnsemblTranscript ensemblTranscript = controllerApi.fetchEnsemblTranscriptByTranscriptIdGET(transcriptId);
             return ensemblTranscript == null ? Optional.empty() : Optional.of(ensemblTranscript);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("Failed to fetch the {} transcript {} from Genome Nexus: {}", referenceGenome, transcriptId, e.getMessage());
             return Optional.empty();
         }
     }
 
     public List<EnsemblTranscript> getEnsemblTranscriptList(String hugoSymbol, ReferenceGenome referenceGenome) {
-        EnsemblControllerApi controllerApi = genomeNexusService.getEnsemblControllerApi(referenceGenome);
-        Set<EnsemblTranscript> transcripts = new LinkedHashSet<>();
-        try {
-            transcripts.add(getCanonicalEnsemblTranscript(hugoSymbol, referenceGenome));
-        } catch (ApiException e) {
-            e.printStackTrace();
-        }
-        try {
-            transcripts.addAll(controllerApi.fetchEnsemblTranscriptsGET(null, null, hugoSymbol));
-        } catch (ApiException e) {
-            e.printStackTrace();
-        }
-        return new ArrayList<>(transcripts);
+        return cachedTranscriptListService.getEnsemblTranscriptList(hugoSymbol, referenceGenome);
     }
 
     public EnsemblTranscript getCanonicalEnsemblTranscript(String hugoSymbol, ReferenceGenome referenceGenome) throws ApiException {
@@ -359,23 +484,41 @@ public class TranscriptService {
         boolean includeUtr,
         boolean expand
     ) {
-        List<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> ensemblTranscriptList = new ArrayList<>();
         log.info("Get {} ensembl trancript ids", ids.size());
-        for (int i = 0; i < ids.size(); i += ENSEMBL_POST_THRESHOLD) {
-            log.info("\tIndex {}", i);
-            ensemblTranscriptList.addAll(
-                ensemblService.getIds(
-                    referenceGenome,
-                    ids.subList(i, Math.min(ids.toArray().length, i + ENSEMBL_POST_THRESHOLD)),
-                    includeUtr,
-                    expand
-                )
-            );
+        return joinLookup(ensemblService.getIdsAsync(referenceGenome, ids, includeUtr, expand));
+    }
+
+    /**
+     * Same as {@link #getEnsemblTranscriptIds(ReferenceGenome, List, boolean, boolean)}, without collecting the
+     * transcripts, e.g. for the bulk imports.
+     *
+     * @param consumer called with each transcript as soon as it is read, from several threads at the same time
+     */
+    public void getEnsemblTranscriptIds(
+        ReferenceGenome referenceGenome,
+        List<String> ids,
+        boolean includeUtr,
+        boolean expand,
+        Consumer<org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript> consumer
+    ) {
+        log.info("Get {} ensembl trancript ids", ids.size());
+        joinLookup(ensemblService.getIdsAsync(referenceGenome, ids, includeUtr, expand, consumer));
+    }
+
+    private static <T> T joinLookup(CompletableFuture<T> lookup) {
+        try {
+            return lookup.join();
+        } catch (CompletionException e) {
+            //Rethrow the failure of the chunk, e.g. a RestClientException, as the callers expect it
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        return ensemblTranscriptList;
     }
 
-    private TranscriptMatchResultVM pickEnsemblTranscript(
+    // package-private for the benchmarks
+    TranscriptMatchResultVM pickEnsemblTranscript(
         TranscriptMatchResultVM transcriptMatchResultVM,
         ReferenceGenome referenceGenome,
         List<EnsemblTranscript> availableTranscripts,
@@ -388,8 +531,11 @@ public class TranscriptService {
             )
             .collect(Collectors.toList());
 
-        List<EnsemblSequence> sequences = ensemblService
-            .getProteinSequences(referenceGenome, sameLengthList.stream().map(EnsemblTranscript::getProteinId).collect(Collectors.toList()))
+        KmerIndex sequenceIndex = getProteinSequenceIndex(referenceGenome, availableTranscripts);
+        List<EnsemblSequence> sequences = getEnsemblSequences(
+            sequenceIndex,
+            sameLengthList.stream().map(EnsemblTranscript::getProteinId).distinct().collect(Collectors.toList())
+        )
             .stream()
             .filter(filteredSequence -> filteredSequence.getSeq().length() == sequence.getSeq().length())
             .collect(Collectors.toList());
@@ -435,14 +581,11 @@ public class TranscriptService {
                 )
                 .collect(Collectors.toList());
 
-            List<EnsemblSequence> longerSequences = ensemblService.getProteinSequences(
-                referenceGenome,
-                longerOnes.stream().map(EnsemblTranscript::getProteinId).collect(Collectors.toList())
+            Set<String> longerProteinIds = longerOnes.stream().map(EnsemblTranscript::getProteinId).collect(Collectors.toSet());
+            List<EnsemblSequence> sequencesContains = getEnsemblSequences(
+                sequenceIndex,
+                sequenceIndex.findContaining(sequence.getSeq()).stream().filter(longerProteinIds::contains).collect(Collectors.toList())
             );
-            List<EnsemblSequence> sequencesContains = longerSequences
-                .stream()
-                .filter(matchedSequence -> matchedSequence.getSeq().contains(sequence.getSeq()))
-                .collect(Collectors.toList());
             sequencesContains.sort((s1, s2) -> s2.getSeq().length() - s1.getSeq().length());
 
             if (sequencesContains.size() > 0) {
@@ -463,42 +606,150 @@ public class TranscriptService {
         ReferenceGenome targetReferenceGenome,
         List<EnsemblTranscript> targetTranscripts
     ) {
-        Optional<EnsemblSequence> refSequenceOptional = ensemblService.getProteinSequence(
+        return getAlignmentResult(
+            refReferenceGenome,
+            refEnsemblTranscript,
+            targetReferenceGenome,
+            targetTranscripts,
+            (refSeq, targetSeq) -> Optional.of(this.cachedAlignmentService.calcOptimalAlignment(refSeq, targetSeq))
+        );
+    }
+
+    /**
+     * Same as {@link #getAlignmentResult(ReferenceGenome, EnsemblTranscript, ReferenceGenome, List)}, but only returns the
+     * alignments whose penalty is within maxPenalty. Candidates above the bound are abandoned early.
+     */
+    public List<EnrichedAlignmentResult> getAlignmentResult(
+        ReferenceGenome refReferenceGenome,
+        EnsemblTranscript refEnsemblTranscript,
+        ReferenceGenome targetReferenceGenome,
+        List<EnsemblTranscript> targetTranscripts,
+        int maxPenalty
+    ) {
+        return getAlignmentResult(
+            refReferenceGenome,
+            refEnsemblTranscript,
+            targetReferenceGenome,
+            targetTranscripts,
+            (refSeq, targetSeq) -> {
+                //Filter with the score only, then trace back the survivors with a band as narrow as their penalty
+                OptionalInt penalty = this.cachedAlignmentService.score(refSeq, targetSeq, maxPenalty);
+                return penalty.isPresent()
+                    ? this.cachedAlignmentService.calcBoundedAlignment(refSeq, targetSeq, penalty.getAsInt())
+                    : Optional.empty();
+            }
+        );
+    }
+
+    private List<EnrichedAlignmentResult> getAlignmentResult(
+        ReferenceGenome refReferenceGenome,
+        EnsemblTranscript refEnsemblTranscript,
+        ReferenceGenome targetReferenceGenome,
+        List<EnsemblTranscript> targetTranscripts,
+        BiFunction<String, String, Optional<AlignmentResult>> aligner
+    ) {
+        Optional<EnsemblSequence> refSequenceOptional = ensemblSequenceLoader.getProteinSequence(
             refReferenceGenome,
             refEnsemblTranscript.getProteinId()
         );
-        if (refSequenceOptional.isPresent()) {
-            return targetTranscripts
-                .stream()
-                .filter(ensemblTranscript -> StringUtils.isNotEmpty(ensemblTranscript.getProteinId()))
-                .map(ensemblTranscript -> {
-                    Optional<EnsemblSequence> targetSequenceOptional = ensemblService.getProteinSequence(
-                        targetReferenceGenome,
-                        ensemblTranscript.getProteinId()
-                    );
-                    if (targetSequenceOptional.isPresent()) {
-                        AlignmentResult alignmentResult =
-                            this.alignmentService.calcOptimalAlignment(
-                                    refSequenceOptional.get().getSeq(),
-                                    targetSequenceOptional.get().getSeq(),
-                                    true
-                                );
-                        EnrichedAlignmentResult enrichedAlignmentResult = new EnrichedAlignmentResult(alignmentResult);
-                        enrichedAlignmentResult.setRefEnsemblTranscript(refEnsemblTranscript);
-                        enrichedAlignmentResult.setTargetEnsemblTranscript(ensemblTranscript);
-                        return Optional.of(enrichedAlignmentResult);
-                    } else {
-                        Optional<EnrichedAlignmentResult> optional = Optional.empty();
-                        return optional;
-                    }
-                })
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .sorted(Comparator.comparingInt(EnrichedAlignmentResult::getPenalty))
-                .collect(Collectors.toList());
-        } else {
+        if (refSequenceOptional.isEmpty()) {
             return new ArrayList<>();
         }
+
+        //The transcripts without a sequence are skipped, and only the isoforms sharing the most seeds with the
+        //reference are worth a full alignment
+        KmerIndex sequenceIndex = getProteinSequenceIndex(targetReferenceGenome, targetTranscripts);
+        Set<String> candidateProteinIds = new HashSet<>(
+            sequenceIndex.rankCandidates(refSequenceOptional.get().getSeq(), ALIGNMENT_CANDIDATE_LIMIT)
+        );
+        List<EnsemblTranscript> alignedTranscripts = targetTranscripts
+            .stream()
+            .filter(ensemblTranscript -> StringUtils.isNotEmpty(ensemblTranscript.getProteinId()))
+            .filter(ensemblTranscript -> candidateProteinIds.contains(ensemblTranscript.getProteinId()))
+            .collect(Collectors.toList());
+
+        List<Optional<AlignmentResult>> alignmentResults = batchAlignmentService.alignAll(
+            refSequenceOptional.get().getSeq(),
+            alignedTranscripts
+                .stream()
+                .map(ensemblTranscript -> sequenceIndex.getSequence(ensemblTranscript.getProteinId()).get())
+                .collect(Collectors.toList()),
+            aligner
+        );
+
+        List<EnrichedAlignmentResult> enrichedAlignmentResults = new ArrayList<>();
+        for (int i = 0; i < alignedTranscripts.size(); i++) {
+            EnsemblTranscript ensemblTranscript = alignedTranscripts.get(i);
+            alignmentResults
+                .get(i)
+                .ifPresent(alignmentResult -> {
+                    EnrichedAlignmentResult enrichedAlignmentResult = new EnrichedAlignmentResult(alignmentResult);
+                    enrichedAlignmentResult.setRefEnsemblTranscript(refEnsemblTranscript);
+                    enrichedAlignmentResult.setTargetEnsemblTranscript(ensemblTranscript);
+                    enrichedAlignmentResults.add(enrichedAlignmentResult);
+                });
+        }
+        enrichedAlignmentResults.sort(Comparator.comparingInt(EnrichedAlignmentResult::getPenalty));
+        return enrichedAlignmentResults;
+    }
+
+    /**
+     * Index the protein sequences of the transcripts, usually all the isoforms of a gene. The index of the last genes
+     * is kept, so matching several transcripts of the same gene only fetches the sequences once.
+     */
+    private KmerIndex getProteinSequenceIndex(ReferenceGenome referenceGenome, List<EnsemblTranscript> transcripts) {
+        List<String> proteinIds = transcripts
+            .stream()
+            .map(EnsemblTranscript::getProteinId)
+            .filter(StringUtils::isNotEmpty)
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList());
+        String indexKey = referenceGenome + ":" + String.join(",", proteinIds);
+        synchronized (proteinSequenceIndices) {
+            KmerIndex sequenceIndex = proteinSequenceIndices.get(indexKey);
+            if (sequenceIndex != null) {
+                return sequenceIndex;
+            }
+        }
+
+        //Request all sequences first so they are fetched in bulk, the proteins without a sequence are not indexed
+        List<CompletableFuture<Optional<EnsemblSequence>>> sequences = proteinIds
+            .stream()
+            .map(proteinId -> ensemblSequenceLoader.load(referenceGenome, proteinId))
+            .collect(Collectors.toList());
+        KmerIndex.Builder builder = new KmerIndex.Builder();
+        boolean complete = true;
+        for (int i = 0; i < proteinIds.size(); i++) {
+            Optional<EnsemblSequence> sequence = ensemblSequenceLoader.await(referenceGenome, proteinIds.get(i), sequences.get(i));
+            if (sequence.isPresent()) {
+                builder.add(proteinIds.get(i), sequence.get().getSeq());
+            } else {
+                complete = false;
+            }
+        }
+        KmerIndex sequenceIndex = builder.build();
+        if (complete) {
+            synchronized (proteinSequenceIndices) {
+                proteinSequenceIndices.put(indexKey, sequenceIndex);
+            }
+        }
+        return sequenceIndex;
+    }
+
+    private List<EnsemblSequence> getEnsemblSequences(KmerIndex sequenceIndex, List<String> proteinIds) {
+        List<EnsemblSequence> ensemblSequences = new ArrayList<>();
+        for (String proteinId : proteinIds) {
+            sequenceIndex
+                .getSequence(proteinId)
+                .ifPresent(seq -> {
+                    EnsemblSequence ensemblSequence = new EnsemblSequence();
+                    ensemblSequence.setId(proteinId);
+                    ensemblSequence.setSeq(seq);
+                    ensemblSequences.add(ensemblSequence);
+                });
+        }
+        return ensemblSequences;
     }
 
     private Optional<EnsemblTranscript> getEnsemblTranscriptBySequence(
@@ -517,7 +768,8 @@ public class TranscriptService {
             .findAny();
     }
 
-    private List<MissMatchPairVM> getNumOfMismatchSameLengthSequences(String reference, String newSequence) {
+    // package-private for the benchmarks
+    List<MissMatchPairVM> getNumOfMismatchSameLengthSequences(String reference, String newSequence) {
         List<MissMatchPairVM> mismatch = new ArrayList<>();
         for (int i = 0; i < reference.length(); i++) {
             char r = reference.charAt(i);
@@ -533,7 +785,7 @@ public class TranscriptService {
         return mismatch;
     }
 
-    private void clearTranscriptCaches() {
+    public void clearTranscriptCaches() {
         if (this.optionalCacheManager.isPresent()) {
             for (String cacheKey : this.optionalCacheManager.get().getCacheNames()) {
                 String cacheKeyPrefix = this.cacheNameResolver.getCacheName(CacheCategory.TRANSCRIPT, "");
@@ -0,0 +1,275 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import org.mskcc.oncokb.transcript.domain.AlignmentOperations;
+import org.mskcc.oncokb.transcript.domain.AlignmentOperations.Operation;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+
+/**
+ * Global alignment with affine gap penalties, used by AlignmentService when the scoring scheme has a gap open penalty.
+ * <p>
+ * Small inputs use Gotoh's three-table algorithm. Large inputs use the Myers-Miller divide-and-conquer variant,
+ * which is the affine counterpart of Hirschberg's algorithm and only keeps four rows in memory.
+ * <p>
+ * Like AlignmentService, both expect sanitized sequences with a leading space, so residue i of a sequence is at index i.
+ */
+public final class AffineGapAligner {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    private final ScoringScheme scoringScheme;
+    private final SubstitutionMatrix substitutionMatrix;
+    private final int gapOpenPenalty;
+    private final int gapExtensionPenalty;
+
+    public AffineGapAligner(ScoringScheme scoringScheme) {
+        this.scoringScheme = scoringScheme;
+        this.substitutionMatrix = scoringScheme.getSubstitutionMatrix();
+        this.gapOpenPenalty = scoringScheme.getGapOpenPenalty();
+        this.gapExtensionPenalty = scoringScheme.getGapExtensionPenalty();
+    }
+
+    /**
+     * Gotoh's algorithm. H is the best penalty of each cell, E the best one ending with seq1 aligned to a gap,
+     * F the best one ending with seq2 aligned to a gap.
+     */
+    public AlignmentResult calcAlignment(String seq1, String seq2) {
+        int width = seq2.length();
+        int cells = seq1.length() * width;
+        int[] tables = AlignmentScratch.current().memoTable(3 * cells);
+        int e = cells;
+        int f = 2 * cells;
+
+        tables[0] = 0;
+        tables[e] = INFINITY;
+        tables[f] = INFINITY;
+        for (int j = 1; j < width; j++) { // base case: i = 0
+            tables[j] = scoringScheme.gapPenalty(j);
+            tables[e + j] = INFINITY;
+            tables[f + j] = tables[j];
+        }
+        for (int i = 1; i < seq1.length(); i++) {
+            int row = i * width;
+            tables[row] = scoringScheme.gapPenalty(i); // base case: j = 0
+            tables[e + row] = tables[row];
+            tables[f + row] = INFINITY;
+            byte[] penalties = substitutionMatrix.penaltiesOf(seq1.charAt(i));
+            for (int j = 1; j < width; j++) {
+                int cell = row + j;
+                int above = cell - width;
+                int seq1CharWithGap = Math.min(
+                    tables[above] + gapOpenPenalty + gapExtensionPenalty,
+                    tables[e + above] + gapExtensionPenalty
+                );
+                int seq2CharWithGap = Math.min(
+                    tables[cell - 1] + gapOpenPenalty + gapExtensionPenalty,
+                    tables[f + cell - 1] + gapExtensionPenalty
+                );
+                int alignedCharWithChar = tables[above - 1] + penalties[seq2.charAt(j)];
+                tables[e + cell] = seq1CharWithGap;
+                tables[f + cell] = seq2CharWithGap;
+                tables[cell] = Math.min(alignedCharWithChar, Math.min(seq1CharWithGap, seq2CharWithGap));
+            }
+        }
+
+        AlignmentOperations.Builder operations = new AlignmentOperations.Builder();
+        int i = seq1.length() - 1;
+        int j = width - 1;
+        int table = 0; // which table the traceback is in, 0 for H, e or f
+        while (i > 0 && j > 0) {
+            int cell = i * width + j;
+            if (table == 0) {
+                if (tables[cell] == tables[cell - width - 1] + substitutionMatrix.penalty(seq1.charAt(i), seq2.charAt(j))) {
+                    operations.match();
+                    i--;
+                    j--;
+                } else {
+                    table = tables[cell] == tables[e + cell] ? e : f;
+                }
+            } else if (table == e) {
+                table = tables[e + cell] == tables[e + cell - width] + gapExtensionPenalty ? e : 0;
+                operations.deletion();
+                i--;
+            } else {
+                table = tables[f + cell] == tables[f + cell - 1] + gapExtensionPenalty ? f : 0;
+                operations.insertion();
+                j--;
+            }
+        }
+        operations.add(Operation.DELETION, i).add(Operation.INSERTION, j).reverse();
+
+        return new AlignmentResult(seq1.substring(1), seq2.substring(1), operations.build(), tables[cells - 1]);
+    }
+
+    /**
+     * Myers-Miller linear space alignment, see E. Myers and W. Miller, Optimal alignments in linear space (1988).
+     */
+    public AlignmentResult calcLinearSpaceAlignment(String seq1, String seq2) {
+        AlignmentOperations.Builder builder = new AlignmentOperations.Builder();
+        divideAndConquer(seq1, 1, seq1.length(), seq2, 1, seq2.length(), gapOpenPenalty, gapOpenPenalty, builder);
+        AlignmentOperations operations = builder.build();
+        return new AlignmentResult(seq1.substring(1), seq2.substring(1), operations, calcPenalty(seq1, seq2, operations));
+    }
+
+    //Aligns seq1[from1, to1) with seq2[from2, to2). gapOpenAtStart/End is the penalty of opening a seq1 gap at the start/end,
+    //0 when it continues a gap of the neighbouring sub-alignment
+    private void divideAndConquer(
+        String seq1,
+        int from1,
+        int to1,
+        String seq2,
+        int from2,
+        int to2,
+        int gapOpenAtStart,
+        int gapOpenAtEnd,
+        AlignmentOperations.Builder operations
+    ) {
+        int length1 = to1 - from1;
+        int length2 = to2 - from2;
+        if (length1 == 0 || length2 == 0) {
+            operations.add(Operation.DELETION, length1).add(Operation.INSERTION, length2);
+            return;
+        }
+        if (length1 == 1) {
+            alignSingleChar(seq1.charAt(from1), seq2, from2, to2, gapOpenAtStart, gapOpenAtEnd, operations);
+            return;
+        }
+
+        AlignmentScratch scratch = AlignmentScratch.current();
+        int[] forwardRow = scratch.forwardRow(length2 + 1);
+        int[] forwardGapRow = scratch.forwardGapRow(length2 + 1);
+        int[] reverseRow = scratch.reverseRow(length2 + 1);
+        int[] reverseGapRow = scratch.reverseGapRow(length2 + 1);
+
+        int mid1 = (from1 + to1) / 2;
+        calcLastRows(seq1, from1, mid1, seq2, from2, to2, false, gapOpenAtStart, forwardRow, forwardGapRow);
+        calcLastRows(seq1, mid1, to1, seq2, from2, to2, true, gapOpenAtEnd, reverseRow, reverseGapRow);
+
+        int split = 0;
+        boolean gapAcrossMiddle = false;
+        int minimumPenalty = INFINITY;
+        for (int k = 0; k <= length2; k++) {
+            int penalty = forwardRow[k] + reverseRow[length2 - k];
+            if (penalty < minimumPenalty) {
+                minimumPenalty = penalty;
+                split = k;
+                gapAcrossMiddle = false;
+            }
+            //A seq1 gap crossing the middle row is only opened once
+            penalty = forwardGapRow[k] + reverseGapRow[length2 - k] - gapOpenPenalty;
+            if (penalty < minimumPenalty) {
+                minimumPenalty = penalty;
+                split = k;
+                gapAcrossMiddle = true;
+            }
+        }
+
+        if (gapAcrossMiddle) {
+            divideAndConquer(seq1, from1, mid1 - 1, seq2, from2, from2 + split, gapOpenAtStart, 0, operations);
+            operations.add(Operation.DELETION, 2);
+            divideAndConquer(seq1, mid1 + 1, to1, seq2, from2 + split, to2, 0, gapOpenAtEnd, operations);
+        } else {
+            divideAndConquer(seq1, from1, mid1, seq2, from2, from2 + split, gapOpenAtStart, gapOpenPenalty, operations);
+            divideAndConquer(seq1, mid1, to1, seq2, from2 + split, to2, gapOpenPenalty, gapOpenAtEnd, operations);
+        }
+    }
+
+    //Best penalties of aligning seq1[from1, to1) with every prefix (or suffix when reversed) of seq2[from2, to2),
+    //overall in row and ending with a seq1 gap in gapRow
+    private void calcLastRows(
+        String seq1,
+        int from1,
+        int to1,
+        String seq2,
+        int from2,
+        int to2,
+        boolean reversed,
+        int gapOpenAtStart,
+        int[] row,
+        int[] gapRow
+    ) {
+        int length1 = to1 - from1;
+        int length2 = to2 - from2;
+        row[0] = 0;
+        for (int j = 1; j <= length2; j++) {
+            row[j] = scoringScheme.gapPenalty(j);
+            gapRow[j] = row[j] + gapOpenPenalty;
+        }
+        int seq1Gap = gapOpenAtStart;
+        for (int i = 1; i <= length1; i++) {
+            byte[] penalties = substitutionMatrix.penaltiesOf(reversed ? seq1.charAt(to1 - i) : seq1.charAt(from1 + i - 1));
+            int diagonal = row[0];
+            seq1Gap += gapExtensionPenalty;
+            int left = seq1Gap;
+            row[0] = left;
+            int seq2Gap = left + gapOpenPenalty;
+            for (int j = 1; j <= length2; j++) {
+                char char2 = reversed ? seq2.charAt(to2 - j) : seq2.charAt(from2 + j - 1);
+                seq2Gap = Math.min(seq2Gap, left + gapOpenPenalty) + gapExtensionPenalty;
+                gapRow[j] = Math.min(gapRow[j], row[j] + gapOpenPenalty) + gapExtensionPenalty;
+                left = Math.min(gapRow[j], Math.min(seq2Gap, diagonal + penalties[char2]));
+                diagonal = row[j];
+                row[j] = left;
+            }
+        }
+        gapRow[0] = row[0];
+    }
+
+    //Either the char is aligned with one of the chars of seq2[from2, to2) or everything is gapped
+    private void alignSingleChar(
+        char char1,
+        String seq2,
+        int from2,
+        int to2,
+        int gapOpenAtStart,
+        int gapOpenAtEnd,
+        AlignmentOperations.Builder operations
+    ) {
+        int length2 = to2 - from2;
+        int matchedIndex = -1;
+        int minimumPenalty = Math.min(gapOpenAtStart, gapOpenAtEnd) + gapExtensionPenalty + scoringScheme.gapPenalty(length2);
+        byte[] penalties = substitutionMatrix.penaltiesOf(char1);
+        for (int j = from2; j < to2; j++) {
+            int penalty = scoringScheme.gapPenalty(j - from2) + penalties[seq2.charAt(j)] + scoringScheme.gapPenalty(to2 - j - 1);
+            if (penalty < minimumPenalty) {
+                minimumPenalty = penalty;
+                matchedIndex = j;
+            }
+        }
+
+        if (matchedIndex >= 0) {
+            operations.add(Operation.INSERTION, matchedIndex - from2).match().add(Operation.INSERTION, to2 - matchedIndex - 1);
+        } else if (gapOpenAtStart <= gapOpenAtEnd) { //Put the seq1 gap next to the neighbouring gap it continues
+            operations.deletion().add(Operation.INSERTION, length2);
+        } else {
+            operations.add(Operation.INSERTION, length2).deletion();
+        }
+    }
+
+    /**
+     * @return the penalty of an alignment of the sanitized sequences under this scoring scheme
+     */
+    public int calcPenalty(String seq1, String seq2, AlignmentOperations operations) {
+        int penalty = 0;
+        int i = 1;
+        int j = 1;
+        for (int run = 0; run < operations.getNumberOfRuns(); run++) {
+            int length = operations.getLength(run);
+            switch (operations.getOperation(run)) {
+                case MATCH:
+                    for (int k = 0; k < length; k++) {
+                        penalty += substitutionMatrix.penalty(seq1.charAt(i++), seq2.charAt(j++));
+                    }
+                    break;
+                case DELETION:
+                    penalty += scoringScheme.gapPenalty(length);
+                    i += length;
+                    break;
+                default:
+                    penalty += scoringScheme.gapPenalty(length);
+                    j += length;
+                    break;
+            }
+        }
+        return penalty;
+    }
+}
@@ -0,0 +1,103 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+/**
+ * Per-thread, growable scratch buffers used by the alignment algorithms.
+ * <p>
+ * Each request thread gets its own instance, so the buffers can be reused by consecutive alignments
+ * without any synchronization. The buffers only grow, except that anything larger than
+ * {@link #MAX_RETAINED_INTS} is handed out once and not kept, so a single huge alignment does not pin
+ * memory on every worker thread.
+ * <p>
+ * A buffer is only valid until the next call to the same accessor on the same thread, and its content
+ * is not cleared between calls.
+ */
+public final class AlignmentScratch {
+
+    // 1M ints (4MB) per buffer covers a full memo table of two ~1,000 aa proteins
+    static final int MAX_RETAINED_INTS = 1 << 20;
+
+    private static final ThreadLocal<AlignmentScratch> SCRATCH = ThreadLocal.withInitial(AlignmentScratch::new);
+
+    private int[] memoTable = new int[0];
+    private int[] forwardRow = new int[0];
+    private int[] reverseRow = new int[0];
+    private int[] forwardGapRow = new int[0];
+    private int[] reverseGapRow = new int[0];
+    private int[] profile = new int[0];
+    private int[] residueSlots = new int[0];
+
+    private AlignmentScratch() {}
+
+    /**
+     * @return the scratch buffers of the current thread
+     */
+    public static AlignmentScratch current() {
+        return SCRATCH.get();
+    }
+
+    public int[] memoTable(int size) {
+        if (memoTable.length < size) {
+            int[] grown = new int[grow(memoTable.length, size)];
+            if (grown.length > MAX_RETAINED_INTS) {
+                return grown;
+            }
+            memoTable = grown;
+        }
+        return memoTable;
+    }
+
+    public int[] forwardRow(int size) {
+        if (forwardRow.length < size) {
+            forwardRow = new int[grow(forwardRow.length, size)];
+        }
+        return forwardRow;
+    }
+
+    public int[] reverseRow(int size) {
+        if (reverseRow.length < size) {
+            reverseRow = new int[grow(reverseRow.length, size)];
+        }
+        return reverseRow;
+    }
+
+    public int[] forwardGapRow(int size) {
+        if (forwardGapRow.length < size) {
+            forwardGapRow = new int[grow(forwardGapRow.length, size)];
+        }
+        return forwardGapRow;
+    }
+
+    public int[] reverseGapRow(int size) {
+        if (reverseGapRow.length < size) {
+            reverseGapRow = new int[grow(reverseGapRow.length, size)];
+        }
+        return reverseGapRow;
+    }
+
+    public int[] profile(int size) {
+        if (profile.length < size) {
+            int[] grown = new int[grow(profile.length, size)];
+            if (grown.length > MAX_RETAINED_INTS) {
+                return grown;
+            }
+            profile = grown;
+        }
+        return profile;
+    }
+
+    public int[] residueSlots(int size) {
+        if (residueSlots.length < size) {
+            residueSlots = new int[grow(residueSlots.length, size)];
+        }
+        return residueSlots;
+    }
+
+    private static int grow(int currentSize, int requiredSize) {
+        // grow by 1.5x to amortize a slowly increasing workload, but never beyond what is needed for large one-offs
+        int grownSize = currentSize + (currentSize >> 1);
+        if (grownSize < requiredSize || requiredSize > MAX_RETAINED_INTS) {
+            return requiredSize;
+        }
+        return Math.min(grownSize, MAX_RETAINED_INTS);
+    }
+}
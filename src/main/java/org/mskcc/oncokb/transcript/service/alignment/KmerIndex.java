@@ -0,0 +1,248 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An index of every k-mer of a set of protein sequences, usually all the isoforms of a gene.
+ * <p>
+ * The index answers which sequences contain a subsequence by looking up its rarest k-mer and verifying only the
+ * sequences at those positions, instead of scanning every sequence. It also ranks the sequences by the seeds (shared
+ * k-mers) they have in common with a query, so the full dynamic programming alignment only has to run on the
+ * most similar ones.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class KmerIndex {
+
+    /**
+     * Long enough to be selective among the isoforms of a gene, short enough for a single substitution to only
+     * hide a few seeds
+     */
+    public static final int DEFAULT_K = 5;
+
+    // 5 bits per residue, so a k-mer fits in a long
+    private static final int BITS_PER_RESIDUE = 5;
+    private static final int MAX_K = Long.SIZE / BITS_PER_RESIDUE;
+
+    private final int k;
+    private final List<String> ids;
+    private final List<String> sequences;
+    private final Map<String, Integer> indexById;
+    // k-mer -> (sequence index << 32 | position) of every occurrence
+    private final Map<Long, long[]> postings;
+
+    private KmerIndex(int k, List<String> ids, List<String> sequences) {
+        this.k = k;
+        this.ids = Collections.unmodifiableList(ids);
+        this.sequences = Collections.unmodifiableList(sequences);
+        this.indexById = new HashMap<>();
+        for (int s = 0; s < ids.size(); s++) {
+            indexById.put(ids.get(s), s);
+        }
+
+        Map<Long, long[]> growingPostings = new HashMap<>();
+        Map<Long, Integer> sizes = new HashMap<>();
+        for (int s = 0; s < sequences.size(); s++) {
+            String sequence = sequences.get(s);
+            for (int position = 0; position + k <= sequence.length(); position++) {
+                long kmer = encode(sequence, position, k);
+                int size = sizes.getOrDefault(kmer, 0);
+                long[] occurrences = growingPostings.get(kmer);
+                if (occurrences == null) {
+                    occurrences = new long[2];
+                } else if (occurrences.length == size) {
+                    occurrences = Arrays.copyOf(occurrences, size * 2);
+                }
+                occurrences[size] = ((long) s << 32) | position;
+                growingPostings.put(kmer, occurrences);
+                sizes.put(kmer, size + 1);
+            }
+        }
+        this.postings = new HashMap<>(growingPostings.size() * 2);
+        growingPostings.forEach((kmer, occurrences) -> postings.put(kmer, Arrays.copyOf(occurrences, sizes.get(kmer))));
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @return the ids of the indexed sequences, in the order they were added
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public Optional<String> getSequence(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? Optional.empty() : Optional.of(sequences.get(index));
+    }
+
+    /**
+     * Find the sequences containing the subsequence, same as filtering them with {@link String#contains}.
+     *
+     * @return the ids of the sequences containing the subsequence, in the order they were added
+     */
+    public List<String> findContaining(String subsequence) {
+        BitSet found = new BitSet(sequences.size());
+        if (subsequence.length() < k) {
+            //Too short to have a seed
+            for (int s = 0; s < sequences.size(); s++) {
+                if (sequences.get(s).contains(subsequence)) {
+                    found.set(s);
+                }
+            }
+            return toIds(found);
+        }
+
+        //Every occurrence has to contain the rarest k-mer of the subsequence at the same offset
+        long[] rarestOccurrences = null;
+        int rarestOffset = 0;
+        for (int offset = 0; offset + k <= subsequence.length(); offset++) {
+            long[] occurrences = postings.get(encode(subsequence, offset, k));
+            if (occurrences == null) {
+                return new ArrayList<>();
+            }
+            if (rarestOccurrences == null || occurrences.length < rarestOccurrences.length) {
+                rarestOccurrences = occurrences;
+                rarestOffset = offset;
+            }
+        }
+        for (long occurrence : rarestOccurrences) {
+            int s = (int) (occurrence >>> 32);
+            int start = (int) occurrence - rarestOffset;
+            if (!found.get(s) && start >= 0 && sequences.get(s).startsWith(subsequence, start)) {
+                found.set(s);
+            }
+        }
+        return toIds(found);
+    }
+
+    /**
+     * Rank the sequences by their similarity to the query, estimated from the seeds they share with it.
+     * <p>
+     * The sequences are ordered by the number of seeds forming a chain, i.e. at increasing positions in both the query
+     * and the sequence, which is what a global alignment can actually match. A sequence sharing the same k-mers in a
+     * different order ranks lower. Ties are broken by the number of shared k-mers in any order, then by the order the
+     * sequences were added.
+     *
+     * @param query the query sequence
+     * @param limit the maximum number of ids to return
+     * @return the ids of the most similar sequences
+     */
+    public List<String> rankCandidates(String query, int limit) {
+        int[] chainedSeeds = new int[sequences.size()];
+        int[] sharedSeeds = new int[sequences.size()];
+        int[] lastChainedPosition = new int[sequences.size()];
+        int[] lastChainedQueryPosition = new int[sequences.size()];
+        int[] lastSharedQueryPosition = new int[sequences.size()];
+        Arrays.fill(lastChainedPosition, -1);
+        Arrays.fill(lastChainedQueryPosition, -1);
+        Arrays.fill(lastSharedQueryPosition, -1);
+
+        for (int queryPosition = 0; queryPosition + k <= query.length(); queryPosition++) {
+            long[] occurrences = postings.get(encode(query, queryPosition, k));
+            if (occurrences == null) {
+                continue;
+            }
+            //The occurrences are sorted by sequence then position, so the first one of a sequence after its last
+            //chained seed extends the chain
+            for (long occurrence : occurrences) {
+                int s = (int) (occurrence >>> 32);
+                int position = (int) occurrence;
+                if (lastSharedQueryPosition[s] != queryPosition) {
+                    lastSharedQueryPosition[s] = queryPosition;
+                    sharedSeeds[s]++;
+                }
+                if (lastChainedQueryPosition[s] != queryPosition && position > lastChainedPosition[s]) {
+                    lastChainedQueryPosition[s] = queryPosition;
+                    lastChainedPosition[s] = position;
+                    chainedSeeds[s]++;
+                }
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>();
+        for (int s = 0; s < sequences.size(); s++) {
+            ranked.add(s);
+        }
+        ranked.sort(
+            Comparator
+                .<Integer>comparingInt(s -> chainedSeeds[s])
+                .thenComparingInt(s -> sharedSeeds[s])
+                .reversed()
+                .thenComparingInt(s -> s)
+        );
+
+        List<String> candidates = new ArrayList<>();
+        for (int i = 0; i < Math.min(limit, ranked.size()); i++) {
+            candidates.add(ids.get(ranked.get(i)));
+        }
+        return candidates;
+    }
+
+    private List<String> toIds(BitSet found) {
+        List<String> foundIds = new ArrayList<>();
+        for (int s = found.nextSetBit(0); s >= 0; s = found.nextSetBit(s + 1)) {
+            foundIds.add(ids.get(s));
+        }
+        return foundIds;
+    }
+
+    private static long encode(String sequence, int start, int k) {
+        long kmer = 0;
+        for (int i = start; i < start + k; i++) {
+            kmer = (kmer << BITS_PER_RESIDUE) | encode(sequence.charAt(i));
+        }
+        return kmer;
+    }
+
+    //Letters are case-insensitive, anything else shares one code. Matches are verified on the sequences anyway
+    private static int encode(char residue) {
+        if (residue >= 'A' && residue <= 'Z') {
+            return residue - 'A' + 1;
+        }
+        if (residue >= 'a' && residue <= 'z') {
+            return residue - 'a' + 1;
+        }
+        return residue == '*' ? 27 : 31;
+    }
+
+    /**
+     * Collects the sequences to index. A sequence whose id was already added is ignored.
+     */
+    public static final class Builder {
+
+        private final int k;
+        private final Map<String, String> sequences = new LinkedHashMap<>();
+
+        public Builder() {
+            this(DEFAULT_K);
+        }
+
+        public Builder(int k) {
+            if (k < 1 || k > MAX_K) {
+                throw new IllegalArgumentException("k needs to be between 1 and " + MAX_K);
+            }
+            this.k = k;
+        }
+
+        public Builder add(String id, String sequence) {
+            sequences.putIfAbsent(id, sequence);
+            return this;
+        }
+
+        public KmerIndex build() {
+            return new KmerIndex(k, new ArrayList<>(sequences.keySet()), new ArrayList<>(sequences.values()));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import java.util.Arrays;
+
+/**
+ * Computes only the penalty of the optimal global alignment, for callers that rank or filter alignments and do not
+ * need the alignment itself.
+ * <p>
+ * Only three rows of the target length are kept, no matter the sequence lengths, and nothing is kept for a traceback.
+ * Each row is computed in two passes. The first pass takes the diagonal and the vertical gap from the previous row,
+ * which has no dependency between neighbouring cells, so the JIT can vectorize it. The penalties come from a query
+ * profile, i.e. one row of penalties per reference residue laid out along the target, so the first pass only reads
+ * contiguous arrays. The second pass adds the horizontal gaps, which depend on the cell on the left.
+ * <p>
+ * Gaps are affine, a linear scheme is the special case of a gap open penalty of 0, so the penalty is always the same as
+ * the one of {@link AffineGapAligner} or of the linear gap algorithms in AlignmentService.
+ * <p>
+ * Like AlignmentService, it expects sanitized sequences with a leading space, so residue i of a sequence is at index i.
+ * The residues have to be ASCII characters, the ones of the substitution matrix.
+ */
+public final class ScoreOnlyAligner {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final int RESIDUES = 128;
+
+    private final ScoringScheme scoringScheme;
+    private final SubstitutionMatrix substitutionMatrix;
+    private final int gapOpenPenalty;
+    private final int gapExtensionPenalty;
+
+    public ScoreOnlyAligner(ScoringScheme scoringScheme) {
+        this.scoringScheme = scoringScheme;
+        this.substitutionMatrix = scoringScheme.getSubstitutionMatrix();
+        this.gapOpenPenalty = scoringScheme.getGapOpenPenalty();
+        this.gapExtensionPenalty = scoringScheme.getGapExtensionPenalty();
+    }
+
+    /**
+     * @param maxPenalty the computation stops as soon as every alignment is known to cost more than this
+     * @return the minimum penalty, or some value greater than maxPenalty if it is greater than maxPenalty
+     * @throws IllegalArgumentException when a residue is not an ASCII character
+     */
+    public int calcPenalty(String seq1, String seq2, int maxPenalty) {
+        checkResidues(seq2);
+        int width = seq2.length();
+        AlignmentScratch scratch = AlignmentScratch.current();
+        int[] row = scratch.forwardRow(width); // H, the best penalty of each cell
+        int[] gapRow = scratch.forwardGapRow(width); // E, the best penalty ending with seq1 aligned to a gap
+        int[] candidateRow = scratch.reverseRow(width); // min(diagonal, E) before the horizontal gaps are known
+        int[] residueSlots = scratch.residueSlots(RESIDUES); // the row of each residue of seq1 in the profile
+        int[] profile = calcProfile(seq1, seq2, residueSlots, scratch);
+
+        row[0] = 0;
+        for (int j = 1; j < width; j++) { // base case: i = 0
+            row[j] = scoringScheme.gapPenalty(j);
+            gapRow[j] = INFINITY;
+        }
+        int gapOpenAndExtension = gapOpenPenalty + gapExtensionPenalty;
+        for (int i = 1; i < seq1.length(); i++) {
+            int profileRow = residueSlots[seq1.charAt(i)] * width;
+
+            //Pass 1: diagonal and vertical gap, from the previous row only
+            for (int j = 1; j < width; j++) {
+                int seq1CharWithGap = Math.min(row[j] + gapOpenAndExtension, gapRow[j] + gapExtensionPenalty);
+                gapRow[j] = seq1CharWithGap;
+                candidateRow[j] = Math.min(row[j - 1] + profile[profileRow + j], seq1CharWithGap);
+            }
+
+            //Pass 2: horizontal gap, from the cell on the left
+            int left = scoringScheme.gapPenalty(i); // base case: j = 0
+            row[0] = left;
+            int seq2CharWithGap = INFINITY;
+            int rowMinimum = left;
+            for (int j = 1; j < width; j++) {
+                seq2CharWithGap = Math.min(left + gapOpenAndExtension, seq2CharWithGap + gapExtensionPenalty);
+                left = Math.min(candidateRow[j], seq2CharWithGap);
+                row[j] = left;
+                rowMinimum = Math.min(rowMinimum, left);
+            }
+            if (rowMinimum > maxPenalty) { //Every path to the end goes through this row, and penalties never decrease
+                return rowMinimum;
+            }
+        }
+        return row[width - 1];
+    }
+
+    // One row of penalties along seq2 per distinct residue of seq1, in the order they first appear in seq1
+    private int[] calcProfile(String seq1, String seq2, int[] residueSlots, AlignmentScratch scratch) {
+        Arrays.fill(residueSlots, 0, RESIDUES, -1);
+        int residueCount = 0;
+        for (int i = 1; i < seq1.length(); i++) {
+            char residue = seq1.charAt(i);
+            checkResidue(residue, i);
+            if (residueSlots[residue] < 0) {
+                residueSlots[residue] = residueCount++;
+            }
+        }
+
+        int width = seq2.length();
+        int[] profile = scratch.profile(residueCount * width);
+        for (char residue = 0; residue < RESIDUES; residue++) {
+            if (residueSlots[residue] >= 0) {
+                byte[] penalties = substitutionMatrix.penaltiesOf(residue);
+                int profileRow = residueSlots[residue] * width;
+                for (int j = 1; j < width; j++) {
+                    profile[profileRow + j] = penalties[seq2.charAt(j)];
+                }
+            }
+        }
+        return profile;
+    }
+
+    private static void checkResidues(String sequence) {
+        for (int i = 1; i < sequence.length(); i++) {
+            checkResidue(sequence.charAt(i), i);
+        }
+    }
+
+    private static void checkResidue(char residue, int index) {
+        if (residue >= RESIDUES) {
+            throw new IllegalArgumentException("The residue " + index + " is not an ASCII character: " + residue);
+        }
+    }
+}
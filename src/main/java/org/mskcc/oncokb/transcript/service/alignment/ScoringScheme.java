@@ -0,0 +1,87 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import java.util.Objects;
+
+/**
+ * Substitution matrix plus gap penalties used by an alignment.
+ * <p>
+ * A gap of length L costs gapOpenPenalty + L * gapExtensionPenalty. With a gap open penalty of 0 every gapped residue
+ * costs the same, which is what AlignmentService has always done, and the faster linear-gap algorithms are used.
+ */
+public final class ScoringScheme {
+
+    /**
+     * The scheme AlignmentService has always used, mismatch penalties from {@link SubstitutionMatrix#LEGACY} and 2 per gap.
+     */
+    public static final ScoringScheme LEGACY = new ScoringScheme(SubstitutionMatrix.LEGACY, 0, 2);
+
+    public static final ScoringScheme BLOSUM62 = new ScoringScheme(SubstitutionMatrix.BLOSUM62, 10, 2);
+
+    public static final ScoringScheme PAM250 = new ScoringScheme(SubstitutionMatrix.PAM250, 10, 2);
+
+    private final SubstitutionMatrix substitutionMatrix;
+    private final int gapOpenPenalty;
+    private final int gapExtensionPenalty;
+
+    public ScoringScheme(SubstitutionMatrix substitutionMatrix, int gapOpenPenalty, int gapExtensionPenalty) {
+        if (gapOpenPenalty < 0 || gapExtensionPenalty < 0) {
+            throw new IllegalArgumentException("Gap penalties cannot be negative");
+        }
+        this.substitutionMatrix = Objects.requireNonNull(substitutionMatrix);
+        this.gapOpenPenalty = gapOpenPenalty;
+        this.gapExtensionPenalty = gapExtensionPenalty;
+    }
+
+    public SubstitutionMatrix getSubstitutionMatrix() {
+        return substitutionMatrix;
+    }
+
+    public int getGapOpenPenalty() {
+        return gapOpenPenalty;
+    }
+
+    public int getGapExtensionPenalty() {
+        return gapExtensionPenalty;
+    }
+
+    public boolean isAffine() {
+        return gapOpenPenalty > 0;
+    }
+
+    /**
+     * @return the penalty of a single gap of the given length
+     */
+    public int gapPenalty(int length) {
+        return length == 0 ? 0 : gapOpenPenalty + length * gapExtensionPenalty;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScoringScheme)) {
+            return false;
+        }
+        ScoringScheme that = (ScoringScheme) o;
+        return (
+            gapOpenPenalty == that.gapOpenPenalty &&
+            gapExtensionPenalty == that.gapExtensionPenalty &&
+            substitutionMatrix.equals(that.substitutionMatrix)
+        );
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(substitutionMatrix, gapOpenPenalty, gapExtensionPenalty);
+    }
+
+    /**
+     * Also the prefix of the cached alignments, so it names everything the alignment depends on: the matrix with the
+     * digest of its penalties, and the gap penalties.
+     */
+    @Override
+    public String toString() {
+        return substitutionMatrix.getName() + "@" + substitutionMatrix.getDigest() + "/" + gapOpenPenalty + "/" + gapExtensionPenalty;
+    }
+}
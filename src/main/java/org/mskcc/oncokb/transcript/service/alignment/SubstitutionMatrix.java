@@ -0,0 +1,251 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Precomputed penalty of aligning one residue with another.
+ * <p>
+ * The alignment minimizes the penalty, so identical residues always cost 0 and every other pair costs a non-negative
+ * penalty. The lookup table is indexed directly by the (upper case) residue characters, so the alignment loops never
+ * box or classify a character.
+ * <p>
+ * Similarity matrices such as BLOSUM62 are converted with penalty(a, b) = (s(a, a) + s(b, b)) / 2 - s(a, b), rounded up.
+ */
+public final class SubstitutionMatrix {
+
+    private static final int TABLE_SIZE = 128;
+
+    // 8 bytes of the SHA-256 of the penalties are plenty to tell the matrices of one deployment apart
+    private static final int DIGEST_BYTES = 8;
+
+    // Amino acid order used by the NCBI matrices below
+    private static final String NCBI_RESIDUES = "ARNDCQEGHILKMFPSTWYVBZX";
+
+    // https://ftp.ncbi.nih.gov/blast/matrices/BLOSUM62
+    private static final int[][] BLOSUM62_SCORES = {
+        { 4, -1, -2, -2, 0, -1, -1, 0, -2, -1, -1, -1, -1, -2, -1, 1, 0, -3, -2, 0, -2, -1, 0 },
+        { -1, 5, 0, -2, -3, 1, 0, -2, 0, -3, -2, 2, -1, -3, -2, -1, -1, -3, -2, -3, -1, 0, -1 },
+        { -2, 0, 6, 1, -3, 0, 0, 0, 1, -3, -3, 0, -2, -3, -2, 1, 0, -4, -2, -3, 3, 0, -1 },
+        { -2, -2, 1, 6, -3, 0, 2, -1, -1, -3, -4, -1, -3, -3, -1, 0, -1, -4, -3, -3, 4, 1, -1 },
+        { 0, -3, -3, -3, 9, -3, -4, -3, -3, -1, -1, -3, -1, -2, -3, -1, -1, -2, -2, -1, -3, -3, -2 },
+        { -1, 1, 0, 0, -3, 5, 2, -2, 0, -3, -2, 1, 0, -3, -1, 0, -1, -2, -1, -2, 0, 3, -1 },
+        { -1, 0, 0, 2, -4, 2, 5, -2, 0, -3, -3, 1, -2, -3, -1, 0, -1, -3, -2, -2, 1, 4, -1 },
+        { 0, -2, 0, -1, -3, -2, -2, 6, -2, -4, -4, -2, -3, -3, -2, 0, -2, -2, -3, -3, -1, -2, -1 },
+        { -2, 0, 1, -1, -3, 0, 0, -2, 8, -3, -3, -1, -2, -1, -2, -1, -2, -2, 2, -3, 0, 0, -1 },
+        { -1, -3, -3, -3, -1, -3, -3, -4, -3, 4, 2, -3, 1, 0, -3, -2, -1, -3, -1, 3, -3, -3, -1 },
+        { -1, -2, -3, -4, -1, -2, -3, -4, -3, 2, 4, -2, 2, 0, -3, -2, -1, -2, -1, 1, -4, -3, -1 },
+        { -1, 2, 0, -1, -3, 1, 1, -2, -1, -3, -2, 5, -1, -3, -1, 0, -1, -3, -2, -2, 0, 1, -1 },
+        { -1, -1, -2, -3, -1, 0, -2, -3, -2, 1, 2, -1, 5, 0, -2, -1, -1, -1, -1, 1, -3, -1, -1 },
+        { -2, -3, -3, -3, -2, -3, -3, -3, -1, 0, 0, -3, 0, 6, -4, -2, -2, 1, 3, -1, -3, -3, -1 },
+        { -1, -2, -2, -1, -3, -1, -1, -2, -2, -3, -3, -1, -2, -4, 7, -1, -1, -4, -3, -2, -2, -1, -2 },
+        { 1, -1, 1, 0, -1, 0, 0, 0, -1, -2, -2, 0, -1, -2, -1, 4, 1, -3, -2, -2, 0, 0, 0 },
+        { 0, -1, 0, -1, -1, -1, -1, -2, -2, -1, -1, -1, -1, -2, -1, 1, 5, -2, -2, 0, -1, -1, 0 },
+        { -3, -3, -4, -4, -2, -2, -3, -2, -2, -3, -2, -3, -1, 1, -4, -3, -2, 11, 2, -3, -4, -3, -2 },
+        { -2, -2, -2, -3, -2, -1, -2, -3, 2, -1, -1, -2, -1, 3, -3, -2, -2, 2, 7, -1, -3, -2, -1 },
+        { 0, -3, -3, -3, -1, -2, -2, -3, -3, 3, 1, -2, 1, -1, -2, -2, 0, -3, -1, 4, -3, -2, -1 },
+        { -2, -1, 3, 4, -3, 0, 1, -1, 0, -3, -4, 0, -3, -3, -2, 0, -1, -4, -3, -3, 4, 1, -1 },
+        { -1, 0, 0, 1, -3, 3, 4, -2, 0, -3, -3, 1, -1, -3, -1, 0, -1, -3, -2, -2, 1, 4, -1 },
+        { 0, -1, -1, -1, -2, -1, -1, -1, -1, -1, -1, -1, -1, -1, -2, 0, 0, -2, -1, -1, -1, -1, -1 },
+    };
+
+    // https://ftp.ncbi.nih.gov/blast/matrices/PAM250
+    private static final int[][] PAM250_SCORES = {
+        { 2, -2, 0, 0, -2, 0, 0, 1, -1, -1, -2, -1, -1, -3, 1, 1, 1, -6, -3, 0, 0, 0, 0 },
+        { -2, 6, 0, -1, -4, 1, -1, -3, 2, -2, -3, 3, 0, -4, 0, 0, -1, 2, -4, -2, -1, 0, -1 },
+        { 0, 0, 2, 2, -4, 1, 1, 0, 2, -2, -3, 1, -2, -3, 0, 1, 0, -4, -2, -2, 2, 1, 0 },
+        { 0, -1, 2, 4, -5, 2, 3, 1, 1, -2, -4, 0, -3, -6, -1, 0, 0, -7, -4, -2, 3, 3, -1 },
+        { -2, -4, -4, -5, 12, -5, -5, -3, -3, -2, -6, -5, -5, -4, -3, 0, -2, -8, 0, -2, -4, -5, -3 },
+        { 0, 1, 1, 2, -5, 4, 2, -1, 3, -2, -2, 1, -1, -5, 0, -1, -1, -5, -4, -2, 1, 3, -1 },
+        { 0, -1, 1, 3, -5, 2, 4, 0, 1, -2, -3, 0, -2, -5, -1, 0, 0, -7, -4, -2, 3, 3, -1 },
+        { 1, -3, 0, 1, -3, -1, 0, 5, -2, -3, -4, -2, -3, -5, 0, 1, 0, -7, -5, -1, 0, 0, -1 },
+        { -1, 2, 2, 1, -3, 3, 1, -2, 6, -2, -2, 0, -2, -2, 0, -1, -1, -3, 0, -2, 1, 2, -1 },
+        { -1, -2, -2, -2, -2, -2, -2, -3, -2, 5, 2, -2, 2, 1, -2, -1, 0, -5, -1, 4, -2, -2, -1 },
+        { -2, -3, -3, -4, -6, -2, -3, -4, -2, 2, 6, -3, 4, 2, -3, -3, -2, -2, -1, 2, -3, -3, -1 },
+        { -1, 3, 1, 0, -5, 1, 0, -2, 0, -2, -3, 5, 0, -5, -1, 0, 0, -3, -4, -2, 1, 0, -1 },
+        { -1, 0, -2, -3, -5, -1, -2, -3, -2, 2, 4, 0, 6, 0, -2, -2, -1, -4, -2, 2, -2, -2, -1 },
+        { -3, -4, -3, -6, -4, -5, -5, -5, -2, 1, 2, -5, 0, 9, -5, -3, -3, 0, 7, -1, -4, -5, -2 },
+        { 1, 0, 0, -1, -3, 0, -1, 0, 0, -2, -3, -1, -2, -5, 6, 1, 0, -6, -5, -1, -1, 0, -1 },
+        { 1, 0, 1, 0, 0, -1, 0, 1, -1, -1, -3, 0, -2, -3, 1, 2, 1, -2, -3, -1, 0, 0, 0 },
+        { 1, -1, 0, 0, -2, -1, 0, 0, -1, 0, -2, 0, -1, -3, 0, 1, 3, -5, -3, 0, 0, -1, 0 },
+        { -6, 2, -4, -7, -8, -5, -7, -7, -3, -5, -2, -3, -4, 0, -6, -2, -5, 17, 0, -6, -5, -6, -4 },
+        { -3, -4, -2, -4, 0, -4, -4, -5, 0, -1, -1, -4, -2, 7, -5, -3, -3, 0, 10, -2, -3, -4, -2 },
+        { 0, -2, -2, -2, -2, -2, -2, -1, -2, 4, 2, -2, 2, -1, -1, -1, 0, -6, -2, 4, -2, -2, -1 },
+        { 0, -1, 2, 3, -4, 1, 3, 0, 1, -2, -3, 1, -2, -4, -1, 0, 0, -5, -3, -2, 3, 2, -1 },
+        { 0, 0, 1, 3, -5, 3, 3, 0, 2, -2, -3, 0, -2, -5, 0, 0, -1, -6, -4, -2, 2, 3, -1 },
+        { 0, -1, 0, -1, -3, -1, -1, -1, -1, -1, -1, -1, -1, -2, -1, 0, 0, -4, -2, -1, -1, -1, -1 },
+    };
+
+    /**
+     * The scheme AlignmentService has always used: 3 for any mismatch, except 1 between two different digits.
+     * The vowel/consonant classes are kept as they were, they never apply because sequences are upper-cased before alignment.
+     */
+    public static final SubstitutionMatrix LEGACY = legacy(1, 1, 3, 1);
+
+    public static final SubstitutionMatrix BLOSUM62 = fromSimilarityScores("BLOSUM62", NCBI_RESIDUES, BLOSUM62_SCORES);
+
+    public static final SubstitutionMatrix PAM250 = fromSimilarityScores("PAM250", NCBI_RESIDUES, PAM250_SCORES);
+
+    private final String name;
+    private final byte[][] penalties;
+    private final String digest;
+
+    private SubstitutionMatrix(String name, byte[][] penalties) {
+        this.name = name;
+        this.penalties = penalties;
+        this.digest = digest(penalties);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a hex digest of the penalties, so matrices with the same name but different penalties are told apart
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * @return the penalty of aligning the two upper case residues
+     */
+    public int penalty(char residue1, char residue2) {
+        return penalties[residue1][residue2];
+    }
+
+    /**
+     * Row of the lookup table for one residue, so the inner alignment loop only needs a single array access per cell.
+     * The returned array must not be modified.
+     */
+    public byte[] penaltiesOf(char residue) {
+        return penalties[residue];
+    }
+
+    /**
+     * Build the vowel/consonant/number scheme that came with the original sequence-alignment implementation.
+     */
+    public static SubstitutionMatrix legacy(
+        int vowelVowelMismatchPenalty,
+        int consonantConsonantMismatchPenalty,
+        int vowelConsonantMismatchPenalty,
+        int numberNumberMismatchPenalty
+    ) {
+        Set<Character> vowels = new HashSet<>(Arrays.asList('a', 'e', 'i', 'o', 'u'));
+        Set<Character> consonants = new HashSet<>(
+            Arrays.asList('b', 'c', 'd', 'f', 'g', 'h', 'j', 'k', 'l', 'm', 'n', 'p', 'q', 'r', 's', 't', 'v', 'w', 'x', 'y', 'z')
+        );
+        Set<Character> numbers = new HashSet<>(Arrays.asList('0', '1', '2', '3', '4', '5', '6', '7', '8', '9'));
+
+        byte[][] penalties = new byte[TABLE_SIZE][TABLE_SIZE];
+        for (char char1 = 0; char1 < TABLE_SIZE; char1++) {
+            for (char char2 = 0; char2 < TABLE_SIZE; char2++) {
+                int penalty;
+                if (char1 == char2) {
+                    penalty = 0;
+                } else if (consonants.contains(char1) && consonants.contains(char2)) {
+                    penalty = consonantConsonantMismatchPenalty;
+                } else if (vowels.contains(char1) && vowels.contains(char2)) {
+                    penalty = vowelVowelMismatchPenalty;
+                } else if (numbers.contains(char1) && numbers.contains(char2)) {
+                    penalty = numberNumberMismatchPenalty;
+                } else {
+                    penalty = vowelConsonantMismatchPenalty;
+                }
+                penalties[char1][char2] = toByte(penalty);
+            }
+        }
+        return new SubstitutionMatrix(
+            "LEGACY(" +
+            vowelVowelMismatchPenalty +
+            "," +
+            consonantConsonantMismatchPenalty +
+            "," +
+            vowelConsonantMismatchPenalty +
+            "," +
+            numberNumberMismatchPenalty +
+            ")",
+            penalties
+        );
+    }
+
+    /**
+     * Build a penalty matrix from a symmetric similarity matrix such as BLOSUM62.
+     * Pairs involving a residue that is not in the matrix get the largest penalty of the matrix.
+     *
+     * @param name     name of the matrix
+     * @param residues the residue of each row/column of the scores
+     * @param scores   the similarity scores, higher means more similar
+     * @return the substitution matrix
+     */
+    public static SubstitutionMatrix fromSimilarityScores(String name, String residues, int[][] scores) {
+        byte[][] penalties = new byte[TABLE_SIZE][TABLE_SIZE];
+        int maxPenalty = 0;
+        for (int i = 0; i < residues.length(); i++) {
+            for (int j = 0; j < residues.length(); j++) {
+                int penalty = i == j ? 0 : Math.max(0, (scores[i][i] + scores[j][j] + 1) / 2 - scores[i][j]);
+                penalties[residues.charAt(i)][residues.charAt(j)] = toByte(penalty);
+                maxPenalty = Math.max(maxPenalty, penalty);
+            }
+        }
+        for (char char1 = 0; char1 < TABLE_SIZE; char1++) {
+            for (char char2 = 0; char2 < TABLE_SIZE; char2++) {
+                if (residues.indexOf(char1) < 0 || residues.indexOf(char2) < 0) {
+                    penalties[char1][char2] = toByte(char1 == char2 ? 0 : maxPenalty);
+                }
+            }
+        }
+        return new SubstitutionMatrix(name, penalties);
+    }
+
+    private static byte toByte(int penalty) {
+        if (penalty < 0 || penalty > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("The substitution penalty has to be between 0 and " + Byte.MAX_VALUE + ", but is " + penalty);
+        }
+        return (byte) penalty;
+    }
+
+    private static String digest(byte[][] penalties) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (byte[] row : penalties) {
+            messageDigest.update(row);
+        }
+        byte[] hash = messageDigest.digest();
+        StringBuilder digest = new StringBuilder();
+        for (int i = 0; i < DIGEST_BYTES; i++) {
+            digest.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return digest.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SubstitutionMatrix)) {
+            return false;
+        }
+        SubstitutionMatrix that = (SubstitutionMatrix) o;
+        return name.equals(that.name) && digest.equals(that.digest) && Arrays.deepEquals(penalties, that.penalties);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, digest);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
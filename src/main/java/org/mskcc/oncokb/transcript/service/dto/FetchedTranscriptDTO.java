@@ -0,0 +1,101 @@
+package org.mskcc.oncokb.transcript.service.dto;
+
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript;
+
+/**
+ * A transcript fetched from Ensembl and Genome Nexus ahead of the transaction that saves it, see
+ * {@link org.mskcc.oncokb.transcript.service.MainService#createTranscripts}.
+ */
+public class FetchedTranscriptDTO {
+
+    private ReferenceGenome referenceGenome;
+
+    private Integer entrezGeneId;
+
+    private String ensemblTranscriptId;
+
+    // the Ensembl lookup of the parent gene
+    private EnsemblTranscript ensemblGene;
+
+    // the transcript to save when it is not saved yet, null when Genome Nexus does not have it
+    private TranscriptDTO transcript;
+
+    // the protein sequence of the transcript to save, null when Ensembl does not have it
+    private String proteinSequence;
+
+    private Boolean canonical = false;
+
+    public ReferenceGenome getReferenceGenome() {
+        return referenceGenome;
+    }
+
+    public void setReferenceGenome(ReferenceGenome referenceGenome) {
+        this.referenceGenome = referenceGenome;
+    }
+
+    public Integer getEntrezGeneId() {
+        return entrezGeneId;
+    }
+
+    public void setEntrezGeneId(Integer entrezGeneId) {
+        this.entrezGeneId = entrezGeneId;
+    }
+
+    public String getEnsemblTranscriptId() {
+        return ensemblTranscriptId;
+    }
+
+    public void setEnsemblTranscriptId(String ensemblTranscriptId) {
+        this.ensemblTranscriptId = ensemblTranscriptId;
+    }
+
+    public EnsemblTranscript getEnsemblGene() {
+        return ensemblGene;
+    }
+
+    public void setEnsemblGene(EnsemblTranscript ensemblGene) {
+        this.ensemblGene = ensemblGene;
+    }
+
+    public TranscriptDTO getTranscript() {
+        return transcript;
+    }
+
+    public void setTranscript(TranscriptDTO transcript) {
+        this.transcript = transcript;
+    }
+
+    public String getProteinSequence() {
+        return proteinSequence;
+    }
+
+    public void setProteinSequence(String proteinSequence) {
+        this.proteinSequence = proteinSequence;
+    }
+
+    public Boolean getCanonical() {
+        return canonical;
+    }
+
+    public void setCanonical(Boolean canonical) {
+        this.canonical = canonical;
+    }
+
+    @Override
+    public String toString() {
+        return (
+            "FetchedTranscriptDTO{" +
+            "referenceGenome=" +
+            referenceGenome +
+            ", entrezGeneId=" +
+            entrezGeneId +
+            ", ensemblTranscriptId='" +
+            ensemblTranscriptId +
+            "'" +
+            ", canonical=" +
+            canonical +
+            "}"
+        );
+    }
+}
@@ -0,0 +1,101 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.mskcc.oncokb.transcript.config.model.EnsemblConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * Keeps the requests to Ensembl under its rate limit.
+ * <p>
+ * Every host, i.e. GRCh37 and GRCh38, has its own {@link TokenBucket}. The bucket starts at the configured maximum
+ * rate, and is tuned from the X-RateLimit-Remaining and X-RateLimit-Reset headers of every response. A 429 or a 503
+ * pauses the bucket for the Retry-After delay, or an exponential backoff without it, then the request is retried.
+ * <p>
+ * See https://github.com/Ensembl/ensembl-rest/wiki/Rate-Limits
+ */
+public class EnsemblRateLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Logger log = LoggerFactory.getLogger(EnsemblRateLimitInterceptor.class);
+
+    static final String RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
+    static final String RATE_LIMIT_RESET = "X-RateLimit-Reset";
+
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRequestsPerSecond;
+    private final int maxRetries;
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    public EnsemblRateLimitInterceptor(EnsemblConfig ensemblConfig) {
+        this.maxRequestsPerSecond = ensemblConfig.getMaxRequestsPerSecond();
+        this.maxRetries = ensemblConfig.getMaxRetries();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        TokenBucket bucket = getBucket(request.getURI().getHost());
+        for (int attempt = 0;; attempt++) {
+            try {
+                bucket.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the Ensembl rate limit");
+            }
+            ClientHttpResponse response = execution.execute(request, body);
+            HttpHeaders headers = response.getHeaders();
+            OptionalDouble remaining = getNumber(headers, RATE_LIMIT_REMAINING);
+            OptionalDouble reset = getNumber(headers, RATE_LIMIT_RESET);
+            if (remaining.isPresent() && reset.isPresent()) {
+                bucket.update((long) remaining.getAsDouble(), reset.getAsDouble());
+            }
+
+            int status = response.getRawStatusCode();
+            boolean retryLater = status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+            if (!retryLater || attempt >= maxRetries) {
+                return response;
+            }
+            OptionalDouble retryAfter = getNumber(headers, HttpHeaders.RETRY_AFTER);
+            long backoffNanos = retryAfter.isPresent()
+                ? (long) (retryAfter.getAsDouble() * TimeUnit.SECONDS.toNanos(1))
+                : BASE_BACKOFF_NANOS << attempt;
+            log.warn(
+                "Ensembl answered {} to {} {}, retrying in {}ms",
+                status,
+                request.getMethod(),
+                request.getURI(),
+                TimeUnit.NANOSECONDS.toMillis(backoffNanos)
+            );
+            response.close();
+            bucket.pause(backoffNanos);
+        }
+    }
+
+    TokenBucket getBucket(String host) {
+        return buckets.computeIfAbsent(host == null ? "" : host, key -> new TokenBucket(maxRequestsPerSecond));
+    }
+
+    //Only the delay in seconds is supported for Retry-After, the HTTP date falls back to the exponential backoff
+    private static OptionalDouble getNumber(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null) {
+            return OptionalDouble.empty();
+        }
+        try {
+            return OptionalDouble.of(Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            return OptionalDouble.empty();
+        }
+    }
+}
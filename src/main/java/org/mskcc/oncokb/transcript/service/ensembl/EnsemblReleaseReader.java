@@ -0,0 +1,344 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import org.mskcc.oncokb.transcript.domain.enumeration.GenomeFragmentType;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+
+/**
+ * Reads the Ensembl release files, i.e. Homo_sapiens.GRCh38.104.gtf.gz and Homo_sapiens.GRCh38.pep.all.fa.gz from
+ * https://ftp.ensembl.org/pub, line by line without loading the whole file. The peptides are handed over one at a time.
+ * <p>
+ * The GTF gives the structure of the genes: transcripts, exons, CDS and UTRs. Its lines are sorted by chromosome, so
+ * the genes are handed over one chromosome at a time. The coordinates and the strand follow the Ensembl REST API,
+ * i.e. 1-based and 1 or -1.
+ */
+public final class EnsemblReleaseReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private EnsemblReleaseReader() {}
+
+    /**
+     * Open a release file, decompressed on the fly when it ends with .gz
+     */
+    public static BufferedReader open(Path path) throws IOException {
+        InputStream inputStream = Files.newInputStream(path);
+        if (path.getFileName().toString().endsWith(".gz")) {
+            inputStream = new GZIPInputStream(inputStream, BUFFER_SIZE);
+        }
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Read the genes of a GTF file.
+     *
+     * @param reader   the GTF content
+     * @param consumer receives the genes of each chromosome, once all its lines are read
+     */
+    public static void readGtf(BufferedReader reader, Consumer<List<ReleaseGene>> consumer) throws IOException {
+        String chromosome = null;
+        Map<String, ReleaseGene> genes = new LinkedHashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            String[] columns = line.split("\t", -1);
+            if (columns.length < 9) {
+                throw new IOException("Malformed GTF line: " + line);
+            }
+            if (!columns[0].equals(chromosome)) {
+                complete(genes, consumer);
+                genes = new LinkedHashMap<>();
+                chromosome = columns[0];
+            }
+            addFeature(genes, columns);
+        }
+        complete(genes, consumer);
+    }
+
+    /**
+     * Read the sequences of a peptide FASTA file, one peptide at a time.
+     *
+     * @param reader   the FASTA content
+     * @param consumer receives each peptide once all its lines are read, with the protein id without the version, the
+     *                 version from the header and the sequence
+     */
+    public static void readPeptides(BufferedReader reader, Consumer<EnsemblSequence> consumer) throws IOException {
+        EnsemblSequence peptide = null;
+        StringBuilder sequence = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(">")) {
+                complete(peptide, sequence, consumer);
+                int end = line.indexOf(' ');
+                peptide = toPeptide(end < 0 ? line.substring(1) : line.substring(1, end));
+                sequence.setLength(0);
+            } else {
+                sequence.append(line.trim());
+            }
+        }
+        complete(peptide, sequence, consumer);
+    }
+
+    private static void addFeature(Map<String, ReleaseGene> genes, String[] columns) throws IOException {
+        Map<String, String> attributes = parseAttributes(columns[8]);
+        String geneId = attributes.get("gene_id");
+        if (geneId == null) {
+            return;
+        }
+        int start = Integer.parseInt(columns[3]);
+        int end = Integer.parseInt(columns[4]);
+        int strand = "-".equals(columns[6]) ? -1 : 1;
+
+        ReleaseGene gene = genes.computeIfAbsent(geneId, id -> new ReleaseGene(id, columns[0], strand));
+        gene.extend(start, end);
+        if (gene.name == null) {
+            gene.name = attributes.get("gene_name");
+        }
+        String transcriptId = attributes.get("transcript_id");
+        if (transcriptId == null) {
+            return;
+        }
+        ReleaseTranscript transcript = gene.transcripts.computeIfAbsent(
+            transcriptId,
+            id -> new ReleaseTranscript(id, columns[0], strand)
+        );
+        transcript.extend(start, end);
+
+        ReleaseFeature feature = new ReleaseFeature(start, end);
+        switch (columns[2]) {
+            case "exon":
+                transcript.exons.add(feature);
+                break;
+            case "CDS":
+                transcript.proteinId = attributes.get("protein_id");
+                transcript.codingStart = transcript.codingStart == 0 ? start : Math.min(transcript.codingStart, start);
+                transcript.codingEnd = Math.max(transcript.codingEnd, end);
+                break;
+            case "five_prime_utr":
+                feature.type = GenomeFragmentType.FIVE_PRIME_UTR;
+                transcript.utrs.add(feature);
+                break;
+            case "three_prime_utr":
+                feature.type = GenomeFragmentType.THREE_PRIME_UTR;
+                transcript.utrs.add(feature);
+                break;
+            case "UTR":
+                // GRCh37 releases do not tell which side, it is found from the CDS once the transcript is read
+                transcript.utrs.add(feature);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void complete(Map<String, ReleaseGene> genes, Consumer<List<ReleaseGene>> consumer) {
+        if (genes.isEmpty()) {
+            return;
+        }
+        for (ReleaseGene gene : genes.values()) {
+            for (ReleaseTranscript transcript : gene.transcripts.values()) {
+                transcript.utrs.removeIf(utr -> {
+                    if (utr.type == null && transcript.codingStart > 0) {
+                        boolean upstream = transcript.getStrand() > 0
+                            ? utr.end < transcript.codingStart
+                            : utr.start > transcript.codingEnd;
+                        utr.type = upstream ? GenomeFragmentType.FIVE_PRIME_UTR : GenomeFragmentType.THREE_PRIME_UTR;
+                    }
+                    return utr.type == null;
+                });
+            }
+        }
+        consumer.accept(new ArrayList<>(genes.values()));
+    }
+
+    // The attributes look like: gene_id "ENSG00000157764"; gene_version "14"; gene_name "BRAF"; tag "basic";
+    static Map<String, String> parseAttributes(String column) throws IOException {
+        Map<String, String> attributes = new HashMap<>();
+        int index = 0;
+        int length = column.length();
+        while (index < length) {
+            while (index < length && (column.charAt(index) == ' ' || column.charAt(index) == ';')) {
+                index++;
+            }
+            if (index >= length) {
+                break;
+            }
+            int keyEnd = column.indexOf(' ', index);
+            if (keyEnd < 0) {
+                throw new IOException("Malformed GTF attributes: " + column);
+            }
+            String key = column.substring(index, keyEnd);
+            index = keyEnd + 1;
+            String value;
+            if (index < length && column.charAt(index) == '"') {
+                int valueEnd = column.indexOf('"', index + 1);
+                if (valueEnd < 0) {
+                    throw new IOException("Malformed GTF attributes: " + column);
+                }
+                value = column.substring(index + 1, valueEnd);
+                index = valueEnd + 1;
+            } else {
+                int valueEnd = column.indexOf(';', index);
+                valueEnd = valueEnd < 0 ? length : valueEnd;
+                value = column.substring(index, valueEnd).trim();
+                index = valueEnd;
+            }
+            // repeated keys such as tag are not needed, keep the first one
+            attributes.putIfAbsent(key, value);
+        }
+        return attributes;
+    }
+
+    // The ids look like: ENSP00000288602.6
+    private static EnsemblSequence toPeptide(String versionedId) throws IOException {
+        EnsemblSequence peptide = new EnsemblSequence();
+        peptide.setMolecule("protein");
+        int dot = versionedId.indexOf('.');
+        if (dot < 0) {
+            peptide.setId(versionedId);
+            return peptide;
+        }
+        peptide.setId(versionedId.substring(0, dot));
+        try {
+            peptide.setVersion(Integer.parseInt(versionedId.substring(dot + 1)));
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed peptide id: " + versionedId, e);
+        }
+        return peptide;
+    }
+
+    private static void complete(EnsemblSequence peptide, StringBuilder sequence, Consumer<EnsemblSequence> consumer) {
+        if (peptide != null) {
+            peptide.setSeq(sequence.toString());
+            consumer.accept(peptide);
+        }
+    }
+
+    private abstract static class Region {
+
+        private final String chromosome;
+        private final int strand;
+        private int start;
+        private int end;
+
+        Region(String chromosome, int strand) {
+            this.chromosome = chromosome;
+            this.strand = strand;
+        }
+
+        void extend(int start, int end) {
+            this.start = this.start == 0 ? start : Math.min(this.start, start);
+            this.end = Math.max(this.end, end);
+        }
+
+        public String getChromosome() {
+            return chromosome;
+        }
+
+        public int getStrand() {
+            return strand;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    public static class ReleaseGene extends Region {
+
+        private final String id;
+        private String name;
+        private final Map<String, ReleaseTranscript> transcripts = new LinkedHashMap<>();
+
+        ReleaseGene(String id, String chromosome, int strand) {
+            super(chromosome, strand);
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<ReleaseTranscript> getTranscripts() {
+            return new ArrayList<>(transcripts.values());
+        }
+    }
+
+    public static class ReleaseTranscript extends Region {
+
+        private final String id;
+        private String proteinId;
+        private int codingStart;
+        private int codingEnd;
+        private final List<ReleaseFeature> exons = new ArrayList<>();
+        private final List<ReleaseFeature> utrs = new ArrayList<>();
+
+        ReleaseTranscript(String id, String chromosome, int strand) {
+            super(chromosome, strand);
+            this.id = id;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getProteinId() {
+            return proteinId;
+        }
+
+        public List<ReleaseFeature> getExons() {
+            return exons;
+        }
+
+        public List<ReleaseFeature> getUtrs() {
+            return utrs;
+        }
+    }
+
+    public static class ReleaseFeature {
+
+        private final int start;
+        private final int end;
+        private GenomeFragmentType type;
+
+        ReleaseFeature(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public GenomeFragmentType getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the rate of requests to a server.
+ * <p>
+ * The bucket holds up to one second worth of requests and refills at the current rate. A request takes a token, and
+ * waits when the bucket is empty. The tokens can go negative, so concurrent callers are served in the order they
+ * reserved a token. The rate can be lowered by the server, see {@link #update}, and the bucket can be paused when the
+ * server asks to retry later.
+ */
+public final class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double maxRequestsPerSecond;
+    private final LongSupplier nanoClock;
+
+    private double requestsPerSecond;
+    private double requestsPerNano;
+    private double capacity;
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    public TokenBucket(double maxRequestsPerSecond) {
+        this(maxRequestsPerSecond, System::nanoTime);
+    }
+
+    TokenBucket(double maxRequestsPerSecond, LongSupplier nanoClock) {
+        if (maxRequestsPerSecond <= 0) {
+            throw new IllegalArgumentException("The rate needs to be positive");
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.nanoClock = nanoClock;
+        this.lastRefill = this.pausedUntil = nanoClock.getAsLong();
+        setRate(maxRequestsPerSecond);
+        this.tokens = capacity;
+    }
+
+    /**
+     * Wait for a token.
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Take a token.
+     *
+     * @return how long to wait before the token can be used, in nanoseconds
+     */
+    synchronized long reserve() {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        tokens -= 1;
+        long waitNanos = Math.max(0, pausedUntil - now);
+        if (tokens < 0) {
+            waitNanos += (long) Math.ceil(-tokens / requestsPerNano);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Tune the rate with the remaining budget announced by the server, e.g. in the X-RateLimit-Remaining and
+     * X-RateLimit-Reset headers. The remaining requests are spread over the time left, never faster than the
+     * maximum rate. Without any remaining request, the bucket pauses until the reset.
+     *
+     * @param remainingRequests the number of requests left in the current period
+     * @param resetSeconds      the time left in the current period
+     */
+    public synchronized void update(long remainingRequests, double resetSeconds) {
+        refill(nanoClock.getAsLong());
+        if (remainingRequests <= 0) {
+            pause((long) (resetSeconds * NANOS_PER_SECOND));
+            return;
+        }
+        setRate(resetSeconds > 0 ? Math.min(maxRequestsPerSecond, remainingRequests / resetSeconds) : maxRequestsPerSecond);
+    }
+
+    /**
+     * Stop handing out tokens for a while, e.g. when the server answers with a Retry-After header.
+     */
+    public synchronized void pause(long nanos) {
+        long now = nanoClock.getAsLong();
+        refill(now);
+        pausedUntil = Math.max(pausedUntil, now + nanos);
+        //Nothing to burst with when the pause is over
+        tokens = Math.min(tokens, 0);
+    }
+
+    public synchronized double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    private void setRate(double requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        requestsPerNano = requestsPerSecond / NANOS_PER_SECOND;
+        capacity = Math.max(1, requestsPerSecond);
+        tokens = Math.min(tokens, capacity);
+    }
+
+    //Nothing accrues while the bucket is paused
+    private void refill(long now) {
+        long from = Math.max(lastRefill, pausedUntil);
+        if (now > from) {
+            tokens = Math.min(capacity, tokens + (now - from) * requestsPerNano);
+        }
+        lastRefill = Math.max(lastRefill, now);
+    }
+}
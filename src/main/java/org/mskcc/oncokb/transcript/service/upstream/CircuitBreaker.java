@@ -0,0 +1,141 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calling an upstream endpoint that keeps failing.
+ * <p>
+ * The breaker is closed at first, and keeps the outcome of the last slidingWindowSize calls. Once at least
+ * minimumNumberOfCalls were made and the share of failures reaches the threshold, it opens and rejects every call for
+ * openDuration. Then it is half open: a single trial call is let through, which closes the breaker when it succeeds and
+ * opens it again when it fails.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        HALF_OPEN,
+        OPEN,
+    }
+
+    private final double failureRateThreshold;
+    private final int minimumNumberOfCalls;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // ring buffer of the last outcomes, true for a failure
+    private final boolean[] outcomes;
+    private int next;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean trialCallInFlight;
+
+    public CircuitBreaker(double failureRateThreshold, int slidingWindowSize, int minimumNumberOfCalls, long openDurationMillis) {
+        this(failureRateThreshold, slidingWindowSize, minimumNumberOfCalls, openDurationMillis, System::nanoTime);
+    }
+
+    CircuitBreaker(
+        double failureRateThreshold,
+        int slidingWindowSize,
+        int minimumNumberOfCalls,
+        long openDurationMillis,
+        LongSupplier nanoClock
+    ) {
+        if (slidingWindowSize <= 0) {
+            throw new IllegalArgumentException("The sliding window needs to be positive");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumNumberOfCalls = Math.min(Math.max(1, minimumNumberOfCalls), slidingWindowSize);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.nanoClock = nanoClock;
+        this.outcomes = new boolean[slidingWindowSize];
+    }
+
+    /**
+     * Whether a call may be made. Every permitted call needs to be followed by {@link #onSuccess}, {@link #onFailure}
+     * or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialCallInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialCallInFlight) {
+                return false;
+            }
+            trialCallInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (calls >= minimumNumberOfCalls && failures >= failureRateThreshold * calls) {
+                open();
+            }
+        }
+    }
+
+    /**
+     * A call whose outcome says nothing about the health of the endpoint, e.g. a 404 or a rejected request.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            trialCallInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        // an open breaker past its duration lets the next call through
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (calls == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            calls++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        trialCallInFlight = false;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = calls = failures = 0;
+        trialCallInFlight = false;
+    }
+}
@@ -0,0 +1,27 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Tells the answers of a healthy upstream endpoint apart from its failures, for the isClientError argument of
+ * {@link UpstreamCallService#call}. A 4xx other than 429, e.g. an unknown id or an invalid token, is a client error and
+ * does not open the circuit breaker.
+ */
+public final class ClientErrors {
+
+    private ClientErrors() {}
+
+    public static boolean isClientError(int statusCode) {
+        return statusCode >= 400 && statusCode < 500 && statusCode != 429;
+    }
+
+    /**
+     * @param exceptionType the exception of the upstream client that carries the HTTP status
+     * @param statusCode    the HTTP status of such an exception
+     * @return whether an exception of a call is a client error, any other exception is a failure
+     */
+    public static <X extends Exception> Predicate<Exception> byStatusCode(Class<X> exceptionType, ToIntFunction<X> statusCode) {
+        return exception -> exceptionType.isInstance(exception) && isClientError(statusCode.applyAsInt(exceptionType.cast(exception)));
+    }
+}
@@ -0,0 +1,75 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The time by which the current HTTP request should be answered, so the upstream calls made for it stop waiting once
+ * it has passed. It is attached to the thread handling the request, see RequestDeadlineFilter, and carried over to the
+ * threads the work is handed to with {@link #propagate}.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public static Optional<Deadline> current() {
+        return Optional.ofNullable(CURRENT.get());
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * Attach the deadline to the current thread until the scope is closed. An earlier deadline already attached is
+     * kept.
+     */
+    public Scope attach() {
+        Deadline previous = CURRENT.get();
+        if (previous == null || deadlineNanos - previous.deadlineNanos < 0) {
+            CURRENT.set(this);
+        }
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Run the supplier with the deadline of the calling thread, wherever it is run.
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> supplier) {
+        Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return supplier;
+        }
+        return () -> {
+            try (Scope ignored = deadline.attach()) {
+                return supplier.get();
+            }
+        };
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,40 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import java.util.Arrays;
+import java.util.OptionalLong;
+
+/**
+ * The latencies of the last successful calls of an endpoint, to pick the delay of a hedged request.
+ */
+final class LatencyWindow {
+
+    private final long[] latencies;
+    private final int minimumSamples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity, int minimumSamples) {
+        this.latencies = new long[capacity];
+        this.minimumSamples = minimumSamples;
+    }
+
+    synchronized void record(long nanos) {
+        latencies[next] = nanos;
+        next = (next + 1) % latencies.length;
+        size = Math.min(size + 1, latencies.length);
+    }
+
+    /**
+     * The latency below which this share of the recorded calls completed, e.g. 0.95 for the p95. Empty until there are
+     * enough samples.
+     */
+    synchronized OptionalLong getPercentile(double percentile) {
+        if (size < minimumSamples) {
+            return OptionalLong.empty();
+        }
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * size) - 1;
+        return OptionalLong.of(sorted[Math.max(0, Math.min(size - 1, index))]);
+    }
+}
@@ -0,0 +1,299 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.model.ResilienceConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+
+/**
+ * Makes the calls to Ensembl, Genome Nexus and OncoKB, with a circuit breaker per endpoint, a bound on the calls in
+ * flight and the deadline of the current request.
+ * <p>
+ * A hedged call is made on the upstream-call pool. When it is slower than application.resilience.hedge-percentile of
+ * the recent calls of the endpoint, the same call is sent a second time and the first success is returned. The caller
+ * stops waiting once the request deadline has passed. Only idempotent calls may be hedged. The other calls are made on
+ * the calling thread, the deadline is only checked before they start.
+ * <p>
+ * Metrics: upstream.circuit.state (0 closed, 1 half open, 2 open), upstream.calls by outcome and upstream.hedges by
+ * whether the second request won.
+ */
+@Service
+public class UpstreamCallService implements DisposableBean {
+
+    private static final int LATENCY_WINDOW_SIZE = 100;
+    private static final int MINIMUM_LATENCY_SAMPLES = 20;
+
+    private final Logger log = LoggerFactory.getLogger(UpstreamCallService.class);
+
+    private final ResilienceConfig resilienceConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final Semaphore callsInFlight;
+    private final ExecutorService callPool;
+
+    public UpstreamCallService(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        this.resilienceConfig = applicationProperties.getResilience();
+        this.meterRegistry = meterRegistry;
+        this.callsInFlight = new Semaphore(resilienceConfig.getMaxConcurrentCalls());
+        AtomicInteger threadCount = new AtomicInteger();
+        // bounded by callsInFlight
+        this.callPool =
+            Executors.newCachedThreadPool(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "upstream-call-" + threadCount.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            );
+    }
+
+    /**
+     * Make the call, unless the endpoint is unavailable.
+     *
+     * @param endpoint      the name of the upstream endpoint, each one has its own circuit breaker and latencies
+     * @param hedged        whether the call may be sent a second time when it is slow
+     * @param isClientError whether an exception of the call is an answer of a healthy endpoint, e.g. a 404, see
+     *                      {@link ClientErrors}. These do not open the circuit breaker.
+     * @throws E                            the exception of the call
+     * @throws UpstreamUnavailableException when the call was not made or not waited for
+     */
+    public <T, E extends Exception> T call(
+        String endpoint,
+        boolean hedged,
+        Predicate<Exception> isClientError,
+        UpstreamCall<T, E> call
+    ) throws E {
+        Endpoint state = endpoints.computeIfAbsent(endpoint, this::createEndpoint);
+        Optional<Deadline> deadline = Deadline.current();
+        if (deadline.isPresent() && deadline.get().isExpired()) {
+            state.deadlineExceeded.increment();
+            throw new UpstreamUnavailableException(endpoint, "the request deadline has passed");
+        }
+        if (!state.circuitBreaker.tryAcquire()) {
+            state.rejected.increment();
+            throw new UpstreamUnavailableException(endpoint, "the circuit breaker is open");
+        }
+        if (!callsInFlight.tryAcquire()) {
+            state.circuitBreaker.onIgnored();
+            state.rejected.increment();
+            throw new UpstreamUnavailableException(endpoint, "too many calls in flight");
+        }
+
+        T result;
+        try {
+            result = hedged ? callHedged(endpoint, state, deadline, call) : callInline(call);
+        } catch (UpstreamUnavailableException exception) {
+            state.circuitBreaker.onIgnored();
+            state.deadlineExceeded.increment();
+            throw exception;
+        } catch (Exception exception) {
+            if (isClientError.test(exception)) {
+                state.circuitBreaker.onSuccess();
+                state.clientErrors.increment();
+            } else {
+                state.circuitBreaker.onFailure();
+                state.failures.increment();
+            }
+            throw exception;
+        }
+        state.circuitBreaker.onSuccess();
+        state.successes.increment();
+        return result;
+    }
+
+    private <T, E extends Exception> T callInline(UpstreamCall<T, E> call) throws E {
+        try {
+            return call.call();
+        } finally {
+            callsInFlight.release();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, E extends Exception> T callHedged(String endpoint, Endpoint state, Optional<Deadline> deadline, UpstreamCall<T, E> call)
+        throws E {
+        // the first success, or the last failure once both attempts failed
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Race race = new Race();
+        submit(state, deadline, call, result, race, false);
+
+        try {
+            OptionalLong hedgeDelay = getHedgeDelayNanos(state);
+            if (hedgeDelay.isPresent()) {
+                try {
+                    return await(endpoint, result, deadline, hedgeDelay.getAsLong());
+                } catch (TimeoutException timeoutException) {
+                    if (callsInFlight.tryAcquire()) {
+                        race.pendingAttempts.incrementAndGet();
+                        submit(state, deadline, call, result, race, true);
+                    }
+                }
+            }
+            return await(endpoint, result, deadline, Long.MAX_VALUE);
+        } catch (TimeoutException timeoutException) {
+            throw new UpstreamUnavailableException(endpoint, "the request deadline has passed");
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (E) cause;
+        }
+    }
+
+    // Waits for the result, at most for the timeout and until the deadline
+    private <T> T await(String endpoint, CompletableFuture<T> result, Optional<Deadline> deadline, long timeoutNanos)
+        throws ExecutionException, TimeoutException {
+        long waitNanos = deadline.map(value -> Math.min(timeoutNanos, value.remainingNanos())).orElse(timeoutNanos);
+        try {
+            if (waitNanos == Long.MAX_VALUE) {
+                return result.get();
+            }
+            if (waitNanos <= 0) {
+                throw new TimeoutException();
+            }
+            return result.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new UpstreamUnavailableException(endpoint, "interrupted");
+        } catch (TimeoutException timeoutException) {
+            if (deadline.isPresent() && deadline.get().isExpired()) {
+                throw new UpstreamUnavailableException(endpoint, "the request deadline has passed");
+            }
+            throw timeoutException;
+        }
+    }
+
+    private <T, E extends Exception> void submit(
+        Endpoint state,
+        Optional<Deadline> deadline,
+        UpstreamCall<T, E> call,
+        CompletableFuture<T> result,
+        Race race,
+        boolean hedge
+    ) {
+        Runnable attempt = () -> {
+            long start = System.nanoTime();
+            try (Deadline.Scope ignored = deadline.map(Deadline::attach).orElse(null)) {
+                T value = call.call();
+                state.latencies.record(System.nanoTime() - start);
+                // the win is counted before the caller gets the result
+                if (race.won.compareAndSet(false, true)) {
+                    if (hedge) {
+                        state.hedgesWon.increment();
+                    }
+                    result.complete(value);
+                } else if (hedge) {
+                    state.hedgesLost.increment();
+                }
+            } catch (Throwable throwable) {
+                if (hedge) {
+                    state.hedgesLost.increment();
+                }
+                if (race.pendingAttempts.decrementAndGet() == 0) {
+                    result.completeExceptionally(throwable);
+                }
+            } finally {
+                callsInFlight.release();
+            }
+        };
+        try {
+            callPool.execute(attempt);
+        } catch (RuntimeException exception) {
+            // only once the pool is shut down
+            callsInFlight.release();
+            throw exception;
+        }
+    }
+
+    private OptionalLong getHedgeDelayNanos(Endpoint state) {
+        if (!resilienceConfig.isHedgingEnabled()) {
+            return OptionalLong.empty();
+        }
+        long minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(resilienceConfig.getMinHedgeDelay());
+        OptionalLong percentile = state.latencies.getPercentile(resilienceConfig.getHedgePercentile());
+        if (percentile.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Math.max(minHedgeDelayNanos, percentile.getAsLong()));
+    }
+
+    CircuitBreaker.State getCircuitState(String endpoint) {
+        Endpoint state = endpoints.get(endpoint);
+        return state == null ? CircuitBreaker.State.CLOSED : state.circuitBreaker.getState();
+    }
+
+    private Endpoint createEndpoint(String endpoint) {
+        log.debug("Tracking the upstream endpoint {}", endpoint);
+        return new Endpoint(endpoint);
+    }
+
+    @Override
+    public void destroy() {
+        callPool.shutdownNow();
+    }
+
+    private static class Race {
+
+        private final AtomicBoolean won = new AtomicBoolean();
+        private final AtomicInteger pendingAttempts = new AtomicInteger(1);
+    }
+
+    @FunctionalInterface
+    public interface UpstreamCall<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    private class Endpoint {
+
+        private final CircuitBreaker circuitBreaker = new CircuitBreaker(
+            resilienceConfig.getFailureRateThreshold(),
+            resilienceConfig.getSlidingWindowSize(),
+            resilienceConfig.getMinimumNumberOfCalls(),
+            resilienceConfig.getOpenDuration()
+        );
+        private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW_SIZE, MINIMUM_LATENCY_SAMPLES);
+
+        private final Counter successes;
+        private final Counter clientErrors;
+        private final Counter failures;
+        private final Counter rejected;
+        private final Counter deadlineExceeded;
+        private final Counter hedgesWon;
+        private final Counter hedgesLost;
+
+        Endpoint(String endpoint) {
+            Tags tags = Tags.of("endpoint", endpoint);
+            meterRegistry.gauge("upstream.circuit.state", tags, circuitBreaker, breaker -> breaker.getState().ordinal());
+            this.successes = meterRegistry.counter("upstream.calls", tags.and("outcome", "success"));
+            this.clientErrors = meterRegistry.counter("upstream.calls", tags.and("outcome", "client-error"));
+            this.failures = meterRegistry.counter("upstream.calls", tags.and("outcome", "failure"));
+            this.rejected = meterRegistry.counter("upstream.calls", tags.and("outcome", "rejected"));
+            this.deadlineExceeded = meterRegistry.counter("upstream.calls", tags.and("outcome", "deadline"));
+            this.hedgesWon = meterRegistry.counter("upstream.hedges", tags.and("result", "won"));
+            this.hedgesLost = meterRegistry.counter("upstream.hedges", tags.and("result", "lost"));
+        }
+    }
+}
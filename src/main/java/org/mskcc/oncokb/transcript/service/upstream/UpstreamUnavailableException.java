@@ -0,0 +1,21 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+/**
+ * An upstream call that was not made, or not waited for: its circuit breaker is open, too many calls are in flight or
+ * the request deadline has passed.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String endpoint;
+
+    public UpstreamUnavailableException(String endpoint, String reason) {
+        super(endpoint + " is unavailable: " + reason);
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+}
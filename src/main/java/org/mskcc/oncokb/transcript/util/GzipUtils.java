@@ -117,6 +117,22 @@ public class GzipUtils {
         writeToOutputStream(zin, os, (int) ze.getSize());
     }
 
+    /**
+     * Open the first entry of a zip archive, so that it can be read as a stream instead of all at once
+     *
+     * @param is the zip archive
+     * @return the content of the first entry, closing the archive when closed
+     * @throws IOException
+     */
+    public static InputStream openZipContent(InputStream is) throws IOException {
+        ZipInputStream zin = new ZipInputStream(is);
+        if (zin.getNextEntry() == null) {
+            zin.close();
+            throw new IOException("The zip archive has no entry");
+        }
+        return zin;
+    }
+
     public static void getGZipContent(InputStream is, OutputStream os) throws IOException {
         InputStream fis = new GZIPInputStream(is);
         writeToOutputStream(fis, os, BUFFER);
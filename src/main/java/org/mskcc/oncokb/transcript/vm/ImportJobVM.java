@@ -0,0 +1,112 @@
+package org.mskcc.oncokb.transcript.vm;
+
+import java.time.Instant;
+import org.mskcc.oncokb.transcript.importer.ImportJobState;
+import org.mskcc.oncokb.transcript.importer.ImportJobType;
+
+public class ImportJobVM {
+
+    ImportJobType type;
+    ImportJobState state;
+    boolean resumable;
+    // the key, e.g. the entrez gene id, of the last item processed before the last run started
+    int resumeAfter;
+    // the key of the last item such that every item up to it is processed
+    int checkpoint;
+    // the items processed by the last run, and the items it had to process
+    int processed;
+    int total;
+    // the items processed per second by the last run
+    double throughput;
+    Instant startedAt;
+    Instant finishedAt;
+    String error;
+
+    public ImportJobType getType() {
+        return type;
+    }
+
+    public void setType(ImportJobType type) {
+        this.type = type;
+    }
+
+    public ImportJobState getState() {
+        return state;
+    }
+
+    public void setState(ImportJobState state) {
+        this.state = state;
+    }
+
+    public boolean isResumable() {
+        return resumable;
+    }
+
+    public void setResumable(boolean resumable) {
+        this.resumable = resumable;
+    }
+
+    public int getResumeAfter() {
+        return resumeAfter;
+    }
+
+    public void setResumeAfter(int resumeAfter) {
+        this.resumeAfter = resumeAfter;
+    }
+
+    public int getCheckpoint() {
+        return checkpoint;
+    }
+
+    public void setCheckpoint(int checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public double getThroughput() {
+        return throughput;
+    }
+
+    public void setThroughput(double throughput) {
+        this.throughput = throughput;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,37 @@
+package org.mskcc.oncokb.transcript.web.filter;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.service.upstream.Deadline;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Attaches application.resilience.request-deadline to every HTTP request, the upstream calls made for it are not waited
+ * for once it has passed.
+ */
+@Component
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private final long requestDeadline;
+
+    public RequestDeadlineFilter(ApplicationProperties applicationProperties) {
+        this.requestDeadline = applicationProperties.getResilience().getRequestDeadline();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+        if (requestDeadline <= 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try (Deadline.Scope ignored = Deadline.after(requestDeadline).attach()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+}
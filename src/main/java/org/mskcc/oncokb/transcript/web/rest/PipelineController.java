@@ -1,7 +1,10 @@
 package org.mskcc.oncokb.transcript.web.rest;
 
-import org.mskcc.oncokb.transcript.service.GeneService;
-import org.mskcc.oncokb.transcript.service.NcitService;
+import java.util.List;
+import org.mskcc.oncokb.transcript.importer.ImportJobService;
+import org.mskcc.oncokb.transcript.importer.ImportJobType;
+import org.mskcc.oncokb.transcript.vm.ImportJobVM;
+import org.mskcc.oncokb.transcript.web.rest.errors.BadRequestException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -9,31 +12,66 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
- * Controller to drugs.
+ * Controller to run the import and update pipelines as jobs, see {@link ImportJobService}.
  */
 @RestController
 @RequestMapping("/api/pipeline/")
 public class PipelineController {
 
-    NcitService ncitService;
-    GeneService geneService;
+    private final ImportJobService importJobService;
 
     private final Logger log = LoggerFactory.getLogger(PipelineController.class);
 
-    public PipelineController(NcitService ncitService, GeneService geneService) {
-        this.ncitService = ncitService;
-        this.geneService = geneService;
+    public PipelineController(ImportJobService importJobService) {
+        this.importJobService = importJobService;
     }
 
     @PostMapping("/update-ncit")
-    public ResponseEntity<Void> updateNcit() throws Exception {
-        ncitService.updateNcitDrugs();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<ImportJobVM> updateNcit() {
+        return startJob(ImportJobType.UPDATE_NCIT, false);
     }
 
     @PostMapping("/update-gene")
-    public ResponseEntity<Void> updatePortalGene() throws Exception {
-        geneService.updatePortalGenes();
-        return new ResponseEntity<>(HttpStatus.OK);
+    public ResponseEntity<ImportJobVM> updatePortalGene() {
+        return startJob(ImportJobType.UPDATE_GENE, false);
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<ImportJobVM>> getJobs() {
+        return new ResponseEntity<>(importJobService.getJobs(), HttpStatus.OK);
+    }
+
+    @GetMapping("/jobs/{type}")
+    public ResponseEntity<ImportJobVM> getJob(@PathVariable ImportJobType type) {
+        return new ResponseEntity<>(importJobService.getJob(type), HttpStatus.OK);
+    }
+
+    @PostMapping("/jobs/{type}/start")
+    public ResponseEntity<ImportJobVM> startJob(@PathVariable ImportJobType type) {
+        return startJob(type, false);
+    }
+
+    @PostMapping("/jobs/{type}/resume")
+    public ResponseEntity<ImportJobVM> resumeJob(@PathVariable ImportJobType type) {
+        return startJob(type, true);
+    }
+
+    @PostMapping("/jobs/{type}/cancel")
+    public ResponseEntity<ImportJobVM> cancelJob(@PathVariable ImportJobType type) {
+        log.debug("REST request to cancel the {} job", type);
+        try {
+            return new ResponseEntity<>(importJobService.cancel(type), HttpStatus.ACCEPTED);
+        } catch (IllegalStateException e) {
+            throw new BadRequestException(e.getMessage());
+        }
+    }
+
+    private ResponseEntity<ImportJobVM> startJob(ImportJobType type, boolean resume) {
+        log.debug("REST request to {} the {} job", resume ? "resume" : "start", type);
+        try {
+            return new ResponseEntity<>(importJobService.start(type, resume), HttpStatus.ACCEPTED);
+        } catch (IllegalStateException e) {
+            throw new BadRequestException(e.getMessage());
+        }
     }
 }
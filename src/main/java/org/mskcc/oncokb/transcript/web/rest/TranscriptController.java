@@ -1,6 +1,7 @@
 package org.mskcc.oncokb.transcript.web.rest;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import org.genome_nexus.ApiException;
 import org.genome_nexus.client.EnsemblTranscript;
@@ -23,21 +24,21 @@ public class TranscriptController {
 
     private final Logger log = LoggerFactory.getLogger(TranscriptController.class);
 
-    private final AlignmentService alignmentService;
+    private final CachedAlignmentService cachedAlignmentService;
     private final TranscriptService transcriptService;
     private final MainService mainService;
-    private final EnsemblService ensemblService;
+    private final EnsemblSequenceLoader ensemblSequenceLoader;
 
     public TranscriptController(
-        AlignmentService alignmentService,
+        CachedAlignmentService cachedAlignmentService,
         TranscriptService transcriptService,
         MainService mainService,
-        EnsemblService ensemblService
+        EnsemblSequenceLoader ensemblSequenceLoader
     ) {
-        this.alignmentService = alignmentService;
+        this.cachedAlignmentService = cachedAlignmentService;
         this.transcriptService = transcriptService;
         this.mainService = mainService;
-        this.ensemblService = ensemblService;
+        this.ensemblSequenceLoader = ensemblSequenceLoader;
     }
 
     @PostMapping("/compare-transcript/{hugoSymbol}")
@@ -57,34 +58,36 @@ public class TranscriptController {
         if (ensemblB.isEmpty()) {
             return new ResponseEntity("TranscriptB does not exist.", HttpStatus.BAD_REQUEST);
         }
-        Optional<EnsemblSequence> sequenceA = Optional.of(new EnsemblSequence());
-        if (ensemblA.isPresent()) {
-            sequenceA =
-                ensemblService.getProteinSequence(
-                    transcriptComparisonVM.getTranscriptA().getReferenceGenome(),
-                    ensemblA.get().getProteinId()
-                );
-        }
-
-        Optional<EnsemblSequence> sequenceB = Optional.of(new EnsemblSequence());
-        if (ensemblB.isPresent()) {
-            sequenceB =
-                ensemblService.getProteinSequence(
-                    transcriptComparisonVM.getTranscriptB().getReferenceGenome(),
-                    ensemblB.get().getProteinId()
-                );
-        }
-        if (transcriptComparisonVM.getAlign()) {
-            AlignmentResult alignmentResult = alignmentService.calcOptimalAlignment(
+        //Request both sequences before waiting, they share a batch when on the same reference genome
+        CompletableFuture<Optional<EnsemblSequence>> sequenceAFuture = ensemblSequenceLoader.load(
+            transcriptComparisonVM.getTranscriptA().getReferenceGenome(),
+            ensemblA.get().getProteinId()
+        );
+        CompletableFuture<Optional<EnsemblSequence>> sequenceBFuture = ensemblSequenceLoader.load(
+            transcriptComparisonVM.getTranscriptB().getReferenceGenome(),
+            ensemblB.get().getProteinId()
+        );
+        //A sequence that failed to load or did not come before the request deadline is left out
+        Optional<EnsemblSequence> sequenceA = ensemblSequenceLoader.await(
+            transcriptComparisonVM.getTranscriptA().getReferenceGenome(),
+            ensemblA.get().getProteinId(),
+            sequenceAFuture
+        );
+        Optional<EnsemblSequence> sequenceB = ensemblSequenceLoader.await(
+            transcriptComparisonVM.getTranscriptB().getReferenceGenome(),
+            ensemblB.get().getProteinId(),
+            sequenceBFuture
+        );
+        if (transcriptComparisonVM.getAlign() && sequenceA.isPresent() && sequenceB.isPresent()) {
+            AlignmentResult alignmentResult = cachedAlignmentService.calcOptimalAlignment(
                 sequenceA.get().getSeq(),
-                sequenceB.get().getSeq(),
-                false
+                sequenceB.get().getSeq()
             );
             result.setSequenceA(alignmentResult.getRefSeq());
             result.setSequenceB(alignmentResult.getTargetSeq());
         } else {
-            result.setSequenceA(sequenceA.get().getSeq());
-            result.setSequenceB(sequenceB.get().getSeq());
+            result.setSequenceA(sequenceA.map(EnsemblSequence::getSeq).orElse(null));
+            result.setSequenceB(sequenceB.map(EnsemblSequence::getSeq).orElse(null));
         }
 
         if (ensemblA.isPresent() && ensemblB.isPresent() && ensemblA.get().getProteinLength().equals(ensemblB.get().getProteinLength())) {
@@ -122,30 +125,10 @@ public class TranscriptController {
         );
     }
 
-    private int findMatchedIndex(String sequence, int proteinPosition) {
-        int count = 0;
-        int matchedIndex = -1;
-        for (int i = 0; i < sequence.length(); i++) {
-            if (sequence.charAt(i) != "_".charAt(0)) {
-                count++;
-                if (proteinPosition == count) {
-                    matchedIndex = i;
-                    break;
-                }
-            }
-        }
-
-        return matchedIndex;
-    }
-
-    private int findMatchedProteinPosition(String sequence, int index) {
-        int count = 0;
-        for (int i = 0; i < sequence.substring(0, index + 1).length(); i++) {
-            if (sequence.charAt(i) != "_".charAt(0)) {
-                count++;
-            }
-        }
-        return count;
+    //The target residue at the protein position followed by the reference position it is aligned with, e.g. V600
+    private String getSuggestion(AlignmentResult alignmentResult, int proteinPosition) {
+        int refPosition = alignmentResult.getOperations().getRefPosition(proteinPosition);
+        return alignmentResult.getTargetSequence().charAt(proteinPosition - 1) + String.valueOf(refPosition);
     }
 
     private final int PENALTY_THRESHOLD = 5;
@@ -192,16 +175,13 @@ public class TranscriptController {
                 ) {
                     allReferenceTranscriptSuggestionVM.getGrch37().setNote("Exact match");
                 } else {
-                    List<EnrichedAlignmentResult> alignmentResults = transcriptService.getAlignmentResult(
+                    List<EnrichedAlignmentResult> belowThresholdPenalty = transcriptService.getAlignmentResult(
                         ReferenceGenome.GRCh37,
                         ensemblTranscriptOptional.get(),
                         ReferenceGenome.GRCh37,
-                        ensembl37Transcripts
+                        ensembl37Transcripts,
+                        PENALTY_THRESHOLD
                     );
-                    List<EnrichedAlignmentResult> belowThresholdPenalty = alignmentResults
-                        .stream()
-                        .filter(enrichedAlignmentResult -> enrichedAlignmentResult.getPenalty() <= PENALTY_THRESHOLD)
-                        .collect(Collectors.toList());
                     if (belowThresholdPenalty.size() == 0) {
                         allReferenceTranscriptSuggestionVM.getGrch37().setNote("No easy alignment has been performed.");
                     } else {
@@ -210,17 +190,7 @@ public class TranscriptController {
                             .setSuggestions(
                                 belowThresholdPenalty
                                     .stream()
-                                    .map(enrichedAlignmentResult -> {
-                                        int matchedIndex = findMatchedIndex(enrichedAlignmentResult.getTargetSeq(), proteinPosition);
-                                        int matchedProteinPosition = findMatchedProteinPosition(
-                                            enrichedAlignmentResult.getRefSeq(),
-                                            matchedIndex
-                                        );
-                                        return (
-                                            enrichedAlignmentResult.getTargetSeq().substring(matchedIndex, matchedIndex + 1) +
-                                            matchedProteinPosition
-                                        );
-                                    })
+                                    .map(enrichedAlignmentResult -> getSuggestion(enrichedAlignmentResult, proteinPosition))
                                     .collect(Collectors.toList())
                             );
                     }
@@ -248,16 +218,13 @@ public class TranscriptController {
                 ) {
                     allReferenceTranscriptSuggestionVM.getGrch38().setNote("Exact match");
                 } else {
-                    List<EnrichedAlignmentResult> alignmentResults = transcriptService.getAlignmentResult(
+                    List<EnrichedAlignmentResult> belowThresholdPenalty = transcriptService.getAlignmentResult(
                         ReferenceGenome.GRCh38,
                         ensemblTranscriptOptional.get(),
                         ReferenceGenome.GRCh38,
-                        ensembl38Transcripts
+                        ensembl38Transcripts,
+                        PENALTY_THRESHOLD
                     );
-                    List<EnrichedAlignmentResult> belowThresholdPenalty = alignmentResults
-                        .stream()
-                        .filter(enrichedAlignmentResult -> enrichedAlignmentResult.getPenalty() <= PENALTY_THRESHOLD)
-                        .collect(Collectors.toList());
                     if (belowThresholdPenalty.size() == 0) {
                         allReferenceTranscriptSuggestionVM.getGrch38().setNote("No easy alignment has been performed.");
                     } else {
@@ -266,17 +233,7 @@ public class TranscriptController {
                             .setSuggestions(
                                 belowThresholdPenalty
                                     .stream()
-                                    .map(enrichedAlignmentResult -> {
-                                        int matchedIndex = findMatchedIndex(enrichedAlignmentResult.getTargetSeq(), proteinPosition);
-                                        int matchedProteinPosition = findMatchedProteinPosition(
-                                            enrichedAlignmentResult.getRefSeq(),
-                                            matchedIndex
-                                        );
-                                        return (
-                                            enrichedAlignmentResult.getTargetSeq().substring(matchedIndex, matchedIndex + 1) +
-                                            matchedProteinPosition
-                                        );
-                                    })
+                                    .map(enrichedAlignmentResult -> getSuggestion(enrichedAlignmentResult, proteinPosition))
                                     .collect(Collectors.toList())
                             );
                     }
@@ -0,0 +1,65 @@
+package org.mskcc.oncokb.transcript.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class AlignmentOperationsTest {
+
+    // ref    MVLSPADK__TN
+    // target MV_SPADKWWTN
+    private static final String REF_SEQ = "MVLSPADK__TN";
+    private static final String TARGET_SEQ = "MV_SPADKWWTN";
+
+    @Test
+    void shouldRunLengthEncodeGappedSequences() {
+        AlignmentOperations operations = AlignmentOperations.fromGappedSequences(REF_SEQ, TARGET_SEQ);
+        assertThat(operations).hasToString("2M1D5M2I2M");
+        assertThat(operations.getNumberOfRuns()).isEqualTo(5);
+        assertThat(operations.getRefLength()).isEqualTo(10);
+        assertThat(operations.getTargetLength()).isEqualTo(11);
+    }
+
+    @Test
+    void shouldMapPositionsBetweenSequences() {
+        AlignmentOperations operations = AlignmentOperations.fromGappedSequences(REF_SEQ, TARGET_SEQ);
+
+        assertThat(operations.getRefPosition(1)).isEqualTo(1);
+        assertThat(operations.getRefPosition(3)).isEqualTo(4);
+        // inserted residues map to the reference residue before them
+        assertThat(operations.getRefPosition(8)).isEqualTo(8);
+        assertThat(operations.getRefPosition(9)).isEqualTo(8);
+        assertThat(operations.getRefPosition(11)).isEqualTo(10);
+
+        // deleted residues map to the target residue before them
+        assertThat(operations.getTargetPosition(3)).isEqualTo(2);
+        assertThat(operations.getTargetPosition(4)).isEqualTo(3);
+        assertThat(operations.getTargetPosition(9)).isEqualTo(10);
+
+        assertThatThrownBy(() -> operations.getRefPosition(12)).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> operations.getTargetPosition(0)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void shouldRenderGappedSequencesLazily() {
+        AlignmentOperations operations = new AlignmentOperations.Builder()
+            .add(AlignmentOperations.Operation.MATCH, 2)
+            .deletion()
+            .add(AlignmentOperations.Operation.MATCH, 5)
+            .insertion()
+            .insertion()
+            .add(AlignmentOperations.Operation.MATCH, 2)
+            .build();
+        AlignmentResult alignmentResult = new AlignmentResult("MVLSPADKTN", "MVSPADKWWTN", operations, 9);
+
+        assertThat(alignmentResult.getCigar()).isEqualTo("2M1D5M2I2M");
+        assertThat(alignmentResult.getRefSeq()).isEqualTo(REF_SEQ);
+        assertThat(alignmentResult.getTargetSeq()).isEqualTo(TARGET_SEQ);
+
+        EnrichedAlignmentResult enrichedAlignmentResult = new EnrichedAlignmentResult(alignmentResult);
+        assertThat(enrichedAlignmentResult.getOperations()).isEqualTo(operations);
+        assertThat(enrichedAlignmentResult.getPenalty()).isEqualTo(9);
+        assertThat(enrichedAlignmentResult.getTargetSeq()).isEqualTo(TARGET_SEQ);
+    }
+}
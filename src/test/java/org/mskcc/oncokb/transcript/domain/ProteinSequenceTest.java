@@ -0,0 +1,23 @@
+package org.mskcc.oncokb.transcript.domain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.web.rest.TestUtil;
+
+class ProteinSequenceTest {
+
+    @Test
+    void equalsVerifier() throws Exception {
+        TestUtil.equalsVerifier(ProteinSequence.class);
+        ProteinSequence proteinSequence1 = new ProteinSequence();
+        proteinSequence1.setId(1L);
+        ProteinSequence proteinSequence2 = new ProteinSequence();
+        proteinSequence2.setId(proteinSequence1.getId());
+        assertThat(proteinSequence1).isEqualTo(proteinSequence2);
+        proteinSequence2.setId(2L);
+        assertThat(proteinSequence1).isNotEqualTo(proteinSequence2);
+        proteinSequence1.setId(null);
+        assertThat(proteinSequence1).isNotEqualTo(proteinSequence2);
+    }
+}
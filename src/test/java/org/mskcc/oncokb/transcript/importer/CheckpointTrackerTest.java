@@ -0,0 +1,60 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CheckpointTrackerTest {
+
+    // the entrez gene ids 1000, 1010, ... of the run, i.e. the key of the item at position i is 1000 + 10 * i
+    private static final List<Integer> KEYS = IntStream.range(0, 30).mapToObj(i -> 1000 + 10 * i).collect(Collectors.toList());
+
+    @Test
+    void checkpointsOnceEveryPartBelowIsDone() {
+        List<Integer> checkpoints = new ArrayList<>();
+        ImportJobContext context = new ImportJobContext(990, checkpoints::add);
+        CheckpointTracker tracker = new CheckpointTracker(context, KEYS);
+        tracker.submit(0, 10, 2);
+        tracker.submit(10, 20, 2);
+        tracker.submit(20, 25, 2);
+
+        tracker.done(10, false);
+        tracker.done(10, false);
+        tracker.done(0, false);
+        assertThat(checkpoints).isEmpty();
+
+        tracker.done(0, false);
+        assertThat(checkpoints).containsExactly(1190);
+        assertThat(context.getProcessed()).isEqualTo(20);
+
+        tracker.done(20, false);
+        tracker.done(20, false);
+        assertThat(checkpoints).containsExactly(1190, 1240);
+        assertThat(context.getProcessed()).isEqualTo(25);
+    }
+
+    @Test
+    void failedBatchHoldsTheCheckpointBack() {
+        List<Integer> checkpoints = new ArrayList<>();
+        ImportJobContext context = new ImportJobContext(0, checkpoints::add);
+        CheckpointTracker tracker = new CheckpointTracker(context, KEYS);
+        tracker.submit(0, 10, 2);
+        tracker.submit(10, 20, 2);
+        tracker.submit(20, 30, 2);
+
+        tracker.done(0, false);
+        tracker.done(0, false);
+        tracker.done(10, true);
+        tracker.done(10, false);
+        tracker.done(20, false);
+        tracker.done(20, false);
+
+        assertThat(checkpoints).containsExactly(1090);
+        assertThat(context.getCheckpoint()).isEqualTo(1090);
+        assertThat(tracker.getFailed()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,199 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.Info;
+import org.mskcc.oncokb.transcript.domain.enumeration.InfoType;
+import org.mskcc.oncokb.transcript.service.InfoService;
+import org.mskcc.oncokb.transcript.vm.ImportJobVM;
+
+class ImportJobServiceTest {
+
+    private static final int GENES = 2500;
+
+    @Test
+    void resumesFromTheSavedCheckpoint() {
+        FakeInfoService infoService = new FakeInfoService();
+        FakeImporter importer = new FakeImporter();
+        ImportJobService importJobService = new ImportJobService(importer, null, null, infoService, Runnable::run);
+
+        // cancelled after the first batch
+        importer.cancelAt = 1000;
+        ImportJobVM cancelled = importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, false);
+        assertThat(cancelled.getState()).isEqualTo(ImportJobState.CANCELLED);
+        assertThat(cancelled.getCheckpoint()).isEqualTo(1000);
+        assertThat(infoService.values.get(InfoType.CANONICAL_ENSEMBL_GENES_CHECKPOINT)).isEqualTo("1000");
+
+        importer.cancelAt = -1;
+        ImportJobVM resumed = importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, true);
+        assertThat(resumed.getState()).isEqualTo(ImportJobState.COMPLETED);
+        assertThat(resumed.getResumeAfter()).isEqualTo(1000);
+        assertThat(resumed.getCheckpoint()).isEqualTo(GENES);
+        assertThat(resumed.getTotal()).isEqualTo(GENES - 1000);
+        assertThat(resumed.getProcessed()).isEqualTo(GENES - 1000);
+        assertThat(importer.processed).isEqualTo(GENES);
+
+        // a new start goes back to the first gene
+        ImportJobVM restarted = importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, false);
+        assertThat(restarted.getResumeAfter()).isZero();
+        assertThat(importer.processed).isEqualTo(2 * GENES);
+    }
+
+    @Test
+    void resumesAfterTheLastGeneWhenTheGenesChanged() {
+        FakeInfoService infoService = new FakeInfoService();
+        FakeImporter importer = new FakeImporter();
+        ImportJobService importJobService = new ImportJobService(importer, null, null, infoService, Runnable::run);
+
+        // the even entrez gene ids, cancelled after the first batch
+        importer.entrezGeneIds = IntStream.rangeClosed(1, GENES).map(i -> 2 * i).boxed().collect(Collectors.toList());
+        importer.cancelAt = 2000;
+        assertThat(importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, false).getCheckpoint()).isEqualTo(2000);
+
+        // the odd ones are added in the meantime, only the genes after the checkpoint are imported
+        importer.entrezGeneIds = IntStream.rangeClosed(1, 2 * GENES).boxed().collect(Collectors.toList());
+        importer.cancelAt = -1;
+        importer.processed = 0;
+        ImportJobVM resumed = importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, true);
+        assertThat(resumed.getState()).isEqualTo(ImportJobState.COMPLETED);
+        assertThat(resumed.getCheckpoint()).isEqualTo(2 * GENES);
+        assertThat(importer.processed).isEqualTo(2 * GENES - 2000);
+    }
+
+    @Test
+    void failedJobCanBeResumedAndIsReported() {
+        FakeInfoService infoService = new FakeInfoService();
+        FakeImporter importer = new FakeImporter();
+        ImportJobService importJobService = new ImportJobService(importer, null, null, infoService, Runnable::run);
+
+        importer.failAt = 2000;
+        ImportJobVM failed = importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, false);
+        assertThat(failed.getState()).isEqualTo(ImportJobState.FAILED);
+        assertThat(failed.getError()).contains("Ensembl is down");
+        assertThat(importJobService.getJob(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES).getCheckpoint()).isEqualTo(2000);
+
+        assertThat(importJobService.getJob(ImportJobType.IMPORT_CANONICAL_ENSEMBL_TRANSCRIPTS).getState()).isEqualTo(ImportJobState.IDLE);
+        assertThat(importJobService.getJobs()).hasSize(ImportJobType.values().length);
+    }
+
+    @Test
+    void ensemblReleaseImportAlwaysStartsOver() {
+        FakeInfoService infoService = new FakeInfoService();
+        FakeImporter importer = new FakeImporter();
+        ImportJobService importJobService = new ImportJobService(importer, null, null, infoService, Runnable::run);
+
+        ImportJobVM completed = importJobService.start(ImportJobType.IMPORT_ENSEMBL_RELEASES, true);
+
+        assertThat(completed.getState()).isEqualTo(ImportJobState.COMPLETED);
+        assertThat(completed.isResumable()).isFalse();
+        assertThat(completed.getResumeAfter()).isZero();
+        assertThat(completed.getProcessed()).isEqualTo(importer.referenceGenomes);
+        assertThat(infoService.values).isEmpty();
+    }
+
+    @Test
+    void onlyOneJobOfATypeRunsAtATime() throws InterruptedException {
+        FakeInfoService infoService = new FakeInfoService();
+        FakeImporter importer = new FakeImporter();
+        importer.started = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ImportJobService importJobService = new ImportJobService(importer, null, null, infoService, executor);
+            importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, false);
+            assertThat(importer.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> importJobService.start(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES, true))
+                .isInstanceOf(IllegalStateException.class);
+            assertThat(importJobService.cancel(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES).getState())
+                .isEqualTo(ImportJobState.CANCELLING);
+
+            executor.shutdown();
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(importJobService.getJob(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES).getState())
+                .isEqualTo(ImportJobState.CANCELLED);
+            assertThatThrownBy(() -> importJobService.cancel(ImportJobType.IMPORT_CANONICAL_ENSEMBL_GENES))
+                .isInstanceOf(IllegalStateException.class);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // imports the genes by entrez gene id in batches of 1000, like Importer#importCanonicalEnsemblGenes
+    private static class FakeImporter extends Importer {
+
+        private List<Integer> entrezGeneIds = IntStream.rangeClosed(1, GENES).boxed().collect(Collectors.toList());
+        // the entrez gene id of the last gene of the batch after which the import is cancelled
+        private int cancelAt = -1;
+        // the entrez gene id of the last gene before the batch that fails
+        private int failAt = -1;
+        private int processed;
+        // counted down once the import started, then the import waits to be cancelled
+        private CountDownLatch started;
+        private final int referenceGenomes = 2;
+
+        @Override
+        public void importCanonicalEnsemblGenes(ImportJobContext context) {
+            List<Integer> runEntrezGeneIds = entrezGeneIds
+                .stream()
+                .filter(entrezGeneId -> entrezGeneId > context.getResumeAfter())
+                .collect(Collectors.toList());
+            context.setTotal(runEntrezGeneIds.size());
+            if (started != null) {
+                started.countDown();
+                while (!context.isCancelled()) {
+                    Thread.onSpinWait();
+                }
+            }
+            for (int i = 0; i < runEntrezGeneIds.size() && !context.isCancelled(); i += 1000) {
+                if (runEntrezGeneIds.get(i) - 1 == failAt) {
+                    throw new IllegalStateException("Ensembl is down");
+                }
+                int end = Math.min(runEntrezGeneIds.size(), i + 1000);
+                processed += end - i;
+                context.setProcessed(end);
+                context.checkpoint(runEntrezGeneIds.get(end - 1));
+                if (runEntrezGeneIds.get(end - 1) == cancelAt) {
+                    context.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void importEnsemblReleases(ImportJobContext context) {
+            context.setTotal(referenceGenomes);
+            context.setProcessed(referenceGenomes);
+        }
+    }
+
+    private static class FakeInfoService extends InfoService {
+
+        private final Map<InfoType, String> values = new EnumMap<>(InfoType.class);
+
+        FakeInfoService() {
+            super(null);
+        }
+
+        @Override
+        public Optional<Info> findOneByType(InfoType infoType) {
+            return Optional.ofNullable(values.get(infoType)).map(value -> new Info().type(infoType).value(value));
+        }
+
+        @Override
+        public void updateInfo(InfoType infoType, String newValue, Instant newLastUpdated) {
+            values.put(infoType, newValue);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.mskcc.oncokb.transcript.importer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ImportPipelineTest {
+
+    @Test
+    void shouldRunItemsThroughAllStages() throws InterruptedException {
+        List<String> persisted = Collections.synchronizedList(new ArrayList<>());
+        ImportPipeline pipeline = new ImportPipeline("test", 0);
+        ImportPipeline.Stage<Integer, Integer> fetchStage = pipeline.addStage("fetch", 3, 2, item -> item * 10);
+        ImportPipeline.Stage<Integer, String> transformStage = pipeline.addStage("transform", 2, 2, item -> "item-" + item);
+        ImportPipeline.Stage<String, Boolean> persistStage = pipeline.addStage("persist", 1, 2, persisted::add);
+        fetchStage.to(transformStage).to(persistStage);
+
+        pipeline.start();
+        for (int i = 0; i < 20; i++) {
+            fetchStage.put(i);
+        }
+        pipeline.finish();
+
+        assertThat(persisted).hasSize(20);
+        assertThat(persisted).contains("item-0", "item-190");
+        assertThat(persistStage.getDone()).isEqualTo(20);
+    }
+
+    @Test
+    void shouldSkipFailedItems() throws InterruptedException {
+        List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+        ImportPipeline pipeline = new ImportPipeline("test", 0);
+        ImportPipeline.Stage<Integer, Integer> fetchStage = pipeline.addStage(
+            "fetch",
+            2,
+            2,
+            item -> {
+                if (item % 5 == 0) {
+                    throw new IllegalStateException("Service Unavailable");
+                }
+                return item;
+            }
+        );
+        // nothing is handed on for a null
+        ImportPipeline.Stage<Integer, Integer> transformStage = pipeline.addStage("transform", 1, 2, item -> item % 2 == 0 ? null : item);
+        ImportPipeline.Stage<Integer, Boolean> persistStage = pipeline.addStage("persist", 1, 2, persisted::add);
+        fetchStage.to(transformStage).to(persistStage);
+
+        pipeline.start();
+        for (int i = 0; i < 10; i++) {
+            fetchStage.put(i);
+        }
+        pipeline.finish();
+
+        assertThat(fetchStage.getFailed()).isEqualTo(2);
+        assertThat(transformStage.getDone()).isEqualTo(8);
+        assertThat(persisted).containsExactlyInAnyOrder(1, 3, 7, 9);
+    }
+
+    @Test
+    void shouldWaitForSlowStage() throws InterruptedException {
+        CountDownLatch persistStarted = new CountDownLatch(1);
+        CountDownLatch slowPersist = new CountDownLatch(1);
+        AtomicInteger fetched = new AtomicInteger();
+        ImportPipeline pipeline = new ImportPipeline("test", 0);
+        ImportPipeline.Stage<Integer, Integer> fetchStage = pipeline.addStage("fetch", 1, 1, item -> fetched.incrementAndGet());
+        ImportPipeline.Stage<Integer, Integer> persistStage = pipeline.addStage(
+            "persist",
+            1,
+            1,
+            item -> {
+                persistStarted.countDown();
+                try {
+                    slowPersist.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return item;
+            }
+        );
+        fetchStage.to(persistStage);
+
+        pipeline.start();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 10; i++) {
+                    fetchStage.put(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        assertThat(persistStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+
+        // one item in persist, one queued for it, one held by fetch and one queued for fetch
+        assertThat(fetched.get()).isLessThanOrEqualTo(3);
+        assertThat(producer.isAlive()).isTrue();
+
+        slowPersist.countDown();
+        producer.join();
+        pipeline.finish();
+        assertThat(persistStage.getDone()).isEqualTo(10);
+    }
+}
@@ -0,0 +1,274 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.mskcc.oncokb.transcript.service.alignment.AffineGapAligner;
+import org.mskcc.oncokb.transcript.service.alignment.ScoreOnlyAligner;
+import org.mskcc.oncokb.transcript.service.alignment.ScoringScheme;
+import org.mskcc.oncokb.transcript.service.alignment.SubstitutionMatrix;
+
+class AlignmentServiceTest {
+
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+
+    private final AlignmentService alignmentService = new AlignmentService();
+
+    @Test
+    void shouldAlignShortSequences() {
+        AlignmentResult alignmentResult = alignmentService.calcOptimalAlignment("MVLSPADKTN", "MVLSADKTN", false);
+        assertThat(alignmentResult.getPenalty()).isEqualTo(2);
+        assertThat(alignmentResult.getRefSeq()).isEqualTo("MVLSPADKTN");
+        assertThat(alignmentResult.getTargetSeq()).isEqualTo("MVLS_ADKTN");
+    }
+
+    @Test
+    void shouldUseLinearSpaceAlignmentForLongSequences() {
+        String reference = randomProtein(new Random(0), 3000);
+        // one substitution and one deletion
+        String target = reference.substring(0, 1000) + (reference.charAt(1000) == 'A' ? 'C' : 'A') + reference.substring(1001, 2000) +
+        reference.substring(2001);
+
+        AlignmentResult alignmentResult = alignmentService.calcOptimalAlignment(reference, target, false);
+
+        assertThat((long) reference.length() * target.length()).isGreaterThan(AlignmentService.LINEAR_SPACE_CELL_THRESHOLD);
+        assertThat(alignmentResult.getPenalty()).isEqualTo(5);
+        assertThat(alignmentResult.getRefSeq()).hasSameSizeAs(alignmentResult.getTargetSeq());
+        assertThat(alignmentResult.getRefSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(reference);
+        assertThat(alignmentResult.getTargetSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(target);
+    }
+
+    @Test
+    void shouldReturnSameAlignmentInLinearSpace() {
+        Random random = new Random(5);
+        // low complexity sequences have many optimal alignments, the linear space one has to break the ties the same way
+        String[][] pairs = {
+            { "A".repeat(1200), "A".repeat(900) },
+            { "AC".repeat(550), "CA".repeat(560) },
+            { randomSequence(random, "AG", 1100), randomSequence(random, "AG", 1050) },
+            { randomSequence(random, "KR", 1000), randomSequence(random, "EKR", 1200) },
+            { "MVLS".repeat(300), mutate(random, "MVLS".repeat(300), 60) },
+        };
+        for (String[] pair : pairs) {
+            assertThat((long) pair[0].length() * pair[1].length()).isGreaterThan(AlignmentService.LINEAR_SPACE_CELL_THRESHOLD);
+
+            AlignmentResult linearSpace = alignmentService.calcOptimalAlignment(pair[0], pair[1], false);
+            AlignmentResult quadratic = alignmentService.calcQuadraticAlignment(" " + pair[0], " " + pair[1]);
+
+            assertThat(linearSpace.getPenalty()).isEqualTo(quadratic.getPenalty());
+            assertThat(linearSpace.getRefSeq()).isEqualTo(quadratic.getRefSeq());
+            assertThat(linearSpace.getTargetSeq()).isEqualTo(quadratic.getTargetSeq());
+        }
+    }
+
+    @Test
+    void shouldOnlyReturnBoundedAlignmentWithinMaxPenalty() {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            String reference = randomProtein(random, 1 + random.nextInt(300));
+            String target = i % 4 == 0 ? randomProtein(random, 1 + random.nextInt(300)) : mutate(random, reference, random.nextInt(6));
+            int maxPenalty = random.nextInt(12);
+
+            AlignmentResult fullAlignment = alignmentService.calcOptimalAlignment(reference, target, false);
+            Optional<AlignmentResult> boundedAlignment = alignmentService.calcBoundedAlignment(reference, target, maxPenalty);
+
+            if (fullAlignment.getPenalty() <= maxPenalty) {
+                assertThat(boundedAlignment).isPresent();
+                assertThat(boundedAlignment.get().getPenalty()).isEqualTo(fullAlignment.getPenalty());
+                assertThat(boundedAlignment.get().getRefSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(reference);
+                assertThat(boundedAlignment.get().getTargetSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(target);
+            } else {
+                assertThat(boundedAlignment).isEmpty();
+            }
+        }
+    }
+
+    @Test
+    void shouldSkipBoundedAlignmentWhenLengthDifferenceIsTooLarge() {
+        assertThat(alignmentService.calcBoundedAlignment("MVLSPADKTNVKAAW", "MVLSPADKTN", 5)).isEmpty();
+        assertThat(alignmentService.calcBoundedAlignment("MVLSPADKTNVK", "MVLSPADKTN", 5)).isPresent();
+    }
+
+    @Test
+    void shouldReturnSameResultsWhenAlignedConcurrently() throws Exception {
+        Random random = new Random(42);
+        List<String[]> pairs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            // mix of short, median and linear-space sized pairs so threads keep resizing their scratch buffers
+            int length = i % 50 == 0 ? 1200 : 20 + random.nextInt(i % 5 == 0 ? 600 : 80);
+            String reference = randomProtein(random, length);
+            pairs.add(new String[] { reference, mutate(random, reference, 5) });
+        }
+
+        List<AlignmentResult> expected = new ArrayList<>();
+        for (String[] pair : pairs) {
+            expected.add(alignmentService.calcOptimalAlignment(pair[0], pair[1], false));
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<AlignmentResult>> tasks = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (String[] pair : pairs) {
+                    tasks.add(() -> alignmentService.calcOptimalAlignment(pair[0], pair[1], false));
+                }
+            }
+            List<Future<AlignmentResult>> futures = executorService.invokeAll(tasks);
+            for (int i = 0; i < futures.size(); i++) {
+                AlignmentResult actual = futures.get(i).get();
+                AlignmentResult singleThreaded = expected.get(i % pairs.size());
+                assertThat(actual.getPenalty()).isEqualTo(singleThreaded.getPenalty());
+                assertThat(actual.getRefSeq()).isEqualTo(singleThreaded.getRefSeq());
+                assertThat(actual.getTargetSeq()).isEqualTo(singleThreaded.getTargetSeq());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldKeepLegacyMismatchPenalties() {
+        SubstitutionMatrix legacy = SubstitutionMatrix.LEGACY;
+        assertThat(legacy.penalty('A', 'A')).isEqualTo(0);
+        assertThat(legacy.penalty('1', '2')).isEqualTo(1);
+        assertThat(legacy.penalty('A', 'C')).isEqualTo(3);
+        assertThat(legacy.penalty('A', '1')).isEqualTo(3);
+    }
+
+    @Test
+    void shouldHaveSymmetricNonNegativeSubstitutionMatrices() {
+        for (SubstitutionMatrix matrix : new SubstitutionMatrix[] { SubstitutionMatrix.BLOSUM62, SubstitutionMatrix.PAM250 }) {
+            for (char a : AMINO_ACIDS.toCharArray()) {
+                assertThat(matrix.penalty(a, a)).isEqualTo(0);
+                for (char b : AMINO_ACIDS.toCharArray()) {
+                    assertThat(matrix.penalty(a, b)).isEqualTo(matrix.penalty(b, a)).isGreaterThanOrEqualTo(0);
+                }
+            }
+        }
+        // conservative substitutions are cheaper than radical ones
+        assertThat(SubstitutionMatrix.BLOSUM62.penalty('I', 'V')).isLessThan(SubstitutionMatrix.BLOSUM62.penalty('W', 'C'));
+    }
+
+    @Test
+    void shouldTellApartScoringSchemesWithTheSameMatrixName() {
+        SubstitutionMatrix matrix = SubstitutionMatrix.fromSimilarityScores("CUSTOM", "AC", new int[][] { { 4, 0 }, { 0, 4 } });
+        SubstitutionMatrix sameMatrix = SubstitutionMatrix.fromSimilarityScores("CUSTOM", "AC", new int[][] { { 4, 0 }, { 0, 4 } });
+        SubstitutionMatrix otherMatrix = SubstitutionMatrix.fromSimilarityScores("CUSTOM", "AC", new int[][] { { 4, -2 }, { -2, 4 } });
+
+        ScoringScheme scoringScheme = new ScoringScheme(matrix, 10, 2);
+        assertThat(scoringScheme).isEqualTo(new ScoringScheme(sameMatrix, 10, 2));
+        assertThat(scoringScheme.hashCode()).isEqualTo(new ScoringScheme(sameMatrix, 10, 2).hashCode());
+        assertThat(scoringScheme.toString()).isEqualTo(new ScoringScheme(sameMatrix, 10, 2).toString());
+        // the scheme names the cached alignments, so it changes with the penalties and not only with the matrix name
+        for (ScoringScheme otherScheme : new ScoringScheme[] {
+            new ScoringScheme(otherMatrix, 10, 2),
+            new ScoringScheme(matrix, 11, 2),
+            new ScoringScheme(matrix, 10, 1),
+        }) {
+            assertThat(scoringScheme).isNotEqualTo(otherScheme);
+            assertThat(scoringScheme.toString()).isNotEqualTo(otherScheme.toString());
+        }
+        AlignmentService customAlignmentService = alignmentService.withScoringScheme(scoringScheme);
+        assertThat(customAlignmentService.withScoringScheme(new ScoringScheme(sameMatrix, 10, 2))).isSameAs(customAlignmentService);
+        assertThat(customAlignmentService.withScoringScheme(new ScoringScheme(otherMatrix, 10, 2))).isNotSameAs(customAlignmentService);
+    }
+
+    @Test
+    void shouldPreferOneLongGapWithAffineGapPenalties() {
+        AlignmentService affineAlignmentService = alignmentService.withScoringScheme(ScoringScheme.BLOSUM62);
+        AlignmentResult alignmentResult = affineAlignmentService.calcOptimalAlignment("MVLSPADKTNVKAAW", "MVLSPAVKAAW", false);
+        assertThat(alignmentResult.getTargetSeq()).isEqualTo("MVLSPA____VKAAW");
+        assertThat(alignmentResult.getPenalty()).isEqualTo(ScoringScheme.BLOSUM62.gapPenalty(4));
+    }
+
+    @Test
+    void shouldReturnSameAffinePenaltyInLinearSpace() {
+        AffineGapAligner aligner = new AffineGapAligner(ScoringScheme.BLOSUM62);
+        Random random = new Random(3);
+        for (int i = 0; i < 300; i++) {
+            String reference = randomProtein(random, random.nextInt(120));
+            String target = i % 4 == 0 ? randomProtein(random, random.nextInt(120)) : mutate(random, reference, random.nextInt(8));
+
+            AlignmentResult quadratic = aligner.calcAlignment(" " + reference, " " + target);
+            AlignmentResult linearSpace = aligner.calcLinearSpaceAlignment(" " + reference, " " + target);
+
+            assertThat(linearSpace.getPenalty()).isEqualTo(quadratic.getPenalty());
+            assertThat(aligner.calcPenalty(" " + reference, " " + target, linearSpace.getOperations())).isEqualTo(quadratic.getPenalty());
+            assertThat(linearSpace.getRefSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(reference);
+            assertThat(linearSpace.getTargetSeq().replace(AlignmentService.GAP_CHAR, "")).isEqualTo(target);
+        }
+    }
+
+    @Test
+    void shouldScoreSameAsOptimalAlignment() {
+        Random random = new Random(11);
+        for (ScoringScheme scoringScheme : new ScoringScheme[] { ScoringScheme.LEGACY, ScoringScheme.BLOSUM62, ScoringScheme.PAM250 }) {
+            AlignmentService schemeAlignmentService = alignmentService.withScoringScheme(scoringScheme);
+            for (int i = 0; i < 200; i++) {
+                String reference = randomProtein(random, random.nextInt(150));
+                String target = i % 4 == 0 ? randomProtein(random, random.nextInt(150)) : mutate(random, reference, random.nextInt(8));
+                int maxPenalty = random.nextInt(30);
+
+                int penalty = schemeAlignmentService.calcOptimalAlignment(reference, target, false).getPenalty();
+
+                assertThat(schemeAlignmentService.score(reference, target)).isEqualTo(penalty);
+                if (penalty <= maxPenalty) {
+                    assertThat(schemeAlignmentService.score(reference, target, maxPenalty)).hasValue(penalty);
+                } else {
+                    assertThat(schemeAlignmentService.score(reference, target, maxPenalty)).isEmpty();
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldRejectNonAsciiResiduesWhenScoring() {
+        ScoreOnlyAligner aligner = new ScoreOnlyAligner(ScoringScheme.BLOSUM62);
+
+        assertThatThrownBy(() -> aligner.calcPenalty(" MK\u00C4L", " MKAL", Integer.MAX_VALUE))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> aligner.calcPenalty(" MKAL", " MK\u00C4L", Integer.MAX_VALUE))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private String mutate(Random random, String sequence, int numOfEdits) {
+        StringBuilder sb = new StringBuilder(sequence);
+        for (int i = 0; i < numOfEdits && sb.length() > 0; i++) {
+            int position = random.nextInt(sb.length());
+            switch (random.nextInt(3)) {
+                case 0:
+                    sb.setCharAt(position, AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+                    break;
+                case 1:
+                    sb.deleteCharAt(position);
+                    break;
+                default:
+                    sb.insert(position, AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private String randomProtein(Random random, int length) {
+        return randomSequence(random, AMINO_ACIDS, length);
+    }
+
+    private String randomSequence(Random random, String residues, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append(residues.charAt(random.nextInt(residues.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+
+class BatchAlignmentServiceTest {
+
+    private final AlignmentService alignmentService = new AlignmentService();
+    private final BatchAlignmentService batchAlignmentService = new BatchAlignmentService(4);
+
+    @AfterEach
+    void tearDown() {
+        batchAlignmentService.destroy();
+    }
+
+    @Test
+    void shouldReturnResultsInTargetOrder() {
+        String reference = "MVLSPADKTNVKAAWGKVGAHAGEYGAEALERMFLSFPTTKTYFPHF";
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // drop a growing tail, so every target has a different penalty
+            targets.add(reference.substring(0, reference.length() - i % 20));
+        }
+
+        List<Optional<AlignmentResult>> results = batchAlignmentService.alignAll(
+            reference,
+            targets,
+            (refSeq, targetSeq) -> Optional.of(alignmentService.calcOptimalAlignment(refSeq, targetSeq, false))
+        );
+
+        assertThat(results).hasSameSizeAs(targets);
+        for (int i = 0; i < targets.size(); i++) {
+            assertThat(results.get(i)).isPresent();
+            assertThat(results.get(i).get().getTargetSequence()).isEqualTo(targets.get(i));
+            assertThat(results.get(i).get().getPenalty()).isEqualTo(2 * (i % 20));
+        }
+    }
+
+    @Test
+    void shouldKeepSkippedTargets() {
+        List<Optional<AlignmentResult>> results = batchAlignmentService.alignAll(
+            "MVLSPADKTN",
+            Arrays.asList("MVLSPADKTN", "WWWWWWWWWWWWWWW", "MVLSADKTN"),
+            (refSeq, targetSeq) -> alignmentService.calcBoundedAlignment(refSeq, targetSeq, 5)
+        );
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0)).isPresent();
+        assertThat(results.get(1)).isEmpty();
+        assertThat(results.get(2)).isPresent();
+    }
+
+    @Test
+    void shouldPropagateAlignmentFailures() {
+        assertThatThrownBy(() ->
+                batchAlignmentService.alignAll(
+                    "MVLSPADKTN",
+                    Collections.nCopies(8, "MVLSPADKTN"),
+                    (refSeq, targetSeq) -> {
+                        throw new IllegalArgumentException("Bad sequence");
+                    }
+                )
+            )
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("Bad sequence");
+    }
+}
@@ -0,0 +1,153 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.domain.AlignmentResult;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+class CachedAlignmentServiceTest {
+
+    private static final String REFERENCE = "MVLSPADKTNVKAAWGKVGAHAGEYGAEALERMFLSFPTTKTYFPHF";
+    private static final String TARGET = "MVLSPADKTNVKAAWGKVGAHAGEYGAEALERMFLSFPTTKTYFPHF".replace("GAE", "GEE");
+
+    private final CountingAlignmentService alignmentService = new CountingAlignmentService();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldAlignSamePairOnce() {
+        CachedAlignmentService cachedAlignmentService = createService(10, Optional.empty());
+
+        AlignmentResult first = cachedAlignmentService.calcOptimalAlignment(REFERENCE, TARGET);
+        AlignmentResult second = cachedAlignmentService.calcOptimalAlignment(REFERENCE, TARGET);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.getPenalty()).isEqualTo(alignmentService.calcOptimalAlignment(REFERENCE, TARGET, false).getPenalty());
+        assertThat(alignmentService.calls.get()).isEqualTo(2);
+        assertThat(getCount("local", "hit")).isEqualTo(1);
+        assertThat(getCount("local", "miss")).isEqualTo(1);
+
+        // the order of the sequences matters
+        cachedAlignmentService.calcOptimalAlignment(TARGET, REFERENCE);
+        assertThat(getCount("local", "miss")).isEqualTo(2);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedAlignments() {
+        CachedAlignmentService cachedAlignmentService = createService(2, Optional.empty());
+
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADK");
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADKT");
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADK");
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADKTN");
+
+        assertThat(meterRegistry.counter("alignment.cache.evictions").count()).isEqualTo(1);
+        assertThat(meterRegistry.get("alignment.cache.size").gauge().value()).isEqualTo(2);
+
+        // MVLSPADKT was the least recently used one
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADK");
+        assertThat(alignmentService.calls.get()).isEqualTo(3);
+        cachedAlignmentService.calcOptimalAlignment(REFERENCE, "MVLSPADKT");
+        assertThat(alignmentService.calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldRememberRejectedBoundedAlignments() {
+        CachedAlignmentService cachedAlignmentService = createService(10, Optional.empty());
+
+        // the single substitution costs 3
+        assertThat(cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 2)).isEmpty();
+        // a tighter bound is rejected from the cache, a looser one needs to be aligned again
+        assertThat(cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 1)).isEmpty();
+        assertThat(alignmentService.calls.get()).isEqualTo(1);
+
+        Optional<AlignmentResult> alignmentResult = cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 10);
+        assertThat(alignmentResult).isPresent();
+        assertThat(alignmentResult.get().getPenalty()).isEqualTo(3);
+        assertThat(alignmentService.calls.get()).isEqualTo(2);
+
+        // the optimal alignment answers any bound
+        assertThat(cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 2)).isEmpty();
+        assertThat(cachedAlignmentService.calcOptimalAlignment(REFERENCE, TARGET)).isSameAs(alignmentResult.get());
+        assertThat(alignmentService.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldCacheScores() {
+        CachedAlignmentService cachedAlignmentService = createService(10, Optional.empty());
+
+        assertThat(cachedAlignmentService.score(REFERENCE, TARGET, 2)).isEmpty();
+        assertThat(cachedAlignmentService.score(REFERENCE, TARGET, 1)).isEmpty();
+        assertThat(cachedAlignmentService.score(REFERENCE, TARGET)).isEqualTo(3);
+        assertThat(cachedAlignmentService.score(REFERENCE, TARGET, 2)).isEmpty();
+        assertThat(cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 2)).isEmpty();
+        assertThat(alignmentService.calls.get()).isEqualTo(2);
+
+        // the alignment itself still needs to be computed once
+        AlignmentResult alignmentResult = cachedAlignmentService.calcBoundedAlignment(REFERENCE, TARGET, 3).get();
+        assertThat(cachedAlignmentService.calcOptimalAlignment(REFERENCE, TARGET)).isSameAs(alignmentResult);
+        assertThat(cachedAlignmentService.score(REFERENCE, TARGET, 3)).hasValue(3);
+        assertThat(alignmentService.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldShareAlignmentsThroughCacheManager() {
+        CacheManager cacheManager = new ConcurrentMapCacheManager();
+        CachedAlignmentService first = createService(10, Optional.of(cacheManager));
+        CachedAlignmentService second = createService(10, Optional.of(cacheManager));
+
+        AlignmentResult alignmentResult = first.calcOptimalAlignment(REFERENCE, TARGET);
+        assertThat(second.calcOptimalAlignment(REFERENCE, TARGET)).isSameAs(alignmentResult);
+
+        assertThat(alignmentService.calls.get()).isEqualTo(1);
+        assertThat(getCount("remote", "miss")).isEqualTo(1);
+        assertThat(getCount("remote", "hit")).isEqualTo(1);
+    }
+
+    private CachedAlignmentService createService(int cacheMaxEntries, Optional<CacheManager> optionalCacheManager) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAlignment().setCacheMaxEntries(cacheMaxEntries);
+        return new CachedAlignmentService(
+            alignmentService,
+            applicationProperties,
+            new CacheNameResolver(applicationProperties),
+            optionalCacheManager,
+            meterRegistry
+        );
+    }
+
+    private double getCount(String tier, String result) {
+        return meterRegistry.counter("alignment.cache.gets", "tier", tier, "result", result).count();
+    }
+
+    private static class CountingAlignmentService extends AlignmentService {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public AlignmentResult calcOptimalAlignment(String sequence1Original, String sequence2Original, boolean printResults) {
+            calls.incrementAndGet();
+            return super.calcOptimalAlignment(sequence1Original, sequence2Original, printResults);
+        }
+
+        @Override
+        public Optional<AlignmentResult> calcBoundedAlignment(String sequence1Original, String sequence2Original, int maxPenalty) {
+            calls.incrementAndGet();
+            return super.calcBoundedAlignment(sequence1Original, sequence2Original, maxPenalty);
+        }
+
+        @Override
+        public OptionalInt score(String sequence1Original, String sequence2Original, int maxPenalty) {
+            calls.incrementAndGet();
+            return super.score(sequence1Original, sequence2Original, maxPenalty);
+        }
+    }
+}
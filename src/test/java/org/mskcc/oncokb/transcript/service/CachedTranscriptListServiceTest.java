@@ -0,0 +1,148 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.EnsemblControllerApi;
+import org.genome_nexus.client.EnsemblTranscript;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+class CachedTranscriptListServiceTest {
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+    private final FixtureGenomeNexusService genomeNexusService = new FixtureGenomeNexusService(applicationProperties);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void shouldFetchOncePerRequestAndGenome() {
+        CachedTranscriptListService cachedTranscriptListService = createService(Optional.empty());
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        List<EnsemblTranscript> first = cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh37);
+        List<EnsemblTranscript> second = cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh37);
+        cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh38);
+
+        assertThat(second).isSameAs(first);
+        // the canonical transcript is also in the full list, it is only kept once and first
+        assertThat(getTranscriptIds(first)).containsExactly("GRCh37-BRAF-1", "GRCh37-BRAF-2");
+        assertThat(genomeNexusService.canonicalCalls.get()).isEqualTo(2);
+        assertThat(genomeNexusService.listCalls.get()).isEqualTo(2);
+        assertThat(getCount("request", "hit")).isEqualTo(1);
+
+        // a new request fetches again without the shared cache
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh37);
+        assertThat(genomeNexusService.listCalls.get()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldShareListsThroughCacheManager() {
+        CacheManager cacheManager = new ConcurrentMapCacheManager();
+        CachedTranscriptListService first = createService(Optional.of(cacheManager));
+        CachedTranscriptListService second = createService(Optional.of(cacheManager));
+
+        List<EnsemblTranscript> fetched = first.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh38);
+        List<EnsemblTranscript> shared = second.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh38);
+
+        assertThat(getTranscriptIds(shared)).isEqualTo(getTranscriptIds(fetched));
+        assertThat(shared.get(0).getProteinLength()).isEqualTo(766);
+        assertThat(genomeNexusService.listCalls.get()).isEqualTo(1);
+        assertThat(getCount("shared", "miss")).isEqualTo(1);
+        assertThat(getCount("shared", "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotShareIncompleteLists() {
+        CachedTranscriptListService cachedTranscriptListService = createService(Optional.of(new ConcurrentMapCacheManager()));
+        genomeNexusService.failing = true;
+
+        assertThat(getTranscriptIds(cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh37)))
+            .containsExactly("GRCh37-BRAF-1");
+
+        genomeNexusService.failing = false;
+        assertThat(getTranscriptIds(cachedTranscriptListService.getEnsemblTranscriptList("BRAF", ReferenceGenome.GRCh37)))
+            .containsExactly("GRCh37-BRAF-1", "GRCh37-BRAF-2");
+        assertThat(genomeNexusService.listCalls.get()).isEqualTo(2);
+    }
+
+    private CachedTranscriptListService createService(Optional<CacheManager> optionalCacheManager) {
+        return new CachedTranscriptListService(
+            genomeNexusService,
+            new CacheNameResolver(applicationProperties),
+            optionalCacheManager,
+            meterRegistry
+        );
+    }
+
+    private double getCount(String tier, String result) {
+        return meterRegistry.counter("genome-nexus.transcripts.cache.gets", "tier", tier, "result", result).count();
+    }
+
+    private static List<String> getTranscriptIds(List<EnsemblTranscript> transcripts) {
+        return transcripts.stream().map(EnsemblTranscript::getTranscriptId).collect(Collectors.toList());
+    }
+
+    private static EnsemblTranscript createTranscript(ReferenceGenome referenceGenome, String hugoSymbol, int index) {
+        EnsemblTranscript ensemblTranscript = new EnsemblTranscript();
+        ensemblTranscript.setTranscriptId(referenceGenome + "-" + hugoSymbol + "-" + index);
+        ensemblTranscript.setProteinLength(766);
+        return ensemblTranscript;
+    }
+
+    private static class FixtureGenomeNexusService extends GenomeNexusService {
+
+        private final AtomicInteger canonicalCalls = new AtomicInteger();
+        private final AtomicInteger listCalls = new AtomicInteger();
+        // fails the list of all transcripts
+        private volatile boolean failing;
+
+        FixtureGenomeNexusService(ApplicationProperties applicationProperties) {
+            super(applicationProperties, null);
+        }
+
+        @Override
+        public EnsemblControllerApi getEnsemblControllerApi(ReferenceGenome referenceGenome) {
+            return new EnsemblControllerApi() {
+                @Override
+                public EnsemblTranscript fetchCanonicalEnsemblTranscriptByHugoSymbolGET(String hugoSymbol, String isoformOverrideSource) {
+                    canonicalCalls.incrementAndGet();
+                    return createTranscript(referenceGenome, hugoSymbol, 1);
+                }
+
+                @Override
+                public List<EnsemblTranscript> fetchEnsemblTranscriptsGET(String geneId, String proteinId, String hugoSymbol)
+                    throws ApiException {
+                    listCalls.incrementAndGet();
+                    if (failing) {
+                        throw new ApiException("Service Unavailable");
+                    }
+                    List<EnsemblTranscript> transcripts = new ArrayList<>();
+                    transcripts.add(createTranscript(referenceGenome, hugoSymbol, 2));
+                    transcripts.add(createTranscript(referenceGenome, hugoSymbol, 1));
+                    return transcripts;
+                }
+            };
+        }
+    }
+}
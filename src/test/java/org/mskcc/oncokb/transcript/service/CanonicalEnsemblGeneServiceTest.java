@@ -0,0 +1,184 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.genome_nexus.ApiException;
+import org.genome_nexus.client.EnsemblControllerApi;
+import org.genome_nexus.client.EnsemblGene;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.config.cache.CacheCategory;
+import org.mskcc.oncokb.transcript.config.cache.CacheKeys;
+import org.mskcc.oncokb.transcript.config.cache.CacheNameResolver;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.CanonicalEnsemblGeneService.CanonicalEnsemblGeneLookup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+class CanonicalEnsemblGeneServiceTest {
+
+    // has no canonical gene in the fixture
+    private static final int UNKNOWN_ENTREZ_GENE_ID = 99999;
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+    private final FixtureGenomeNexusService genomeNexusService = new FixtureGenomeNexusService(applicationProperties);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CacheNameResolver cacheNameResolver = new CacheNameResolver(applicationProperties);
+    private final CacheManager cacheManager = new ConcurrentMapCacheManager();
+    private final CanonicalEnsemblGeneService canonicalEnsemblGeneService = new CanonicalEnsemblGeneService(
+        genomeNexusService,
+        applicationProperties,
+        cacheNameResolver,
+        Optional.of(cacheManager),
+        meterRegistry
+    );
+
+    @AfterEach
+    void tearDown() {
+        canonicalEnsemblGeneService.destroy();
+    }
+
+    @Test
+    void shouldOnlyAskForGenesNotCached() throws ApiException {
+        List<ReferenceGenome> referenceGenomes = Arrays.asList(ReferenceGenome.values());
+        List<Integer> entrezGeneIds = List.of(673, 1956, UNKNOWN_ENTREZ_GENE_ID);
+
+        Map<ReferenceGenome, Map<Integer, String>> first = canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(
+            referenceGenomes,
+            entrezGeneIds
+        );
+        Map<ReferenceGenome, Map<Integer, String>> second = canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(
+            referenceGenomes,
+            entrezGeneIds
+        );
+
+        assertThat(first.get(ReferenceGenome.GRCh37)).containsOnlyKeys(673, 1956);
+        assertThat(first.get(ReferenceGenome.GRCh37).get(673)).isEqualTo("GRCh37-ENSG673");
+        assertThat(first.get(ReferenceGenome.GRCh38).get(1956)).isEqualTo("GRCh38-ENSG1956");
+        assertThat(second).isEqualTo(first);
+        // one request per reference genome, the unknown gene is not asked again either
+        assertThat(genomeNexusService.requests).hasSize(2);
+        assertThat(getCount("miss")).isEqualTo(6);
+        assertThat(getCount("hit")).isEqualTo(6);
+
+        assertThat(canonicalEnsemblGeneService.findCanonicalEnsemblGeneId(ReferenceGenome.GRCh38, 7157)).hasValue("GRCh38-ENSG7157");
+        assertThat(genomeNexusService.requests).hasSize(3);
+        assertThat(genomeNexusService.requests).last().isEqualTo(List.of("7157"));
+    }
+
+    @Test
+    void shouldSplitIntoChunks() throws ApiException {
+        List<Integer> entrezGeneIds = IntStream.rangeClosed(1, 2500).boxed().collect(Collectors.toList());
+
+        Map<Integer, String> canonicalGeneIds = canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(
+            ReferenceGenome.GRCh37,
+            entrezGeneIds
+        );
+
+        assertThat(canonicalGeneIds).hasSize(2500);
+        assertThat(genomeNexusService.requests.stream().map(List::size).collect(Collectors.toList()))
+            .containsExactlyInAnyOrder(1000, 1000, 500);
+    }
+
+    @Test
+    void shouldCacheOtherChunksWhenOneFails() throws ApiException {
+        genomeNexusService.failing = ReferenceGenome.GRCh37;
+
+        assertThatThrownBy(() ->
+                canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(Arrays.asList(ReferenceGenome.values()), List.of(673))
+            )
+            .isInstanceOf(ApiException.class);
+
+        genomeNexusService.failing = null;
+        assertThat(canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(ReferenceGenome.GRCh38, List.of(673)))
+            .containsEntry(673, "GRCh38-ENSG673");
+        assertThat(genomeNexusService.requests).hasSize(2);
+        assertThat(canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(ReferenceGenome.GRCh37, List.of(673)))
+            .containsEntry(673, "GRCh37-ENSG673");
+        assertThat(genomeNexusService.requests).hasSize(3);
+    }
+
+    @Test
+    void shouldKeepTheOtherChunksWhenOneFails() {
+        genomeNexusService.failing = ReferenceGenome.GRCh37;
+
+        CanonicalEnsemblGeneLookup lookup = canonicalEnsemblGeneService.lookupCanonicalEnsemblGeneIds(
+            Arrays.asList(ReferenceGenome.values()),
+            List.of(673, 1956)
+        );
+
+        assertThat(lookup.getFailure()).isInstanceOf(ApiException.class);
+        assertThat(lookup.getFailedEntrezGeneIds(ReferenceGenome.GRCh37)).containsExactly(673, 1956);
+        assertThat(lookup.getFailedEntrezGeneIds(ReferenceGenome.GRCh38)).isEmpty();
+        assertThat(lookup.getCanonicalGeneIds().get(ReferenceGenome.GRCh37)).isEmpty();
+        assertThat(lookup.getCanonicalGeneIds().get(ReferenceGenome.GRCh38))
+            .containsEntry(673, "GRCh38-ENSG673")
+            .containsEntry(1956, "GRCh38-ENSG1956");
+    }
+
+    @Test
+    void shouldCacheTheGenesWithoutCanonicalGeneApart() throws ApiException {
+        canonicalEnsemblGeneService.findCanonicalEnsemblGeneIds(ReferenceGenome.GRCh37, List.of(673, UNKNOWN_ENTREZ_GENE_ID));
+
+        Cache cache = getCache(CacheKeys.CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID);
+        Cache missingCache = getCache(CacheKeys.MISSING_CANONICAL_ENSEMBL_GENE_IDS_BY_ENTREZ_GENE_ID);
+        assertThat(cache.get("GRCh37:673")).isNotNull();
+        assertThat(cache.get("GRCh37:" + UNKNOWN_ENTREZ_GENE_ID)).isNull();
+        assertThat(missingCache.get("GRCh37:673")).isNull();
+        assertThat(missingCache.get("GRCh37:" + UNKNOWN_ENTREZ_GENE_ID)).isNotNull();
+    }
+
+    private Cache getCache(String cacheKey) {
+        return cacheManager.getCache(cacheNameResolver.getCacheName(CacheCategory.GENE, cacheKey));
+    }
+
+    private double getCount(String result) {
+        return meterRegistry.counter("genome-nexus.canonical-gene.cache.gets", "result", result).count();
+    }
+
+    private static class FixtureGenomeNexusService extends GenomeNexusService {
+
+        private final ConcurrentLinkedQueue<List<String>> requests = new ConcurrentLinkedQueue<>();
+        private volatile ReferenceGenome failing;
+
+        FixtureGenomeNexusService(ApplicationProperties applicationProperties) {
+            super(applicationProperties, null);
+        }
+
+        @Override
+        public EnsemblControllerApi getEnsemblControllerApi(ReferenceGenome referenceGenome) {
+            return new EnsemblControllerApi() {
+                @Override
+                public List<EnsemblGene> fetchCanonicalEnsemblGeneIdByEntrezGeneIdsPOST(List<String> entrezGeneIds) throws ApiException {
+                    requests.add(entrezGeneIds);
+                    if (referenceGenome == failing) {
+                        throw new ApiException("Service Unavailable");
+                    }
+                    List<EnsemblGene> ensemblGenes = new ArrayList<>();
+                    for (String entrezGeneId : entrezGeneIds) {
+                        if (!entrezGeneId.equals(Integer.toString(UNKNOWN_ENTREZ_GENE_ID))) {
+                            EnsemblGene ensemblGene = new EnsemblGene();
+                            ensemblGene.setEntrezGeneId(entrezGeneId);
+                            ensemblGene.setGeneId(referenceGenome + "-ENSG" + entrezGeneId);
+                            ensemblGenes.add(ensemblGene);
+                        }
+                    }
+                    return ensemblGenes;
+                }
+            };
+        }
+    }
+}
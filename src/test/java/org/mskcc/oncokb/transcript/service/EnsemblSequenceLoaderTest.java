@@ -0,0 +1,189 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.Deadline;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.springframework.web.client.RestClientException;
+
+class EnsemblSequenceLoaderTest {
+
+    private final FixtureEnsemblService ensemblService = new FixtureEnsemblService();
+    private final FixtureProteinSequenceService proteinSequenceService = new FixtureProteinSequenceService();
+    private final EnsemblSequenceLoader ensemblSequenceLoader = new EnsemblSequenceLoader(ensemblService, proteinSequenceService, 50);
+
+    @AfterEach
+    void tearDown() {
+        ensemblSequenceLoader.destroy();
+    }
+
+    @Test
+    void shouldCoalesceLoadsIntoOneBatch() {
+        CompletableFuture<Optional<EnsemblSequence>> first = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP01");
+        CompletableFuture<Optional<EnsemblSequence>> second = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP02");
+        CompletableFuture<Optional<EnsemblSequence>> duplicate = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP01");
+        CompletableFuture<Optional<EnsemblSequence>> missing = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "missing");
+        CompletableFuture<Optional<EnsemblSequence>> otherGenome = ensemblSequenceLoader.load(ReferenceGenome.GRCh38, "ENSP01");
+
+        assertThat(duplicate).isSameAs(first);
+        assertThat(first.join().get().getSeq()).isEqualTo("GRCh37-ENSP01");
+        assertThat(second.join().get().getSeq()).isEqualTo("GRCh37-ENSP02");
+        assertThat(missing.join()).isEmpty();
+        assertThat(otherGenome.join().get().getSeq()).isEqualTo("GRCh38-ENSP01");
+
+        assertThat(ensemblService.batches).containsExactlyInAnyOrder(List.of("ENSP01", "ENSP02", "missing"), List.of("ENSP01"));
+        assertThat(ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "")).isCompletedWithValue(Optional.empty());
+    }
+
+    @Test
+    void shouldSplitBatchesAtPostThreshold() {
+        List<CompletableFuture<Optional<EnsemblSequence>>> futures = IntStream
+            .range(0, 250)
+            .mapToObj(i -> ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP" + i))
+            .collect(Collectors.toList());
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertThat(futures.get(i).join().get().getSeq()).isEqualTo("GRCh37-ENSP" + i);
+        }
+        assertThat(ensemblService.batches.stream().map(List::size)).containsExactlyInAnyOrder(100, 100, 50);
+    }
+
+    @Test
+    void shouldFetchOneByOneWhenBatchFails() {
+        ensemblService.failBatches = true;
+
+        CompletableFuture<Optional<EnsemblSequence>> first = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP01");
+        CompletableFuture<Optional<EnsemblSequence>> invalid = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "missing");
+
+        assertThat(first.join().get().getSeq()).isEqualTo("GRCh37-ENSP01");
+        assertThat(invalid.join()).isEmpty();
+        assertThat(ensemblService.singleLoads).containsExactly("ENSP01", "missing");
+    }
+
+    @Test
+    void shouldReadThroughLocalStore() {
+        proteinSequenceService.storedSequences.put("GRCh37:ENSP01", "stored-ENSP01");
+
+        assertThat(ensemblSequenceLoader.getProteinSequence(ReferenceGenome.GRCh37, "ENSP01").get().getSeq()).isEqualTo("stored-ENSP01");
+        assertThat(ensemblSequenceLoader.getProteinSequence(ReferenceGenome.GRCh37, "ENSP02").get().getSeq()).isEqualTo("GRCh37-ENSP02");
+        assertThat(ensemblSequenceLoader.getProteinSequence(ReferenceGenome.GRCh37, "missing")).isEmpty();
+        assertThat(ensemblService.batches).containsExactly(List.of("ENSP02"), List.of("missing"));
+        assertThat(proteinSequenceService.storedSequences).containsEntry("GRCh37:ENSP02", "GRCh37-ENSP02").doesNotContainKey("GRCh37:missing");
+
+        // a stored sequence is never fetched again
+        assertThat(ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP02")).isCompleted();
+        assertThat(ensemblSequenceLoader.getProteinSequence(ReferenceGenome.GRCh37, "ENSP02").get().getSeq()).isEqualTo("GRCh37-ENSP02");
+        assertThat(ensemblService.batches).hasSize(2);
+    }
+
+    @Test
+    void shouldTreatFailedAndLateSequencesAsMissing() {
+        ensemblService.failBatches = true;
+        ensemblService.failSingleLoads = true;
+        assertThat(ensemblSequenceLoader.getProteinSequence(ReferenceGenome.GRCh37, "ENSP01")).isEmpty();
+
+        ensemblService.failBatches = false;
+        ensemblService.delayMillis = 2000;
+        long start = System.nanoTime();
+        try (Deadline.Scope ignored = Deadline.after(200).attach()) {
+            CompletableFuture<Optional<EnsemblSequence>> load = ensemblSequenceLoader.load(ReferenceGenome.GRCh37, "ENSP02");
+            assertThat(ensemblSequenceLoader.await(ReferenceGenome.GRCh37, "ENSP02", load)).isEmpty();
+        }
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1500));
+    }
+
+    private static class FixtureProteinSequenceService extends ProteinSequenceService {
+
+        private final Map<String, String> storedSequences = new ConcurrentHashMap<>();
+
+        FixtureProteinSequenceService() {
+            super(null);
+        }
+
+        @Override
+        public Optional<String> findRecentSequence(ReferenceGenome referenceGenome, String ensemblProteinId) {
+            return Optional.ofNullable(storedSequences.get(referenceGenome + ":" + ensemblProteinId));
+        }
+
+        @Override
+        public Map<String, String> findSequences(ReferenceGenome referenceGenome, Collection<String> ensemblProteinIds) {
+            Map<String, String> sequences = new HashMap<>();
+            ensemblProteinIds.forEach(id -> findRecentSequence(referenceGenome, id).ifPresent(sequence -> sequences.put(id, sequence)));
+            return sequences;
+        }
+
+        @Override
+        public void saveSequences(ReferenceGenome referenceGenome, Map<String, EnsemblSequence> sequences) {
+            sequences.forEach((id, sequence) -> storedSequences.put(referenceGenome + ":" + id, sequence.getSeq()));
+        }
+    }
+
+    private static class FixtureEnsemblService extends EnsemblService {
+
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> singleLoads = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failBatches = false;
+        private volatile boolean failSingleLoads = false;
+        private volatile long delayMillis = 0;
+
+        FixtureEnsemblService() {
+            super(null, new ApplicationProperties(), null);
+        }
+
+        @Override
+        public List<EnsemblSequence> getProteinSequences(ReferenceGenome referenceGenome, List<String> transcripts) {
+            batches.add(new ArrayList<>(transcripts));
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failBatches) {
+                throw new RestClientException("Invalid id");
+            }
+            return transcripts
+                .stream()
+                .map(id -> createSequence(referenceGenome, id))
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+        }
+
+        @Override
+        public Optional<EnsemblSequence> getProteinSequence(ReferenceGenome referenceGenome, String transcript) {
+            singleLoads.add(transcript);
+            if (failSingleLoads) {
+                throw new RestClientException("Ensembl is unavailable");
+            }
+            return createSequence(referenceGenome, transcript);
+        }
+
+        private Optional<EnsemblSequence> createSequence(ReferenceGenome referenceGenome, String id) {
+            if (id.equals("missing")) {
+                return Optional.empty();
+            }
+            EnsemblSequence ensemblSequence = new EnsemblSequence();
+            ensemblSequence.setId(id);
+            ensemblSequence.setQuery(id);
+            ensemblSequence.setSeq(referenceGenome + "-" + id);
+            return Optional.of(ensemblSequence);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.service.upstream.UpstreamCallService;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblTranscript;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+class EnsemblServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final UpstreamCallService upstreamCallService = new UpstreamCallService(new ApplicationProperties(), new SimpleMeterRegistry());
+    private final EnsemblService ensemblService = new EnsemblService(restTemplate, new ApplicationProperties(), upstreamCallService);
+
+    @AfterEach
+    void tearDown() {
+        ensemblService.destroy();
+        upstreamCallService.destroy();
+    }
+
+    @Test
+    void shouldLookUpIdsInConcurrentChunks() {
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        server
+            .expect(ExpectedCount.times(3), requestTo("https://rest.ensembl.org/lookup/id"))
+            .andExpect(method(HttpMethod.POST))
+            .andRespond(request -> {
+                // answer with one gene per requested id
+                JsonNode ids = objectMapper.readTree(((MockClientHttpRequest) request).getBodyAsString()).get("ids");
+                ObjectNode genes = objectMapper.createObjectNode();
+                ids.forEach(id -> genes.putObject(id.asText()).put("id", id.asText()));
+                return withSuccess(genes.toString(), MediaType.APPLICATION_JSON).createResponse(request);
+            });
+        List<String> ids = IntStream.range(0, 250).mapToObj(i -> "ENSG" + i).collect(Collectors.toList());
+
+        List<EnsemblTranscript> ensemblTranscripts = ensemblService.getIdsAsync(ReferenceGenome.GRCh38, ids, false, false).join();
+
+        assertThat(ensemblTranscripts.stream().map(EnsemblTranscript::getId).collect(Collectors.toList()))
+            .containsExactlyInAnyOrderElementsOf(ids);
+        server.verify();
+    }
+
+    @Test
+    void shouldHandConcurrentChunksToTheConsumer() {
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        server
+            .expect(ExpectedCount.times(3), requestTo("https://rest.ensembl.org/lookup/id"))
+            .andExpect(method(HttpMethod.POST))
+            .andRespond(request -> {
+                JsonNode ids = objectMapper.readTree(((MockClientHttpRequest) request).getBodyAsString()).get("ids");
+                ObjectNode genes = objectMapper.createObjectNode();
+                ids.forEach(id -> genes.putObject(id.asText()).put("id", id.asText()));
+                return withSuccess(genes.toString(), MediaType.APPLICATION_JSON).createResponse(request);
+            });
+        List<String> ids = IntStream.range(0, 250).mapToObj(i -> "ENSG" + i).collect(Collectors.toList());
+        Queue<EnsemblTranscript> ensemblTranscripts = new ConcurrentLinkedQueue<>();
+
+        ensemblService.getIdsAsync(ReferenceGenome.GRCh38, ids, false, false, ensemblTranscripts::add).join();
+
+        assertThat(ensemblTranscripts.stream().map(EnsemblTranscript::getId).collect(Collectors.toList()))
+            .containsExactlyInAnyOrderElementsOf(ids);
+        server.verify();
+    }
+
+    @Test
+    void shouldStreamLookedUpTranscripts() {
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server
+            .expect(requestTo("https://grch37.rest.ensembl.org/lookup/id?utr=1&expand=1"))
+            .andRespond(
+                withSuccess(
+                    "{" +
+                    "\"ENST00000288602\": {\"id\": \"ENST00000288602\", \"Parent\": \"ENSG00000157764\", \"start\": 140434279," +
+                    " \"Exon\": [{\"id\": \"ENSE00001\"}, {\"id\": \"ENSE00002\"}], \"UTR\": [{\"id\": \"ENST00000288602\"}]}," +
+                    "\"ENST00000000000\": null," +
+                    "\"ENST00000496384\": {\"id\": \"ENST00000496384\", \"Parent\": \"ENSG00000157764\"}" +
+                    "}",
+                    MediaType.APPLICATION_JSON
+                )
+            );
+        List<EnsemblTranscript> ensemblTranscripts = new ArrayList<>();
+
+        ensemblService.getIds(
+            ReferenceGenome.GRCh37,
+            List.of("ENST00000288602", "ENST00000000000", "ENST00000496384"),
+            true,
+            true,
+            ensemblTranscripts::add
+        );
+
+        assertThat(ensemblTranscripts.stream().map(EnsemblTranscript::getId).collect(Collectors.toList()))
+            .containsExactly("ENST00000288602", "ENST00000496384");
+        assertThat(ensemblTranscripts.get(0).getParent()).isEqualTo("ENSG00000157764");
+        assertThat(ensemblTranscripts.get(0).getStart()).isEqualTo(140434279);
+        assertThat(ensemblTranscripts.get(0).getExons()).hasSize(2);
+        assertThat(ensemblTranscripts.get(0).getUtrs()).hasSize(1);
+        server.verify();
+    }
+}
@@ -0,0 +1,61 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.Drug;
+import org.mskcc.oncokb.transcript.domain.DrugSynonym;
+
+class NcitDrugIndexTest {
+
+    @Test
+    void newDrugIsAddedWithItsSynonyms() {
+        NcitDrugIndex drugIndex = new NcitDrugIndex(List.of());
+        drugIndex.addLine("Code\tConcept IRI\tParents\tSynonyms\tDefinition\tDisplay Name\tConcept Status\tSemantic Type");
+        drugIndex.addLine(line("C1647", "Trastuzumab|Herceptin| Trastuzumab ", "Trastuzumab", "Pharmacologic Substance"));
+
+        assertThat(drugIndex.getNewDrugs()).hasSize(1);
+        Drug drug = drugIndex.getNewDrugs().get(0);
+        assertThat(drug.getCode()).isEqualTo("C1647");
+        assertThat(drug.getSemanticType()).isEqualTo("Pharmacologic Substance");
+        assertThat(drugIndex.getNewDrugSynonyms()).extracting(DrugSynonym::getName).containsExactly("Herceptin");
+        assertThat(drugIndex.getNewDrugSynonyms().get(0).getDrug()).isSameAs(drug);
+        assertThat(drugIndex.getPendingCount()).isEqualTo(2);
+
+        // the drug saved is referenced by id from then on
+        drug.setId(10L);
+        drugIndex.saved();
+        assertThat(drugIndex.getPendingCount()).isZero();
+        drugIndex.addLine(line("C1647", "Trastuzumab|Herceptin|Herclon", "Trastuzumab", "Pharmacologic Substance"));
+        assertThat(drugIndex.getNewDrugs()).isEmpty();
+        assertThat(drugIndex.getNewDrugSynonyms()).extracting(DrugSynonym::getName).containsExactly("Herclon");
+        assertThat(drugIndex.getNewDrugSynonyms().get(0).getDrug().getId()).isEqualTo(10L);
+    }
+
+    @Test
+    void savedDrugOnlyGetsWhatChanged() {
+        NcitDrugIndex drugIndex = new NcitDrugIndex(
+            List.of(
+                new Object[] { 1L, "C1647", "Trastuzumab", "Pharmacologic Substance", "Herceptin" },
+                new Object[] { 2L, "C2039", "Imatinib", "Pharmacologic Substance", null }
+            )
+        );
+
+        drugIndex.addLine(line("C1647", "Trastuzumab|Herceptin", "Trastuzumab", "Pharmacologic Substance"));
+        assertThat(drugIndex.getPendingCount()).isZero();
+
+        drugIndex.addLine(line("C2039", "Imatinib|Gleevec", "Imatinib", "Antineoplastic Agent"));
+        assertThat(drugIndex.getNewDrugs()).isEmpty();
+        assertThat(drugIndex.getNewDrugSynonyms()).extracting(DrugSynonym::getName).containsExactly("Gleevec");
+        assertThat(drugIndex.getDrugIdsBySemanticType()).containsOnlyKeys("Antineoplastic Agent");
+        assertThat(drugIndex.getDrugIdsBySemanticType().get("Antineoplastic Agent")).containsExactly(2L);
+        assertThat(drugIndex.getUpdatedDrugCount()).isEqualTo(1);
+        assertThat(drugIndex.getNewDrugSynonymCount()).isEqualTo(1);
+    }
+
+    private static String line(String code, String synonyms, String displayName, String semanticType) {
+        String conceptIri = "<http://ncicb.nci.nih.gov/xml/owl/EVS/Thesaurus.owl#" + code + ">";
+        return String.join("\t", code, conceptIri, "", synonyms, "", displayName, "", semanticType);
+    }
+}
@@ -0,0 +1,88 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.EnsemblGene;
+import org.mskcc.oncokb.transcript.domain.Gene;
+import org.mskcc.oncokb.transcript.domain.GeneAlias;
+
+class PortalGeneDiffTest {
+
+    @Test
+    void unchangedGenesAreLeftAlone() {
+        Gene braf = gene(1L, 673, "BRAF", "BRAF1", "NS7");
+
+        PortalGeneDiff diff = PortalGeneDiff.compute(List.of(braf), portalGenes(portalGene(673, "BRAF", "NS7", "BRAF1")));
+
+        assertThat(diff.isEmpty()).isTrue();
+        assertThat(diff.getUpdatedGeneCount()).isZero();
+        assertThat(diff.getNewGenes()).isEmpty();
+        assertThat(diff.getDeletedGenes()).isEmpty();
+    }
+
+    @Test
+    void onlyTheDifferencesAreWritten() {
+        Gene braf = gene(1L, 673, "BRAF", "BRAF1", "NS7");
+        Gene kras = gene(2L, 3845, "KRAS", "KRAS2");
+        Gene removed = gene(3L, 9999, "OLD");
+        Gene removedWithEnsemblGenes = gene(4L, 8888, "KEPT");
+        removedWithEnsemblGenes.addEnsemblGene(new EnsemblGene());
+
+        PortalGeneDiff diff = PortalGeneDiff.compute(
+            List.of(braf, kras, removed, removedWithEnsemblGenes),
+            portalGenes(portalGene(673, "BRAF", "NS7", "B-RAF1"), portalGene(3845, "KRAS"), portalGene(7157, "TP53", "P53"))
+        );
+
+        assertThat(diff.getUpdatedGeneCount()).isEqualTo(2);
+        assertThat(braf.getGeneAliases().stream().map(GeneAlias::getName)).containsExactlyInAnyOrder("NS7", "B-RAF1");
+        assertThat(diff.getNewGeneAliases()).extracting(GeneAlias::getName).containsExactly("B-RAF1");
+        assertThat(diff.getNewGeneAliases().get(0).getGene()).isSameAs(braf);
+        assertThat(diff.getDeletedGeneAliases()).extracting(GeneAlias::getName).containsExactlyInAnyOrder("BRAF1", "KRAS2");
+        assertThat(kras.getGeneAliases()).isEmpty();
+
+        assertThat(diff.getNewGenes()).extracting(Gene::getHugoSymbol).containsExactly("TP53");
+        assertThat(diff.getNewGenes().get(0).getGeneAliases()).extracting(GeneAlias::getName).containsExactly("P53");
+        assertThat(diff.getDeletedGenes()).containsExactly(removed);
+
+        assertThat(diff.getChangedEntrezGeneIds()).containsExactlyInAnyOrder(673, 3845, 9999, 7157);
+        assertThat(diff.getChangedHugoSymbols()).containsExactlyInAnyOrder("BRAF", "KRAS", "OLD", "TP53");
+        assertThat(diff.getChangedAliasNames()).containsExactlyInAnyOrder("BRAF1", "NS7", "B-RAF1", "KRAS2", "P53");
+    }
+
+    @Test
+    void renamedGeneEvictsBothSymbols() {
+        Gene gene = gene(1L, 100, "OLDNAME");
+
+        PortalGeneDiff diff = PortalGeneDiff.compute(List.of(gene), portalGenes(portalGene(100, "NEWNAME")));
+
+        assertThat(gene.getHugoSymbol()).isEqualTo("NEWNAME");
+        assertThat(diff.getChangedHugoSymbols()).containsExactlyInAnyOrder("OLDNAME", "NEWNAME");
+    }
+
+    private static Gene gene(Long id, int entrezGeneId, String hugoSymbol, String... aliasNames) {
+        Gene gene = new Gene().id(id).entrezGeneId(entrezGeneId).hugoSymbol(hugoSymbol);
+        for (int i = 0; i < aliasNames.length; i++) {
+            gene.addGeneAlias(new GeneAlias().id(id * 100 + i).name(aliasNames[i]));
+        }
+        return gene;
+    }
+
+    private static PortalGeneDiff.PortalGene portalGene(int entrezGeneId, String hugoSymbol, String... aliasNames) {
+        return new PortalGeneDiff.PortalGene(entrezGeneId, hugoSymbol, new HashSet<>(Arrays.asList(aliasNames)));
+    }
+
+    private static Map<Integer, PortalGeneDiff.PortalGene> portalGenes(PortalGeneDiff.PortalGene... portalGenes) {
+        return Arrays
+            .stream(portalGenes)
+            .collect(
+                Collectors.toMap(PortalGeneDiff.PortalGene::getEntrezGeneId, portalGene -> portalGene, (a, b) -> b, LinkedHashMap::new)
+            );
+    }
+}
@@ -0,0 +1,98 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.IntegrationTest;
+import org.mskcc.oncokb.transcript.domain.ProteinSequence;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.repository.ProteinSequenceRepository;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link ProteinSequenceService#saveSequences} and {@link ProteinSequenceService#storeSequences}.
+ */
+@IntegrationTest
+@Transactional
+class ProteinSequenceServiceIT {
+
+    private static final String CHANGED_ID = "ENSP90000000001";
+    private static final String OLDER_ID = "ENSP90000000002";
+
+    @Autowired
+    private ProteinSequenceService proteinSequenceService;
+
+    @Autowired
+    private ProteinSequenceRepository proteinSequenceRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Test
+    void saveSequencesReplacesTheSequencesOfANewerVersion() {
+        proteinSequenceService.saveSequences(
+            ReferenceGenome.GRCh38,
+            Map.of(CHANGED_ID, createSequence(CHANGED_ID, 1, "MAAA"), OLDER_ID, createSequence(OLDER_ID, 3, "MCCC"))
+        );
+        em.flush();
+        em.clear();
+
+        proteinSequenceService.saveSequences(
+            ReferenceGenome.GRCh38,
+            Map.of(CHANGED_ID, createSequence(CHANGED_ID, 2, "MAAB"), OLDER_ID, createSequence(OLDER_ID, 2, "MCCD"))
+        );
+        em.flush();
+        em.clear();
+
+        Map<String, ProteinSequence> storedSequences = proteinSequenceRepository
+            .findAllByReferenceGenomeAndEnsemblProteinIdIn(ReferenceGenome.GRCh38.name(), List.of(CHANGED_ID, OLDER_ID))
+            .stream()
+            .collect(Collectors.toMap(ProteinSequence::getEnsemblProteinId, Function.identity()));
+        assertThat(storedSequences).hasSize(2);
+        assertThat(storedSequences.get(CHANGED_ID).getVersion()).isEqualTo(2);
+        assertThat(storedSequences.get(CHANGED_ID).getSequence()).isEqualTo("MAAB");
+        // an older version never replaces the stored one
+        assertThat(storedSequences.get(OLDER_ID).getVersion()).isEqualTo(3);
+        assertThat(storedSequences.get(OLDER_ID).getSequence()).isEqualTo("MCCC");
+
+        // the sequences kept in memory are the stored ones
+        assertThat(proteinSequenceService.findRecentSequence(ReferenceGenome.GRCh38, CHANGED_ID)).contains("MAAB");
+        assertThat(proteinSequenceService.findRecentSequence(ReferenceGenome.GRCh38, OLDER_ID)).contains("MCCC");
+    }
+
+    @Test
+    void storeSequencesKeepsNothingNewInMemory() {
+        proteinSequenceService.saveSequences(ReferenceGenome.GRCh37, Map.of(CHANGED_ID, createSequence(CHANGED_ID, 1, "MAAA")));
+
+        proteinSequenceService.storeSequences(
+            ReferenceGenome.GRCh37,
+            Map.of(CHANGED_ID, createSequence(CHANGED_ID, 2, "MAAB"), OLDER_ID, createSequence(OLDER_ID, 1, "MCCC"))
+        );
+        em.flush();
+        em.clear();
+
+        // the sequence in memory follows the stored one, the new one is only stored
+        assertThat(proteinSequenceService.findRecentSequence(ReferenceGenome.GRCh37, CHANGED_ID)).contains("MAAB");
+        assertThat(proteinSequenceService.findRecentSequence(ReferenceGenome.GRCh37, OLDER_ID)).isEmpty();
+        assertThat(proteinSequenceService.findStoredSequences(ReferenceGenome.GRCh37, List.of(CHANGED_ID, OLDER_ID)))
+            .containsEntry(CHANGED_ID, "MAAB")
+            .containsEntry(OLDER_ID, "MCCC");
+        // reading the stored sequences does not fill the memory either
+        assertThat(proteinSequenceService.findRecentSequence(ReferenceGenome.GRCh37, OLDER_ID)).isEmpty();
+    }
+
+    private static EnsemblSequence createSequence(String id, Integer version, String seq) {
+        EnsemblSequence ensemblSequence = new EnsemblSequence();
+        ensemblSequence.setId(id);
+        ensemblSequence.setVersion(version);
+        ensemblSequence.setSeq(seq);
+        return ensemblSequence;
+    }
+}
@@ -0,0 +1,94 @@
+package org.mskcc.oncokb.transcript.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.IntegrationTest;
+import org.mskcc.oncokb.transcript.domain.EnsemblGene;
+import org.mskcc.oncokb.transcript.domain.GenomeFragment;
+import org.mskcc.oncokb.transcript.domain.enumeration.GenomeFragmentType;
+import org.mskcc.oncokb.transcript.domain.enumeration.ReferenceGenome;
+import org.mskcc.oncokb.transcript.domain.enumeration.SequenceType;
+import org.mskcc.oncokb.transcript.repository.GenomeFragmentRepository;
+import org.mskcc.oncokb.transcript.repository.SequenceRepository;
+import org.mskcc.oncokb.transcript.service.dto.TranscriptDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Integration tests for {@link TranscriptService#saveAll}.
+ */
+@IntegrationTest
+@Transactional
+class TranscriptServiceIT {
+
+    @Autowired
+    private TranscriptService transcriptService;
+
+    @Autowired
+    private GenomeFragmentRepository genomeFragmentRepository;
+
+    @Autowired
+    private SequenceRepository sequenceRepository;
+
+    @Autowired
+    private EntityManager em;
+
+    @Test
+    void saveAllSavesTheTranscriptsWithTheirFragmentsAndSequences() {
+        EnsemblGene ensemblGene = new EnsemblGene().canonical(true).chromosome("7").start(1000).end(9000).strand(1);
+        ensemblGene.setReferenceGenome(ReferenceGenome.GRCh37.name());
+        ensemblGene.setEnsemblGeneId("ENSG00000000001");
+        em.persist(ensemblGene);
+
+        List<TranscriptDTO> transcriptDTOs = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            transcriptDTOs.add(createTranscriptDTO(ensemblGene, i));
+        }
+        List<TranscriptDTO> savedTranscripts = transcriptService.saveAll(
+            transcriptDTOs,
+            Collections.singletonMap("ENSP00000000000", "MAAAA")
+        );
+        em.flush();
+
+        assertThat(savedTranscripts).hasSize(30).allMatch(transcript -> transcript.getId() != null);
+        // the gene fragment, 2 exons and a UTR of each transcript
+        assertThat(genomeFragmentRepository.findAllByTranscriptId(savedTranscripts.get(29).getId())).hasSize(4);
+        assertThat(sequenceRepository.findAll())
+            .filteredOn(sequence -> sequence.getSequenceType() == SequenceType.PROTEIN && "MAAAA".equals(sequence.getSequence()))
+            .hasSize(1);
+
+        // saved again, the fragments are replaced
+        TranscriptDTO updatedTranscript = savedTranscripts.get(0);
+        updatedTranscript.setExons(
+            List.of(new GenomeFragment().chromosome("7").start(1000).end(1100).strand(1).type(GenomeFragmentType.EXON))
+        );
+        transcriptService.saveAll(List.of(updatedTranscript), Collections.emptyMap());
+        em.flush();
+        assertThat(genomeFragmentRepository.findAllByTranscriptId(updatedTranscript.getId())).hasSize(2);
+    }
+
+    private static TranscriptDTO createTranscriptDTO(EnsemblGene ensemblGene, int index) {
+        TranscriptDTO transcriptDTO = new TranscriptDTO();
+        transcriptDTO.setEnsemblGene(ensemblGene);
+        transcriptDTO.setEnsemblTranscriptId(String.format("ENST%011d", index));
+        transcriptDTO.setEnsemblProteinId(String.format("ENSP%011d", index));
+        transcriptDTO.setCanonical(index == 0);
+        transcriptDTO.setChromosome("7");
+        transcriptDTO.setStart(1000 + index);
+        transcriptDTO.setEnd(9000);
+        transcriptDTO.setStrand(1);
+        List<GenomeFragment> exons = new ArrayList<>();
+        exons.add(new GenomeFragment().chromosome("7").start(1000 + index).end(1100).strand(1).type(GenomeFragmentType.EXON));
+        exons.add(new GenomeFragment().chromosome("7").start(2000).end(9000).strand(1).type(GenomeFragmentType.EXON));
+        transcriptDTO.setExons(exons);
+        List<GenomeFragment> utrs = new ArrayList<>();
+        utrs.add(new GenomeFragment().chromosome("7").start(1000 + index).end(1050).strand(1).type(GenomeFragmentType.FIVE_PRIME_UTR));
+        transcriptDTO.setUtrs(utrs);
+        return transcriptDTO;
+    }
+}
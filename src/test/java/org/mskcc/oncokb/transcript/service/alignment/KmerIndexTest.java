@@ -0,0 +1,95 @@
+package org.mskcc.oncokb.transcript.service.alignment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class KmerIndexTest {
+
+    private static final String REFERENCE = "MVLSPADKTNVKAAWGKVGAHAGEYGAEALERMFLSFPTTKTYFPHFDLSHGSAQVKGHGKKVADALTNAVAHV";
+
+    @Test
+    void shouldFindSequencesContainingSubsequence() {
+        KmerIndex kmerIndex = new KmerIndex.Builder()
+            .add("exact", REFERENCE)
+            .add("longer", "MAS" + REFERENCE + "GGK")
+            .add("substituted", REFERENCE.replace("GAEALE", "GAQALE"))
+            .add("truncated", REFERENCE.substring(0, 40))
+            .build();
+
+        assertThat(kmerIndex.findContaining(REFERENCE)).containsExactly("exact", "longer");
+        assertThat(kmerIndex.findContaining("FDLSHGSAQ")).containsExactly("exact", "longer", "substituted");
+        assertThat(kmerIndex.findContaining("MVLSPADK")).containsExactly("exact", "longer", "substituted", "truncated");
+        // shorter than a seed
+        assertThat(kmerIndex.findContaining("GAQ")).containsExactly("substituted");
+        assertThat(kmerIndex.findContaining("WWWWWWW")).isEmpty();
+    }
+
+    @Test
+    void shouldMatchLinearScan() {
+        Random random = new Random(42);
+        List<String> sequences = new ArrayList<>();
+        KmerIndex.Builder builder = new KmerIndex.Builder(3);
+        for (int s = 0; s < 20; s++) {
+            // a small alphabet, so the k-mers repeat a lot
+            StringBuilder sequence = new StringBuilder();
+            for (int i = 0; i < 200; i++) {
+                sequence.append("ACDE".charAt(random.nextInt(4)));
+            }
+            sequences.add(sequence.toString());
+            builder.add(String.valueOf(s), sequence.toString());
+        }
+        KmerIndex kmerIndex = builder.build();
+
+        for (int q = 0; q < 200; q++) {
+            String source = sequences.get(random.nextInt(sequences.size()));
+            int start = random.nextInt(source.length() - 10);
+            String subsequence = source.substring(start, start + 1 + random.nextInt(10));
+            List<String> expected = new ArrayList<>();
+            for (int s = 0; s < sequences.size(); s++) {
+                if (sequences.get(s).contains(subsequence)) {
+                    expected.add(String.valueOf(s));
+                }
+            }
+            assertThat(kmerIndex.findContaining(subsequence)).as(subsequence).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void shouldRankSimilarSequencesFirst() {
+        KmerIndex kmerIndex = new KmerIndex.Builder()
+            .add("unrelated", "MKKLLPTAAAGLLLLAAQPAMAQVQLQESGPGLVKPSETLSLTCTVSGGSISSYYWSWIRQPPGKGLEWIG")
+            .add("two-substitutions", REFERENCE.replace("GAEALE", "GAQALE").replace("SHGSAQ", "SHGTAQ"))
+            .add("shuffled", REFERENCE.substring(37) + REFERENCE.substring(0, 37))
+            .add("one-substitution", REFERENCE.replace("GAEALE", "GAQALE"))
+            .add("short", "MVL")
+            .build();
+
+        assertThat(kmerIndex.rankCandidates(REFERENCE, 10))
+            .containsExactly("one-substitution", "two-substitutions", "shuffled", "unrelated", "short");
+        assertThat(kmerIndex.rankCandidates(REFERENCE, 2)).containsExactly("one-substitution", "two-substitutions");
+        assertThat(kmerIndex.getSequence("short")).contains("MVL");
+        assertThat(kmerIndex.getSequence("missing")).isEmpty();
+    }
+
+    @Test
+    void shouldPreferSeedsInOrder() {
+        String left = REFERENCE.substring(0, 37);
+        String right = REFERENCE.substring(37);
+        KmerIndex kmerIndex = new KmerIndex.Builder().add("shuffled", right + left).add("gapped", left + "GGGGGG" + right).build();
+
+        // both share every k-mer but the ones spanning the middle, only the gapped one has them in the same order
+        List<String> ranked = kmerIndex.rankCandidates(REFERENCE, 2);
+        assertThat(ranked).containsExactly("gapped", "shuffled");
+    }
+
+    @Test
+    void shouldRejectInvalidK() {
+        assertThatThrownBy(() -> new KmerIndex.Builder(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new KmerIndex.Builder(13)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,73 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.model.EnsemblConfig;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+class EnsemblRateLimitInterceptorTest {
+
+    private static final String URL = "https://rest.ensembl.org/sequence/id/ENSP00000288602";
+
+    private EnsemblRateLimitInterceptor interceptor;
+    private RestTemplate restTemplate;
+    private MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        EnsemblConfig ensemblConfig = new EnsemblConfig();
+        ensemblConfig.setMaxRetries(2);
+        interceptor = new EnsemblRateLimitInterceptor(ensemblConfig);
+        restTemplate = new RestTemplate();
+        restTemplate.getInterceptors().add(interceptor);
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @Test
+    void shouldRetryAfterTooManyRequests() {
+        server.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS).header("Retry-After", "0"));
+        server.expect(requestTo(URL)).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "0.01"));
+        server.expect(requestTo(URL)).andRespond(withSuccess("{\"seq\":\"MAALS\"}", MediaType.APPLICATION_JSON));
+
+        assertThat(restTemplate.getForObject(URL, String.class)).contains("MAALS");
+        server.verify();
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxRetries() {
+        server
+            .expect(ExpectedCount.times(3), requestTo(URL))
+            .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "0"));
+
+        assertThatThrownBy(() -> restTemplate.getForObject(URL, String.class)).isInstanceOf(HttpServerErrorException.class);
+        server.verify();
+    }
+
+    @Test
+    void shouldTuneRateFromHeaders() {
+        server
+            .expect(requestTo(URL))
+            .andRespond(
+                withSuccess("{}", MediaType.APPLICATION_JSON)
+                    .header(EnsemblRateLimitInterceptor.RATE_LIMIT_REMAINING, "100")
+                    .header(EnsemblRateLimitInterceptor.RATE_LIMIT_RESET, "50")
+            );
+
+        restTemplate.getForObject(URL, String.class);
+
+        assertThat(interceptor.getBucket("rest.ensembl.org").getRequestsPerSecond()).isEqualTo(2);
+        // each host has its own limit
+        assertThat(interceptor.getBucket("grch37.rest.ensembl.org").getRequestsPerSecond()).isEqualTo(15);
+    }
+}
@@ -0,0 +1,108 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.domain.enumeration.GenomeFragmentType;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseFeature;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseGene;
+import org.mskcc.oncokb.transcript.service.ensembl.EnsemblReleaseReader.ReleaseTranscript;
+import org.mskcc.oncokb.transcript.vm.ensembl.EnsemblSequence;
+
+class EnsemblReleaseReaderTest {
+
+    private static final String GTF =
+        "#!genome-build GRCh38.p13\n" +
+        line("1", "gene", 100, 900, "+", "gene_id \"ENSG01\"; gene_version \"3\"; gene_name \"GENEA\"; gene_biotype \"protein_coding\";") +
+        line("1", "transcript", 100, 900, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\"; gene_name \"GENEA\"; tag \"basic\"; tag \"Ensembl_canonical\";") +
+        line("1", "exon", 100, 300, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\"; exon_number \"1\";") +
+        line("1", "CDS", 201, 300, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\"; protein_id \"ENSP01\"; protein_version \"2\";") +
+        line("1", "exon", 500, 900, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\"; exon_number \"2\";") +
+        line("1", "CDS", 500, 799, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\"; protein_id \"ENSP01\";") +
+        line("1", "five_prime_utr", 100, 200, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\";") +
+        line("1", "three_prime_utr", 800, 900, "+", "gene_id \"ENSG01\"; transcript_id \"ENST01\";") +
+        line("7", "exon", 1000, 1500, "-", "gene_id \"ENSG02\"; transcript_id \"ENST02\"; gene_name \"GENEB\";") +
+        line("7", "CDS", 1101, 1400, "-", "gene_id \"ENSG02\"; transcript_id \"ENST02\"; protein_id \"ENSP02\";") +
+        line("7", "UTR", 1000, 1100, "-", "gene_id \"ENSG02\"; transcript_id \"ENST02\";") +
+        line("7", "UTR", 1401, 1500, "-", "gene_id \"ENSG02\"; transcript_id \"ENST02\";");
+
+    private static String line(String chromosome, String feature, int start, int end, String strand, String attributes) {
+        return String.join("\t", chromosome, "ensembl", feature, "" + start, "" + end, ".", strand, ".", attributes) + "\n";
+    }
+
+    @Test
+    void shouldReadGenesByChromosome() throws IOException {
+        List<List<ReleaseGene>> chromosomes = new ArrayList<>();
+
+        EnsemblReleaseReader.readGtf(new BufferedReader(new StringReader(GTF)), chromosomes::add);
+
+        assertThat(chromosomes).hasSize(2);
+        ReleaseGene gene = chromosomes.get(0).get(0);
+        assertThat(gene.getId()).isEqualTo("ENSG01");
+        assertThat(gene.getName()).isEqualTo("GENEA");
+        assertThat(gene.getChromosome()).isEqualTo("1");
+        assertThat(gene.getStart()).isEqualTo(100);
+        assertThat(gene.getEnd()).isEqualTo(900);
+        assertThat(gene.getStrand()).isEqualTo(1);
+
+        ReleaseTranscript transcript = gene.getTranscripts().get(0);
+        assertThat(transcript.getId()).isEqualTo("ENST01");
+        assertThat(transcript.getProteinId()).isEqualTo("ENSP01");
+        assertThat(transcript.getExons().stream().map(ReleaseFeature::getStart).collect(Collectors.toList())).containsExactly(100, 500);
+        assertThat(transcript.getUtrs().stream().map(ReleaseFeature::getType).collect(Collectors.toList()))
+            .containsExactly(GenomeFragmentType.FIVE_PRIME_UTR, GenomeFragmentType.THREE_PRIME_UTR);
+    }
+
+    @Test
+    void shouldFindUtrSideFromCodingRegion() throws IOException {
+        List<List<ReleaseGene>> chromosomes = new ArrayList<>();
+
+        EnsemblReleaseReader.readGtf(new BufferedReader(new StringReader(GTF)), chromosomes::add);
+
+        // without gene and transcript lines, the bounds come from the features
+        ReleaseGene gene = chromosomes.get(1).get(0);
+        assertThat(gene.getStart()).isEqualTo(1000);
+        assertThat(gene.getEnd()).isEqualTo(1500);
+        assertThat(gene.getStrand()).isEqualTo(-1);
+        // on the reverse strand, the 5' UTR is after the CDS
+        List<ReleaseFeature> utrs = gene.getTranscripts().get(0).getUtrs();
+        assertThat(utrs.stream().map(ReleaseFeature::getType).collect(Collectors.toList()))
+            .containsExactly(GenomeFragmentType.THREE_PRIME_UTR, GenomeFragmentType.FIVE_PRIME_UTR);
+    }
+
+    @Test
+    void shouldReadPeptidesWithTheirVersion() throws IOException {
+        String fasta =
+            ">ENSP00000288602.6 pep chromosome:GRCh38:7:140719327:140924929:-1 gene:ENSG00000157764.14 transcript:ENST00000288602.11\n" +
+            "MAALSGGGGG\n" +
+            "GAEPGQALFN\n" +
+            ">ENSP00000496776.1 pep chromosome:GRCh38:7:140719327:140924929:-1\n" +
+            "MAALS\n";
+
+        List<EnsemblSequence> peptides = new ArrayList<>();
+
+        EnsemblReleaseReader.readPeptides(new BufferedReader(new StringReader(fasta)), peptides::add);
+
+        assertThat(peptides).extracting(EnsemblSequence::getId).containsExactly("ENSP00000288602", "ENSP00000496776");
+        assertThat(peptides).extracting(EnsemblSequence::getVersion).containsExactly(6, 1);
+        assertThat(peptides).extracting(EnsemblSequence::getSeq).containsExactly("MAALSGGGGGGAEPGQALFN", "MAALS");
+    }
+
+    @Test
+    void shouldParseAttributes() throws IOException {
+        Map<String, String> attributes = EnsemblReleaseReader.parseAttributes(
+            "gene_id \"ENSG00000157764\"; gene_version \"14\"; exon_number 3; tag \"basic\"; tag \"CCDS\";"
+        );
+
+        assertThat(attributes.get("gene_id")).isEqualTo("ENSG00000157764");
+        assertThat(attributes.get("exon_number")).isEqualTo("3");
+        assertThat(attributes.get("tag")).isEqualTo("basic");
+    }
+}
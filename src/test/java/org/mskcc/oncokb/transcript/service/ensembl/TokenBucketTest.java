@@ -0,0 +1,73 @@
+package org.mskcc.oncokb.transcript.service.ensembl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1000 * SECOND);
+
+    @Test
+    void shouldWaitWhenBucketIsEmpty() {
+        TokenBucket tokenBucket = new TokenBucket(2, now::get);
+
+        // one second worth of requests right away
+        assertThat(tokenBucket.reserve()).isZero();
+        assertThat(tokenBucket.reserve()).isZero();
+        // then one every half second, in the order they were reserved
+        assertThat(tokenBucket.reserve()).isEqualTo(SECOND / 2);
+        assertThat(tokenBucket.reserve()).isEqualTo(SECOND);
+
+        now.addAndGet(10 * SECOND);
+        // the bucket never holds more than a second worth of requests
+        assertThat(tokenBucket.reserve()).isZero();
+        assertThat(tokenBucket.reserve()).isZero();
+        assertThat(tokenBucket.reserve()).isEqualTo(SECOND / 2);
+    }
+
+    @Test
+    void shouldSpreadRemainingRequestsUntilReset() {
+        TokenBucket tokenBucket = new TokenBucket(15, now::get);
+
+        tokenBucket.update(10, 20);
+        assertThat(tokenBucket.getRequestsPerSecond()).isEqualTo(0.5);
+        // never faster than the maximum rate
+        tokenBucket.update(55000, 3600);
+        assertThat(tokenBucket.getRequestsPerSecond()).isEqualTo(15);
+    }
+
+    @Test
+    void shouldPauseUntilReset() {
+        TokenBucket tokenBucket = new TokenBucket(1, now::get);
+
+        tokenBucket.update(0, 30);
+        assertThat(tokenBucket.reserve()).isEqualTo(31 * SECOND);
+
+        now.addAndGet(31 * SECOND);
+        tokenBucket.update(100, 100);
+        now.addAndGet(SECOND);
+        assertThat(tokenBucket.reserve()).isZero();
+    }
+
+    @Test
+    void shouldPauseForRetryAfter() {
+        TokenBucket tokenBucket = new TokenBucket(10, now::get);
+
+        tokenBucket.pause(2 * SECOND);
+        assertThat(tokenBucket.reserve()).isEqualTo(2 * SECOND + SECOND / 10);
+        // a shorter pause does not shorten the current one
+        tokenBucket.pause(SECOND);
+        assertThat(tokenBucket.reserve()).isEqualTo(2 * SECOND + 2 * SECOND / 10);
+    }
+
+    @Test
+    void shouldRejectInvalidRate() {
+        assertThatThrownBy(() -> new TokenBucket(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
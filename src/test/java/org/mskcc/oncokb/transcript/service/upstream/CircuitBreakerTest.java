@@ -0,0 +1,66 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong now = new AtomicLong(1000 * SECOND);
+
+    @Test
+    void shouldOpenOnceFailureRateIsReached() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 4, 4, 30000, now::get);
+
+        // not enough calls yet
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        // 2 failures out of 4
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onFailure();
+        // the first failure left the window, still 2 out of 4
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void shouldLetOneTrialCallThroughWhenHalfOpen() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(0.5, 2, 2, 30000, now::get);
+        circuitBreaker.onFailure();
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        now.addAndGet(30 * SECOND);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+        // a failed trial call opens it for another open duration
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+        now.addAndGet(30 * SECOND);
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        // a call that says nothing about the endpoint lets another trial call through
+        circuitBreaker.onIgnored();
+        assertThat(circuitBreaker.tryAcquire()).isTrue();
+        circuitBreaker.onSuccess();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // the failures before it was closed are forgotten
+        circuitBreaker.onFailure();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
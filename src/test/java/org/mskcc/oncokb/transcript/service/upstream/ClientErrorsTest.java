@@ -0,0 +1,43 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+import org.junit.jupiter.api.Test;
+
+class ClientErrorsTest {
+
+    @Test
+    void shouldOnlyTreat4xxOtherThan429AsClientErrors() {
+        assertThat(ClientErrors.isClientError(400)).isTrue();
+        assertThat(ClientErrors.isClientError(404)).isTrue();
+        assertThat(ClientErrors.isClientError(429)).isFalse();
+        assertThat(ClientErrors.isClientError(500)).isFalse();
+        assertThat(ClientErrors.isClientError(0)).isFalse();
+    }
+
+    @Test
+    void shouldTreatOtherExceptionsAsFailures() {
+        Predicate<Exception> isClientError = ClientErrors.byStatusCode(StatusException.class, StatusException::getStatusCode);
+
+        assertThat(isClientError.test(new StatusException(404))).isTrue();
+        assertThat(isClientError.test(new StatusException(503))).isFalse();
+        assertThat(isClientError.test(new IOException("connection reset"))).isFalse();
+    }
+
+    private static class StatusException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        StatusException(int statusCode) {
+            this.statusCode = statusCode;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package org.mskcc.oncokb.transcript.service.upstream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mskcc.oncokb.transcript.config.ApplicationProperties;
+
+class UpstreamCallServiceTest {
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UpstreamCallService upstreamCallService;
+
+    @AfterEach
+    void tearDown() {
+        upstreamCallService.destroy();
+    }
+
+    @Test
+    void shouldRejectCallsOnceCircuitIsOpen() {
+        applicationProperties.getResilience().setSlidingWindowSize(4);
+        applicationProperties.getResilience().setMinimumNumberOfCalls(4);
+        upstreamCallService = new UpstreamCallService(applicationProperties, meterRegistry);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 4; i++) {
+            // 404s are answers of a healthy endpoint
+            assertThatThrownBy(() -> upstreamCallService.call("ensembl", false, e -> true, () -> fail(calls, "404")))
+                .isInstanceOf(IOException.class);
+        }
+        assertThat(upstreamCallService.getCircuitState("ensembl")).isEqualTo(CircuitBreaker.State.CLOSED);
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> upstreamCallService.call("ensembl", false, e -> false, () -> fail(calls, "503")))
+                .isInstanceOf(IOException.class);
+        }
+
+        // half of the last 4 calls failed
+        assertThat(upstreamCallService.getCircuitState("ensembl")).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> upstreamCallService.call("ensembl", false, e -> false, calls::incrementAndGet))
+            .isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(calls.get()).isEqualTo(6);
+        // another endpoint has its own breaker
+        assertThat(upstreamCallService.call("genome-nexus", false, e -> false, calls::incrementAndGet)).isEqualTo(7);
+
+        assertThat(meterRegistry.get("upstream.circuit.state").tag("endpoint", "ensembl").gauge().value()).isEqualTo(2);
+        assertThat(getCount("ensembl", "client-error")).isEqualTo(4);
+        assertThat(getCount("ensembl", "failure")).isEqualTo(2);
+        assertThat(getCount("ensembl", "rejected")).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnHedgeWhenFirstRequestIsSlow() throws Exception {
+        applicationProperties.getResilience().setMinHedgeDelay(10);
+        upstreamCallService = new UpstreamCallService(applicationProperties, meterRegistry);
+        // the latencies the hedge delay is based on
+        for (int i = 0; i < 20; i++) {
+            upstreamCallService.call("genome-nexus", true, e -> false, () -> "fast");
+        }
+        CountDownLatch slowRequest = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = upstreamCallService.call(
+            "genome-nexus",
+            true,
+            e -> false,
+            () -> {
+                if (attempts.incrementAndGet() == 1) {
+                    slowRequest.await();
+                    return "first";
+                }
+                return "hedge";
+            }
+        );
+        slowRequest.countDown();
+
+        assertThat(result).isEqualTo("hedge");
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(meterRegistry.counter("upstream.hedges", "endpoint", "genome-nexus", "result", "won").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStopWaitingAtDeadline() {
+        upstreamCallService = new UpstreamCallService(applicationProperties, meterRegistry);
+        CountDownLatch slowRequest = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        try (Deadline.Scope ignored = Deadline.after(50).attach()) {
+            assertThatThrownBy(
+                    () ->
+                        upstreamCallService.call(
+                            "oncokb",
+                            true,
+                            e -> false,
+                            () -> {
+                                calls.incrementAndGet();
+                                return slowRequest.await(10, TimeUnit.SECONDS);
+                            }
+                        )
+                )
+                .isInstanceOf(UpstreamUnavailableException.class);
+            // the calls made after the deadline are not sent
+            assertThatThrownBy(() -> upstreamCallService.call("oncokb", false, e -> false, calls::incrementAndGet))
+                .isInstanceOf(UpstreamUnavailableException.class);
+        } finally {
+            slowRequest.countDown();
+        }
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(Deadline.current()).isEmpty();
+        assertThat(getCount("oncokb", "deadline")).isEqualTo(2);
+        // the deadline says nothing about the endpoint
+        assertThat(upstreamCallService.getCircuitState("oncokb")).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    private double getCount(String endpoint, String outcome) {
+        return meterRegistry.counter("upstream.calls", "endpoint", endpoint, "outcome", outcome).count();
+    }
+
+    private static Object fail(AtomicInteger calls, String message) throws IOException {
+        calls.incrementAndGet();
+        throw new IOException(message);
+    }
+}